@@ -80,7 +80,7 @@ public interface INodeInfo {
     /**
      * 传输加密方式
      *
-     * @return 传输加密方式 0 不加密 1 BASE64 2 AES
+     * @return 传输加密方式 0 不加密 1 BASE64 2 AES 3 AES-GCM（请求体整体加密）
      */
     Integer transportEncryption();
 }
@@ -106,6 +106,13 @@ public interface IProxyWebSocket extends AutoCloseable {
      */
     void onMessage(Consumer<String> consumer);
 
+    /**
+     * 收到二进制消息
+     *
+     * @param consumer 回调
+     */
+    void onBinaryMessage(Consumer<ByteBuffer> consumer);
+
     /**
      * 是否连接上
      *
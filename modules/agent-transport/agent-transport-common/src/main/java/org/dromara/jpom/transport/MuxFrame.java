@@ -0,0 +1,255 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 服务端和插件端之间多路复用 websocket 的数据帧
+ * <p>
+ * 格式：类型(1) 流 id(4) 数据。流 id 为 0 的帧属于连接本身（心跳、事件推送）。
+ * 较大的消息会拆分为多个分片，除最后一个分片外类型最高位为 1
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/15
+ */
+public class MuxFrame {
+
+    /**
+     * 插件端连接地址
+     */
+    public static final String PATH = "/mux";
+    /**
+     * 打开流，数据为 json {"path":"","parameters":{}}
+     */
+    public static final byte OPEN = 1;
+    public static final byte TEXT = 2;
+    public static final byte BINARY = 3;
+    /**
+     * 关闭流，数据为 状态码(2) 原因
+     */
+    public static final byte CLOSE = 4;
+    /**
+     * 流控，数据为 增加的发送窗口(4)
+     */
+    public static final byte WINDOW = 5;
+    public static final byte PING = 6;
+    public static final byte PONG = 7;
+    /**
+     * 插件端主动推送的事件
+     */
+    public static final byte EVENT = 8;
+    /**
+     * 后面还有分片
+     */
+    private static final byte MORE = (byte) 0x80;
+    /**
+     * 每个流单方向初始的发送窗口
+     */
+    public static final int INITIAL_WINDOW = 1024 * 1024;
+    /**
+     * 消息分片大小
+     */
+    public static final int FRAGMENT_SIZE = 128 * 1024;
+    /**
+     * 单帧的最大长度
+     */
+    public static final int MAX_FRAME_SIZE = FRAGMENT_SIZE + 1024;
+
+    /**
+     * 帧头长度，流控只计算帧头之后的数据
+     */
+    public static final int HEADER_SIZE = 5;
+
+    private final byte type;
+    private final int streamId;
+    private final ByteBuffer payload;
+
+    private MuxFrame(byte type, int streamId, ByteBuffer payload) {
+        this.type = type;
+        this.streamId = streamId;
+        this.payload = payload;
+    }
+
+    public byte getType() {
+        return (byte) (type & ~MORE);
+    }
+
+    /**
+     * 是否还有后续分片
+     *
+     * @return true 消息还没有结束
+     */
+    public boolean isMore() {
+        return (type & MORE) != 0;
+    }
+
+    public int getStreamId() {
+        return streamId;
+    }
+
+    public ByteBuffer getPayload() {
+        return payload.duplicate();
+    }
+
+    public int getPayloadSize() {
+        return payload.remaining();
+    }
+
+    public String getText() {
+        ByteBuffer buffer = this.getPayload();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int getWindow() {
+        return payload.getInt(payload.position());
+    }
+
+    public int getCloseCode() {
+        return payload.remaining() >= 2 ? payload.getShort(payload.position()) & 0xffff : 1000;
+    }
+
+    public String getCloseReason() {
+        if (payload.remaining() <= 2) {
+            return null;
+        }
+        ByteBuffer buffer = this.getPayload();
+        buffer.position(buffer.position() + 2);
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 解析数据帧
+     *
+     * @param buffer 数据
+     * @return 帧
+     */
+    public static MuxFrame decode(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE) {
+            throw new IllegalArgumentException("数据帧长度错误:" + buffer.remaining());
+        }
+        ByteBuffer duplicate = buffer.duplicate();
+        byte type = duplicate.get();
+        int streamId = duplicate.getInt();
+        return new MuxFrame(type, streamId, duplicate.slice());
+    }
+
+    public static ByteBuffer encode(byte type, int streamId, ByteBuffer payload) {
+        int size = payload == null ? 0 : payload.remaining();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + size);
+        buffer.put(type).putInt(streamId);
+        if (payload != null) {
+            buffer.put(payload.duplicate());
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 编码消息，超过分片大小时拆分为多个帧
+     *
+     * @param type     类型 {@link #TEXT} {@link #BINARY}
+     * @param streamId 流 id
+     * @param payload  消息
+     * @return 帧
+     */
+    public static List<ByteBuffer> encodeMessage(byte type, int streamId, ByteBuffer payload) {
+        ByteBuffer duplicate = payload.duplicate();
+        if (duplicate.remaining() <= FRAGMENT_SIZE) {
+            return Collections.singletonList(encode(type, streamId, duplicate));
+        }
+        List<ByteBuffer> list = new ArrayList<>(duplicate.remaining() / FRAGMENT_SIZE + 1);
+        while (duplicate.hasRemaining()) {
+            int size = Math.min(FRAGMENT_SIZE, duplicate.remaining());
+            ByteBuffer fragment = duplicate.slice();
+            fragment.limit(size);
+            duplicate.position(duplicate.position() + size);
+            byte fragmentType = duplicate.hasRemaining() ? (byte) (type | MORE) : type;
+            list.add(encode(fragmentType, streamId, fragment));
+        }
+        return list;
+    }
+
+    public static ByteBuffer encode(byte type, int streamId, String text) {
+        return encode(type, streamId, text == null ? null : ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static ByteBuffer encodeWindow(int streamId, int window) {
+        ByteBuffer payload = ByteBuffer.allocate(4).putInt(window);
+        payload.flip();
+        return encode(WINDOW, streamId, payload);
+    }
+
+    public static ByteBuffer encodeClose(int streamId, int code, String reason) {
+        byte[] bytes = reason == null ? new byte[0] : reason.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(2 + bytes.length).putShort((short) code).put(bytes);
+        payload.flip();
+        return encode(CLOSE, streamId, payload);
+    }
+
+    /**
+     * 分片消息的组装，每个流单独使用
+     */
+    public static class Assembler {
+
+        private ByteArrayOutputStream buffer;
+
+        /**
+         * 追加分片
+         *
+         * @param frame 帧
+         * @return 完整的消息，还没有结束时返回 null
+         */
+        public ByteBuffer append(MuxFrame frame) {
+            ByteBuffer payload = frame.getPayload();
+            if (buffer == null && !frame.isMore()) {
+                // 容器会复用接收缓冲区，消息异步处理前需要复制
+                ByteBuffer copy = ByteBuffer.allocate(payload.remaining());
+                copy.put(payload);
+                copy.flip();
+                return copy;
+            }
+            if (buffer == null) {
+                buffer = new ByteArrayOutputStream(FRAGMENT_SIZE * 2);
+            }
+            byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            buffer.write(bytes, 0, bytes.length);
+            if (frame.isMore()) {
+                return null;
+            }
+            ByteBuffer message = ByteBuffer.wrap(buffer.toByteArray());
+            buffer = null;
+            return message;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.transport;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 多路复用流的流控窗口
+ * <p>
+ * 发送方消耗窗口，窗口用完后阻塞发送线程；接收方处理完消息后归还窗口
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/15
+ */
+public class MuxWindow {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private long credit = MuxFrame.INITIAL_WINDOW;
+    private int consumed;
+    private boolean closed;
+
+    /**
+     * 发送前占用窗口，窗口不足时等待对端处理
+     *
+     * @param size    发送的数据大小
+     * @param timeout 最长等待时间 毫秒
+     * @throws IOException 等待超时或者流已经关闭
+     */
+    public void acquire(int size, long timeout) throws IOException {
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+            while (credit <= 0 && !closed) {
+                if (nanos <= 0) {
+                    throw new IOException("发送消息超时，对端处理过慢");
+                }
+                nanos = available.awaitNanos(nanos);
+            }
+            if (closed) {
+                throw new IOException("连接已经关闭");
+            }
+            credit -= size;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("发送消息被中断", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 对端归还窗口
+     *
+     * @param size 大小
+     */
+    public void release(int size) {
+        lock.lock();
+        try {
+            credit += size;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 接收方处理完消息
+     *
+     * @param size 消息大小
+     * @return 需要归还给对端的窗口，为 0 时暂不归还
+     */
+    public int consume(int size) {
+        lock.lock();
+        try {
+            consumed += size;
+            if (consumed < MuxFrame.INITIAL_WINDOW / 2) {
+                return 0;
+            }
+            int value = consumed;
+            consumed = 0;
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
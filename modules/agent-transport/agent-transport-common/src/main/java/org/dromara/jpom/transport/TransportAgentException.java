@@ -22,6 +22,7 @@
  */
 package org.dromara.jpom.transport;
 
+import lombok.Getter;
 import lombok.NoArgsConstructor;
 
 /**
@@ -31,7 +32,18 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 public class TransportAgentException extends RuntimeException {
 
+    /**
+     * 节点响应的 http 状态码，非响应异常为 0
+     */
+    @Getter
+    private int status;
+
     public TransportAgentException(String message) {
         super(message);
     }
+
+    public TransportAgentException(String message, int status) {
+        super(message);
+        this.status = status;
+    }
 }
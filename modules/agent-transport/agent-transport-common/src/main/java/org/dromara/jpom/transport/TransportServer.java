@@ -24,6 +24,7 @@ package org.dromara.jpom.transport;
 
 import com.alibaba.fastjson2.TypeReference;
 
+import java.util.Map;
 import java.util.function.Consumer;
 
 /**
@@ -43,6 +44,20 @@ public interface TransportServer {
 
     String TRANSPORT_ENCRYPTION = "transport-encryption";
 
+    /**
+     * 请求体整体加密时原始的 Content-Type
+     */
+    String TRANSPORT_CONTENT_TYPE = "transport-content-type";
+
+    /**
+     * 传输方式名称，用于在存在多个实现时通过配置选择
+     *
+     * @return 名称
+     */
+    default String name() {
+        return this.getClass().getSimpleName();
+    }
+
     /**
      * 执行请求
      *
@@ -102,4 +117,13 @@ public interface TransportServer {
      * @return websocket
      */
     IProxyWebSocket websocket(INodeInfo nodeInfo, IUrlItem urlItem, Object... parameters);
+
+    /**
+     * 传输相关的运行指标（连接池、耗时等）
+     *
+     * @return 不支持时返回 null
+     */
+    default Map<String, Object> metrics() {
+        return null;
+    }
 }
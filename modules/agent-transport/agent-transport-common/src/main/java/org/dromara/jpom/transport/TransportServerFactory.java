@@ -24,6 +24,7 @@ package org.dromara.jpom.transport;
 
 import cn.hutool.core.lang.Singleton;
 import cn.hutool.core.util.ServiceLoaderUtil;
+import cn.hutool.core.util.StrUtil;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -33,6 +34,20 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class TransportServerFactory {
 
+    /**
+     * 指定使用的传输方式，为空时使用第一个可用的实现
+     */
+    private static volatile String type;
+
+    /**
+     * 配置使用的传输方式，需要在第一次调用 {@link #get()} 之前设置
+     *
+     * @param type 传输方式名称 {@link TransportServer#name()}
+     */
+    public static void setType(String type) {
+        TransportServerFactory.type = type;
+    }
+
     /**
      * 获得单例的 TransportServer
      *
@@ -62,6 +77,16 @@ public class TransportServerFactory {
      * @return {@code EngineFactory}
      */
     private static TransportServer doCreate() {
+        String type = TransportServerFactory.type;
+        if (StrUtil.isNotEmpty(type)) {
+            for (TransportServer transportServer : ServiceLoaderUtil.loadList(TransportServer.class)) {
+                if (StrUtil.equalsIgnoreCase(type, transportServer.name())) {
+                    log.info("使用节点传输方式：{}", transportServer.name());
+                    return transportServer;
+                }
+            }
+            log.warn("没有找到节点传输方式：{}，将使用默认的传输方式", type);
+        }
         final TransportServer engine = ServiceLoaderUtil.loadFirstAvailable(TransportServer.class);
         if (null != engine) {
             return engine;
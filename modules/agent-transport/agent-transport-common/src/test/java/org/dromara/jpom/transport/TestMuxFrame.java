@@ -0,0 +1,136 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.transport;
+
+import cn.hutool.core.util.RandomUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 多路复用数据帧编解码测试
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/17
+ */
+public class TestMuxFrame {
+
+    @Test
+    public void testRoundTrip() {
+        byte[] types = {MuxFrame.OPEN, MuxFrame.TEXT, MuxFrame.BINARY, MuxFrame.PING, MuxFrame.PONG, MuxFrame.EVENT};
+        for (byte type : types) {
+            MuxFrame frame = MuxFrame.decode(MuxFrame.encode(type, 12345, "测试 text"));
+            Assert.assertEquals(type, frame.getType());
+            Assert.assertFalse(frame.isMore());
+            Assert.assertEquals(12345, frame.getStreamId());
+            Assert.assertEquals("测试 text", frame.getText());
+        }
+    }
+
+    @Test
+    public void testEmptyPayload() {
+        ByteBuffer buffer = MuxFrame.encode(MuxFrame.PING, 0, (ByteBuffer) null);
+        Assert.assertEquals(MuxFrame.HEADER_SIZE, buffer.remaining());
+        MuxFrame frame = MuxFrame.decode(buffer);
+        Assert.assertEquals(MuxFrame.PING, frame.getType());
+        Assert.assertEquals(0, frame.getPayloadSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeShort() {
+        MuxFrame.decode(ByteBuffer.allocate(MuxFrame.HEADER_SIZE - 1));
+    }
+
+    @Test
+    public void testWindow() {
+        MuxFrame frame = MuxFrame.decode(MuxFrame.encodeWindow(7, MuxFrame.INITIAL_WINDOW));
+        Assert.assertEquals(MuxFrame.WINDOW, frame.getType());
+        Assert.assertEquals(7, frame.getStreamId());
+        Assert.assertEquals(MuxFrame.INITIAL_WINDOW, frame.getWindow());
+    }
+
+    @Test
+    public void testClose() {
+        MuxFrame frame = MuxFrame.decode(MuxFrame.encodeClose(9, 1001, "关闭"));
+        Assert.assertEquals(MuxFrame.CLOSE, frame.getType());
+        Assert.assertEquals(1001, frame.getCloseCode());
+        Assert.assertEquals("关闭", frame.getCloseReason());
+
+        frame = MuxFrame.decode(MuxFrame.encodeClose(9, 1000, null));
+        Assert.assertEquals(1000, frame.getCloseCode());
+        Assert.assertNull(frame.getCloseReason());
+        // 没有状态码时按正常关闭处理
+        frame = MuxFrame.decode(MuxFrame.encode(MuxFrame.CLOSE, 9, (ByteBuffer) null));
+        Assert.assertEquals(1000, frame.getCloseCode());
+    }
+
+    @Test
+    public void testSmallMessageNotFragmented() {
+        ByteBuffer payload = ByteBuffer.wrap("hello".getBytes(StandardCharsets.UTF_8));
+        List<ByteBuffer> list = MuxFrame.encodeMessage(MuxFrame.TEXT, 1, payload);
+        Assert.assertEquals(1, list.size());
+        MuxFrame frame = MuxFrame.decode(list.get(0));
+        Assert.assertFalse(frame.isMore());
+        Assert.assertEquals("hello", frame.getText());
+        // 编码不改变原始数据的位置
+        Assert.assertEquals(5, payload.remaining());
+    }
+
+    @Test
+    public void testFragmentAndAssemble() {
+        byte[] bytes = RandomUtil.randomBytes(MuxFrame.FRAGMENT_SIZE * 2 + 100);
+        List<ByteBuffer> list = MuxFrame.encodeMessage(MuxFrame.BINARY, 3, ByteBuffer.wrap(bytes));
+        Assert.assertEquals(3, list.size());
+
+        MuxFrame.Assembler assembler = new MuxFrame.Assembler();
+        ByteBuffer message = null;
+        for (int i = 0; i < list.size(); i++) {
+            MuxFrame frame = MuxFrame.decode(list.get(i));
+            Assert.assertEquals(MuxFrame.BINARY, frame.getType());
+            Assert.assertEquals(3, frame.getStreamId());
+            Assert.assertEquals(i < list.size() - 1, frame.isMore());
+            Assert.assertTrue(frame.getPayloadSize() <= MuxFrame.FRAGMENT_SIZE);
+            message = assembler.append(frame);
+            if (i < list.size() - 1) {
+                Assert.assertNull(message);
+            }
+        }
+        Assert.assertNotNull(message);
+        byte[] result = new byte[message.remaining()];
+        message.get(result);
+        Assert.assertArrayEquals(bytes, result);
+    }
+
+    @Test
+    public void testAssemblerCopy() {
+        ByteBuffer buffer = MuxFrame.encode(MuxFrame.TEXT, 1, "abc");
+        MuxFrame.Assembler assembler = new MuxFrame.Assembler();
+        ByteBuffer message = assembler.append(MuxFrame.decode(buffer));
+        // 接收缓冲区被复用后不影响已经组装的消息
+        buffer.put(MuxFrame.HEADER_SIZE, (byte) 'x');
+        Assert.assertEquals("abc", StandardCharsets.UTF_8.decode(message).toString());
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.transport;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 多路复用流控窗口测试
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/17
+ */
+public class TestMuxWindow {
+
+    @Test
+    public void testAcquireTimeout() throws IOException {
+        MuxWindow window = new MuxWindow();
+        window.acquire(MuxFrame.INITIAL_WINDOW, 10);
+        long start = System.currentTimeMillis();
+        try {
+            window.acquire(1, 100);
+            Assert.fail("窗口用完后应该超时");
+        } catch (IOException e) {
+            Assert.assertEquals("发送消息超时，对端处理过慢", e.getMessage());
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start >= 90);
+    }
+
+    @Test
+    public void testAcquireOverdraft() throws IOException {
+        MuxWindow window = new MuxWindow();
+        // 还有窗口时允许一次发送超过剩余窗口的数据
+        window.acquire(MuxFrame.INITIAL_WINDOW - 1, 10);
+        window.acquire(MuxFrame.FRAGMENT_SIZE, 10);
+        try {
+            window.acquire(1, 10);
+            Assert.fail("窗口为负数时应该等待");
+        } catch (IOException ignored) {
+        }
+        // 归还后窗口仍然不足
+        window.release(MuxFrame.FRAGMENT_SIZE - 1);
+        try {
+            window.acquire(1, 10);
+            Assert.fail("窗口为 0 时应该等待");
+        } catch (IOException ignored) {
+        }
+        window.release(1);
+        window.acquire(1, 10);
+    }
+
+    @Test
+    public void testReleaseWakeUp() throws Exception {
+        MuxWindow window = new MuxWindow();
+        window.acquire(MuxFrame.INITIAL_WINDOW, 10);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                window.acquire(100, TimeUnit.SECONDS.toMillis(10));
+            } catch (Throwable e) {
+                error.set(e);
+            }
+            latch.countDown();
+        });
+        thread.start();
+        Assert.assertFalse(latch.await(100, TimeUnit.MILLISECONDS));
+        window.release(100);
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertNull(error.get());
+    }
+
+    @Test
+    public void testCloseWakeUp() throws Exception {
+        MuxWindow window = new MuxWindow();
+        window.acquire(MuxFrame.INITIAL_WINDOW, 10);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                window.acquire(100, TimeUnit.SECONDS.toMillis(10));
+            } catch (Throwable e) {
+                error.set(e);
+            }
+            latch.countDown();
+        });
+        thread.start();
+        Assert.assertFalse(latch.await(100, TimeUnit.MILLISECONDS));
+        window.close();
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(error.get() instanceof IOException);
+        Assert.assertEquals("连接已经关闭", error.get().getMessage());
+        // 关闭后即使还有窗口也不能发送
+        window.release(MuxFrame.INITIAL_WINDOW);
+        try {
+            window.acquire(1, 10);
+            Assert.fail("关闭后不能再发送");
+        } catch (IOException e) {
+            Assert.assertEquals("连接已经关闭", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testConsume() {
+        MuxWindow window = new MuxWindow();
+        int half = MuxFrame.INITIAL_WINDOW / 2;
+        // 没有达到一半窗口时先不归还，减少窗口帧
+        Assert.assertEquals(0, window.consume(half - 1));
+        Assert.assertEquals(half + 9, window.consume(10));
+        Assert.assertEquals(0, window.consume(1));
+        Assert.assertEquals(half + 1, window.consume(half));
+    }
+}
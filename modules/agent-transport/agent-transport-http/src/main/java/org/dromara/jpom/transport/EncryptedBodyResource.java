@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.transport;
+
+import cn.hutool.core.io.IORuntimeException;
+import cn.hutool.core.io.resource.Resource;
+import cn.hutool.http.body.RequestBody;
+import org.dromara.jpom.encrypt.BodyEncryptor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+
+/**
+ * 写出时整体加密的请求体，配合分块传输边加密边发送
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/14
+ */
+class EncryptedBodyResource implements Resource {
+
+    private final BodyEncryptor encryptor;
+    private final RequestBody body;
+
+    EncryptedBodyResource(BodyEncryptor encryptor, RequestBody body) {
+        this.encryptor = encryptor;
+        this.body = body;
+    }
+
+    @Override
+    public String getName() {
+        return null;
+    }
+
+    @Override
+    public URL getUrl() {
+        return null;
+    }
+
+    /**
+     * 请求体只通过 {@link #writeTo(OutputStream)} 边加密边写出，不支持读取
+     *
+     * @return 不支持
+     */
+    @Override
+    public InputStream getStream() {
+        throw new UnsupportedOperationException("加密请求体只支持写出");
+    }
+
+    /**
+     * 打印请求信息时会读取请求体，返回描述避免读取异常
+     *
+     * @param charset 编码
+     * @return 描述
+     */
+    @Override
+    public String readStr(Charset charset) {
+        return "[encrypted body]";
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IORuntimeException {
+        try {
+            OutputStream outputStream = encryptor.encrypt(out);
+            body.write(outputStream);
+            // 完整写出后才关闭，关闭时写入结束帧。写出异常时不能写入结束帧，避免接收方认为数据完整
+            outputStream.close();
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+    }
+}
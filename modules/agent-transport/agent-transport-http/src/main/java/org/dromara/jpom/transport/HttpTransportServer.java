@@ -25,18 +25,30 @@ package org.dromara.jpom.transport;
 import cn.hutool.core.convert.Convert;
 import cn.hutool.core.io.resource.Resource;
 import cn.hutool.core.net.url.UrlBuilder;
+import cn.hutool.core.util.ArrayUtil;
+import cn.hutool.core.util.CharsetUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.http.*;
+import cn.hutool.http.body.BytesBody;
+import cn.hutool.http.body.FormUrlEncodedBody;
+import cn.hutool.http.body.MultipartBody;
+import cn.hutool.http.body.RequestBody;
 import com.alibaba.fastjson2.JSONObject;
 import lombok.Lombok;
 import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.encrypt.BodyEncryptor;
 import org.dromara.jpom.encrypt.EncryptFactory;
 import org.dromara.jpom.encrypt.Encryptor;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * 插件端消息传输服务
@@ -47,6 +59,68 @@ import java.util.function.Consumer;
 @Slf4j
 public class HttpTransportServer implements TransportServer {
 
+    /**
+     * 上传文件时分块传输的块大小，避免 HttpURLConnection 在内存中缓存整个请求体
+     */
+    private static final int CHUNKED_STREAMING_SIZE = 64 * 1024;
+
+    /**
+     * 传输方式名称
+     */
+    public static final String NAME = "http";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("name", NAME);
+        map.put("mux", MuxChannelManager.metrics());
+        return map;
+    }
+
+    /**
+     * 加密表单参数，文件类型的参数保持不变
+     *
+     * @param map       表单参数
+     * @param encryptor 加密器
+     * @return 加密后的参数
+     * @throws Exception 加密异常
+     */
+    static Map<String, Object> encryptForm(Map<String, Object> map, Encryptor encryptor) throws Exception {
+        Map<String, Object> encryptedMap = new HashMap<>(map.size());
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            String encryptedKey = encryptor.encrypt(entry.getKey());
+            Object value = entry.getValue();
+            Object newValue;
+            if (value instanceof String[]) {
+                String[] valueStr = (String[]) value;
+                for (int i = 0; i < valueStr.length; i++) {
+                    valueStr[i] = encryptor.encrypt(valueStr[i]);
+                }
+                newValue = valueStr;
+            } else if (value instanceof Resource) {
+                newValue = value;
+            } else {
+                newValue = encryptor.encrypt(StrUtil.toStringOrNull(entry.getValue()));
+            }
+            encryptedMap.put(encryptedKey, newValue);
+        }
+        return encryptedMap;
+    }
+
+    /**
+     * 判断表单参数中是否包含文件
+     *
+     * @param map 表单参数
+     * @return true 包含文件
+     */
+    static boolean hasResource(Map<String, ?> map) {
+        return map.values().stream().anyMatch(o -> o instanceof Resource);
+    }
 
     private HttpRequest createRequest(INodeInfo nodeInfo, IUrlItem urlItem, Method method) {
         String url = StrUtil.format("{}://{}/", nodeInfo.scheme(), nodeInfo.url());
@@ -76,26 +150,16 @@ public class HttpTransportServer implements TransportServer {
             Encryptor encryptor;
             try {
                 encryptor = EncryptFactory.createEncryptor(nodeInfo.transportEncryption());
+                if (encryptor instanceof BodyEncryptor && httpRequest.getMethod() != Method.GET) {
+                    // GET 请求参数在 url 中，仍然按字段加密
+                    this.appendEncryptedBody(httpRequest, dataContentType, o, (BodyEncryptor) encryptor);
+                    return;
+                }
                 if (dataContentType == DataContentType.FORM_URLENCODED) {
                     if (o instanceof Map) {
-                        Map<String, Object> map = (Map<String, Object>) o;
-                        Map<String, Object> encryptedMap = new HashMap<>();
-                        for (Map.Entry<String, Object> entry : map.entrySet()) {
-                            String encryptedKey = encryptor.encrypt(entry.getKey());
-                            Object value = entry.getValue();
-                            Object newValue;
-                            if (value instanceof String[]) {
-                                String[] valueStr = (String[]) value;
-                                for (int i = 0; i < valueStr.length; i++) {
-                                    valueStr[i] = encryptor.encrypt(valueStr[i]);
-                                }
-                                newValue = valueStr;
-                            } else if (value instanceof Resource) {
-                                newValue = value;
-                            } else {
-                                newValue = encryptor.encrypt(StrUtil.toStringOrNull(entry.getValue()));
-                            }
-                            encryptedMap.put(encryptedKey, newValue);
+                        Map<String, Object> encryptedMap = encryptForm((Map<String, Object>) o, encryptor);
+                        if (hasResource(encryptedMap)) {
+                            httpRequest.setChunkedStreamingMode(CHUNKED_STREAMING_SIZE);
                         }
                         httpRequest.form(encryptedMap);
                     } else {
@@ -113,6 +177,74 @@ public class HttpTransportServer implements TransportServer {
         });
     }
 
+    /**
+     * 整体加密请求体，上传文件时边加密边分块发送
+     */
+    @SuppressWarnings("unchecked")
+    private void appendEncryptedBody(HttpRequest httpRequest, DataContentType dataContentType, Object data, BodyEncryptor encryptor) throws IOException {
+        if (dataContentType == DataContentType.FORM_URLENCODED) {
+            if (!(data instanceof Map)) {
+                throw new IllegalArgumentException("不支持的类型:" + data.getClass());
+            }
+            Map<String, Object> form = plainForm((Map<String, Object>) data);
+            if (hasResource(form)) {
+                MultipartBody multipartBody = MultipartBody.create(form, CharsetUtil.CHARSET_UTF_8);
+                httpRequest.header(TRANSPORT_CONTENT_TYPE, multipartBody.getContentType());
+                httpRequest.body(new EncryptedBodyResource(encryptor, multipartBody));
+                httpRequest.setChunkedStreamingMode(CHUNKED_STREAMING_SIZE);
+            } else {
+                httpRequest.header(TRANSPORT_CONTENT_TYPE, ContentType.FORM_URLENCODED.toString(CharsetUtil.CHARSET_UTF_8));
+                httpRequest.body(encryptBody(encryptor, FormUrlEncodedBody.create(form, CharsetUtil.CHARSET_UTF_8)));
+            }
+        } else if (dataContentType == DataContentType.JSON) {
+            byte[] bytes = JSONObject.toJSONString(data).getBytes(CharsetUtil.CHARSET_UTF_8);
+            httpRequest.header(TRANSPORT_CONTENT_TYPE, ContentType.JSON.toString(CharsetUtil.CHARSET_UTF_8));
+            httpRequest.body(encryptBody(encryptor, BytesBody.create(bytes)));
+        } else {
+            throw new IllegalArgumentException("不支持的 contentType");
+        }
+        httpRequest.header(Header.CONTENT_TYPE, ContentType.OCTET_STREAM.getValue());
+    }
+
+    /**
+     * 整体加密时的表单参数，和 hutool 处理表单参数的方式保持一致
+     *
+     * @param map 表单参数
+     * @return 处理后的参数
+     */
+    static Map<String, Object> plainForm(Map<String, Object> map) {
+        Map<String, Object> form = new LinkedHashMap<>(map.size());
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            Object value = entry.getValue();
+            if (value == null) {
+                continue;
+            }
+            if (value instanceof String[]) {
+                value = ArrayUtil.join((String[]) value, StrUtil.COMMA);
+            } else if (!(value instanceof Resource)) {
+                value = Convert.toStr(value);
+            }
+            form.put(entry.getKey(), value);
+        }
+        return form;
+    }
+
+    /**
+     * 加密请求体
+     *
+     * @param encryptor 加密器
+     * @param body      请求体
+     * @return 密文
+     * @throws IOException io
+     */
+    static byte[] encryptBody(BodyEncryptor encryptor, RequestBody body) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (OutputStream out = encryptor.encrypt(outputStream)) {
+            body.write(out);
+        }
+        return outputStream.toByteArray();
+    }
+
     private String executeRequest(HttpRequest httpRequest, INodeInfo nodeInfo, IUrlItem urlItem) {
         //
         if (log.isDebugEnabled()) {
@@ -124,7 +256,7 @@ public class HttpTransportServer implements TransportServer {
             log.debug("Completed {}", body);
             if (status != HttpStatus.HTTP_OK) {
                 log.warn("{} 响应异常 状态码错误：{} {}", nodeInfo.name(), status, body);
-                throw new TransportAgentException(nodeInfo.name() + " 节点响应异常,状态码错误：" + status);
+                throw new TransportAgentException(nodeInfo.name() + " 节点响应异常,状态码错误：" + status, status);
             }
             return body;
         });
@@ -161,27 +293,47 @@ public class HttpTransportServer implements TransportServer {
 
     @Override
     public IProxyWebSocket websocket(INodeInfo nodeInfo, IUrlItem urlItem, Object... parameters) {
-        String url = StrUtil.format("{}://{}/", nodeInfo.scheme(), nodeInfo.url());
-        UrlBuilder urlBuilder = UrlBuilder.of(url).addPath(urlItem.path());
+        Map<String, String> query = new LinkedHashMap<>();
         //
-        urlBuilder.addQuery(JPOM_AGENT_AUTHORIZE, nodeInfo.authorize());
+        query.put(JPOM_AGENT_AUTHORIZE, nodeInfo.authorize());
         //
-        urlBuilder.addQuery(WORKSPACE_ID_REQ_HEADER, urlItem.workspaceId());
+        query.put(WORKSPACE_ID_REQ_HEADER, urlItem.workspaceId());
         for (int i = 0; i < parameters.length; i += 2) {
             Object parameter = parameters[i + 1];
             String value = Convert.toStr(parameter, StrUtil.EMPTY);
-            urlBuilder.addQuery(parameters[i].toString(), value);
+            query.put(parameters[i].toString(), value);
         }
+        Integer timeout = urlItem.timeout();
+        Supplier<IProxyWebSocket> legacy = () -> {
+            String uriTemplate = buildWebSocketUri(nodeInfo, urlItem.path(), query);
+            if (log.isDebugEnabled()) {
+                log.debug("{}[{}] -> {}", nodeInfo.name(), uriTemplate, urlItem.workspaceId());
+            }
+            return new ServletWebSocketClientHandler(uriTemplate, timeout);
+        };
+        if (MuxChannelManager.isEnabled()) {
+            // 多路复用，插件端不支持时自动回退
+            return new MuxProxyWebSocket(nodeInfo, urlItem.path(), query, timeout, legacy);
+        }
+        return legacy.get();
+    }
+
+    /**
+     * 构建插件端 websocket 地址
+     *
+     * @param nodeInfo 节点
+     * @param path     路径
+     * @param query    参数
+     * @return ws 地址
+     */
+    static String buildWebSocketUri(INodeInfo nodeInfo, String path, Map<String, String> query) {
+        String url = StrUtil.format("{}://{}/", nodeInfo.scheme(), nodeInfo.url());
+        UrlBuilder urlBuilder = UrlBuilder.of(url).addPath(path);
+        query.forEach(urlBuilder::addQuery);
         urlBuilder.setWithEndTag(false);
         String uriTemplate = urlBuilder.build();
         uriTemplate = StrUtil.removePrefixIgnoreCase(uriTemplate, nodeInfo.scheme());
         String ws = "https".equalsIgnoreCase(nodeInfo.scheme()) ? "wss" : "ws";
-        uriTemplate = StrUtil.format("{}{}", ws, uriTemplate);
-        //
-        if (log.isDebugEnabled()) {
-            log.debug("{}[{}] -> {}", nodeInfo.name(), uriTemplate, urlItem.workspaceId());
-        }
-        Integer timeout = urlItem.timeout();
-        return new ServletWebSocketClientHandler(uriTemplate, timeout);
+        return StrUtil.format("{}{}", ws, uriTemplate);
     }
 }
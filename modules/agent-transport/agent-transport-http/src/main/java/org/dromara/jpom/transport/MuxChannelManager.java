@@ -0,0 +1,258 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.transport;
+
+import cn.hutool.core.thread.ExecutorBuilder;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+
+/**
+ * 服务端到插件端的多路复用 websocket 连接管理
+ * <p>
+ * 每个节点只保持一个物理连接，页面上打开的控制台、日志、脚本等会话都作为连接里面的流。
+ * 插件端版本过低不支持时自动回退到每个会话一个连接的方式
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/15
+ */
+@Slf4j
+public class MuxChannelManager {
+
+    /**
+     * 心跳间隔
+     */
+    static final long PING_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+    /**
+     * 超过此时间没有收到任何数据认为连接已经断开
+     */
+    private static final long DEAD_TIMEOUT = PING_INTERVAL * 3;
+    /**
+     * 没有流也没有事件时，空闲多久关闭连接
+     */
+    private static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+    /**
+     * 插件端不支持时，多久之后再尝试
+     */
+    private static final long UNSUPPORTED_RETRY = TimeUnit.MINUTES.toMillis(10);
+
+    private static final Map<String, MuxWebSocketChannel> CHANNELS = new ConcurrentHashMap<>();
+    private static final Map<String, Object> LOCKS = new ConcurrentHashMap<>();
+    private static final Map<String, Long> UNSUPPORTED = new ConcurrentHashMap<>();
+    /**
+     * 流消息处理线程数上限
+     */
+    private static final int MAX_STREAM_THREADS = 200;
+    /**
+     * 流消息处理线程池，线程用完后任务排队等待
+     */
+    static final ExecutorService STREAM_EXECUTOR = ExecutorBuilder.create()
+        .setCorePoolSize(MAX_STREAM_THREADS)
+        .setMaxPoolSize(MAX_STREAM_THREADS)
+        .setKeepAliveTime(60, TimeUnit.SECONDS)
+        .setAllowCoreThreadTimeOut(true)
+        .setWorkQueue(new LinkedBlockingQueue<>())
+        .setThreadFactory(ThreadFactoryBuilder.create().setNamePrefix("mux-stream-").setDaemon(true).build())
+        .build();
+    private static final ScheduledExecutorService HEARTBEAT = Executors.newSingleThreadScheduledExecutor(
+        ThreadFactoryBuilder.create().setNamePrefix("mux-heartbeat-").setDaemon(true).build());
+
+    private static volatile boolean enabled = true;
+    private static volatile BiConsumer<INodeInfo, String> eventListener;
+
+    static {
+        HEARTBEAT.scheduleWithFixedDelay(MuxChannelManager::heartbeat, PING_INTERVAL, PING_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 是否开启多路复用
+     *
+     * @param enabled 开启
+     */
+    public static void setEnabled(boolean enabled) {
+        MuxChannelManager.enabled = enabled;
+        if (!enabled) {
+            CHANNELS.values().forEach(MuxWebSocketChannel::close);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 插件端主动推送事件的监听
+     *
+     * @param eventListener 节点、事件内容
+     */
+    public static void setEventListener(BiConsumer<INodeInfo, String> eventListener) {
+        MuxChannelManager.eventListener = eventListener;
+    }
+
+    /**
+     * 订阅节点推送的事件，连接没有建立时先建立连接
+     *
+     * @param nodeInfo 节点
+     * @param timeout  连接超时时间 秒
+     * @param message  订阅消息
+     * @param force    已经订阅过时是否重新发送（对端需要重新推送完整数据）
+     * @return false 节点不支持或者连接失败
+     */
+    public static boolean subscribe(INodeInfo nodeInfo, int timeout, String message, boolean force) {
+        if (!isSupported(nodeInfo)) {
+            return false;
+        }
+        MuxWebSocketChannel channel = channel(nodeInfo, timeout);
+        if (channel == null) {
+            return false;
+        }
+        channel.subscribe(message, force);
+        return true;
+    }
+
+    /**
+     * 节点连接最近一次心跳的往返时间
+     *
+     * @param nodeInfo 节点
+     * @return 毫秒，没有连接或者还没有测量时为 -1
+     */
+    public static int pingDelay(INodeInfo nodeInfo) {
+        MuxWebSocketChannel channel = CHANNELS.get(key(nodeInfo));
+        return channel == null ? -1 : channel.getPingDelay();
+    }
+
+    static String key(INodeInfo nodeInfo) {
+        return StrUtil.format("{}://{}", nodeInfo.scheme(), nodeInfo.url());
+    }
+
+    static boolean isSupported(INodeInfo nodeInfo) {
+        if (!enabled) {
+            return false;
+        }
+        Long time = UNSUPPORTED.get(key(nodeInfo));
+        if (time == null) {
+            return true;
+        }
+        if (System.currentTimeMillis() - time > UNSUPPORTED_RETRY) {
+            UNSUPPORTED.remove(key(nodeInfo));
+            return true;
+        }
+        return false;
+    }
+
+    static void markUnsupported(INodeInfo nodeInfo) {
+        log.info("节点 {} 不支持多路复用连接，使用独立连接", nodeInfo.name());
+        UNSUPPORTED.put(key(nodeInfo), System.currentTimeMillis());
+    }
+
+    /**
+     * 获取节点的连接，没有连接时创建
+     *
+     * @param nodeInfo 节点
+     * @param timeout  连接超时时间 秒
+     * @return 连接失败返回 null
+     */
+    static MuxWebSocketChannel channel(INodeInfo nodeInfo, int timeout) {
+        String key = key(nodeInfo);
+        MuxWebSocketChannel channel = CHANNELS.get(key);
+        if (channel != null && channel.isOpen(nodeInfo)) {
+            return channel;
+        }
+        Object lock = LOCKS.computeIfAbsent(key, s -> new Object());
+        synchronized (lock) {
+            channel = CHANNELS.get(key);
+            if (channel != null) {
+                if (channel.isOpen(nodeInfo)) {
+                    return channel;
+                }
+                channel.close();
+            }
+            channel = new MuxWebSocketChannel(key, nodeInfo);
+            if (!channel.connect(timeout)) {
+                return null;
+            }
+            CHANNELS.put(key, channel);
+            return channel;
+        }
+    }
+
+    static void remove(MuxWebSocketChannel channel) {
+        CHANNELS.remove(channel.getKey(), channel);
+    }
+
+    static void fireEvent(INodeInfo nodeInfo, String event) {
+        BiConsumer<INodeInfo, String> listener = eventListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.accept(nodeInfo, event);
+        } catch (Exception e) {
+            log.warn("处理节点 {} 推送的事件异常", nodeInfo.name(), e);
+        }
+    }
+
+    private static void heartbeat() {
+        long now = System.currentTimeMillis();
+        for (MuxWebSocketChannel channel : CHANNELS.values()) {
+            try {
+                if (now - channel.getLastReceiveTime() > DEAD_TIMEOUT) {
+                    log.warn("节点 {} 多路复用连接超时未响应，关闭连接", channel.getNodeName());
+                    channel.close();
+                } else if (channel.getStreamCount() == 0 && !channel.isSubscribeEvent() && now - channel.getLastActiveTime() > IDLE_TIMEOUT) {
+                    log.debug("节点 {} 多路复用连接空闲，关闭连接", channel.getNodeName());
+                    channel.close();
+                } else {
+                    channel.ping();
+                }
+            } catch (Exception e) {
+                log.warn("节点 {} 多路复用连接心跳异常", channel.getNodeName(), e);
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * 连接统计信息
+     *
+     * @return map
+     */
+    public static Map<String, Object> metrics() {
+        Map<String, Object> map = new HashMap<>(4);
+        map.put("enabled", enabled);
+        List<Map<String, Object>> channels = new ArrayList<>(CHANNELS.size());
+        for (MuxWebSocketChannel channel : CHANNELS.values()) {
+            channels.add(channel.metrics());
+        }
+        map.put("channels", channels);
+        map.put("unsupported", new ArrayList<>(UNSUPPORTED.keySet()));
+        return map;
+    }
+}
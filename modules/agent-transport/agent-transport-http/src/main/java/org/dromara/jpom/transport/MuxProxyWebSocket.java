@@ -0,0 +1,300 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.transport;
+
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 多路复用连接中的一个流，对外表现和独立的 websocket 连接一致
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/15
+ */
+@Slf4j
+class MuxProxyWebSocket implements IProxyWebSocket {
+
+    /**
+     * 发送消息时间限制 60 秒，和独立连接保持一致
+     */
+    private static final long SEND_TIMEOUT = TimeUnit.SECONDS.toMillis(60);
+
+    private final INodeInfo nodeInfo;
+    private final String path;
+    private final Map<String, String> parameters;
+    private final Integer timeout;
+    private final Supplier<IProxyWebSocket> legacySupplier;
+    private final MuxSerialExecutor executor = new MuxSerialExecutor(MuxChannelManager.STREAM_EXECUTOR);
+    private final Object sendLock = new Object();
+    private IProxyWebSocket legacy;
+    private Consumer<String> consumerText;
+    private Consumer<ByteBuffer> consumerBinary;
+    private volatile MuxWebSocketChannel channel;
+    private volatile int streamId;
+    private volatile boolean opened;
+    private volatile boolean closed;
+    private volatile String closeStatusMsg;
+    private MuxWindow sendWindow;
+    private MuxWindow receiveWindow;
+    private MuxFrame.Assembler assembler;
+
+    MuxProxyWebSocket(INodeInfo nodeInfo, String path, Map<String, String> parameters, Integer timeout, Supplier<IProxyWebSocket> legacySupplier) {
+        this.nodeInfo = nodeInfo;
+        this.path = path;
+        this.parameters = parameters;
+        this.timeout = timeout;
+        this.legacySupplier = legacySupplier;
+    }
+
+    @Override
+    public void onMessage(Consumer<String> consumer) {
+        this.consumerText = consumer;
+        Optional.ofNullable(this.legacy).ifPresent(proxyWebSocket -> proxyWebSocket.onMessage(consumer));
+    }
+
+    @Override
+    public void onBinaryMessage(Consumer<ByteBuffer> consumer) {
+        this.consumerBinary = consumer;
+        Optional.ofNullable(this.legacy).ifPresent(proxyWebSocket -> proxyWebSocket.onBinaryMessage(consumer));
+    }
+
+    @Override
+    public boolean connect() {
+        // 时间不能太短，需要大于 1 秒
+        return this.connectBlocking(5);
+    }
+
+    @Override
+    public boolean connectBlocking() {
+        int maxTimeout = Optional.ofNullable(this.timeout).orElse(60);
+        return this.connectBlocking(maxTimeout);
+    }
+
+    @Override
+    public synchronized boolean connectBlocking(int seconds) {
+        if (this.legacy != null) {
+            return this.legacy.connectBlocking(seconds);
+        }
+        Assert.state(this.channel == null, "The connection has been established, do not repeat the connection");
+        if (MuxChannelManager.isSupported(nodeInfo)) {
+            MuxWebSocketChannel muxWebSocketChannel = MuxChannelManager.channel(nodeInfo, seconds);
+            if (muxWebSocketChannel != null) {
+                return this.openStream(muxWebSocketChannel, seconds);
+            }
+        }
+        // 回退到独立连接
+        this.legacy = legacySupplier.get();
+        this.legacy.onMessage(this.consumerText);
+        this.legacy.onBinaryMessage(this.consumerBinary);
+        return this.legacy.connectBlocking(seconds);
+    }
+
+    private boolean openStream(MuxWebSocketChannel muxWebSocketChannel, int seconds) {
+        this.sendWindow = new MuxWindow();
+        this.receiveWindow = new MuxWindow();
+        this.assembler = new MuxFrame.Assembler();
+        this.opened = false;
+        this.closed = false;
+        this.closeStatusMsg = null;
+        this.channel = muxWebSocketChannel;
+        this.streamId = muxWebSocketChannel.register(this);
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("path", path);
+        jsonObject.put("parameters", parameters);
+        try {
+            muxWebSocketChannel.send(MuxFrame.encode(MuxFrame.OPEN, streamId, jsonObject.toString()));
+            long waitTime = TimeUnit.SECONDS.toMillis(Math.max(seconds, 1));
+            long end = System.currentTimeMillis() + waitTime;
+            while (!opened && !closed) {
+                long remaining = end - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                this.wait(remaining);
+            }
+        } catch (IOException e) {
+            this.closeStatusMsg = e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (opened) {
+            return true;
+        }
+        this.closeStream(true);
+        return false;
+    }
+
+    /**
+     * 收到对端的帧，在连接的读取线程中调用
+     *
+     * @param frame 帧
+     */
+    void onFrame(MuxFrame frame) {
+        switch (frame.getType()) {
+            case MuxFrame.OPEN:
+                synchronized (this) {
+                    this.opened = true;
+                    this.notifyAll();
+                }
+                break;
+            case MuxFrame.WINDOW:
+                sendWindow.release(frame.getWindow());
+                break;
+            case MuxFrame.TEXT:
+            case MuxFrame.BINARY: {
+                int size = frame.getPayloadSize();
+                ByteBuffer message = assembler.append(frame);
+                boolean text = frame.getType() == MuxFrame.TEXT;
+                executor.execute(() -> this.deliver(message, text, size));
+                break;
+            }
+            case MuxFrame.CLOSE:
+                this.onClose(frame.getCloseCode(), frame.getCloseReason());
+                break;
+            default:
+                log.warn("未知的数据帧类型：{}", frame.getType());
+                break;
+        }
+    }
+
+    private void deliver(ByteBuffer message, boolean text, int size) {
+        try {
+            if (message != null) {
+                if (text) {
+                    Optional.ofNullable(consumerText).ifPresent(consumer -> consumer.accept(StandardCharsets.UTF_8.decode(message).toString()));
+                } else {
+                    Optional.ofNullable(consumerBinary).ifPresent(consumer -> consumer.accept(message));
+                }
+            }
+        } catch (Exception e) {
+            log.error("处理节点 {} 消息异常", nodeInfo.name(), e);
+        } finally {
+            int credit = receiveWindow.consume(size);
+            MuxWebSocketChannel muxWebSocketChannel = this.channel;
+            if (credit > 0 && muxWebSocketChannel != null) {
+                try {
+                    muxWebSocketChannel.send(MuxFrame.encodeWindow(streamId, credit));
+                } catch (IOException e) {
+                    log.debug("归还窗口失败：{}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 对端关闭流或者连接断开
+     *
+     * @param code   状态码
+     * @param reason 原因
+     */
+    synchronized void onClose(int code, String reason) {
+        this.closeStatusMsg = StrUtil.format("{}:{}", code, StrUtil.emptyIfNull(reason));
+        this.closeStream(false);
+        log.debug("{} 流关闭 {}", path, this.closeStatusMsg);
+    }
+
+    private synchronized void closeStream(boolean notifyRemote) {
+        MuxWebSocketChannel muxWebSocketChannel = this.channel;
+        if (muxWebSocketChannel == null) {
+            return;
+        }
+        this.closed = true;
+        this.channel = null;
+        this.notifyAll();
+        sendWindow.close();
+        muxWebSocketChannel.unregister(streamId);
+        if (notifyRemote) {
+            try {
+                muxWebSocketChannel.send(MuxFrame.encodeClose(streamId, 1000, null));
+            } catch (IOException e) {
+                log.debug("关闭流失败：{}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.legacy != null) {
+            this.legacy.close();
+            return;
+        }
+        this.closeStream(true);
+    }
+
+    @Override
+    public void send(String msg) throws IOException {
+        this.send(MuxFrame.TEXT, ByteBuffer.wrap(msg.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public void send(ByteBuffer bytes) throws IOException {
+        this.send(MuxFrame.BINARY, bytes);
+    }
+
+    private void send(byte type, ByteBuffer bytes) throws IOException {
+        if (this.legacy != null) {
+            if (type == MuxFrame.TEXT) {
+                this.legacy.send(StandardCharsets.UTF_8.decode(bytes).toString());
+            } else {
+                this.legacy.send(bytes);
+            }
+            return;
+        }
+        MuxWebSocketChannel muxWebSocketChannel = this.channel;
+        Assert.state(muxWebSocketChannel != null && opened, "还没有连接上");
+        synchronized (sendLock) {
+            for (ByteBuffer frame : MuxFrame.encodeMessage(type, streamId, bytes)) {
+                sendWindow.acquire(frame.remaining() - MuxFrame.HEADER_SIZE, SEND_TIMEOUT);
+                muxWebSocketChannel.send(frame);
+            }
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        if (this.legacy != null) {
+            return this.legacy.isConnected();
+        }
+        MuxWebSocketChannel muxWebSocketChannel = this.channel;
+        return opened && !closed && muxWebSocketChannel != null && muxWebSocketChannel.isOpen();
+    }
+
+    @Override
+    public String getCloseStatusMsg() {
+        if (this.legacy != null) {
+            return this.legacy.getCloseStatusMsg();
+        }
+        return StrUtil.emptyIfNull(this.closeStatusMsg);
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.transport;
+
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.ReUtil;
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import javax.websocket.ContainerProvider;
+import javax.websocket.DeploymentException;
+import javax.websocket.WebSocketContainer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 服务端到插件端的一个多路复用 websocket 物理连接
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/15
+ */
+@Slf4j
+class MuxWebSocketChannel extends AbstractWebSocketHandler {
+
+    private static final StandardWebSocketClient CLIENT;
+    /**
+     * 握手失败时异常信息中的响应状态码
+     */
+    private static final Pattern HANDSHAKE_STATUS = Pattern.compile("\\[(\\d{3})]");
+
+    static {
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        container.setDefaultMaxBinaryMessageBufferSize(MuxFrame.MAX_FRAME_SIZE);
+        CLIENT = new StandardWebSocketClient(container);
+    }
+
+    private final String key;
+    private final INodeInfo nodeInfo;
+    private final String authorize;
+    private final Map<Integer, MuxProxyWebSocket> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger streamIdGenerator = new AtomicInteger(-1);
+    private final Object sendLock = new Object();
+    private final LongAdder sendBytes = new LongAdder();
+    private final LongAdder receiveBytes = new LongAdder();
+    private final long createTime = System.currentTimeMillis();
+    private volatile WebSocketSession session;
+    private volatile long lastReceiveTime;
+    private volatile long lastActiveTime;
+    private volatile boolean subscribeEvent;
+    private volatile long pingTime;
+    private volatile int pingDelay = -1;
+
+    MuxWebSocketChannel(String key, INodeInfo nodeInfo) {
+        this.key = key;
+        this.nodeInfo = nodeInfo;
+        this.authorize = nodeInfo.authorize();
+    }
+
+    /**
+     * 建立连接
+     *
+     * @param timeout 超时时间 秒
+     * @return 是否成功
+     */
+    boolean connect(int timeout) {
+        Map<String, String> query = Collections.singletonMap(TransportServer.JPOM_AGENT_AUTHORIZE, authorize);
+        String uri = HttpTransportServer.buildWebSocketUri(nodeInfo, MuxFrame.PATH, query);
+        try {
+            this.session = CLIENT.doHandshake(this, uri).get(Math.max(timeout, 1), TimeUnit.SECONDS);
+            this.lastReceiveTime = this.lastActiveTime = System.currentTimeMillis();
+            log.debug("节点 {} 多路复用连接成功", nodeInfo.name());
+            // 尽快测量网络延迟
+            this.ping();
+            return true;
+        } catch (Exception e) {
+            log.warn("节点 {} 多路复用连接失败：{}", nodeInfo.name(), e.getMessage());
+            if (isHandshakeRejected(e)) {
+                // 插件端明确拒绝了升级（如版本过低没有此端点），其他异常（超时、网络不通等）下次继续尝试
+                MuxChannelManager.markUnsupported(nodeInfo);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 判断是否为插件端明确拒绝了 websocket 握手，握手响应的状态码为 4xx
+     *
+     * @param e 异常
+     * @return true 拒绝
+     */
+    static boolean isHandshakeRejected(Throwable e) {
+        Throwable cause = e;
+        while (cause != null) {
+            if (cause instanceof DeploymentException) {
+                // The HTTP response from the server [404] did not permit the HTTP upgrade to WebSocket
+                String status = ReUtil.getGroup1(HANDSHAKE_STATUS, StrUtil.nullToEmpty(cause.getMessage()));
+                int code = NumberUtil.parseInt(status, 0);
+                return code >= 400 && code < 500;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    String getNodeName() {
+        return nodeInfo.name();
+    }
+
+    long getLastReceiveTime() {
+        return lastReceiveTime;
+    }
+
+    long getLastActiveTime() {
+        return lastActiveTime;
+    }
+
+    int getStreamCount() {
+        return streams.size();
+    }
+
+    boolean isSubscribeEvent() {
+        return subscribeEvent;
+    }
+
+    /**
+     * 连接是否可用，节点授权信息变更后需要重新连接
+     *
+     * @param nodeInfo 节点
+     * @return true 可用
+     */
+    boolean isOpen(INodeInfo nodeInfo) {
+        WebSocketSession webSocketSession = this.session;
+        return webSocketSession != null && webSocketSession.isOpen() && StrUtil.equals(authorize, nodeInfo.authorize());
+    }
+
+    boolean isOpen() {
+        WebSocketSession webSocketSession = this.session;
+        return webSocketSession != null && webSocketSession.isOpen();
+    }
+
+    /**
+     * 注册流
+     *
+     * @param stream 流
+     * @return 流 id
+     */
+    int register(MuxProxyWebSocket stream) {
+        // 服务端创建的流使用奇数
+        int streamId = streamIdGenerator.addAndGet(2) & Integer.MAX_VALUE;
+        streams.put(streamId, stream);
+        lastActiveTime = System.currentTimeMillis();
+        return streamId;
+    }
+
+    void unregister(int streamId) {
+        streams.remove(streamId);
+        lastActiveTime = System.currentTimeMillis();
+    }
+
+    void send(ByteBuffer frame) throws IOException {
+        WebSocketSession webSocketSession = this.session;
+        if (webSocketSession == null || !webSocketSession.isOpen()) {
+            throw new IOException("多路复用连接已经关闭");
+        }
+        int size = frame.remaining();
+        synchronized (sendLock) {
+            webSocketSession.sendMessage(new BinaryMessage(frame));
+        }
+        sendBytes.add(size);
+    }
+
+    void ping() throws IOException {
+        pingTime = System.nanoTime();
+        this.send(MuxFrame.encode(MuxFrame.PING, 0, (ByteBuffer) null));
+    }
+
+    /**
+     * 最近一次心跳的往返时间
+     *
+     * @return 毫秒，还没有测量时为 -1
+     */
+    int getPingDelay() {
+        return pingDelay;
+    }
+
+    /**
+     * 订阅插件端推送的事件
+     *
+     * @param message 订阅消息
+     * @param force   已经订阅过时是否重新发送
+     */
+    void subscribe(String message, boolean force) {
+        if (subscribeEvent && !force) {
+            return;
+        }
+        try {
+            this.send(MuxFrame.encode(MuxFrame.EVENT, 0, message));
+            subscribeEvent = true;
+        } catch (IOException e) {
+            log.warn("节点 {} 订阅事件失败：{}", nodeInfo.name(), e.getMessage());
+        }
+    }
+
+    void close() {
+        MuxChannelManager.remove(this);
+        WebSocketSession webSocketSession = this.session;
+        if (webSocketSession != null) {
+            try {
+                webSocketSession.close();
+            } catch (IOException e) {
+                log.debug("关闭多路复用连接异常", e);
+            }
+        }
+        this.closeStreams(CloseStatus.GOING_AWAY);
+    }
+
+    private void closeStreams(CloseStatus status) {
+        for (MuxProxyWebSocket stream : new ArrayList<>(streams.values())) {
+            stream.onClose(status.getCode(), status.getReason());
+        }
+        streams.clear();
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        ByteBuffer payload = message.getPayload();
+        receiveBytes.add(payload.remaining());
+        lastReceiveTime = System.currentTimeMillis();
+        MuxFrame frame = MuxFrame.decode(payload);
+        switch (frame.getType()) {
+            case MuxFrame.PING:
+                this.send(MuxFrame.encode(MuxFrame.PONG, 0, (ByteBuffer) null));
+                return;
+            case MuxFrame.PONG:
+                long time = pingTime;
+                if (time > 0) {
+                    pingDelay = (int) TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - time);
+                    pingTime = 0;
+                }
+                return;
+            case MuxFrame.EVENT:
+                lastActiveTime = lastReceiveTime;
+                MuxChannelManager.fireEvent(nodeInfo, frame.getText());
+                return;
+            default:
+                break;
+        }
+        MuxProxyWebSocket stream = streams.get(frame.getStreamId());
+        if (stream == null) {
+            if (frame.getType() != MuxFrame.CLOSE) {
+                this.send(MuxFrame.encodeClose(frame.getStreamId(), CloseStatus.GOING_AWAY.getCode(), "stream not found"));
+            }
+            return;
+        }
+        stream.onFrame(frame);
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+        log.warn("节点 {} 多路复用连接异常：{}", nodeInfo.name(), exception.getMessage());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+        log.debug("节点 {} 多路复用连接关闭 {} {}", nodeInfo.name(), status.getCode(), status.getReason());
+        MuxChannelManager.remove(this);
+        this.closeStreams(status);
+    }
+
+    Map<String, Object> metrics() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("name", nodeInfo.name());
+        map.put("url", nodeInfo.url());
+        map.put("open", this.isOpen());
+        map.put("streams", streams.size());
+        map.put("subscribeEvent", subscribeEvent);
+        map.put("sendBytes", sendBytes.sum());
+        map.put("receiveBytes", receiveBytes.sum());
+        map.put("createTime", createTime);
+        map.put("lastReceiveTime", lastReceiveTime);
+        map.put("pingDelay", pingDelay);
+        return map;
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.transport;
+
+import cn.hutool.core.net.url.UrlBuilder;
+import cn.hutool.core.util.ArrayUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.http.body.BytesBody;
+import cn.hutool.http.body.FormUrlEncodedBody;
+import cn.hutool.http.body.RequestBody;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.Lombok;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.entity.UrlEncodedFormEntity;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactoryBuilder;
+import org.apache.hc.client5.http.ssl.TrustAllStrategy;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.NameValuePair;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.message.BasicNameValuePair;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.ssl.SSLContextBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.dromara.jpom.encrypt.BodyEncryptor;
+import org.dromara.jpom.encrypt.EncryptFactory;
+import org.dromara.jpom.encrypt.Encryptor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 基于连接池的插件端消息传输服务
+ * <p>
+ * 复用到节点的 keep-alive 连接，并自动解压 gzip/deflate 响应。
+ * 上传文件、下载、websocket 以及 socks 代理仍然使用 {@link HttpTransportServer}
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/13
+ */
+@Slf4j
+public class PooledHttpTransportServer implements TransportServer {
+
+    /**
+     * 传输方式名称
+     */
+    public static final String NAME = "pooled-http";
+
+    /**
+     * 连接池最大连接数
+     */
+    private static volatile int maxTotal = 200;
+    /**
+     * 单个节点最大连接数
+     */
+    private static volatile int maxPerNode = 10;
+    /**
+     * 空闲连接保持时间
+     */
+    private static volatile int keepAliveSeconds = 30;
+
+    private final HttpTransportServer httpTransportServer = new HttpTransportServer();
+    private final Map<String, TransportLatencyHistogram> latencyMap = new ConcurrentHashMap<>();
+    private volatile PoolingHttpClientConnectionManager connectionManager;
+    private volatile CloseableHttpClient httpClient;
+
+    /**
+     * 配置连接池，需要在第一次请求之前设置
+     *
+     * @param maxTotal         连接池最大连接数
+     * @param maxPerNode       单个节点最大连接数
+     * @param keepAliveSeconds 空闲连接保持时间
+     */
+    public static void config(int maxTotal, int maxPerNode, int keepAliveSeconds) {
+        PooledHttpTransportServer.maxTotal = Math.max(maxTotal, 1);
+        PooledHttpTransportServer.maxPerNode = Math.max(maxPerNode, 1);
+        PooledHttpTransportServer.keepAliveSeconds = Math.max(keepAliveSeconds, 1);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    private CloseableHttpClient getHttpClient() {
+        if (httpClient != null) {
+            return httpClient;
+        }
+        synchronized (this) {
+            if (httpClient != null) {
+                return httpClient;
+            }
+            TimeValue keepAlive = TimeValue.ofSeconds(keepAliveSeconds);
+            try {
+                // 和 hutool 默认行为保持一致，信任节点的所有证书
+                PoolingHttpClientConnectionManager manager = PoolingHttpClientConnectionManagerBuilder.create()
+                    .setSSLSocketFactory(SSLConnectionSocketFactoryBuilder.create()
+                        .setSslContext(SSLContextBuilder.create().loadTrustMaterial(TrustAllStrategy.INSTANCE).build())
+                        .setHostnameVerifier(NoopHostnameVerifier.INSTANCE)
+                        .build())
+                    .setMaxConnTotal(maxTotal)
+                    .setMaxConnPerRoute(maxPerNode)
+                    .setValidateAfterInactivity(TimeValue.ofSeconds(1))
+                    .build();
+                this.httpClient = HttpClients.custom()
+                    .setConnectionManager(manager)
+                    .setKeepAliveStrategy((response, context) -> {
+                        TimeValue duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                        if (TimeValue.isPositive(duration) && duration.toMilliseconds() < keepAlive.toMilliseconds()) {
+                            return duration;
+                        }
+                        return keepAlive;
+                    })
+                    .evictExpiredConnections()
+                    .evictIdleConnections(keepAlive)
+                    .build();
+                this.connectionManager = manager;
+                log.info("节点传输连接池初始化完成 maxTotal:{} maxPerNode:{} keepAlive:{}s", maxTotal, maxPerNode, keepAliveSeconds);
+            } catch (Exception e) {
+                throw new TransportAgentException("初始化节点传输连接池异常:" + e.getMessage());
+            }
+            return httpClient;
+        }
+    }
+
+    /**
+     * 判断是否需要使用 {@link HttpTransportServer} 处理
+     *
+     * @param nodeInfo 节点信息
+     * @param data     参数
+     * @return true 不支持
+     */
+    @SuppressWarnings("unchecked")
+    private boolean unsupported(INodeInfo nodeInfo, Object data) {
+        Proxy proxy = nodeInfo.proxy();
+        if (proxy != null && proxy.type() == Proxy.Type.SOCKS) {
+            return true;
+        }
+        return data instanceof Map && HttpTransportServer.hasResource((Map<String, ?>) data);
+    }
+
+    private RequestConfig createRequestConfig(INodeInfo nodeInfo, IUrlItem urlItem) {
+        RequestConfig.Builder builder = RequestConfig.custom();
+        Integer timeout = urlItem.timeout();
+        if (timeout != null && timeout > 0) {
+            builder.setConnectTimeout(Timeout.ofSeconds(timeout));
+            builder.setResponseTimeout(Timeout.ofSeconds(timeout));
+            builder.setConnectionRequestTimeout(Timeout.ofSeconds(timeout));
+        }
+        Proxy proxy = nodeInfo.proxy();
+        if (proxy != null && proxy.type() == Proxy.Type.HTTP && proxy.address() instanceof InetSocketAddress) {
+            InetSocketAddress address = (InetSocketAddress) proxy.address();
+            builder.setProxy(new HttpHost(address.getHostString(), address.getPort()));
+        }
+        return builder.build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private HttpEntity createEntity(HttpPost httpPost, IUrlItem urlItem, Object data, INodeInfo nodeInfo) {
+        if (data == null) {
+            return null;
+        }
+        DataContentType dataContentType = urlItem.contentType();
+        try {
+            Encryptor encryptor = EncryptFactory.createEncryptor(nodeInfo.transportEncryption());
+            if (encryptor instanceof BodyEncryptor) {
+                return this.createEncryptedEntity(httpPost, dataContentType, data, (BodyEncryptor) encryptor);
+            }
+            if (dataContentType == DataContentType.FORM_URLENCODED) {
+                if (data instanceof Map) {
+                    Map<String, Object> encryptedMap = HttpTransportServer.encryptForm((Map<String, Object>) data, encryptor);
+                    List<NameValuePair> list = new ArrayList<>(encryptedMap.size());
+                    for (Map.Entry<String, Object> entry : encryptedMap.entrySet()) {
+                        Object value = entry.getValue();
+                        if (value == null) {
+                            continue;
+                        }
+                        // 数组和 hutool 保持一致，使用逗号拼接
+                        String strValue = value instanceof String[] ? ArrayUtil.join((String[]) value, StrUtil.COMMA) : value.toString();
+                        list.add(new BasicNameValuePair(entry.getKey(), strValue));
+                    }
+                    return new UrlEncodedFormEntity(list, StandardCharsets.UTF_8);
+                }
+                throw new IllegalArgumentException("不支持的类型:" + data.getClass());
+            } else if (dataContentType == DataContentType.JSON) {
+                return new StringEntity(encryptor.encrypt(JSONObject.toJSONString(data)), ContentType.APPLICATION_JSON);
+            }
+            throw new IllegalArgumentException("不支持的 contentType");
+        } catch (Exception e) {
+            log.error("编码异常", e);
+            throw new TransportAgentException("节点传输信息编码异常:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 整体加密请求体，文件上传由 {@link HttpTransportServer} 处理
+     */
+    @SuppressWarnings("unchecked")
+    private HttpEntity createEncryptedEntity(HttpPost httpPost, DataContentType dataContentType, Object data, BodyEncryptor encryptor) throws IOException {
+        RequestBody requestBody;
+        if (dataContentType == DataContentType.FORM_URLENCODED) {
+            if (!(data instanceof Map)) {
+                throw new IllegalArgumentException("不支持的类型:" + data.getClass());
+            }
+            Map<String, Object> form = HttpTransportServer.plainForm((Map<String, Object>) data);
+            httpPost.setHeader(TRANSPORT_CONTENT_TYPE, ContentType.APPLICATION_FORM_URLENCODED.withCharset(StandardCharsets.UTF_8).toString());
+            requestBody = FormUrlEncodedBody.create(form, StandardCharsets.UTF_8);
+        } else if (dataContentType == DataContentType.JSON) {
+            httpPost.setHeader(TRANSPORT_CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
+            requestBody = BytesBody.create(JSONObject.toJSONString(data).getBytes(StandardCharsets.UTF_8));
+        } else {
+            throw new IllegalArgumentException("不支持的 contentType");
+        }
+        return new ByteArrayEntity(HttpTransportServer.encryptBody(encryptor, requestBody), ContentType.APPLICATION_OCTET_STREAM);
+    }
+
+    private HttpPost createRequest(INodeInfo nodeInfo, IUrlItem urlItem, Object data) {
+        String url = StrUtil.format("{}://{}/", nodeInfo.scheme(), nodeInfo.url());
+        String uri = UrlBuilder.of(url).addPath(urlItem.path()).build();
+        HttpPost httpPost = new HttpPost(uri);
+        httpPost.setConfig(this.createRequestConfig(nodeInfo, urlItem));
+        httpPost.setHeader(TRANSPORT_ENCRYPTION, nodeInfo.transportEncryption() + "");
+        if (nodeInfo.authorize() != null) {
+            httpPost.setHeader(JPOM_AGENT_AUTHORIZE, nodeInfo.authorize());
+        }
+        if (urlItem.workspaceId() != null) {
+            httpPost.setHeader(WORKSPACE_ID_REQ_HEADER, urlItem.workspaceId());
+        }
+        httpPost.setEntity(this.createEntity(httpPost, urlItem, data, nodeInfo));
+        return httpPost;
+    }
+
+    @Override
+    public String execute(INodeInfo nodeInfo, IUrlItem urlItem, Object data) {
+        if (this.unsupported(nodeInfo, data)) {
+            return httpTransportServer.execute(nodeInfo, urlItem, data);
+        }
+        HttpPost httpPost = this.createRequest(nodeInfo, urlItem, data);
+        if (log.isDebugEnabled()) {
+            log.debug("{}[{}] -> {}", nodeInfo.name(), httpPost.getRequestUri(), urlItem.workspaceId());
+        }
+        long start = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            String body = this.getHttpClient().execute(httpPost, response -> {
+                int status = response.getCode();
+                HttpEntity entity = response.getEntity();
+                String responseBody = entity == null ? null : EntityUtils.toString(entity, StandardCharsets.UTF_8);
+                log.debug("Completed {}", responseBody);
+                if (status != HttpStatus.SC_OK) {
+                    log.warn("{} 响应异常 状态码错误：{} {}", nodeInfo.name(), status, responseBody);
+                    throw new TransportAgentException(nodeInfo.name() + " 节点响应异常,状态码错误：" + status, status);
+                }
+                return responseBody;
+            });
+            success = true;
+            return body;
+        } catch (Exception e) {
+            throw Lombok.sneakyThrow(TransformServerFactory.get().transformException(e, nodeInfo));
+        } finally {
+            latencyMap.computeIfAbsent(nodeInfo.url(), s -> new TransportLatencyHistogram(nodeInfo.name()))
+                .record(System.currentTimeMillis() - start, success);
+        }
+    }
+
+    @Override
+    public void download(INodeInfo nodeInfo, IUrlItem urlItem, Object data, Consumer<DownloadCallback> consumer) {
+        httpTransportServer.download(nodeInfo, urlItem, data, consumer);
+    }
+
+    @Override
+    public IProxyWebSocket websocket(INodeInfo nodeInfo, IUrlItem urlItem, Object... parameters) {
+        return httpTransportServer.websocket(nodeInfo, urlItem, parameters);
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("name", NAME);
+        PoolingHttpClientConnectionManager manager = this.connectionManager;
+        if (manager != null) {
+            PoolStats totalStats = manager.getTotalStats();
+            Map<String, Object> pool = new LinkedHashMap<>();
+            pool.put("leased", totalStats.getLeased());
+            pool.put("available", totalStats.getAvailable());
+            pool.put("pending", totalStats.getPending());
+            pool.put("max", totalStats.getMax());
+            map.put("pool", pool);
+        }
+        Map<String, Object> nodes = new LinkedHashMap<>();
+        latencyMap.forEach((key, histogram) -> nodes.put(key, histogram.toMap()));
+        map.put("nodes", nodes);
+        map.put("mux", MuxChannelManager.metrics());
+        return map;
+    }
+}
@@ -55,6 +55,7 @@ public class ServletWebSocketClientHandler extends AbstractWebSocketHandler impl
     private final Integer timeout;
     private final String uriTemplate;
     private Consumer<String> consumerText;
+    private Consumer<ByteBuffer> consumerBinary;
     private WebSocketConnectionManager manager;
     private CloseStatus closeStatus;
 
@@ -68,11 +69,21 @@ public class ServletWebSocketClientHandler extends AbstractWebSocketHandler impl
         this.consumerText = consumer;
     }
 
+    @Override
+    public void onBinaryMessage(Consumer<ByteBuffer> consumer) {
+        this.consumerBinary = consumer;
+    }
+
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
         Optional.ofNullable(this.consumerText).ifPresent(consumer -> consumer.accept(message.getPayload()));
     }
 
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        Optional.ofNullable(this.consumerBinary).ifPresent(consumer -> consumer.accept(message.getPayload()));
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         // 发送消息时间限制 60 秒
@@ -0,0 +1,93 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.transport;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 节点请求耗时分布统计
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/13
+ */
+class TransportLatencyHistogram {
+
+    /**
+     * 分桶上限，单位毫秒
+     */
+    private static final long[] BOUNDS = {10, 50, 100, 500, 1000, 5000};
+
+    private final String name;
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder error = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    TransportLatencyHistogram(String name) {
+        this.name = name;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一次请求
+     *
+     * @param millis  耗时
+     * @param success 是否成功
+     */
+    void record(long millis, boolean success) {
+        int index = 0;
+        while (index < BOUNDS.length && millis > BOUNDS[index]) {
+            index++;
+        }
+        buckets[index].increment();
+        count.increment();
+        sum.add(millis);
+        max.accumulate(millis);
+        if (!success) {
+            error.increment();
+        }
+    }
+
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        long total = count.sum();
+        map.put("name", name);
+        map.put("count", total);
+        map.put("error", error.sum());
+        map.put("avg", total == 0 ? 0 : sum.sum() / total);
+        map.put("max", max.get());
+        Map<String, Long> bucketMap = new LinkedHashMap<>();
+        for (int i = 0; i < BOUNDS.length; i++) {
+            bucketMap.put("<=" + BOUNDS[i] + "ms", buckets[i].sum());
+        }
+        bucketMap.put(">" + BOUNDS[BOUNDS.length - 1] + "ms", buckets[BOUNDS.length].sum());
+        map.put("buckets", bucketMap);
+        return map;
+    }
+}
@@ -54,6 +54,7 @@ import org.dromara.jpom.service.script.DslScriptServer;
 import org.dromara.jpom.socket.AgentFileTailWatcher;
 import org.dromara.jpom.socket.ConsoleCommandOp;
 import org.dromara.jpom.util.CommandUtil;
+import org.dromara.jpom.util.FileSearchUtil;
 import org.dromara.jpom.util.JvmUtil;
 import org.dromara.jpom.webhook.DefaultWebhookPluginImpl;
 import org.springframework.util.Assert;
@@ -551,6 +552,7 @@ public abstract class AbstractProjectCommander implements ProjectCommander {
         if (StrUtil.isNotEmpty(r)) {
             log.info(r);
         }
+        FileSearchUtil.removeIndex(file);
         // 重新监听
         AgentFileTailWatcher.reWatcher(file);
         return "ok";
@@ -26,6 +26,7 @@ import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.text.StrSplitter;
 import cn.hutool.core.util.StrUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.common.commander.AbstractProjectCommander;
 import org.dromara.jpom.common.commander.BaseUnixProjectCommander;
 import org.dromara.jpom.common.commander.Commander;
 import org.dromara.jpom.common.commander.SystemCommander;
@@ -34,6 +35,7 @@ import org.dromara.jpom.model.system.NetstatModel;
 import org.dromara.jpom.service.manage.ProjectInfoService;
 import org.dromara.jpom.service.script.DslScriptServer;
 import org.dromara.jpom.util.CommandUtil;
+import org.dromara.jpom.util.LinuxProcessIndex;
 import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
@@ -60,6 +62,20 @@ public class LinuxProjectCommander extends BaseUnixProjectCommander {
         super(agentConfig.getProject().getLog().getFileCharset(), systemCommander, agentConfig.getProject(), dslScriptServer, projectInfoService);
     }
 
+    /**
+     * /proc 进程索引已经包含所有进程的启动参数，不需要再执行 ps 命令
+     *
+     * @param tag 进程标识
+     * @return 运行标识
+     */
+    @Override
+    protected String bySystemPs(String tag) {
+        if (LinuxProcessIndex.getInstance() != null) {
+            return AbstractProjectCommander.STOP_TAG;
+        }
+        return super.bySystemPs(tag);
+    }
+
     @Override
     public List<NetstatModel> listNetstat(int pId, boolean listening) {
         String cmd;
@@ -28,8 +28,10 @@ import cn.hutool.extra.servlet.ServletUtil;
 import cn.hutool.http.ContentType;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.tomcat.util.http.fileupload.servlet.ServletFileUpload;
+import org.dromara.jpom.encrypt.BodyEncryptor;
 import org.dromara.jpom.encrypt.EncryptFactory;
 import org.dromara.jpom.encrypt.Encryptor;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
 import org.springframework.http.MediaType;
@@ -50,6 +52,12 @@ import java.security.NoSuchAlgorithmException;
 @Order(1)
 public class DecryptionFilter implements Filter {
 
+    private final MultipartProperties multipartProperties;
+
+    public DecryptionFilter(MultipartProperties multipartProperties) {
+        this.multipartProperties = multipartProperties;
+    }
+
     @Override
     public void doFilter(ServletRequest servletRequest, ServletResponse response, FilterChain chain) throws IOException, ServletException {
         HttpServletRequest request = (HttpServletRequest) servletRequest;
@@ -64,6 +72,12 @@ public class DecryptionFilter implements Filter {
             return;
         }
         log.debug("当前请求需要解码：{}", encryptor.name());
+        String bodyContentType = request.getHeader("transport-content-type");
+        if (encryptor instanceof BodyEncryptor && StrUtil.isNotEmpty(bodyContentType)) {
+            // 请求体整体加密
+            this.doFilterBody(request, response, chain, (BodyEncryptor) encryptor, bodyContentType);
+            return;
+        }
         String contentType = request.getContentType();
         if (ContentType.isDefault(contentType)) {
             // 普通表单
@@ -89,4 +103,21 @@ public class DecryptionFilter implements Filter {
             chain.doFilter(servletRequest, response);
         }
     }
+
+    private void doFilterBody(HttpServletRequest request, ServletResponse response, FilterChain chain, BodyEncryptor encryptor, String contentType) throws IOException, ServletException {
+        EncryptedBodyRequestWrapper wrapper = new EncryptedBodyRequestWrapper(request, encryptor, contentType);
+        if (ContentType.isFormUrlEncode(contentType)) {
+            wrapper.parseForm();
+            chain.doFilter(wrapper, response);
+        } else if (StrUtil.startWithIgnoreCase(contentType, "multipart/")) {
+            EncryptedMultipartRequestWrapper multipartRequest = EncryptedMultipartRequestWrapper.parse(wrapper, multipartProperties);
+            try {
+                chain.doFilter(multipartRequest, response);
+            } finally {
+                multipartRequest.cleanup();
+            }
+        } else {
+            chain.doFilter(wrapper, response);
+        }
+    }
 }
@@ -0,0 +1,209 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.common.interceptor;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.ArrayUtil;
+import cn.hutool.core.util.CharsetUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.http.HttpUtil;
+import org.dromara.jpom.encrypt.BodyEncryptor;
+import org.springframework.http.HttpHeaders;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 请求体整体加密的请求，读取时流式解密并还原原始的 Content-Type
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/14
+ */
+public class EncryptedBodyRequestWrapper extends HttpServletRequestWrapper {
+
+    private final BodyEncryptor encryptor;
+    private final String contentType;
+    private ServletInputStream inputStream;
+    private Map<String, String[]> parameterMap;
+
+    public EncryptedBodyRequestWrapper(HttpServletRequest request, BodyEncryptor encryptor, String contentType) {
+        super(request);
+        this.encryptor = encryptor;
+        this.contentType = contentType;
+    }
+
+    /**
+     * 解析解密后的表单参数，和 url 中的参数合并
+     *
+     * @throws IOException 解密失败
+     */
+    public void parseForm() throws IOException {
+        Charset charset = CharsetUtil.parse(this.getCharacterEncoding(), CharsetUtil.CHARSET_UTF_8);
+        String body = IoUtil.read(this.getInputStream(), charset);
+        Map<String, String[]> map = new LinkedHashMap<>(super.getParameterMap());
+        Map<String, List<String>> params = HttpUtil.decodeParams(body, charset, true);
+        for (Map.Entry<String, List<String>> entry : params.entrySet()) {
+            String[] values = ArrayUtil.addAll(map.get(entry.getKey()), entry.getValue().toArray(new String[0]));
+            map.put(entry.getKey(), values);
+        }
+        this.parameterMap = map;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        String charset = HttpUtil.getCharset(contentType);
+        return StrUtil.isEmpty(charset) ? super.getCharacterEncoding() : charset;
+    }
+
+    @Override
+    public int getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return -1;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name)) {
+            return contentType;
+        }
+        if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+            return null;
+        }
+        return super.getHeader(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name)) {
+            return Collections.enumeration(Collections.singletonList(contentType));
+        }
+        if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+            return Collections.emptyEnumeration();
+        }
+        return super.getHeaders(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        List<String> list = CollUtil.newArrayList(super.getHeaderNames());
+        list.removeIf(HttpHeaders.CONTENT_LENGTH::equalsIgnoreCase);
+        return Collections.enumeration(list);
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (inputStream == null) {
+            InputStream decrypt = encryptor.decrypt(super.getInputStream());
+            inputStream = new ServletInputStream() {
+                private boolean finished;
+
+                @Override
+                public boolean isFinished() {
+                    return finished;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() throws IOException {
+                    int read = decrypt.read();
+                    finished = read == -1;
+                    return read;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int read = decrypt.read(b, off, len);
+                    finished = read == -1;
+                    return read;
+                }
+            };
+        }
+        return inputStream;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        Charset charset = CharsetUtil.parse(this.getCharacterEncoding(), CharsetUtil.CHARSET_UTF_8);
+        return new BufferedReader(new InputStreamReader(this.getInputStream(), charset));
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return parameterMap == null ? super.getParameterMap() : parameterMap;
+    }
+
+    @Override
+    public String getParameter(String name) {
+        if (parameterMap == null) {
+            return super.getParameter(name);
+        }
+        return ArrayUtil.get(parameterMap.get(name), 0);
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        if (parameterMap == null) {
+            return super.getParameterNames();
+        }
+        return Collections.enumeration(parameterMap.keySet());
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        if (parameterMap == null) {
+            return super.getParameterValues(name);
+        }
+        return parameterMap.get(name);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.common.interceptor;
+
+import cn.hutool.core.util.ArrayUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tomcat.util.http.fileupload.FileItem;
+import org.apache.tomcat.util.http.fileupload.FileUploadException;
+import org.apache.tomcat.util.http.fileupload.disk.DiskFileItemFactory;
+import org.apache.tomcat.util.http.fileupload.servlet.ServletFileUpload;
+import org.apache.tomcat.util.http.fileupload.servlet.ServletRequestContext;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.support.DefaultMultipartHttpServletRequest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 请求体整体加密的文件上传请求，边解密边解析，文件内容按 spring 上传配置写入临时文件
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/14
+ */
+@Slf4j
+public class EncryptedMultipartRequestWrapper extends DefaultMultipartHttpServletRequest {
+
+    private final List<FileItem> fileItems;
+
+    private EncryptedMultipartRequestWrapper(EncryptedBodyRequestWrapper request,
+                                             List<FileItem> fileItems,
+                                             MultiValueMap<String, MultipartFile> files,
+                                             Map<String, String[]> parameters,
+                                             Map<String, String> parameterContentTypes) {
+        super(request, files, parameters, parameterContentTypes);
+        this.fileItems = fileItems;
+    }
+
+    /**
+     * 解析加密的上传请求
+     *
+     * @param request             加密请求
+     * @param multipartProperties 上传配置
+     * @return 上传请求
+     * @throws IOException 解密或者解析失败
+     */
+    public static EncryptedMultipartRequestWrapper parse(EncryptedBodyRequestWrapper request, MultipartProperties multipartProperties) throws IOException {
+        File location = StringUtils.hasLength(multipartProperties.getLocation()) ? new File(multipartProperties.getLocation()) : null;
+        DiskFileItemFactory factory = new DiskFileItemFactory((int) multipartProperties.getFileSizeThreshold().toBytes(), location);
+        ServletFileUpload upload = new ServletFileUpload(factory);
+        upload.setHeaderEncoding(StandardCharsets.UTF_8.name());
+        upload.setFileSizeMax(multipartProperties.getMaxFileSize().toBytes());
+        upload.setSizeMax(multipartProperties.getMaxRequestSize().toBytes());
+        List<FileItem> fileItems;
+        try {
+            fileItems = upload.parseRequest(new ServletRequestContext(request));
+        } catch (FileUploadException e) {
+            throw new IOException("解析上传文件失败:" + e.getMessage(), e);
+        }
+        MultiValueMap<String, MultipartFile> files = new LinkedMultiValueMap<>();
+        Map<String, String[]> parameters = new HashMap<>();
+        Map<String, String> parameterContentTypes = new HashMap<>();
+        for (FileItem fileItem : fileItems) {
+            String fieldName = fileItem.getFieldName();
+            if (fileItem.isFormField()) {
+                String value = fileItem.getString(StandardCharsets.UTF_8.name());
+                parameters.put(fieldName, ArrayUtil.append(parameters.get(fieldName), value));
+                parameterContentTypes.put(fieldName, fileItem.getContentType());
+            } else {
+                files.add(fieldName, new FileItemMultipartFile(fileItem));
+            }
+        }
+        return new EncryptedMultipartRequestWrapper(request, fileItems, files, parameters, parameterContentTypes);
+    }
+
+    /**
+     * 清理临时文件
+     */
+    public void cleanup() {
+        for (FileItem fileItem : fileItems) {
+            try {
+                fileItem.delete();
+            } catch (Exception e) {
+                log.warn("清理上传临时文件失败 {}", e.getMessage());
+            }
+        }
+    }
+
+    private static class FileItemMultipartFile implements MultipartFile {
+
+        private final FileItem fileItem;
+
+        private FileItemMultipartFile(FileItem fileItem) {
+            this.fileItem = fileItem;
+        }
+
+        @Override
+        public String getName() {
+            return fileItem.getFieldName();
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return fileItem.getName();
+        }
+
+        @Override
+        public String getContentType() {
+            return fileItem.getContentType();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return fileItem.getSize() == 0;
+        }
+
+        @Override
+        public long getSize() {
+            return fileItem.getSize();
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return fileItem.get();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return fileItem.getInputStream();
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            try {
+                fileItem.write(dest);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+    }
+}
@@ -59,6 +59,11 @@ public class ProjectConfig {
      */
     private String[] fileBackupSuffix;
 
+    /**
+     * 项目文件备份使用快照方式，未变动的文件使用硬链接
+     */
+    private boolean fileBackupSnapshot = true;
+
     public ProjectLogConfig getLog() {
         return Optional.ofNullable(this.log).orElseGet(() -> {
             this.log = new ProjectLogConfig();
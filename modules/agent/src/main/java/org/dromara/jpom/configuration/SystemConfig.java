@@ -35,4 +35,13 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @Data
 @ConfigurationProperties("jpom.system")
 public class SystemConfig extends BaseSystemConfig {
+
+    /**
+     * 系统监控后台采样间隔（秒），小于等于 0 关闭后台采样
+     */
+    private int statSampleInterval = 5;
+    /**
+     * 系统监控采样保留个数
+     */
+    private int statSampleCount = 120;
 }
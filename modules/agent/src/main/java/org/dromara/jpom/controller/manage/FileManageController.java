@@ -39,6 +39,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
+import java.util.List;
 
 /**
  * @author bwcx_jzy
@@ -66,6 +67,19 @@ public class FileManageController extends BaseAgentController {
         return JsonMessage.success("上传成功");
     }
 
+    /**
+     * 查询已经上传完成的分片
+     *
+     * @param sliceId 分片id
+     * @return 已经完成的分片序号
+     */
+    @RequestMapping(value = "sharding-status", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
+    public IJsonMessage<List<Integer>> shardingStatus(String sliceId) {
+        String tempPathName = agentConfig.getFixedTempPathName();
+        List<Integer> list = this.shardingStatus(tempPathName, sliceId);
+        return JsonMessage.success("", list);
+    }
+
     @RequestMapping(value = "sharding-merge", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
     public IJsonMessage<CommandOpResult> shardingMerge(String type,
                                                       @ValidatorItem String path,
@@ -36,9 +36,11 @@ import org.dromara.jpom.common.commander.ProjectCommander;
 import org.dromara.jpom.model.RunMode;
 import org.dromara.jpom.model.data.DslYmlDto;
 import org.dromara.jpom.model.data.NodeProjectInfoModel;
+import org.dromara.jpom.service.ProjectFileHashService;
 import org.dromara.jpom.service.WhitelistDirectoryService;
 import org.dromara.jpom.socket.ConsoleCommandOp;
 import org.dromara.jpom.util.CommandUtil;
+import org.dromara.jpom.util.FileSearchUtil;
 import org.dromara.jpom.util.FileUtils;
 import org.springframework.http.MediaType;
 import org.springframework.util.Assert;
@@ -62,11 +64,14 @@ public class ManageEditProjectController extends BaseAgentController {
 
     private final WhitelistDirectoryService whitelistDirectoryService;
     private final ProjectCommander projectCommander;
+    private final ProjectFileHashService projectFileHashService;
 
     public ManageEditProjectController(WhitelistDirectoryService whitelistDirectoryService,
-                                       ProjectCommander projectCommander) {
+                                       ProjectCommander projectCommander,
+                                       ProjectFileHashService projectFileHashService) {
         this.whitelistDirectoryService = whitelistDirectoryService;
         this.projectCommander = projectCommander;
+        this.projectFileHashService = projectFileHashService;
     }
 
     /**
@@ -254,6 +259,7 @@ public class ManageEditProjectController extends BaseAgentController {
                     FileUtil.mkParentDirs(newLog);
                     FileUtil.move(oldLog, newLog, true);
                 }
+                FileSearchUtil.removeIndex(oldLog);
                 // logBack
                 File oldLogBack = projectInfoService.resolveLogBack(old);
                 if (oldLogBack.exists()) {
@@ -352,6 +358,8 @@ public class ManageEditProjectController extends BaseAgentController {
         this.thorough(thorough, nodeProjectInfoModel);
         //
         projectInfoService.deleteItem(nodeProjectInfoModel.getId());
+        // 文件签名缓存
+        projectFileHashService.remove(nodeProjectInfoModel.getId());
 
         return JsonMessage.success("删除成功！");
 
@@ -373,6 +381,7 @@ public class ManageEditProjectController extends BaseAgentController {
         File log = this.projectInfoService.resolveAbsoluteLogFile(nodeProjectInfoModel);
         fastDel = CommandUtil.systemFastDel(log);
         Assert.state(!fastDel, "删除日志文件失败:" + log.getAbsolutePath());
+        FileSearchUtil.removeIndex(log);
         //
         if (nodeProjectInfoModel.getRunMode() != RunMode.Link) {
             // 非软链项目才删除文件
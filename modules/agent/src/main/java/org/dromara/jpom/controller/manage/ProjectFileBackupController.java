@@ -86,6 +86,8 @@ public class ProjectFileBackupController extends BaseAgentController {
         //
         List<File> collect = Arrays.stream(Optional.ofNullable(path.listFiles()).orElse(new File[0]))
             .filter(FileUtil::isDirectory)
+            // 过滤快照目录
+            .filter(file -> !StrUtil.startWith(file.getName(), StrUtil.DOT))
             .collect(Collectors.toList());
         if (CollUtil.isEmpty(collect)) {
             return JsonMessage.success("查询成功");
@@ -29,7 +29,6 @@ import cn.hutool.core.lang.Opt;
 import cn.hutool.core.util.ArrayUtil;
 import cn.hutool.core.util.BooleanUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.crypto.SecureUtil;
 import cn.hutool.extra.servlet.ServletUtil;
 import cn.hutool.http.HttpUtil;
 import cn.keepbx.jpom.IJsonMessage;
@@ -46,6 +45,7 @@ import org.dromara.jpom.model.BaseEnum;
 import org.dromara.jpom.model.data.AgentWhitelist;
 import org.dromara.jpom.model.data.NodeProjectInfoModel;
 import org.dromara.jpom.service.ProjectFileBackupService;
+import org.dromara.jpom.service.ProjectFileHashService;
 import org.dromara.jpom.service.WhitelistDirectoryService;
 import org.dromara.jpom.socket.ConsoleCommandOp;
 import org.dromara.jpom.configuration.AgentConfig;
@@ -81,15 +81,18 @@ public class ProjectFileControl extends BaseAgentController {
     private final AgentConfig agentConfig;
     private final ProjectFileBackupService projectFileBackupService;
     private final ProjectCommander projectCommander;
+    private final ProjectFileHashService projectFileHashService;
 
     public ProjectFileControl(WhitelistDirectoryService whitelistDirectoryService,
                               AgentConfig agentConfig,
                               ProjectFileBackupService projectFileBackupService,
-                              ProjectCommander projectCommander) {
+                              ProjectCommander projectCommander,
+                              ProjectFileHashService projectFileHashService) {
         this.whitelistDirectoryService = whitelistDirectoryService;
         this.agentConfig = agentConfig;
         this.projectFileBackupService = projectFileBackupService;
         this.projectCommander = projectCommander;
+        this.projectFileHashService = projectFileHashService;
     }
 
     @RequestMapping(value = "getFileList", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -132,19 +135,12 @@ public class ProjectFileControl extends BaseAgentController {
         // 扫描项目目录下面的所有文件
         File lib = projectInfoService.resolveLibFile(projectInfoModel);
         String path = FileUtil.file(lib, Opt.ofBlankAble(diffFileVo.getDir()).orElse(StrUtil.SLASH)).getAbsolutePath();
-        List<File> files = FileUtil.loopFiles(path);
-        // 将所有的文件信息组装并签名
-        List<JSONObject> collect = files.stream().map(file -> {
-            //
-            JSONObject item = new JSONObject();
-            item.put("name", StringUtil.delStartPath(file, path, true));
-            item.put("sha1", SecureUtil.sha1(file));
-            return item;
-        }).collect(Collectors.toList());
+        // 将所有的文件信息组装并签名（优先使用签名缓存）
+        Map<File, String> sha1Map = projectFileHashService.sha1(projectInfoModel.getId(), FileUtil.file(path));
         // 得到 当前下面文件夹下面所有的文件信息 map
-        Map<String, String> nowMap = CollStreamUtil.toMap(collect,
-            jsonObject12 -> jsonObject12.getString("name"),
-            jsonObject1 -> jsonObject1.getString("sha1"));
+        Map<String, String> nowMap = CollStreamUtil.toMap(sha1Map.entrySet(),
+            entry -> StringUtil.delStartPath(entry.getKey(), path, true),
+            Map.Entry::getValue);
         // 将需要对应的信息转为 map
         Map<String, String> tryMap = CollStreamUtil.toMap(data, DiffFileVo.DiffItem::getName, DiffFileVo.DiffItem::getSha1);
         // 对应需要 当前项目文件夹下没有的和文件内容有变化的
@@ -214,6 +210,19 @@ public class ProjectFileControl extends BaseAgentController {
         return JsonMessage.success("上传成功");
     }
 
+    /**
+     * 查询已经上传完成的分片
+     *
+     * @param sliceId 分片id
+     * @return 已经完成的分片序号
+     */
+    @RequestMapping(value = "sharding-status", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
+    public IJsonMessage<List<Integer>> shardingStatus(String sliceId) {
+        String tempPathName = agentConfig.getFixedTempPathName();
+        List<Integer> list = this.shardingStatus(tempPathName, sliceId);
+        return JsonMessage.success("", list);
+    }
+
     @RequestMapping(value = "sharding-merge", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
     public IJsonMessage<CommandOpResult> shardingMerge(String type,
                                                        String levelName,
@@ -23,6 +23,7 @@
 package org.dromara.jpom.controller.manage;
 
 import cn.hutool.core.lang.Tuple;
+import cn.hutool.core.util.ObjectUtil;
 import cn.keepbx.jpom.IJsonMessage;
 import cn.keepbx.jpom.model.JsonMessage;
 import com.alibaba.fastjson2.JSONObject;
@@ -111,4 +112,17 @@ public class ProjectListController extends BaseAgentController {
         List<NodeProjectInfoModel> nodeProjectInfoModels = projectInfoService.list();
         return JsonMessage.success("", nodeProjectInfoModels);
     }
+
+    /**
+     * 查询指定版本之后变更的项目
+     *
+     * @param epoch   上次查询的数据版本标识
+     * @param version 上次查询的版本号
+     * @return json
+     */
+    @RequestMapping(value = "getProjectInfoChanges", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
+    public IJsonMessage<JSONObject> getProjectInfoChanges(String epoch, Long version) {
+        JSONObject changes = projectInfoService.listChanges(epoch, ObjectUtil.defaultIfNull(version, 0L));
+        return JsonMessage.success("", changes);
+    }
 }
@@ -129,6 +129,46 @@ public class ProjectStatusController extends BaseAgentController {
         return JsonMessage.success("", jsonObject);
     }
 
+    /**
+     * 批量获取项目的运行状态
+     *
+     * @param ids 项目id 数组
+     * @return 项目id 为 key 的状态信息
+     */
+    @RequestMapping(value = "getProjectStatusBatch", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
+    public IJsonMessage<JSONObject> getProjectStatusBatch(String ids) {
+        Assert.hasText(ids, "没有要获取的信息");
+        JSONArray jsonArray = JSONArray.parseArray(ids);
+        JSONObject jsonObject = new JSONObject();
+        try {
+            CommandUtil.openCache();
+            for (Object object : jsonArray) {
+                String item = object.toString();
+                JSONObject itemObj = new JSONObject();
+                try {
+                    NodeProjectInfoModel nodeProjectInfoModel = projectInfoService.getItem(item);
+                    Assert.notNull(nodeProjectInfoModel, "项目id不存在");
+                    CommandOpResult status = projectCommander.execCommand(ConsoleCommandOp.status, nodeProjectInfoModel);
+                    Integer pid = status.getPid();
+                    itemObj.put("pId", pid);
+                    itemObj.put("pIds", status.getPids());
+                    itemObj.put("statusMsg", status.getStatusMsg());
+                    if (StrUtil.isNotEmpty(status.getPorts())) {
+                        itemObj.put("port", status.getPorts());
+                    } else {
+                        itemObj.put("port", projectCommander.getMainPort(pid));
+                    }
+                } catch (Exception e) {
+                    log.error("获取项目状态失败：{}", item, e);
+                    itemObj.put("error", e.getMessage());
+                }
+                jsonObject.put(item, itemObj);
+            }
+        } finally {
+            CommandUtil.closeCache();
+        }
+        return JsonMessage.success("", jsonObject);
+    }
 
     @RequestMapping(value = "operate", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
     public IJsonMessage<CommandOpResult> operate(@ValidatorItem(value = ValidatorRule.NOT_BLANK, msg = "项目id 不正确") String id,
@@ -27,6 +27,7 @@ import cn.hutool.core.convert.Convert;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.lang.Opt;
 import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.ObjectUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.keepbx.jpom.IJsonMessage;
 import cn.keepbx.jpom.model.JsonMessage;
@@ -81,6 +82,18 @@ public class ScriptController extends BaseAgentController {
         return JsonMessage.success("", nodeScriptServer.list());
     }
 
+    /**
+     * 查询指定版本之后变更的脚本
+     *
+     * @param epoch   上次查询的数据版本标识
+     * @param version 上次查询的版本号
+     * @return json
+     */
+    @RequestMapping(value = "changes.json", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
+    public IJsonMessage<JSONObject> changes(String epoch, Long version) {
+        return JsonMessage.success("", nodeScriptServer.listChanges(epoch, ObjectUtil.defaultIfNull(version, 0L)));
+    }
+
     @RequestMapping(value = "item.json", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
     public IJsonMessage<NodeScriptModel> item(String id) {
         return JsonMessage.success("", nodeScriptServer.getItem(id));
@@ -48,6 +48,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -80,6 +81,19 @@ public class SystemUpdateController extends BaseAgentController {
         return JsonMessage.success("上传成功");
     }
 
+    /**
+     * 查询已经上传完成的分片
+     *
+     * @param sliceId 分片id
+     * @return 已经完成的分片序号
+     */
+    @PostMapping(value = "upload-jar-sharding-status", produces = MediaType.APPLICATION_JSON_VALUE)
+    public IJsonMessage<List<Integer>> uploadJarShardingStatus(String sliceId) {
+        String tempPathName = agentConfig.getFixedTempPathName();
+        List<Integer> list = this.shardingStatus(tempPathName, sliceId);
+        return JsonMessage.success("", list);
+    }
+
     @PostMapping(value = "upload-jar-sharding-merge", produces = MediaType.APPLICATION_JSON_VALUE)
     public IJsonMessage<String> uploadJarShardingMerge(String sliceId,
                                                       Integer totalSlice,
@@ -24,25 +24,17 @@ package org.dromara.jpom.service;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.bean.copier.CopyOptions;
-import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.map.MapUtil;
-import cn.hutool.core.thread.lock.LockUtil;
 import cn.hutool.core.util.ClassUtil;
 import cn.hutool.core.util.StrUtil;
-import com.alibaba.fastjson2.JSONArray;
 import com.alibaba.fastjson2.JSONObject;
 import org.dromara.jpom.JpomApplication;
 import org.dromara.jpom.model.BaseModel;
-import org.dromara.jpom.system.JpomRuntimeException;
-import org.dromara.jpom.util.JsonFileUtil;
 import org.springframework.util.Assert;
 
-import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.locks.Lock;
 
 /**
  * 标准操作Service
@@ -54,7 +46,6 @@ public abstract class BaseOperService<T extends BaseModel> {
 
     private final String fileName;
     private final Class<T> typeArgument;
-    private final Lock lock = LockUtil.createStampLock().asWriteLock();
 
     public BaseOperService(String fileName) {
         this.fileName = fileName;
@@ -71,17 +62,41 @@ public abstract class BaseOperService<T extends BaseModel> {
     }
 
     public int size() {
-        List<T> list = this.list();
-        return CollUtil.size(list);
+        Objects.requireNonNull(fileName, "没有配置fileName");
+        return getStore(fileName).size();
     }
 
     public <E> List<E> list(Class<E> cls) {
-        JSONObject jsonObject = getJSONObject();
-        if (jsonObject == null) {
-            return new ArrayList<>();
+        Objects.requireNonNull(fileName, "没有配置fileName");
+        List<JSONObject> values = getStore(fileName).values();
+        List<E> list = new ArrayList<>(values.size());
+        for (JSONObject value : values) {
+            list.add(value.toJavaObject(cls));
+        }
+        return list;
+    }
+
+    /**
+     * 查询指定版本之后变更的数据
+     *
+     * @param epoch   上次查询的数据版本标识
+     * @param version 上次查询的版本号
+     * @return epoch、version、full（是否为全量数据）、list（新增或者修改的数据）、deleted（删除的数据id）
+     */
+    public JSONObject listChanges(String epoch, long version) {
+        Objects.requireNonNull(fileName, "没有配置fileName");
+        JsonDataStore.Changes changes = getStore(fileName).changes(epoch, version);
+        List<T> list = new ArrayList<>(changes.list.size());
+        for (JSONObject value : changes.list) {
+            list.add(value.toJavaObject(typeArgument));
         }
-        JSONArray jsonArray = JsonFileUtil.formatToArray(jsonObject);
-        return jsonArray.toJavaList(cls);
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("epoch", changes.epoch);
+        jsonObject.put("version", changes.version);
+        jsonObject.put("full", changes.full);
+        jsonObject.put("list", list);
+        jsonObject.put("deleted", changes.deleted);
+        return jsonObject;
     }
 
     public JSONObject getJSONObject() {
@@ -89,6 +104,16 @@ public abstract class BaseOperService<T extends BaseModel> {
         return getJSONObject(fileName);
     }
 
+    /**
+     * 保存整个数据文件
+     *
+     * @param jsonObject 数据
+     */
+    protected void saveJSONObject(JSONObject jsonObject) {
+        Objects.requireNonNull(fileName, "没有配置fileName");
+        getStore(fileName).saveAll(jsonObject);
+    }
+
     /**
      * 工具id 获取 实体
      *
@@ -108,12 +133,7 @@ public abstract class BaseOperService<T extends BaseModel> {
      */
     public void addItem(T t) {
         Objects.requireNonNull(fileName, "没有配置fileName");
-        try {
-            lock.lock();
-            saveJson(fileName, t);
-        } finally {
-            lock.unlock();
-        }
+        saveJson(fileName, t);
     }
 
     /**
@@ -123,12 +143,7 @@ public abstract class BaseOperService<T extends BaseModel> {
      */
     public void deleteItem(String id) {
         Objects.requireNonNull(fileName, "没有配置fileName");
-        try {
-            lock.lock();
-            deleteJson(fileName, id);
-        } finally {
-            lock.unlock();
-        }
+        deleteJson(fileName, id);
     }
 
     /**
@@ -138,12 +153,7 @@ public abstract class BaseOperService<T extends BaseModel> {
      */
     public void updateItem(T t) {
         Objects.requireNonNull(fileName, "没有配置fileName");
-        try {
-            lock.lock();
-            updateJson(fileName, t);
-        } finally {
-            lock.unlock();
-        }
+        updateJson(fileName, t);
     }
 
     /**
@@ -154,15 +164,12 @@ public abstract class BaseOperService<T extends BaseModel> {
      */
     public void updateById(T updateData, String id) {
         Objects.requireNonNull(fileName, "没有配置fileName");
-        try {
-            lock.lock();
-            T item = getItem(id);
-            Assert.notNull(item, "数据不存在");
+        getStore(fileName).write(id, data -> {
+            Assert.notNull(data, "数据不存在");
+            T item = data.toJavaObject(typeArgument);
             BeanUtil.copyProperties(updateData, item, CopyOptions.create().ignoreNullValue());
-            updateJson(fileName, item);
-        } finally {
-            lock.unlock();
-        }
+            return item.toJson();
+        });
     }
 
     /**
@@ -175,6 +182,16 @@ public abstract class BaseOperService<T extends BaseModel> {
         return FileUtil.normalize(JpomApplication.getInstance().getDataPath() + StrUtil.SLASH + filename);
     }
 
+    /**
+     * 获取数据文件对应的内存存储
+     *
+     * @param filename 文件名
+     * @return store
+     */
+    private JsonDataStore getStore(String filename) {
+        return JsonDataStore.of(getDataFilePath(filename));
+    }
+
     /**
      * 保存json对象
      *
@@ -182,19 +199,8 @@ public abstract class BaseOperService<T extends BaseModel> {
      * @param json     json数据
      */
     protected void saveJson(String filename, BaseModel json) {
-        String key = json.getId();
-        // 读取文件，如果存在记录，则抛出异常
-        JSONObject allData = getJSONObject(filename);
-        if (allData != null) {
-            // 判断是否存在数据
-            if (allData.containsKey(key)) {
-                throw new JpomRuntimeException("数据Id已经存在啦：" + filename + " :" + key);
-            }
-        } else {
-            allData = new JSONObject();
-        }
-        allData.put(key, json.toJson());
-        JsonFileUtil.saveJson(getDataFilePath(filename), allData);
+        // 如果存在记录，则抛出异常
+        getStore(filename).insert(json.getId(), json.toJson());
     }
 
     /**
@@ -204,18 +210,8 @@ public abstract class BaseOperService<T extends BaseModel> {
      * @param json     json数据
      */
     protected void updateJson(String filename, BaseModel json) {
-        String key = json.getId();
-        // 读取文件，如果不存在记录，则抛出异常
-        JSONObject allData = getJSONObject(filename);
-        JSONObject data = allData.getJSONObject(key);
-
-        // 判断是否存在数据
-        if (MapUtil.isEmpty(data)) {
-            throw new JpomRuntimeException("数据不存在:" + key);
-        } else {
-            allData.put(key, json.toJson());
-            JsonFileUtil.saveJson(getDataFilePath(filename), allData);
-        }
+        // 如果不存在记录，则抛出异常
+        getStore(filename).update(json.getId(), json.toJson());
     }
 
     /**
@@ -225,16 +221,7 @@ public abstract class BaseOperService<T extends BaseModel> {
      * @param key      key
      */
     protected void deleteJson(String filename, String key) {
-        // 读取文件，如果存在记录，则抛出异常
-        JSONObject allData = getJSONObject(filename);
-        if (allData == null) {
-            return;
-        }
-        //Assert.notNull(allData, "没有任何数据");
-        //JSONObject data = allData.getJSONObject(key);
-        allData.remove(key);
-        JsonFileUtil.saveJson(getDataFilePath(filename), allData);
-
+        getStore(filename).remove(key);
     }
 
     /**
@@ -244,22 +231,14 @@ public abstract class BaseOperService<T extends BaseModel> {
      * @return json
      */
     protected JSONObject getJSONObject(String filename) {
-        try {
-            return (JSONObject) JsonFileUtil.readJson(getDataFilePath(filename));
-        } catch (FileNotFoundException e) {
-            return null;
-        }
+        return getStore(filename).toJsonObject();
     }
 
     protected T getJsonObjectById(String file, String id, Class<T> cls) {
         if (StrUtil.isEmpty(id)) {
             return null;
         }
-        JSONObject jsonObject = getJSONObject(file);
-        if (jsonObject == null) {
-            return null;
-        }
-        jsonObject = jsonObject.getJSONObject(id);
+        JSONObject jsonObject = getStore(file).get(id);
         if (jsonObject == null) {
             return null;
         }
@@ -0,0 +1,496 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.service;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.CharsetUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.system.JpomRuntimeException;
+import org.dromara.jpom.util.JsonFileUtil;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * json 数据文件的内存存储
+ * <p>
+ * 数据全部缓存在内存中，读取不再解析文件。修改先追加写入变更日志（{@code 文件名.log}，每行一条变更）并刷盘，
+ * 变更日志达到一定数量后将内存数据整体写入数据文件（快照，格式和原数据文件一致），然后清空变更日志。
+ * 加载时读取数据文件并重放变更日志，保证异常退出时数据不丢失。
+ * <p>
+ * 每个数据文件单独加锁，数据文件被外部修改（修改时间、大小变化）时自动重新加载
+ * <p>
+ * 每次修改递增数据版本号，并记录最近变更的数据 id，便于服务端增量同步
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/11
+ */
+@Slf4j
+class JsonDataStore {
+
+    private static final Map<String, JsonDataStore> STORE_MAP = new ConcurrentHashMap<>();
+    /**
+     * 变更日志达到多少条后合并到数据文件
+     */
+    private static final int COMPACT_COUNT = 200;
+    private static final long COMPACT_SIZE = 1024 * 1024;
+    /**
+     * 最多记录多少条数据的变更版本
+     */
+    private static final int JOURNAL_SIZE = 2000;
+
+    private final File dataFile;
+    private final File logFile;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+    private final ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+    /**
+     * 数据，保持写入顺序
+     */
+    private Map<String, Object> data;
+    /**
+     * 数据文件或者变更日志是否存在
+     */
+    private boolean exists;
+    private long dataModified;
+    private long dataLength;
+    private FileChannel logChannel;
+    private int logCount;
+    /**
+     * 数据版本标识，每次（重新）加载数据后变化，版本号只在同一个标识下有效
+     */
+    private String epoch;
+    /**
+     * 数据版本号，每次修改递增
+     */
+    private long version;
+    /**
+     * 变更过的数据id和对应的版本号，按照变更顺序排列
+     */
+    private final LinkedHashMap<String, Long> journal = new LinkedHashMap<>();
+    /**
+     * 小于此版本号的变更已经被清除，无法查询增量
+     */
+    private long journalFloor;
+
+    private JsonDataStore(File dataFile) {
+        this.dataFile = dataFile;
+        this.logFile = FileUtil.file(dataFile.getParentFile(), dataFile.getName() + ".log");
+    }
+
+    /**
+     * 获取数据文件对应的存储
+     *
+     * @param path 数据文件路径
+     * @return store
+     */
+    static JsonDataStore of(String path) {
+        return STORE_MAP.computeIfAbsent(path, s -> new JsonDataStore(FileUtil.file(s)));
+    }
+
+    /**
+     * 获取单条数据
+     *
+     * @param id 数据id
+     * @return 数据
+     */
+    JSONObject get(String id) {
+        readLock.lock();
+        try {
+            this.checkLoad();
+            Object value = data.get(id);
+            return value instanceof JSONObject ? (JSONObject) value : null;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * 获取所有数据
+     *
+     * @return list
+     */
+    List<JSONObject> values() {
+        readLock.lock();
+        try {
+            this.checkLoad();
+            List<JSONObject> list = new ArrayList<>(data.size());
+            for (Object value : data.values()) {
+                if (value instanceof JSONObject) {
+                    list.add((JSONObject) value);
+                }
+            }
+            return list;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    int size() {
+        readLock.lock();
+        try {
+            this.checkLoad();
+            return data.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * 获取整个数据文件的内容
+     *
+     * @return 数据文件不存在返回 null
+     */
+    JSONObject toJsonObject() {
+        readLock.lock();
+        try {
+            this.checkLoad();
+            if (!exists) {
+                return null;
+            }
+            // 返回副本，避免外部修改影响缓存
+            return JSONObject.parseObject(JSON.toJSONString(data));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * 新增数据
+     *
+     * @param id    数据id
+     * @param value 数据
+     */
+    void insert(String id, JSONObject value) {
+        this.write(id, current -> {
+            if (current != null) {
+                throw new JpomRuntimeException("数据Id已经存在啦：" + dataFile.getName() + " :" + id);
+            }
+            return value;
+        });
+    }
+
+    /**
+     * 修改数据
+     *
+     * @param id    数据id
+     * @param value 数据
+     */
+    void update(String id, JSONObject value) {
+        this.write(id, current -> {
+            if (current == null || current.isEmpty()) {
+                throw new JpomRuntimeException("数据不存在:" + id);
+            }
+            return value;
+        });
+    }
+
+    /**
+     * 删除数据
+     *
+     * @param id 数据id
+     */
+    void remove(String id) {
+        this.write(id, current -> null);
+    }
+
+    /**
+     * 在写锁中修改一条数据
+     *
+     * @param id       数据id
+     * @param function 参数为当前数据（副本），返回新数据，返回 null 则删除
+     */
+    void write(String id, Function<JSONObject, JSONObject> function) {
+        writeLock.lock();
+        try {
+            this.checkLoad();
+            Object current = data.get(id);
+            JSONObject copy = current instanceof JSONObject ? ((JSONObject) current).clone() : null;
+            JSONObject value = function.apply(copy);
+            if (value == null && current == null) {
+                return;
+            }
+            // 先写入变更日志
+            JSONObject change = new JSONObject();
+            change.put("id", id);
+            if (value == null) {
+                change.put("op", "del");
+            } else {
+                change.put("op", "put");
+                change.put("data", value);
+            }
+            this.appendLog(change);
+            if (value == null) {
+                data.remove(id);
+            } else {
+                data.put(id, value);
+            }
+            exists = true;
+            this.recordChange(id);
+            if (logCount >= COMPACT_COUNT || logChannel.size() >= COMPACT_SIZE) {
+                this.compact();
+            }
+        } catch (IOException e) {
+            throw new JpomRuntimeException("保存数据文件异常：" + dataFile.getName(), e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 保存整个数据文件的内容
+     *
+     * @param jsonObject 数据
+     */
+    void saveAll(JSONObject jsonObject) {
+        writeLock.lock();
+        try {
+            this.checkLoad();
+            data = new LinkedHashMap<>(jsonObject);
+            exists = true;
+            this.compact();
+            this.resetVersion();
+        } catch (IOException e) {
+            throw new JpomRuntimeException("保存数据文件异常：" + dataFile.getName(), e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 检查是否需要（重新）加载，调用方需要持有读锁或者写锁，返回时仍然持有原来的锁
+     */
+    private void checkLoad() {
+        if (data != null && dataFile.lastModified() == dataModified && dataFile.length() == dataLength) {
+            return;
+        }
+        boolean read = !lock.isWriteLockedByCurrentThread();
+        if (read) {
+            // 读锁不能升级为写锁
+            readLock.unlock();
+            writeLock.lock();
+        }
+        try {
+            if (data == null || dataFile.lastModified() != dataModified || dataFile.length() != dataLength) {
+                this.load();
+            }
+        } finally {
+            if (read) {
+                // 降级为读锁，由调用方释放
+                readLock.lock();
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 加载数据文件并重放变更日志
+     */
+    private void load() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        boolean fileExists = false;
+        if (dataFile.exists()) {
+            fileExists = true;
+            try {
+                JSONObject jsonObject = JsonFileUtil.readJson(dataFile);
+                map.putAll(jsonObject);
+            } catch (FileNotFoundException ignored) {
+            }
+        }
+        dataModified = dataFile.lastModified();
+        dataLength = dataFile.length();
+        int replay = 0;
+        if (logFile.exists()) {
+            fileExists = true;
+            BufferedReader reader = FileUtil.getReader(logFile, CharsetUtil.CHARSET_UTF_8);
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (StrUtil.isBlank(line)) {
+                        continue;
+                    }
+                    JSONObject change;
+                    try {
+                        change = JSONObject.parseObject(line);
+                    } catch (Exception e) {
+                        // 异常退出时最后一行可能不完整
+                        log.warn("忽略不完整的数据变更日志：{} {}", logFile.getName(), StrUtil.maxLength(line, 100));
+                        continue;
+                    }
+                    String id = change.getString("id");
+                    if ("del".equals(change.getString("op"))) {
+                        map.remove(id);
+                    } else {
+                        map.put(id, change.getJSONObject("data"));
+                    }
+                    replay++;
+                }
+            } catch (IOException e) {
+                throw new JpomRuntimeException("读取数据变更日志异常：" + logFile.getName(), e);
+            } finally {
+                IoUtil.close(reader);
+            }
+        }
+        data = map;
+        exists = fileExists;
+        logCount = replay;
+        this.resetVersion();
+        if (replay > 0) {
+            // 合并上次遗留的变更日志
+            try {
+                this.compact();
+            } catch (IOException e) {
+                log.warn("合并数据变更日志失败：{} {}", logFile.getName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 查询指定版本之后的变更
+     *
+     * @param sinceEpoch   上次查询的数据版本标识
+     * @param sinceVersion 上次查询的版本号
+     * @return 变更，版本标识不一致或者变更记录已经被清除时返回全量数据
+     */
+    Changes changes(String sinceEpoch, long sinceVersion) {
+        readLock.lock();
+        try {
+            this.checkLoad();
+            Changes changes = new Changes();
+            changes.epoch = epoch;
+            changes.version = version;
+            if (!StrUtil.equals(sinceEpoch, epoch) || sinceVersion < journalFloor || sinceVersion > version) {
+                changes.full = true;
+                for (Object value : data.values()) {
+                    if (value instanceof JSONObject) {
+                        changes.list.add((JSONObject) value);
+                    }
+                }
+                return changes;
+            }
+            for (Map.Entry<String, Long> entry : journal.entrySet()) {
+                if (entry.getValue() <= sinceVersion) {
+                    continue;
+                }
+                Object value = data.get(entry.getKey());
+                if (value instanceof JSONObject) {
+                    changes.list.add((JSONObject) value);
+                } else {
+                    changes.deleted.add(entry.getKey());
+                }
+            }
+            return changes;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private void recordChange(String id) {
+        version++;
+        // 移动到最后
+        journal.remove(id);
+        journal.put(id, version);
+        if (journal.size() > JOURNAL_SIZE) {
+            Iterator<Map.Entry<String, Long>> iterator = journal.entrySet().iterator();
+            Map.Entry<String, Long> eldest = iterator.next();
+            journalFloor = eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    private void resetVersion() {
+        epoch = IdUtil.fastSimpleUUID();
+        version = 0;
+        journal.clear();
+        journalFloor = 0;
+    }
+
+    private void appendLog(JSONObject change) throws IOException {
+        if (logChannel == null) {
+            FileUtil.mkParentDirs(logFile);
+            logChannel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        byte[] bytes = (JSON.toJSONString(change) + StrUtil.LF).getBytes(CharsetUtil.CHARSET_UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            logChannel.write(buffer);
+        }
+        logChannel.force(false);
+        logCount++;
+    }
+
+    /**
+     * 将内存数据写入数据文件，并清空变更日志
+     *
+     * @throws IOException io
+     */
+    private void compact() throws IOException {
+        File temp = FileUtil.file(dataFile.getParentFile(), dataFile.getName() + ".tmp");
+        byte[] bytes = JSON.toJSONString(data).getBytes(CharsetUtil.CHARSET_UTF_8);
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dataModified = dataFile.lastModified();
+        dataLength = dataFile.length();
+        // 数据文件已经包含所有变更，重放变更日志不会影响数据
+        IoUtil.close(logChannel);
+        logChannel = null;
+        FileUtil.del(logFile);
+        logCount = 0;
+    }
+
+    /**
+     * 数据变更
+     */
+    static class Changes {
+        String epoch;
+        long version;
+        /**
+         * 是否为全量数据
+         */
+        boolean full;
+        final List<JSONObject> list = new ArrayList<>();
+        final List<String> deleted = new ArrayList<>();
+    }
+}
@@ -31,7 +31,7 @@ import cn.hutool.core.thread.ThreadUtil;
 import cn.hutool.core.util.ArrayUtil;
 import cn.hutool.core.util.ReUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.crypto.SecureUtil;
+import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.JSONObject;
 import lombok.extern.slf4j.Slf4j;
 import org.dromara.jpom.JpomApplication;
@@ -41,11 +41,14 @@ import org.dromara.jpom.model.data.DslYmlDto;
 import org.dromara.jpom.model.data.NodeProjectInfoModel;
 import org.dromara.jpom.service.manage.ProjectInfoService;
 import org.dromara.jpom.util.CommandUtil;
+import org.dromara.jpom.util.KeyLock;
 import org.dromara.jpom.util.StringUtil;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -59,13 +62,26 @@ import java.util.stream.Collectors;
 @Service
 public class ProjectFileBackupService {
 
+    /**
+     * 快照目录名称，保存最近一次备份时项目文件的完整副本
+     */
+    private static final String SNAPSHOT_DIR = ".snapshot";
+    /**
+     * 快照清单，记录快照中文件的 sha1 和对应的备份ID
+     */
+    private static final String SNAPSHOT_MANIFEST = ".snapshot.json";
+
+    private final KeyLock<String> snapshotLock = new KeyLock<>();
     private final ProjectConfig projectConfig;
     private final ProjectInfoService projectInfoService;
+    private final ProjectFileHashService projectFileHashService;
 
     public ProjectFileBackupService(AgentConfig agentConfig,
-                                    ProjectInfoService projectInfoService) {
+                                    ProjectInfoService projectInfoService,
+                                    ProjectFileHashService projectFileHashService) {
         this.projectConfig = agentConfig.getProject();
         this.projectInfoService = projectInfoService;
+        this.projectFileHashService = projectFileHashService;
     }
 
     /**
@@ -128,11 +144,93 @@ public class ProjectFileBackupService {
         String backupId = DateTime.now().toString(DatePattern.PURE_DATETIME_MS_FORMAT);
         File projectFileBackup = this.pathProjectBackup(infoModel, backupId);
         Assert.state(!FileUtil.exist(projectFileBackup), "备份目录冲突：" + projectFileBackup.getName());
-        FileUtil.copyContent(file, projectFileBackup, true);
+        if (projectConfig.isFileBackupSnapshot()) {
+            this.backupBySnapshot(infoModel, file, projectFileBackup, backupId);
+        } else {
+            FileUtil.copyContent(file, projectFileBackup, true);
+        }
         //
         return backupId;
     }
 
+    /**
+     * 快照方式备份，只有变动的文件才会复制到快照目录，备份目录中的文件全部硬链接到快照目录中的文件
+     * <p>
+     * 快照中的文件只会删除后重新创建，不会原地修改，避免影响之前备份中链接的同一个文件
+     *
+     * @param infoModel         项目
+     * @param lib               项目目录
+     * @param projectFileBackup 本次备份目录
+     * @param backupId          备份ID
+     */
+    private void backupBySnapshot(NodeProjectInfoModel infoModel, File lib, File projectFileBackup, String backupId) {
+        File backupPath = this.pathProject(infoModel);
+        File snapshotPath = FileUtil.file(backupPath, SNAPSHOT_DIR);
+        File manifestFile = FileUtil.file(backupPath, SNAPSHOT_MANIFEST);
+        String id = infoModel.getId();
+        snapshotLock.lock(id);
+        try {
+            JSONObject snapshotFiles = Optional.ofNullable(this.readSnapshotManifest(manifestFile))
+                .map(jsonObject -> jsonObject.getJSONObject("files"))
+                .orElseGet(JSONObject::new);
+            Map<File, String> sha1Map = projectFileHashService.sha1(id, lib);
+            JSONObject newFiles = new JSONObject();
+            int copyCount = 0;
+            for (Map.Entry<File, String> entry : sha1Map.entrySet()) {
+                String name = StringUtil.delStartPath(entry.getKey(), lib, true);
+                File snapshotFile = FileUtil.file(snapshotPath, name);
+                if (!StrUtil.equals(snapshotFiles.getString(name), entry.getValue()) || !FileUtil.isFile(snapshotFile)) {
+                    // 先删除再复制，不能覆盖已经被其他备份链接的文件
+                    FileUtil.del(snapshotFile);
+                    FileUtil.copy(entry.getKey(), snapshotFile, true);
+                    copyCount++;
+                }
+                newFiles.put(name, entry.getValue());
+                this.linkOrCopy(snapshotFile, FileUtil.file(projectFileBackup, name));
+            }
+            // 清理快照中已经删除的文件
+            snapshotFiles.keySet()
+                .stream()
+                .filter(name -> !newFiles.containsKey(name))
+                .forEach(name -> FileUtil.del(FileUtil.file(snapshotPath, name)));
+            FileUtil.mkdir(projectFileBackup);
+            JSONObject manifest = new JSONObject();
+            manifest.put("backupId", backupId);
+            manifest.put("files", newFiles);
+            FileUtil.writeUtf8String(manifest.toString(), manifestFile);
+            log.debug("项目 {} 快照备份完成，文件数：{}，复制：{}", id, newFiles.size(), copyCount);
+        } finally {
+            snapshotLock.unlock(id);
+        }
+    }
+
+    private JSONObject readSnapshotManifest(File manifestFile) {
+        if (!FileUtil.isFile(manifestFile)) {
+            return null;
+        }
+        try {
+            return JSON.parseObject(FileUtil.readUtf8String(manifestFile));
+        } catch (Exception e) {
+            log.warn("读取备份快照清单失败：{}", manifestFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * 优先使用硬链接，不支持时复制文件
+     *
+     * @param source 源文件
+     * @param target 目标文件
+     */
+    private void linkOrCopy(File source, File target) {
+        FileUtil.mkParentDirs(target);
+        try {
+            Files.createLink(target.toPath(), source.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            FileUtil.copy(source, target, true);
+        }
+    }
+
     /**
      * 检查备份保留个数
      *
@@ -150,6 +248,7 @@ public class ProjectFileBackupService {
         }
         List<File> collect = Arrays.stream(files)
             .filter(FileUtil::isDirectory)
+            .filter(file -> !StrUtil.startWith(file.getName(), StrUtil.DOT))
             .sorted(Comparator.comparing(FileUtil::lastModifiedTime))
             .collect(Collectors.toList());
         // 截取
@@ -203,8 +302,8 @@ public class ProjectFileBackupService {
                 File backupItemPath = this.pathProjectBackup(infoModel, backupId);
                 File backupPath = this.pathProject(infoModel);
                 // 获取文件列表
-                Map<String, File> backupFiles = this.listFiles(backupItemPath);
-                Map<String, File> nowFiles = this.listFiles(projectPath);
+                Map<String, File> backupFiles = this.listBackupFiles(backupPath, backupItemPath, backupId);
+                Map<String, File> nowFiles = this.listFiles(infoModel.getId(), projectPath);
                 nowFiles.forEach((fileSha1, file) -> {
                     // 当前目录存在的，但是备份目录也存在的相同文件则删除
                     File backupFile = backupFiles.get(fileSha1);
@@ -276,24 +375,42 @@ public class ProjectFileBackupService {
         }
     }
 
+    /**
+     * 获取备份目录的文件列表信息，快照方式备份的直接使用快照清单中的签名
+     *
+     * @param backupPath     项目备份目录
+     * @param backupItemPath 本次备份目录
+     * @param backupId       备份ID
+     * @return 文件列表信息
+     */
+    private Map<String, File> listBackupFiles(File backupPath, File backupItemPath, String backupId) {
+        JSONObject manifest = this.readSnapshotManifest(FileUtil.file(backupPath, SNAPSHOT_MANIFEST));
+        if (manifest == null || !StrUtil.equals(manifest.getString("backupId"), backupId)) {
+            return this.listFiles(null, backupItemPath);
+        }
+        JSONObject files = manifest.getJSONObject("files");
+        Map<String, File> map = new HashMap<>(files.size());
+        for (Map.Entry<String, Object> entry : files.entrySet()) {
+            File file = FileUtil.file(backupItemPath, entry.getKey());
+            if (FileUtil.isFile(file)) {
+                map.put(entry.getValue() + StrUtil.DASHED + entry.getKey(), file);
+            }
+        }
+        return map;
+    }
+
     /**
      * 获取文件列表信息
      *
-     * @param path 路径
+     * @param cacheName 签名缓存名称，为空不使用缓存
+     * @param path      路径
      * @return 文件列表信息
      */
-    private Map<String, File> listFiles(File path) {
+    private Map<String, File> listFiles(String cacheName, File path) {
         // 将所有的文件信息组装并签名
-        List<File> files = FileUtil.loopFiles(path);
-        List<JSONObject> collect = files.stream().map(file -> {
-            //
-            JSONObject item = new JSONObject();
-            item.put("file", file);
-            item.put("sha1", SecureUtil.sha1(file) + StrUtil.DASHED + StringUtil.delStartPath(file, path, true));
-            return item;
-        }).collect(Collectors.toList());
-        return CollStreamUtil.toMap(collect,
-            jsonObject12 -> jsonObject12.getString("sha1"),
-            jsonObject1 -> (File) jsonObject1.get("file"));
+        Map<File, String> sha1Map = projectFileHashService.sha1(cacheName, path);
+        return CollStreamUtil.toMap(sha1Map.entrySet(),
+            entry -> entry.getValue() + StrUtil.DASHED + StringUtil.delStartPath(entry.getKey(), path, true),
+            Map.Entry::getKey);
     }
 }
@@ -0,0 +1,251 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.service;
+
+import cn.hutool.core.date.SystemClock;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.Lombok;
+import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.JpomApplication;
+import org.dromara.jpom.util.KeyLock;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 项目文件签名缓存
+ * <p>
+ * 按照文件路径、大小、修改时间、文件标识（inode）缓存文件的 sha1，缓存按项目持久化。
+ * 未命中缓存的文件使用有界线程池并行计算
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/17
+ */
+@Service
+@Slf4j
+public class ProjectFileHashService {
+
+    /**
+     * 修改时间距离现在小于此值的文件不缓存，避免同一时间内多次修改但修改时间不变
+     */
+    private static final long RACY_MILLIS = 2000;
+
+    private final KeyLock<String> lock = new KeyLock<>();
+    private final ExecutorService executorService;
+
+    public ProjectFileHashService() {
+        int threads = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+        this.executorService = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), ThreadUtil.newNamedThreadFactory("file-hash-", true));
+        JpomApplication.register("file-hash", executorService);
+    }
+
+    /**
+     * 获取目录下所有文件的 sha1
+     *
+     * @param name 缓存名称（项目ID），为空则不使用持久化缓存
+     * @param root 目录
+     * @return 文件 -> sha1
+     */
+    public Map<File, String> sha1(String name, File root) {
+        List<File> files = FileUtil.loopFiles(root);
+        if (StrUtil.isEmpty(name)) {
+            return this.hash(files, null, null);
+        }
+        lock.lock(name);
+        try {
+            File cacheFile = this.cacheFile(name);
+            JSONObject cache = this.readCache(cacheFile);
+            AtomicBoolean changed = new AtomicBoolean(false);
+            Map<File, String> result = this.hash(files, cache, changed);
+            if (this.prune(cache, root, result.keySet()) || changed.get()) {
+                try {
+                    FileUtil.writeUtf8String(cache.toString(), cacheFile);
+                } catch (Exception e) {
+                    log.warn("保存文件签名缓存异常：{} {}", name, e.getMessage());
+                }
+            }
+            return result;
+        } finally {
+            lock.unlock(name);
+        }
+    }
+
+    /**
+     * 读取缓存，缓存文件损坏时重新计算（计算后会覆盖）
+     *
+     * @param cacheFile 缓存文件
+     * @return 缓存
+     */
+    private JSONObject readCache(File cacheFile) {
+        if (!FileUtil.isFile(cacheFile)) {
+            return new JSONObject();
+        }
+        try {
+            return Optional.ofNullable(JSON.parseObject(FileUtil.readUtf8String(cacheFile))).orElseGet(JSONObject::new);
+        } catch (Exception e) {
+            log.warn("读取文件签名缓存异常：{} {}", cacheFile, e.getMessage());
+            return new JSONObject();
+        }
+    }
+
+    /**
+     * 删除缓存
+     *
+     * @param name 缓存名称
+     */
+    public void remove(String name) {
+        lock.lock(name);
+        try {
+            FileUtil.del(this.cacheFile(name));
+        } finally {
+            lock.unlock(name);
+        }
+    }
+
+    File cacheFile(String name) {
+        String dataPath = JpomApplication.getInstance().getDataPath();
+        return FileUtil.file(dataPath, "project_file_hash", name + ".json");
+    }
+
+    /**
+     * 计算签名，命中缓存的直接返回
+     *
+     * @param files 文件
+     * @param cache   缓存 path -> [size, mtime, fileKey, sha1]
+     * @param changed 缓存是否有变化
+     * @return 文件 -> sha1
+     */
+    private Map<File, String> hash(List<File> files, JSONObject cache, AtomicBoolean changed) {
+        Map<File, String> result = new LinkedHashMap<>(files.size());
+        Map<File, Future<String>> futureMap = new LinkedHashMap<>();
+        Map<File, Object[]> attrMap = new HashMap<>(files.size());
+        long now = SystemClock.now();
+        for (File file : files) {
+            Object[] attr = cache == null ? null : this.readAttr(file);
+            if (attr != null) {
+                attrMap.put(file, attr);
+                JSONArray item = cache.getJSONArray(file.getAbsolutePath());
+                if (item != null && item.size() >= 4
+                    && item.getLongValue(0) == (long) attr[0]
+                    && item.getLongValue(1) == (long) attr[1]
+                    && StrUtil.equals(item.getString(2), (String) attr[2])) {
+                    result.put(file, item.getString(3));
+                    continue;
+                }
+            }
+            result.put(file, null);
+            futureMap.put(file, executorService.submit(() -> SecureUtil.sha1(file)));
+        }
+        try {
+            for (Map.Entry<File, Future<String>> entry : futureMap.entrySet()) {
+                File file = entry.getKey();
+                String sha1;
+                try {
+                    sha1 = entry.getValue().get();
+                } catch (ExecutionException e) {
+                    // 单个文件读取失败（如扫描后被删除）只跳过此文件
+                    log.warn("计算文件签名失败：{} {}", file, e.getCause().getMessage());
+                    result.remove(file);
+                    if (cache != null && cache.remove(file.getAbsolutePath()) != null) {
+                        changed.set(true);
+                    }
+                    continue;
+                }
+                result.put(file, sha1);
+                if (cache == null) {
+                    continue;
+                }
+                changed.set(true);
+                Object[] attr = attrMap.get(file);
+                if (attr == null || now - (long) attr[1] < RACY_MILLIS) {
+                    cache.remove(file.getAbsolutePath());
+                    continue;
+                }
+                JSONArray item = new JSONArray();
+                item.add(attr[0]);
+                item.add(attr[1]);
+                item.add(attr[2]);
+                item.add(sha1);
+                cache.put(file.getAbsolutePath(), item);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Lombok.sneakyThrow(e);
+        } finally {
+            // 异常中断时取消还未完成的计算
+            futureMap.values().forEach(future -> future.cancel(true));
+        }
+        return result;
+    }
+
+    /**
+     * 清理已经不存在的文件
+     *
+     * @param cache 缓存
+     * @param root  本次扫描的目录
+     * @param files 本次扫描的文件
+     * @return 是否有清理
+     */
+    private boolean prune(JSONObject cache, File root, Set<File> files) {
+        String rootPath = FileUtil.normalize(root.getAbsolutePath()) + StrUtil.SLASH;
+        Set<String> paths = new HashSet<>(files.size());
+        for (File file : files) {
+            paths.add(file.getAbsolutePath());
+        }
+        return cache.keySet().removeIf(path -> {
+            if (StrUtil.startWith(FileUtil.normalize(path), rootPath)) {
+                return !paths.contains(path);
+            }
+            return !FileUtil.exist(path);
+        });
+    }
+
+    /**
+     * 读取文件属性
+     *
+     * @param file 文件
+     * @return [size, mtime, fileKey]
+     */
+    private Object[] readAttr(File file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            Object fileKey = attributes.fileKey();
+            return new Object[]{attributes.size(), attributes.lastModifiedTime().toMillis(), fileKey == null ? StrUtil.EMPTY : fileKey.toString()};
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -28,7 +28,6 @@ import com.alibaba.fastjson2.JSONObject;
 import lombok.extern.slf4j.Slf4j;
 import org.dromara.jpom.common.AgentConst;
 import org.dromara.jpom.model.data.AgentWhitelist;
-import org.dromara.jpom.util.JsonFileUtil;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -100,7 +99,6 @@ public class WhitelistDirectoryService extends BaseOperService<AgentWhitelist> {
      * @param jsonObject 实体
      */
     public void saveWhitelistDirectory(AgentWhitelist jsonObject) {
-        String path = getDataFilePath(AgentConst.WHITELIST_DIRECTORY);
-        JsonFileUtil.saveJson(path, jsonObject.toJson());
+        saveJSONObject(jsonObject.toJson());
     }
 }
@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.service.system;
+
+import cn.hutool.core.date.SystemClock;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.JpomApplication;
+import org.dromara.jpom.common.ILoadEvent;
+import org.dromara.jpom.socket.AgentWebSocketMuxHandle;
+import org.dromara.jpom.util.JsonDeltaCodec;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 主动向服务端推送统计信息
+ * <p>
+ * 服务端开启推送模式后通过多路复用连接订阅，插件端按照订阅的间隔推送增量数据，服务端不再轮询
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/16
+ */
+@Service
+@Slf4j
+public class AgentStatPushService implements ILoadEvent, Runnable {
+
+    /**
+     * 事件类型
+     */
+    public static final String TYPE = "stat";
+    /**
+     * 间隔多少个增量帧推送一次完整数据
+     */
+    private static final int FULL_INTERVAL = 20;
+
+    private final AgentStatService agentStatService;
+    private final JsonDeltaCodec.Encoder encoder = new JsonDeltaCodec.Encoder(FULL_INTERVAL);
+    private volatile int interval = 30;
+    private final AtomicBoolean forceFull = new AtomicBoolean(true);
+    private long lastPushTime;
+
+    public AgentStatPushService(AgentStatService agentStatService) {
+        this.agentStatService = agentStatService;
+    }
+
+    @Override
+    public void afterPropertiesSet(ApplicationContext applicationContext) throws Exception {
+        AgentWebSocketMuxHandle.setSubscribeListener(this::onSubscribe);
+        JpomApplication.getScheduledExecutorService().scheduleWithFixedDelay(this, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 服务端订阅，新的订阅或者服务端丢失数据时重新推送完整数据
+     *
+     * @param message 订阅消息 {"type":"stat","interval":30}
+     */
+    private void onSubscribe(JSONObject message) {
+        if (!TYPE.equals(message.getString("type"))) {
+            return;
+        }
+        this.interval = Math.max(message.getIntValue("interval", interval), 1);
+        this.forceFull.set(true);
+    }
+
+    @Override
+    public void run() {
+        if (!AgentWebSocketMuxHandle.hasSubscriber()) {
+            return;
+        }
+        long now = SystemClock.now();
+        boolean full = forceFull.getAndSet(false);
+        if (!full && now - lastPushTime < TimeUnit.SECONDS.toMillis(interval)) {
+            return;
+        }
+        lastPushTime = now;
+        try {
+            JSONObject statInfo = agentStatService.getStatInfo();
+            // 推送模式下由服务端测量网络延迟
+            statInfo.remove("systemSleep");
+            JSONObject frame = encoder.encode(statInfo, full);
+            frame.put("type", TYPE);
+            AgentWebSocketMuxHandle.broadcast(frame.toString());
+        } catch (Exception e) {
+            log.error("推送统计信息异常", e);
+        }
+    }
+}
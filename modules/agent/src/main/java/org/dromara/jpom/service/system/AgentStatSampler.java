@@ -0,0 +1,275 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.service.system;
+
+import cn.hutool.core.date.SystemClock;
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.system.oshi.OshiUtil;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.JpomApplication;
+import org.dromara.jpom.common.ILoadEvent;
+import org.dromara.jpom.configuration.AgentConfig;
+import org.dromara.jpom.configuration.SystemConfig;
+import org.dromara.jpom.util.OshiUtils;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Service;
+import oshi.hardware.CentralProcessor;
+import oshi.hardware.GlobalMemory;
+import oshi.hardware.NetworkIF;
+import oshi.hardware.VirtualMemory;
+import oshi.software.os.OSFileStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 系统监控后台采样
+ * <p>
+ * 按照固定间隔采集 cpu、内存、硬盘、网络数据保存到环形缓冲区，读取时直接返回最新的采样或者指定时间窗口内的采样，
+ * cpu 和网络使用相邻两次采样的差值计算，不再需要休眠等待
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/17
+ */
+@Service
+@Slf4j
+public class AgentStatSampler implements ILoadEvent, Runnable {
+
+    /**
+     * 硬盘采样的最小间隔，枚举文件系统开销较大
+     */
+    private static final long DISK_SAMPLE_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+
+    private final SystemConfig systemConfig;
+
+    private long[] times;
+    private double[] cpu;
+    private double[] memory;
+    private double[] swapMemory;
+    private double[] virtualMemory;
+    private double[] disk;
+    private long[] netTxBytes;
+    private long[] netRxBytes;
+    /**
+     * 下一次写入的位置
+     */
+    private int writeIndex;
+    /**
+     * 已经写入的采样个数
+     */
+    private int size;
+
+    private long[] prevTicks;
+    private long prevNetTx = -1;
+    private long prevNetRx = -1;
+    private long prevTime;
+    private long lastDiskTime;
+    private double lastDisk;
+    private volatile JSONObject systemInfo;
+
+    public AgentStatSampler(AgentConfig agentConfig) {
+        this.systemConfig = agentConfig.getSystem();
+    }
+
+    @Override
+    public void afterPropertiesSet(ApplicationContext applicationContext) throws Exception {
+        int interval = systemConfig.getStatSampleInterval();
+        if (interval <= 0) {
+            log.debug("系统监控后台采样已经关闭");
+            return;
+        }
+        int capacity = Math.max(systemConfig.getStatSampleCount(), 1);
+        this.times = new long[capacity];
+        this.cpu = new double[capacity];
+        this.memory = new double[capacity];
+        this.swapMemory = new double[capacity];
+        this.virtualMemory = new double[capacity];
+        this.disk = new double[capacity];
+        this.netTxBytes = new long[capacity];
+        this.netRxBytes = new long[capacity];
+        JpomApplication.getScheduledExecutorService().scheduleWithFixedDelay(this, 0, interval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void run() {
+        try {
+            this.sample();
+        } catch (Throwable e) {
+            log.error("系统监控采样异常", e);
+        }
+    }
+
+    private void sample() {
+        long now = SystemClock.now();
+        CentralProcessor processor = OshiUtil.getProcessor();
+        long[] ticks = processor.getSystemCpuLoadTicks();
+        long netTx = 0, netRx = 0;
+        for (NetworkIF net : OshiUtil.getNetworkIFs()) {
+            netTx += net.getBytesSent();
+            netRx += net.getBytesRecv();
+        }
+        if (prevTicks == null) {
+            // 首次只记录基准值
+            this.updatePrev(now, ticks, netTx, netRx);
+            return;
+        }
+        double cpuUsed = this.cpuUsed(prevTicks, ticks);
+        long elapsed = Math.max(now - prevTime, 1);
+        // 和原来保持一致，网络流量为每秒的字节数
+        long txBytes = Math.max(netTx - prevNetTx, 0) * 1000 / elapsed;
+        long rxBytes = Math.max(netRx - prevNetRx, 0) * 1000 / elapsed;
+        this.updatePrev(now, ticks, netTx, netRx);
+        //
+        GlobalMemory globalMemory = OshiUtil.getMemory();
+        double memoryUsed = NumberUtil.div(globalMemory.getTotal() - globalMemory.getAvailable(), globalMemory.getTotal(), 2) * 100;
+        VirtualMemory vm = globalMemory.getVirtualMemory();
+        long swapTotal = vm.getSwapTotal();
+        double swapUsed = swapTotal > 0 ? NumberUtil.div(vm.getSwapUsed(), swapTotal, 2) * 100 : Double.NaN;
+        long virtualMax = vm.getVirtualMax();
+        double virtualUsed = virtualMax > 0 ? NumberUtil.div(vm.getVirtualInUse(), virtualMax, 2) * 100 : Double.NaN;
+        if (now - lastDiskTime >= DISK_SAMPLE_INTERVAL) {
+            long total = 0, used = 0;
+            for (OSFileStore fs : OshiUtil.getOs().getFileSystem().getFileStores()) {
+                total += fs.getTotalSpace();
+                used += (fs.getTotalSpace() - fs.getUsableSpace());
+            }
+            lastDisk = NumberUtil.div(used, total, 2) * 100;
+            lastDiskTime = now;
+            this.refreshSystemInfo();
+        }
+        synchronized (this) {
+            int i = writeIndex;
+            times[i] = now;
+            cpu[i] = cpuUsed;
+            memory[i] = memoryUsed;
+            swapMemory[i] = swapUsed;
+            virtualMemory[i] = virtualUsed;
+            disk[i] = lastDisk;
+            netTxBytes[i] = txBytes;
+            netRxBytes[i] = rxBytes;
+            writeIndex = (i + 1) % times.length;
+            size = Math.min(size + 1, times.length);
+        }
+    }
+
+    /**
+     * 系统信息变化很少，和硬盘使用同样的间隔刷新
+     */
+    private void refreshSystemInfo() {
+        try {
+            systemInfo = OshiUtils.getSystemInfo();
+        } catch (Exception e) {
+            log.warn("获取系统信息异常：{}", e.getMessage());
+        }
+    }
+
+    private void updatePrev(long now, long[] ticks, long netTx, long netRx) {
+        this.prevTime = now;
+        this.prevTicks = ticks;
+        this.prevNetTx = netTx;
+        this.prevNetRx = netRx;
+    }
+
+    /**
+     * 计算方式和 hutool CpuInfo 保持一致：100 - 空闲占比
+     *
+     * @param prev 上一次的 ticks
+     * @param cur  当前的 ticks
+     * @return 使用率
+     */
+    private double cpuUsed(long[] prev, long[] cur) {
+        long total = 0;
+        for (int i = 0; i < cur.length; i++) {
+            total += Math.max(cur[i] - prev[i], 0);
+        }
+        int idleIndex = CentralProcessor.TickType.IDLE.getIndex();
+        long idle = Math.max(cur[idleIndex] - prev[idleIndex], 0);
+        if (total <= 0) {
+            return 0;
+        }
+        return NumberUtil.round(100 - idle * 100D / total, 2).doubleValue();
+    }
+
+    /**
+     * 最近一次采集的系统信息
+     *
+     * @return 没有采集返回 null
+     */
+    public JSONObject systemInfo() {
+        JSONObject jsonObject = this.systemInfo;
+        return jsonObject == null ? null : jsonObject.clone();
+    }
+
+    /**
+     * 最新的采样
+     *
+     * @return 没有采样返回 null
+     */
+    public synchronized JSONObject latest() {
+        if (size == 0) {
+            return null;
+        }
+        return this.toJson((writeIndex - 1 + times.length) % times.length);
+    }
+
+    /**
+     * 获取最近一段时间的采样，按时间升序
+     *
+     * @param seconds 最近多少秒
+     * @return list
+     */
+    public synchronized List<JSONObject> window(int seconds) {
+        List<JSONObject> list = new ArrayList<>();
+        if (size == 0 || seconds <= 0) {
+            return list;
+        }
+        long since = SystemClock.now() - TimeUnit.SECONDS.toMillis(seconds);
+        int start = (writeIndex - size + times.length) % times.length;
+        for (int n = 0; n < size; n++) {
+            int i = (start + n) % times.length;
+            if (times[i] >= since) {
+                list.add(this.toJson(i));
+            }
+        }
+        return list;
+    }
+
+    private JSONObject toJson(int i) {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("time", times[i]);
+        jsonObject.put("cpu", cpu[i]);
+        jsonObject.put("memory", memory[i]);
+        if (!Double.isNaN(swapMemory[i])) {
+            jsonObject.put("swapMemory", swapMemory[i]);
+        }
+        if (!Double.isNaN(virtualMemory[i])) {
+            jsonObject.put("virtualMemory", virtualMemory[i]);
+        }
+        jsonObject.put("disk", disk[i]);
+        jsonObject.put("netTxBytes", netTxBytes[i]);
+        jsonObject.put("netRxBytes", netRxBytes[i]);
+        return jsonObject;
+    }
+}
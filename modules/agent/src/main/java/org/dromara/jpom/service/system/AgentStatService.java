@@ -0,0 +1,153 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.service.system;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.system.SystemUtil;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.common.JpomManifest;
+import org.dromara.jpom.model.data.NodeProjectInfoModel;
+import org.dromara.jpom.model.data.NodeScriptModel;
+import org.dromara.jpom.service.manage.ProjectInfoService;
+import org.dromara.jpom.service.script.NodeScriptServer;
+import org.dromara.jpom.util.JvmUtil;
+import org.dromara.jpom.util.OshiUtils;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 插件端统计信息
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/16
+ */
+@Service
+@Slf4j
+public class AgentStatService {
+
+    private final ProjectInfoService projectInfoService;
+    private final NodeScriptServer nodeScriptServer;
+    private final AgentStatSampler agentStatSampler;
+
+    public AgentStatService(ProjectInfoService projectInfoService,
+                            NodeScriptServer nodeScriptServer,
+                            AgentStatSampler agentStatSampler) {
+        this.projectInfoService = projectInfoService;
+        this.nodeScriptServer = nodeScriptServer;
+        this.agentStatSampler = agentStatSampler;
+    }
+
+    /**
+     * 获取节点统计信息
+     *
+     * @return json
+     */
+    public JSONObject getStatInfo() {
+        return this.getStatInfo(0);
+    }
+
+    /**
+     * 获取节点统计信息
+     *
+     * @param historySeconds 需要返回最近多少秒的采样，小于等于 0 不返回
+     * @return json
+     */
+    public JSONObject getStatInfo(int historySeconds) {
+        JSONObject jsonObject = new JSONObject();
+        try {
+            JSONObject topInfo = agentStatSampler.latest();
+            if (topInfo == null) {
+                // 后台采样关闭或者还没有采样数据
+                topInfo = OshiUtils.getSimpleInfo();
+                // 系统固定休眠时间
+                jsonObject.put("systemSleep", OshiUtils.NET_STAT_SLEEP + OshiUtils.CPU_STAT_SLEEP);
+            } else {
+                jsonObject.put("systemSleep", 0);
+                if (historySeconds > 0) {
+                    jsonObject.put("simpleStatusHistory", agentStatSampler.window(historySeconds));
+                }
+            }
+            jsonObject.put("simpleStatus", topInfo);
+
+            JSONObject systemInfo = agentStatSampler.systemInfo();
+            if (systemInfo == null) {
+                systemInfo = OshiUtils.getSystemInfo();
+            }
+            jsonObject.put("systemInfo", systemInfo);
+            //jsonObject.put("oshiError", "测试异常");
+        } catch (Throwable e) {
+            log.error("oshi 系统监控异常", e);
+            jsonObject.put("oshiError", e.getMessage());
+        }
+
+        JSONObject jpomInfo = this.getJpomInfo();
+        jsonObject.put("jpomInfo", jpomInfo);
+        return jsonObject;
+    }
+
+    private JSONObject getJpomInfo() {
+        List<NodeProjectInfoModel> nodeProjectInfoModels = projectInfoService.list();
+        List<NodeScriptModel> list = nodeScriptServer.list();
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("javaVirtualCount", JvmUtil.getJavaVirtualCount());
+        JpomManifest instance = JpomManifest.getInstance();
+        jsonObject.put("jpomManifest", instance);
+        jsonObject.put("javaVersion", SystemUtil.getJavaRuntimeInfo().getVersion());
+        //  获取JVM中内存总大小
+        jsonObject.put("totalMemory", SystemUtil.getTotalMemory());
+        //
+        jsonObject.put("freeMemory", SystemUtil.getFreeMemory());
+        Map<String, JSONObject> workspaceMap = new HashMap<>(4);
+        //
+        {
+            for (NodeProjectInfoModel model : nodeProjectInfoModels) {
+                JSONObject jsonObject1 = workspaceMap.computeIfAbsent(model.getWorkspaceId(), s -> {
+                    JSONObject jsonObject11 = new JSONObject();
+                    jsonObject11.put("projectCount", 0);
+                    jsonObject11.put("scriptCount", 0);
+                    return jsonObject11;
+                });
+                jsonObject1.merge("projectCount", 1, (v1, v2) -> Integer.sum((Integer) v1, (Integer) v2));
+            }
+            jsonObject.put("projectCount", CollUtil.size(nodeProjectInfoModels));
+        }
+        {
+            for (NodeScriptModel model : list) {
+                JSONObject jsonObject1 = workspaceMap.computeIfAbsent(model.getWorkspaceId(), s -> {
+                    JSONObject jsonObject11 = new JSONObject();
+                    jsonObject11.put("projectCount", 0);
+                    jsonObject11.put("scriptCount", 0);
+                    return jsonObject11;
+                });
+                jsonObject1.merge("scriptCount", 1, (v1, v2) -> Integer.sum((Integer) v1, (Integer) v2));
+            }
+            jsonObject.put("scriptCount", CollUtil.size(list));
+        }
+        jsonObject.put("workspaceStat", workspaceMap);
+        return jsonObject;
+    }
+}
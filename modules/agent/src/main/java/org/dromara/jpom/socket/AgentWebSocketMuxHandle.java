@@ -0,0 +1,267 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.socket;
+
+import cn.hutool.core.thread.ExecutorBuilder;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.JpomApplication;
+import org.dromara.jpom.configuration.AgentConfig;
+import org.dromara.jpom.transport.MuxFrame;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import javax.websocket.*;
+import javax.websocket.server.ServerEndpoint;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 插件端,多路复用 socket
+ * <p>
+ * 服务端只和插件端保持一个连接，控制台、日志、脚本等会话作为连接中的流，转交给对应的端点处理
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/15
+ */
+@ServerEndpoint(value = MuxFrame.PATH)
+@Component
+@Slf4j
+public class AgentWebSocketMuxHandle extends BaseAgentWebSocketHandle {
+
+    /**
+     * 端点路径 -> 端点类
+     */
+    private static final Map<String, Class<?>> ENDPOINTS = new HashMap<>();
+    /**
+     * 订阅了事件的连接
+     */
+    private static final Map<String, AgentWebSocketMuxHandle> SUBSCRIBERS = new ConcurrentHashMap<>();
+    /**
+     * 流消息处理线程数上限
+     */
+    private static final int MAX_STREAM_THREADS = 200;
+    private static ExecutorService executorService;
+    private static volatile Consumer<JSONObject> subscribeListener;
+
+    private final Map<Integer, MuxStreamSession> streams = new ConcurrentHashMap<>();
+    private final Object sendLock = new Object();
+    private Session session;
+
+    @Autowired
+    public void init(AgentConfig agentConfig, ApplicationContext applicationContext) {
+        setAgentAuthorize(agentConfig.getAuthorize());
+        String[] beanNames = applicationContext.getBeanNamesForAnnotation(ServerEndpoint.class);
+        for (String beanName : beanNames) {
+            Class<?> type = ClassUtils.getUserClass(applicationContext.getType(beanName));
+            ServerEndpoint serverEndpoint = AnnotationUtils.findAnnotation(type, ServerEndpoint.class);
+            if (serverEndpoint == null || type == AgentWebSocketMuxHandle.class) {
+                continue;
+            }
+            ENDPOINTS.put(serverEndpoint.value(), type);
+        }
+        if (executorService == null) {
+            // 每个流串行处理，线程用完后任务排队等待
+            executorService = ExecutorBuilder.create()
+                .setCorePoolSize(MAX_STREAM_THREADS)
+                .setMaxPoolSize(MAX_STREAM_THREADS)
+                .setKeepAliveTime(60, TimeUnit.SECONDS)
+                .setAllowCoreThreadTimeOut(true)
+                .setWorkQueue(new LinkedBlockingQueue<>())
+                .setThreadFactory(ThreadFactoryBuilder.create().setNamePrefix("jpom-websocket-mux-").setDaemon(true).build())
+                .build();
+            JpomApplication.register("websocket-mux", executorService);
+        }
+    }
+
+    @OnOpen
+    public void onOpen(Session session) {
+        if (super.checkAuthorize(session)) {
+            return;
+        }
+        session.setMaxBinaryMessageBufferSize(MuxFrame.MAX_FRAME_SIZE);
+        this.session = session;
+    }
+
+    @OnMessage
+    public void onMessage(ByteBuffer message, Session session) throws IOException {
+        MuxFrame frame = MuxFrame.decode(message);
+        int streamId = frame.getStreamId();
+        switch (frame.getType()) {
+            case MuxFrame.PING:
+                this.send(MuxFrame.encode(MuxFrame.PONG, 0, (ByteBuffer) null));
+                return;
+            case MuxFrame.PONG:
+                return;
+            case MuxFrame.EVENT:
+                // 服务端订阅插件端推送的事件
+                SUBSCRIBERS.put(session.getId(), this);
+                this.fireSubscribe(frame.getText());
+                return;
+            case MuxFrame.OPEN:
+                this.openStream(streamId, frame.getText());
+                return;
+            default:
+                break;
+        }
+        MuxStreamSession stream = streams.get(streamId);
+        if (stream != null) {
+            stream.onFrame(frame);
+        } else if (frame.getType() != MuxFrame.CLOSE) {
+            this.send(MuxFrame.encodeClose(streamId, CloseReason.CloseCodes.GOING_AWAY.getCode(), "stream not found"));
+        }
+    }
+
+    private void openStream(int streamId, String text) throws IOException {
+        JSONObject jsonObject = JSONObject.parseObject(text);
+        String path = jsonObject.getString("path");
+        Class<?> endpointClass = ENDPOINTS.get(path);
+        if (endpointClass == null) {
+            this.send(MuxFrame.encodeClose(streamId, CloseReason.CloseCodes.CANNOT_ACCEPT.getCode(), "不支持的会话：" + path));
+            return;
+        }
+        Map<String, String> parameters = new HashMap<>(8);
+        Optional.ofNullable(jsonObject.getJSONObject("parameters"))
+            .ifPresent(json -> json.forEach((key, value) -> parameters.put(key, value == null ? null : value.toString())));
+        MuxStreamSession stream = new MuxStreamSession(this, streamId, path, parameters, endpointClass, executorService);
+        streams.put(streamId, stream);
+        this.send(MuxFrame.encode(MuxFrame.OPEN, streamId, (ByteBuffer) null));
+        stream.start();
+    }
+
+    void send(ByteBuffer frame) throws IOException {
+        Session webSocketSession = this.session;
+        if (webSocketSession == null || !webSocketSession.isOpen()) {
+            throw new IOException("多路复用连接已经关闭");
+        }
+        synchronized (sendLock) {
+            webSocketSession.getBasicRemote().sendBinary(frame);
+        }
+    }
+
+    void removeStream(int streamId) {
+        streams.remove(streamId);
+    }
+
+    String getId() {
+        return Optional.ofNullable(session).map(Session::getId).orElse(null);
+    }
+
+    boolean isOpen() {
+        return session != null && session.isOpen();
+    }
+
+    boolean isSecure() {
+        return session != null && session.isSecure();
+    }
+
+    String getProtocolVersion() {
+        return Optional.ofNullable(session).map(Session::getProtocolVersion).orElse(null);
+    }
+
+    WebSocketContainer getContainer() {
+        return Optional.ofNullable(session).map(Session::getContainer).orElse(null);
+    }
+
+    private void fireSubscribe(String text) {
+        Consumer<JSONObject> listener = subscribeListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.accept(JSONObject.parseObject(text));
+        } catch (Exception e) {
+            log.warn("处理订阅消息异常：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 服务端订阅事件的监听
+     *
+     * @param subscribeListener 订阅消息
+     */
+    public static void setSubscribeListener(Consumer<JSONObject> subscribeListener) {
+        AgentWebSocketMuxHandle.subscribeListener = subscribeListener;
+    }
+
+    /**
+     * 是否有服务端订阅了事件
+     *
+     * @return true 有
+     */
+    public static boolean hasSubscriber() {
+        return !SUBSCRIBERS.isEmpty();
+    }
+
+    /**
+     * 向订阅了事件的服务端推送事件
+     *
+     * @param event 事件内容
+     * @return 推送成功的连接数
+     */
+    public static int broadcast(String event) {
+        int count = 0;
+        for (AgentWebSocketMuxHandle handle : new ArrayList<>(SUBSCRIBERS.values())) {
+            try {
+                handle.send(MuxFrame.encode(MuxFrame.EVENT, 0, event));
+                count++;
+            } catch (Exception e) {
+                log.warn("推送事件失败：{}", e.getMessage());
+                SUBSCRIBERS.values().remove(handle);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    @OnClose
+    public void onClose(Session session, CloseReason closeReason) {
+        super.onClose(session, closeReason);
+        SUBSCRIBERS.remove(session.getId());
+        CloseReason streamReason = new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "多路复用连接关闭");
+        for (MuxStreamSession stream : new ArrayList<>(streams.values())) {
+            stream.onRemoteClose(streamReason);
+        }
+        streams.clear();
+    }
+
+    @OnError
+    @Override
+    public void onError(Session session, Throwable thr) {
+        // 物理连接不能直接发送文本消息
+        log.warn("{} 多路复用连接异常：{}", session.getId(), thr.getMessage());
+    }
+}
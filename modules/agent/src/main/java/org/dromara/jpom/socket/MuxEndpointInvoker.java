@@ -0,0 +1,141 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.socket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.websocket.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按照 websocket 注解调用端点方法，用于多路复用连接中的流
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/15
+ */
+@Slf4j
+class MuxEndpointInvoker {
+
+    private static final Map<Class<?>, MuxEndpointInvoker> CACHE = new ConcurrentHashMap<>();
+
+    private final Class<?> endpointClass;
+    private Method onOpen;
+    private Method onClose;
+    private Method onError;
+    private Method onText;
+    private Method onBinary;
+
+    private MuxEndpointInvoker(Class<?> endpointClass) {
+        this.endpointClass = endpointClass;
+        for (Method method : endpointClass.getMethods()) {
+            if (method.isAnnotationPresent(OnOpen.class)) {
+                this.onOpen = method;
+            } else if (method.isAnnotationPresent(OnClose.class)) {
+                this.onClose = method;
+            } else if (method.isAnnotationPresent(OnError.class)) {
+                this.onError = method;
+            } else if (method.isAnnotationPresent(OnMessage.class)) {
+                for (Class<?> type : method.getParameterTypes()) {
+                    if (type == String.class) {
+                        this.onText = method;
+                    } else if (type == byte[].class || type == ByteBuffer.class) {
+                        this.onBinary = method;
+                    }
+                }
+            }
+        }
+    }
+
+    static MuxEndpointInvoker of(Class<?> endpointClass) {
+        return CACHE.computeIfAbsent(endpointClass, MuxEndpointInvoker::new);
+    }
+
+    /**
+     * 创建端点对象，和容器一样每个会话一个对象
+     *
+     * @return 端点对象
+     * @throws ReflectiveOperationException 创建失败
+     */
+    Object newInstance() throws ReflectiveOperationException {
+        return endpointClass.getDeclaredConstructor().newInstance();
+    }
+
+    void onOpen(Object endpoint, Session session) {
+        this.invoke(endpoint, onOpen, session, null, null, null);
+    }
+
+    void onText(Object endpoint, Session session, String message) {
+        this.invoke(endpoint, onText, session, message, null, null);
+    }
+
+    void onBinary(Object endpoint, Session session, ByteBuffer message) {
+        this.invoke(endpoint, onBinary, session, message, null, null);
+    }
+
+    void onClose(Object endpoint, Session session, CloseReason closeReason) {
+        this.invoke(endpoint, onClose, session, null, closeReason, null);
+    }
+
+    private void invoke(Object endpoint, Method method, Session session, Object message, CloseReason closeReason, Throwable throwable) {
+        if (method == null) {
+            return;
+        }
+        Class<?>[] types = method.getParameterTypes();
+        Object[] args = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            Class<?> type = types[i];
+            if (type == Session.class) {
+                args[i] = session;
+            } else if (type == CloseReason.class) {
+                args[i] = closeReason;
+            } else if (type == Throwable.class) {
+                args[i] = throwable;
+            } else if (type == String.class) {
+                args[i] = message;
+            } else if (type == ByteBuffer.class) {
+                args[i] = message;
+            } else if (type == byte[].class && message instanceof ByteBuffer) {
+                ByteBuffer buffer = ((ByteBuffer) message).duplicate();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                args[i] = bytes;
+            }
+        }
+        try {
+            method.invoke(endpoint, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (method == onError || onError == null) {
+                log.error("{} 执行异常", method, cause);
+                return;
+            }
+            this.invoke(endpoint, onError, session, null, null, cause);
+        } catch (IllegalAccessException e) {
+            log.error("{} 调用失败", method, e);
+        }
+    }
+}
@@ -0,0 +1,608 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.socket;
+
+import cn.hutool.core.util.TypeUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.transport.MuxFrame;
+import org.dromara.jpom.transport.MuxSerialExecutor;
+import org.dromara.jpom.transport.MuxWindow;
+
+import javax.websocket.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 多路复用连接中的一个流，对端点表现为一个独立的 websocket 会话
+ * <p>
+ * 部分消息、流式发送会先缓存，结束时作为一条完整消息发送；异步发送在调用线程中同步完成
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/15
+ */
+@Slf4j
+class MuxStreamSession implements Session {
+
+    /**
+     * 发送消息时间限制 60 秒
+     */
+    private static final long SEND_TIMEOUT = TimeUnit.SECONDS.toMillis(60);
+
+    private final AgentWebSocketMuxHandle channel;
+    private final int streamId;
+    private final String id;
+    private final String path;
+    private final Map<String, List<String>> requestParameterMap;
+    private final MuxEndpointInvoker invoker;
+    private final MuxSerialExecutor executor;
+    private final MuxWindow sendWindow = new MuxWindow();
+    private final MuxWindow receiveWindow = new MuxWindow();
+    private final MuxFrame.Assembler assembler = new MuxFrame.Assembler();
+    private final AtomicBoolean open = new AtomicBoolean(true);
+    private final Object sendLock = new Object();
+    private final Map<String, Object> userProperties = new ConcurrentHashMap<>();
+    private final Basic basic = new Basic();
+    private final Async async = new Async();
+    /**
+     * 通过 addMessageHandler 注册的处理器，注册后优先于注解端点的方法
+     */
+    private final Map<Class<?>, MessageHandler> messageHandlers = new ConcurrentHashMap<>();
+    private volatile long sendTimeout = SEND_TIMEOUT;
+    private Object endpoint;
+    private int maxBinaryMessageBufferSize = MuxFrame.MAX_FRAME_SIZE;
+    private int maxTextMessageBufferSize = MuxFrame.MAX_FRAME_SIZE;
+    private long maxIdleTimeout;
+
+    MuxStreamSession(AgentWebSocketMuxHandle channel, int streamId, String path, Map<String, String> parameters,
+                     Class<?> endpointClass, ExecutorService executorService) {
+        this.channel = channel;
+        this.streamId = streamId;
+        this.id = "mux-" + channel.getId() + "-" + streamId;
+        this.path = path;
+        Map<String, List<String>> map = new HashMap<>(parameters.size());
+        parameters.forEach((key, value) -> map.put(key, Collections.singletonList(value)));
+        this.requestParameterMap = Collections.unmodifiableMap(map);
+        this.invoker = MuxEndpointInvoker.of(endpointClass);
+        this.executor = new MuxSerialExecutor(executorService);
+    }
+
+    /**
+     * 创建端点对象并触发 OnOpen
+     */
+    void start() {
+        executor.execute(() -> {
+            try {
+                endpoint = invoker.newInstance();
+            } catch (ReflectiveOperationException e) {
+                log.error("创建 {} 端点失败", path, e);
+                this.closeQuietly(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "创建端点失败"));
+                return;
+            }
+            invoker.onOpen(endpoint, this);
+        });
+    }
+
+    /**
+     * 收到服务端的帧，在连接的读取线程中调用
+     *
+     * @param frame 帧
+     */
+    void onFrame(MuxFrame frame) {
+        switch (frame.getType()) {
+            case MuxFrame.WINDOW:
+                sendWindow.release(frame.getWindow());
+                break;
+            case MuxFrame.TEXT:
+            case MuxFrame.BINARY: {
+                int size = frame.getPayloadSize();
+                ByteBuffer message = assembler.append(frame);
+                boolean text = frame.getType() == MuxFrame.TEXT;
+                executor.execute(() -> this.dispatch(message, text, size));
+                break;
+            }
+            case MuxFrame.CLOSE:
+                this.onRemoteClose(new CloseReason(CloseReason.CloseCodes.getCloseCode(frame.getCloseCode()), frame.getCloseReason()));
+                break;
+            default:
+                log.warn("未知的数据帧类型：{}", frame.getType());
+                break;
+        }
+    }
+
+    private void dispatch(ByteBuffer message, boolean text, int size) {
+        if (message != null && open.get()) {
+            if (text) {
+                String msg = StandardCharsets.UTF_8.decode(message).toString();
+                if (!this.dispatchHandler(String.class, msg) && endpoint != null) {
+                    invoker.onText(endpoint, this, msg);
+                }
+            } else if (!this.dispatchHandler(ByteBuffer.class, message) && !this.dispatchHandler(byte[].class, message) && endpoint != null) {
+                invoker.onBinary(endpoint, this, message);
+            }
+        }
+        int credit = receiveWindow.consume(size);
+        if (credit > 0 && open.get()) {
+            try {
+                channel.send(MuxFrame.encodeWindow(streamId, credit));
+            } catch (IOException e) {
+                log.debug("归还窗口失败：{}", e.getMessage());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean dispatchHandler(Class<?> type, Object message) {
+        MessageHandler handler = messageHandlers.get(type);
+        if (handler == null) {
+            return false;
+        }
+        if (type == byte[].class) {
+            ByteBuffer buffer = (ByteBuffer) message;
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            message = bytes;
+        }
+        try {
+            if (handler instanceof MessageHandler.Whole) {
+                ((MessageHandler.Whole<Object>) handler).onMessage(message);
+            } else {
+                ((MessageHandler.Partial<Object>) handler).onMessage(message, true);
+            }
+        } catch (Exception e) {
+            log.error("{} 处理消息异常", path, e);
+        }
+        return true;
+    }
+
+    private void addHandler(Type type, MessageHandler handler) {
+        Class<?> clazz = TypeUtil.getClass(type);
+        if (clazz != String.class && clazz != ByteBuffer.class && clazz != byte[].class) {
+            throw new IllegalStateException("不支持的消息类型：" + type);
+        }
+        if (clazz != String.class && (messageHandlers.containsKey(ByteBuffer.class) || messageHandlers.containsKey(byte[].class))) {
+            throw new IllegalStateException("已经存在二进制消息处理器");
+        }
+        if (messageHandlers.putIfAbsent(clazz, handler) != null) {
+            throw new IllegalStateException("已经存在文本消息处理器");
+        }
+    }
+
+    /**
+     * 服务端关闭流或者连接断开
+     *
+     * @param closeReason 原因
+     */
+    void onRemoteClose(CloseReason closeReason) {
+        if (!open.compareAndSet(true, false)) {
+            return;
+        }
+        channel.removeStream(streamId);
+        this.fireClose(closeReason);
+    }
+
+    private void fireClose(CloseReason closeReason) {
+        sendWindow.close();
+        executor.execute(() -> {
+            if (endpoint != null) {
+                invoker.onClose(endpoint, this, closeReason);
+            }
+        });
+    }
+
+    private void closeQuietly(CloseReason closeReason) {
+        try {
+            this.close(closeReason);
+        } catch (IOException e) {
+            log.debug("关闭流失败：{}", e.getMessage());
+        }
+    }
+
+    private void sendMessage(byte type, ByteBuffer payload) throws IOException {
+        synchronized (sendLock) {
+            if (!open.get()) {
+                throw new IOException("会话已经关闭");
+            }
+            for (ByteBuffer frame : MuxFrame.encodeMessage(type, streamId, payload)) {
+                sendWindow.acquire(frame.remaining() - MuxFrame.HEADER_SIZE, sendTimeout > 0 ? sendTimeout : Long.MAX_VALUE);
+                channel.send(frame);
+            }
+        }
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open.get() && channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.close(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, null));
+    }
+
+    @Override
+    public void close(CloseReason closeReason) throws IOException {
+        if (!open.compareAndSet(true, false)) {
+            return;
+        }
+        channel.removeStream(streamId);
+        try {
+            channel.send(MuxFrame.encodeClose(streamId, closeReason.getCloseCode().getCode(), closeReason.getReasonPhrase()));
+        } finally {
+            this.fireClose(closeReason);
+        }
+    }
+
+    @Override
+    public RemoteEndpoint.Basic getBasicRemote() {
+        return basic;
+    }
+
+    @Override
+    public RemoteEndpoint.Async getAsyncRemote() {
+        return async;
+    }
+
+    @Override
+    public Map<String, List<String>> getRequestParameterMap() {
+        return requestParameterMap;
+    }
+
+    @Override
+    public Map<String, String> getPathParameters() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public String getQueryString() {
+        return null;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return URI.create(path);
+    }
+
+    @Override
+    public Map<String, Object> getUserProperties() {
+        return userProperties;
+    }
+
+    @Override
+    public Principal getUserPrincipal() {
+        return null;
+    }
+
+    @Override
+    public Set<Session> getOpenSessions() {
+        return Collections.singleton(this);
+    }
+
+    @Override
+    public WebSocketContainer getContainer() {
+        return channel.getContainer();
+    }
+
+    @Override
+    public void addMessageHandler(MessageHandler handler) throws IllegalStateException {
+        Type type = TypeUtil.getTypeArgument(handler.getClass());
+        if (type == null) {
+            throw new IllegalStateException("无法识别消息处理器的消息类型，请使用 addMessageHandler(Class, MessageHandler)");
+        }
+        this.addHandler(type, handler);
+    }
+
+    @Override
+    public <T> void addMessageHandler(Class<T> clazz, MessageHandler.Whole<T> handler) {
+        this.addHandler(clazz, handler);
+    }
+
+    @Override
+    public <T> void addMessageHandler(Class<T> clazz, MessageHandler.Partial<T> handler) {
+        // 流中收到的都是组装后的完整消息，按最后一个分片回调
+        this.addHandler(clazz, handler);
+    }
+
+    @Override
+    public Set<MessageHandler> getMessageHandlers() {
+        return Collections.unmodifiableSet(new HashSet<>(messageHandlers.values()));
+    }
+
+    @Override
+    public void removeMessageHandler(MessageHandler handler) {
+        messageHandlers.values().removeIf(item -> item == handler);
+    }
+
+    @Override
+    public String getProtocolVersion() {
+        return channel.getProtocolVersion();
+    }
+
+    @Override
+    public String getNegotiatedSubprotocol() {
+        return null;
+    }
+
+    @Override
+    public List<Extension> getNegotiatedExtensions() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isSecure() {
+        return channel.isSecure();
+    }
+
+    @Override
+    public long getMaxIdleTimeout() {
+        return maxIdleTimeout;
+    }
+
+    @Override
+    public void setMaxIdleTimeout(long milliseconds) {
+        this.maxIdleTimeout = milliseconds;
+    }
+
+    @Override
+    public void setMaxBinaryMessageBufferSize(int length) {
+        // 流中的消息已经分片，不受单帧大小限制
+        this.maxBinaryMessageBufferSize = length;
+    }
+
+    @Override
+    public int getMaxBinaryMessageBufferSize() {
+        return maxBinaryMessageBufferSize;
+    }
+
+    @Override
+    public void setMaxTextMessageBufferSize(int length) {
+        this.maxTextMessageBufferSize = length;
+    }
+
+    @Override
+    public int getMaxTextMessageBufferSize() {
+        return maxTextMessageBufferSize;
+    }
+
+    /**
+     * 同步发送
+     */
+    private class Basic implements RemoteEndpoint.Basic {
+
+        private ByteArrayOutputStream partialBuffer;
+        private byte partialType;
+
+        @Override
+        public void sendText(String text) throws IOException {
+            sendMessage(MuxFrame.TEXT, ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        @Override
+        public void sendBinary(ByteBuffer data) throws IOException {
+            sendMessage(MuxFrame.BINARY, data);
+        }
+
+        @Override
+        public void sendText(String partialMessage, boolean isLast) throws IOException {
+            this.sendPartial(MuxFrame.TEXT, ByteBuffer.wrap(partialMessage.getBytes(StandardCharsets.UTF_8)), isLast);
+        }
+
+        @Override
+        public void sendBinary(ByteBuffer partialByte, boolean isLast) throws IOException {
+            this.sendPartial(MuxFrame.BINARY, partialByte, isLast);
+        }
+
+        /**
+         * 部分消息先缓存，最后一部分到达时作为一条消息发送
+         */
+        private synchronized void sendPartial(byte type, ByteBuffer partial, boolean isLast) throws IOException {
+            if (partialBuffer == null) {
+                partialBuffer = new ByteArrayOutputStream();
+                partialType = type;
+            } else if (partialType != type) {
+                throw new IllegalStateException("上一条部分消息还没有发送完成");
+            }
+            ByteBuffer duplicate = partial.duplicate();
+            byte[] bytes = new byte[duplicate.remaining()];
+            duplicate.get(bytes);
+            partialBuffer.write(bytes, 0, bytes.length);
+            if (!isLast) {
+                return;
+            }
+            ByteBuffer message = ByteBuffer.wrap(partialBuffer.toByteArray());
+            partialBuffer = null;
+            sendMessage(type, message);
+        }
+
+        @Override
+        public OutputStream getSendStream() {
+            return new ByteArrayOutputStream() {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    if (closed) {
+                        return;
+                    }
+                    closed = true;
+                    sendMessage(MuxFrame.BINARY, ByteBuffer.wrap(this.toByteArray()));
+                }
+            };
+        }
+
+        @Override
+        public Writer getSendWriter() {
+            return new StringWriter() {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    if (closed) {
+                        return;
+                    }
+                    closed = true;
+                    basic.sendText(this.toString());
+                }
+            };
+        }
+
+        @Override
+        public void sendObject(Object data) throws IOException {
+            this.sendText(String.valueOf(data));
+        }
+
+        @Override
+        public void setBatchingAllowed(boolean allowed) {
+        }
+
+        @Override
+        public boolean getBatchingAllowed() {
+            return false;
+        }
+
+        @Override
+        public void flushBatch() {
+        }
+
+        @Override
+        public void sendPing(ByteBuffer applicationData) {
+        }
+
+        @Override
+        public void sendPong(ByteBuffer applicationData) {
+        }
+    }
+
+    /**
+     * 异步发送，流控已经限制了发送速度，直接在调用线程中完成发送
+     */
+    private class Async implements RemoteEndpoint.Async {
+
+        @Override
+        public long getSendTimeout() {
+            return sendTimeout;
+        }
+
+        @Override
+        public void setSendTimeout(long timeoutmillis) {
+            sendTimeout = timeoutmillis;
+        }
+
+        @Override
+        public void sendText(String text, SendHandler handler) {
+            this.send(() -> basic.sendText(text), handler);
+        }
+
+        @Override
+        public Future<Void> sendText(String text) {
+            return this.send(() -> basic.sendText(text));
+        }
+
+        @Override
+        public Future<Void> sendBinary(ByteBuffer data) {
+            return this.send(() -> basic.sendBinary(data));
+        }
+
+        @Override
+        public void sendBinary(ByteBuffer data, SendHandler handler) {
+            this.send(() -> basic.sendBinary(data), handler);
+        }
+
+        @Override
+        public Future<Void> sendObject(Object data) {
+            return this.send(() -> basic.sendObject(data));
+        }
+
+        @Override
+        public void sendObject(Object data, SendHandler handler) {
+            this.send(() -> basic.sendObject(data), handler);
+        }
+
+        private Future<Void> send(SendAction action) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            try {
+                action.send();
+                future.complete(null);
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        private void send(SendAction action, SendHandler handler) {
+            try {
+                action.send();
+            } catch (Exception e) {
+                handler.onResult(new SendResult(e));
+                return;
+            }
+            handler.onResult(new SendResult());
+        }
+
+        @Override
+        public void setBatchingAllowed(boolean allowed) {
+        }
+
+        @Override
+        public boolean getBatchingAllowed() {
+            return false;
+        }
+
+        @Override
+        public void flushBatch() {
+        }
+
+        @Override
+        public void sendPing(ByteBuffer applicationData) {
+        }
+
+        @Override
+        public void sendPong(ByteBuffer applicationData) {
+        }
+    }
+
+    @FunctionalInterface
+    private interface SendAction {
+
+        void send() throws IOException, EncodeException;
+    }
+}
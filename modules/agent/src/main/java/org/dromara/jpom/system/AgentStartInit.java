@@ -52,6 +52,7 @@ import org.dromara.jpom.script.BaseRunScript;
 import org.dromara.jpom.service.manage.ProjectInfoService;
 import org.dromara.jpom.socket.ConsoleCommandOp;
 import org.dromara.jpom.util.CommandUtil;
+import org.dromara.jpom.util.FileSearchUtil;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.util.unit.DataSize;
@@ -214,6 +215,7 @@ public class AgentStartInit implements ILoadEvent, ISystemTask {
                         FileUtil.mkdir(resolveLogBack);
                         log.info("自动迁移存在日志 {} -> {}", log1, resolveLogBack);
                         FileUtil.move(FileUtil.file(log1), resolveLogBack, true);
+                        FileSearchUtil.removeIndex(FileUtil.file(log1));
                     }
                 }
             });
@@ -22,31 +22,48 @@
  */
 package org.dromara.jpom.util;
 
-import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.lang.PatternPool;
 import cn.hutool.core.lang.Tuple;
-import cn.hutool.core.util.ReUtil;
 import cn.hutool.core.util.StrUtil;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.LineNumberReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.util.Collection;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.*;
 import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * 文件搜索工具
+ * <p>
+ * 按行流式读取，借助 {@link LogLineIndex} 定位行号，读取文件末尾时从文件末尾向前查找。
+ * 行号按换行符（\n）计算，换行符不是单字节的编码（如 UTF-16）按字符流逐行读取
  *
  * @author bwcx_jzy
  * @since 2022/5/15
  */
 public class FileSearchUtil {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * 单行最多保留的字节数，超出部分忽略
+     */
+    private static final int MAX_LINE_SIZE = 1024 * 1024;
+
+    /**
+     * 删除日志文件的行索引
+     *
+     * @param file 日志文件
+     */
+    public static void removeIndex(File file) {
+        LogLineIndex.delete(file);
+    }
+
     /**
      * @param file             文件
      * @param charset          编码格式
@@ -67,86 +84,282 @@ public class FileSearchUtil {
                                     boolean first, Consumer<Tuple> consumer) throws IOException {
 
         int[] calculate = FileSearchUtil.calculate(head, tailCount, first);
-        Collection<Tuple> strings;
+        LineSearcher searcher = new LineSearcher(searchKey, cacheBeforeCount, afterCount, consumer);
+        long readCount;
         if (calculate.length == 1) {
-            strings = FileSearchUtil.readLastLine(file, charset, calculate[0]);
+            readCount = FileSearchUtil.readLastLine(file, charset, calculate[0], searcher);
         } else {
-            strings = FileSearchUtil.readRangeLine(file, charset, calculate);
+            readCount = FileSearchUtil.readRangeLine(file, charset, calculate, searcher);
         }
-        int showLine = searchList(strings, searchKey, cacheBeforeCount, afterCount, consumer);
-        return StrUtil.format("在 {} 行中搜索到并显示 {} 行", CollUtil.size(strings), showLine);
+        return StrUtil.format("在 {} 行中搜索到并显示 {} 行", readCount, searcher.showLine);
     }
 
-    private static int searchList(Collection<Tuple> strings, String searchKey, int beforeCount, int afterCount, Consumer<Tuple> consumer) {
-        AtomicInteger hitIndex = new AtomicInteger(0);
-        LimitQueue<Tuple> beforeQueue = new LimitQueue<>(beforeCount);
-        List<Integer> cacheLineNum = new LinkedList<>();
-        strings.forEach(tuple -> {
-            String s = tuple.get(1);
-            Integer index = tuple.get(0);
-            // System.out.println(s);
-            if (StrUtil.isEmpty(searchKey) || StrUtil.containsIgnoreCase(s, searchKey) || ReUtil.isMatch(searchKey, s)) {
-                // 先输出之前的
-                for (Tuple before : beforeQueue) {
-                    checkEchoCache(cacheLineNum, before, consumer);
-                }
-                checkEchoCache(cacheLineNum, tuple, consumer);
-                hitIndex.set(index);
+    /**
+     * 读取文件最后几行
+     *
+     * @param file    文件
+     * @param charset 编码格式
+     * @param line    行数
+     * @return 行号和内容
+     * @throws IOException io
+     */
+    public static Collection<Tuple> readLastLine(File file, Charset charset, int line) throws IOException {
+        List<Tuple> list = new ArrayList<>(Math.max(Math.min(line, 1024), 0));
+        readLastLine(file, charset, line, list::add);
+        return list;
+    }
+
+    /**
+     * 读取文件指定范围的行
+     *
+     * @param file    文件
+     * @param charset 编码格式
+     * @param range   开始行和结束行
+     * @return 行号和内容
+     * @throws IOException io
+     */
+    public static Collection<Tuple> readRangeLine(File file, Charset charset, int[] range) throws IOException {
+        List<Tuple> list = new ArrayList<>();
+        readRangeLine(file, charset, range, list::add);
+        return list;
+    }
+
+    /**
+     * 从文件末尾向前查找，读取文件最后几行
+     *
+     * @param file     文件
+     * @param charset  编码格式
+     * @param line     行数
+     * @param consumer 回调行号和内容
+     * @return 读取的行数
+     * @throws IOException io
+     */
+    public static long readLastLine(File file, Charset charset, int line, Consumer<Tuple> consumer) throws IOException {
+        if (line <= 0) {
+            return 0;
+        }
+        if (!asciiCompatible(charset)) {
+            return readLastLineByReader(file, charset, line, consumer);
+        }
+        LogLineIndex index = LogLineIndex.load(file);
+        try (FileChannel channel = index.open()) {
+            long length = channel.size();
+            if (length == 0) {
+                return 0;
             }
-            // 是否需要输出后面的内容
-            int i = hitIndex.get();
-            if (i > 0 && index > i && index <= i + afterCount) {
-                checkEchoCache(cacheLineNum, tuple, consumer);
+            long start = 0;
+            int found = 0;
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long position = length;
+            search:
+            while (position > 0) {
+                long readStart = Math.max(position - BUFFER_SIZE, 0);
+                buffer.clear();
+                buffer.limit((int) (position - readStart));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, readStart + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                byte[] array = buffer.array();
+                for (int i = buffer.position() - 1; i >= 0; i--) {
+                    long offset = readStart + i;
+                    // 文件末尾的换行符属于最后一行
+                    if (array[i] == '\n' && offset != length - 1) {
+                        if (++found == line) {
+                            start = offset + 1;
+                            break search;
+                        }
+                    }
+                }
+                position = readStart;
             }
-            if (beforeCount > 0) {
-                //
-                beforeQueue.offerFirst(tuple);
+            long lineNumber = 1;
+            if (found == line && (length < LogLineIndex.PERSIST_MIN_SIZE || index.usable(channel, length))) {
+                // 已经保存的索引只需要增量索引追加的内容，较小的文件直接计算总行数；
+                // 较大的文件没有索引时不为了行号读取整个文件，行号从读取的第一行开始计算
+                index.refresh(channel, length, 0);
+                index.save();
+                long totalLine = index.lineCount() + (index.indexedLength() < length ? 1 : 0);
+                lineNumber = totalLine - line + 1;
             }
-        });
-        return CollUtil.size(cacheLineNum);
+            return readLine(channel, charset, start, length, lineNumber, Long.MAX_VALUE, consumer);
+        }
     }
 
-    private static void checkEchoCache(List<Integer> cacheLineNum, Tuple tuple, Consumer<Tuple> consumer) {
-        int index = tuple.get(0);
-        if (cacheLineNum.contains(index)) {
-            return;
+    /**
+     * 读取文件指定范围的行，通过索引定位开始行
+     *
+     * @param file     文件
+     * @param charset  编码格式
+     * @param range    开始行和结束行
+     * @param consumer 回调行号和内容
+     * @return 读取的行数
+     * @throws IOException io
+     */
+    public static long readRangeLine(File file, Charset charset, int[] range, Consumer<Tuple> consumer) throws IOException {
+        long startLine = Math.max(range[0], 1);
+        long endLine = range[1];
+        if (endLine < startLine) {
+            return 0;
+        }
+        if (!asciiCompatible(charset)) {
+            return readRangeLineByReader(file, charset, startLine, endLine, consumer);
+        }
+        LogLineIndex index = LogLineIndex.load(file);
+        try (FileChannel channel = index.open()) {
+            long length = channel.size();
+            // 只需要索引到开始行
+            index.refresh(channel, length, startLine);
+            index.save();
+            long[] seek = index.seek(startLine);
+            long[] count = new long[1];
+            readLine(channel, charset, seek[0], length, seek[1], endLine, tuple -> {
+                long lineNumber = tuple.get(0);
+                if (lineNumber >= startLine) {
+                    consumer.accept(tuple);
+                    count[0]++;
+                }
+            });
+            return count[0];
         }
-        consumer.accept(tuple);
-        cacheLineNum.add(index);
     }
 
-    public static Collection<Tuple> readLastLine(File file, Charset charset, int line) throws IOException {
-        BufferedReader reader = FileUtil.getReader(file, charset);
-        LineNumberReader lineNumberReader = new LineNumberReader(reader);
-        LimitQueue<Tuple> limitQueue = new LimitQueue<>(line);
-        while (true) {
-            String readLine = lineNumberReader.readLine();
-            if (readLine == null) {
-                break;
+    /**
+     * 换行符是否为单字节的 \n，并且不会出现在其他字符的编码中（兼容 ASCII 的编码）
+     *
+     * @param charset 编码格式
+     * @return false 需要按字符流读取
+     */
+    private static boolean asciiCompatible(Charset charset) {
+        return Arrays.equals(StrUtil.LF.getBytes(charset), new byte[]{'\n'});
+    }
+
+    /**
+     * 按字符流读取文件最后几行，用于不兼容 ASCII 的编码
+     *
+     * @param file     文件
+     * @param charset  编码格式
+     * @param line     行数
+     * @param consumer 回调行号和内容
+     * @return 读取的行数
+     * @throws IOException io
+     */
+    private static long readLastLineByReader(File file, Charset charset, int line, Consumer<Tuple> consumer) throws IOException {
+        Deque<Tuple> queue = new ArrayDeque<>(Math.min(line, 1024));
+        try (LineNumberReader reader = new LineNumberReader(FileUtil.getReader(file, charset))) {
+            String readLine;
+            while ((readLine = reader.readLine()) != null) {
+                if (queue.size() == line) {
+                    queue.pollFirst();
+                }
+                queue.offerLast(new Tuple((long) reader.getLineNumber(), readLine));
             }
-            limitQueue.add(new Tuple(lineNumberReader.getLineNumber(), readLine));
         }
-        return limitQueue;
+        queue.forEach(consumer);
+        return queue.size();
     }
 
-    public static Collection<Tuple> readRangeLine(File file, Charset charset, int[] range) throws IOException {
-        BufferedReader reader = FileUtil.getReader(file, charset);
-        LineNumberReader lineNumberReader = new LineNumberReader(reader);
-        List<Tuple> list = new LinkedList<>();
-        while (true) {
-            String readLine = lineNumberReader.readLine();
-            if (readLine == null) {
+    /**
+     * 按字符流读取文件指定范围的行，用于不兼容 ASCII 的编码
+     *
+     * @param file      文件
+     * @param charset   编码格式
+     * @param startLine 开始行
+     * @param endLine   结束行
+     * @param consumer  回调行号和内容
+     * @return 读取的行数
+     * @throws IOException io
+     */
+    private static long readRangeLineByReader(File file, Charset charset, long startLine, long endLine, Consumer<Tuple> consumer) throws IOException {
+        long count = 0;
+        try (LineNumberReader reader = new LineNumberReader(FileUtil.getReader(file, charset))) {
+            String readLine;
+            while ((readLine = reader.readLine()) != null) {
+                long lineNumber = reader.getLineNumber();
+                if (lineNumber > endLine) {
+                    break;
+                }
+                if (lineNumber >= startLine) {
+                    consumer.accept(new Tuple(lineNumber, readLine));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 从指定位置开始按行读取
+     *
+     * @param channel    文件
+     * @param charset    编码格式
+     * @param start      开始位置（行首）
+     * @param limit      结束位置
+     * @param lineNumber 开始位置的行号
+     * @param endLine    读取到的最大行号
+     * @param consumer   回调
+     * @return 读取的行数
+     * @throws IOException io
+     */
+    private static long readLine(FileChannel channel, Charset charset, long start, long limit, long lineNumber, long endLine,
+                                 Consumer<Tuple> consumer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] lineBytes = new byte[256];
+        int lineSize = 0;
+        long position = start;
+        long count = 0;
+        while (position < limit && lineNumber <= endLine) {
+            buffer.clear();
+            buffer.limit((int) Math.min(BUFFER_SIZE, limit - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
                 break;
             }
-            int lineNumber = lineNumberReader.getLineNumber();
-            if (lineNumber >= range[0] && lineNumber <= range[1]) {
-                list.add(new Tuple(lineNumber, readLine));
+            byte[] array = buffer.array();
+            int lineStart = 0;
+            for (int i = 0; i < read && lineNumber <= endLine; i++) {
+                if (array[i] != '\n') {
+                    continue;
+                }
+                lineBytes = appendLine(lineBytes, lineSize, array, lineStart, i - lineStart);
+                lineSize = Math.min(lineSize + i - lineStart, MAX_LINE_SIZE);
+                consumer.accept(new Tuple(lineNumber++, decodeLine(lineBytes, lineSize, charset)));
+                count++;
+                lineSize = 0;
+                lineStart = i + 1;
             }
-            if (lineNumber > range[1]) {
-                break;
+            if (lineNumber <= endLine && lineStart < read) {
+                lineBytes = appendLine(lineBytes, lineSize, array, lineStart, read - lineStart);
+                lineSize = Math.min(lineSize + read - lineStart, MAX_LINE_SIZE);
             }
+            position += read;
         }
-        return list;
+        if (lineSize > 0 && lineNumber <= endLine) {
+            // 最后一行没有换行符
+            consumer.accept(new Tuple(lineNumber, decodeLine(lineBytes, lineSize, charset)));
+            count++;
+        }
+        return count;
+    }
+
+    private static byte[] appendLine(byte[] lineBytes, int lineSize, byte[] array, int offset, int length) {
+        int copy = Math.min(length, MAX_LINE_SIZE - lineSize);
+        if (copy <= 0) {
+            return lineBytes;
+        }
+        if (lineSize + copy > lineBytes.length) {
+            lineBytes = Arrays.copyOf(lineBytes, Math.min(Math.max(lineBytes.length * 2, lineSize + copy), MAX_LINE_SIZE));
+        }
+        System.arraycopy(array, offset, lineBytes, lineSize, copy);
+        return lineBytes;
+    }
+
+    private static String decodeLine(byte[] lineBytes, int lineSize, Charset charset) {
+        if (lineSize > 0 && lineBytes[lineSize - 1] == '\r') {
+            lineSize--;
+        }
+        return new String(lineBytes, 0, lineSize, charset);
     }
 
     /**
@@ -164,4 +377,74 @@ public class FileSearchUtil {
         return first ? new int[]{tailLine, Integer.MAX_VALUE} : new int[]{tailLine};
     }
 
+    /**
+     * 逐行匹配关键词，并输出匹配行的前后几行
+     */
+    private static class LineSearcher implements Consumer<Tuple> {
+
+        private final String searchKey;
+        private final Pattern pattern;
+        private final int beforeCount;
+        private final int afterCount;
+        private final Consumer<Tuple> consumer;
+        private final Deque<Tuple> beforeQueue;
+        private long hitIndex;
+        private long lastEcho;
+        private long showLine;
+
+        private LineSearcher(String searchKey, int beforeCount, int afterCount, Consumer<Tuple> consumer) {
+            this.searchKey = searchKey;
+            this.pattern = compile(searchKey);
+            this.beforeCount = Math.max(beforeCount, 0);
+            this.afterCount = afterCount;
+            this.consumer = consumer;
+            this.beforeQueue = new ArrayDeque<>(this.beforeCount + 1);
+        }
+
+        private static Pattern compile(String searchKey) {
+            if (StrUtil.isEmpty(searchKey)) {
+                return null;
+            }
+            try {
+                return PatternPool.get(searchKey, Pattern.DOTALL);
+            } catch (PatternSyntaxException e) {
+                // 不是正则表达式，只按照关键词匹配
+                return null;
+            }
+        }
+
+        @Override
+        public void accept(Tuple tuple) {
+            String s = tuple.get(1);
+            long index = tuple.get(0);
+            if (StrUtil.isEmpty(searchKey) || StrUtil.containsIgnoreCase(s, searchKey) || (pattern != null && pattern.matcher(s).matches())) {
+                // 先输出之前的
+                for (Tuple before : beforeQueue) {
+                    this.echo(before);
+                }
+                this.echo(tuple);
+                hitIndex = index;
+            } else if (hitIndex > 0 && index <= hitIndex + afterCount) {
+                // 输出匹配行后面的内容
+                this.echo(tuple);
+            }
+            if (beforeCount > 0) {
+                beforeQueue.offerLast(tuple);
+                if (beforeQueue.size() > beforeCount) {
+                    beforeQueue.pollFirst();
+                }
+            }
+        }
+
+        private void echo(Tuple tuple) {
+            long index = tuple.get(0);
+            // 行号递增读取，已经输出过的行不再输出
+            if (index <= lastEcho) {
+                return;
+            }
+            consumer.accept(tuple);
+            lastEcho = index;
+            showLine++;
+        }
+    }
 }
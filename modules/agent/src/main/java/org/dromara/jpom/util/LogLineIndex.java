@@ -0,0 +1,313 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.util;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * 日志文件稀疏行索引，每 {@link #INTERVAL} 行记录一次行首偏移量
+ * <p>
+ * 较大的文件会将索引保存在日志文件同级目录（隐藏文件），后续只需要增量索引追加的内容。
+ * 通过文件头部内容校验文件是否被截断或者轮转，发生变化后重建索引
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/10
+ */
+@Slf4j
+class LogLineIndex {
+
+    /**
+     * 索引间隔行数
+     */
+    static final int INTERVAL = 1000;
+    /**
+     * 文件超过此大小才持久化索引
+     */
+    static final long PERSIST_MIN_SIZE = 16 * 1024 * 1024;
+    private static final int MAGIC = 0x4a4c4958;
+    private static final int HEAD_CHECK_SIZE = 1024;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final File file;
+    private final File indexFile;
+    /**
+     * 已经索引的字节数（最后一个完整行的结尾）
+     */
+    private long indexedLength;
+    /**
+     * 已经索引的完整行数
+     */
+    private long lineCount;
+    /**
+     * 文件头部校验长度和校验值
+     */
+    private int headLength;
+    private long headCrc;
+    /**
+     * offsets[k] 为第 k * INTERVAL + 1 行的行首偏移量
+     */
+    private long[] offsets = new long[16];
+    private int offsetSize;
+    private boolean changed;
+    /**
+     * 是否从保存的索引文件中加载
+     */
+    private boolean persisted;
+
+    private LogLineIndex(File file) {
+        this.file = file;
+        this.indexFile = FileUtil.file(file.getParentFile(), "." + file.getName() + ".jpom-idx");
+    }
+
+    /**
+     * 删除日志文件对应的索引文件，日志文件被清空、备份、移动或者删除时调用
+     *
+     * @param file 日志文件
+     */
+    static void delete(File file) {
+        File indexFile = new LogLineIndex(file).indexFile;
+        if (FileUtil.exist(indexFile) && !FileUtil.del(indexFile)) {
+            log.warn("删除日志索引失败：{}", indexFile);
+        }
+    }
+
+    /**
+     * 加载文件索引
+     *
+     * @param file 日志文件
+     * @return 索引
+     */
+    static LogLineIndex load(File file) {
+        LogLineIndex index = new LogLineIndex(file);
+        if (FileUtil.isFile(index.indexFile)) {
+            try {
+                index.read();
+                index.persisted = index.offsetSize > 0 && index.headLength > 0;
+            } catch (Exception e) {
+                log.warn("读取日志索引失败,重新创建：{} {}", index.indexFile, e.getMessage());
+                index.reset();
+            }
+        } else {
+            index.reset();
+        }
+        return index;
+    }
+
+    /**
+     * 增量更新索引
+     *
+     * @param channel   文件
+     * @param limit     索引到的最大位置（文件快照长度）
+     * @param untilLine 索引到指定行即可停止，小于等于 0 则索引到 limit
+     * @throws IOException io
+     */
+    void refresh(FileChannel channel, long limit, long untilLine) throws IOException {
+        if (limit < indexedLength || !this.checkHead(channel, limit)) {
+            // 文件被截断或者轮转
+            this.reset();
+        }
+        if (headLength == 0 && limit > 0) {
+            headLength = (int) Math.min(limit, HEAD_CHECK_SIZE);
+            headCrc = this.crc(channel, headLength);
+            changed = true;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long position = indexedLength;
+        long startLineCount = lineCount;
+        while (position < limit && (untilLine <= 0 || lineCount < untilLine)) {
+            buffer.clear();
+            buffer.limit((int) Math.min(BUFFER_SIZE, limit - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            byte[] array = buffer.array();
+            for (int i = 0; i < read; i++) {
+                if (array[i] == '\n') {
+                    lineCount++;
+                    indexedLength = position + i + 1;
+                    if (lineCount % INTERVAL == 0) {
+                        this.addOffset(indexedLength);
+                    }
+                }
+            }
+            position += read;
+        }
+        changed = changed || lineCount != startLineCount;
+    }
+
+    /**
+     * 保存的索引是否可以继续使用（文件没有被截断或者轮转），可以使用时只需要增量索引追加的内容
+     *
+     * @param channel 文件
+     * @param limit   文件快照长度
+     * @return true 可以增量索引
+     * @throws IOException io
+     */
+    boolean usable(FileChannel channel, long limit) throws IOException {
+        return persisted && limit >= indexedLength && this.checkHead(channel, limit);
+    }
+
+    /**
+     * 已经索引的完整行数
+     *
+     * @return 行数
+     */
+    long lineCount() {
+        return lineCount;
+    }
+
+    /**
+     * 已经索引的字节数
+     *
+     * @return 字节数
+     */
+    long indexedLength() {
+        return indexedLength;
+    }
+
+    /**
+     * 查询不超过指定行的最近的索引点
+     *
+     * @param line 行号，从 1 开始
+     * @return [偏移量, 该偏移量对应的行号]
+     */
+    long[] seek(long line) {
+        long k = Math.max(line - 1, 0) / INTERVAL;
+        k = Math.min(k, offsetSize - 1);
+        return new long[]{offsets[(int) k], k * INTERVAL + 1};
+    }
+
+    /**
+     * 保存索引，文件较小的不保存
+     */
+    void save() {
+        if (!changed || indexedLength < PERSIST_MIN_SIZE) {
+            return;
+        }
+        File temp = FileUtil.file(indexFile.getParentFile(), indexFile.getName() + "." + Thread.currentThread().getId());
+        DataOutputStream outputStream = null;
+        try {
+            outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(INTERVAL);
+            outputStream.writeLong(indexedLength);
+            outputStream.writeLong(lineCount);
+            outputStream.writeInt(headLength);
+            outputStream.writeLong(headCrc);
+            outputStream.writeInt(offsetSize);
+            for (int i = 0; i < offsetSize; i++) {
+                outputStream.writeLong(offsets[i]);
+            }
+            outputStream.close();
+            outputStream = null;
+            FileUtil.move(temp, indexFile, true);
+            changed = false;
+        } catch (Exception e) {
+            log.warn("保存日志索引失败：{} {}", indexFile, e.getMessage());
+        } finally {
+            IoUtil.close(outputStream);
+            FileUtil.del(temp);
+        }
+    }
+
+    private void read() throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (inputStream.readInt() != MAGIC || inputStream.readInt() != INTERVAL) {
+                this.reset();
+                return;
+            }
+            indexedLength = inputStream.readLong();
+            lineCount = inputStream.readLong();
+            headLength = inputStream.readInt();
+            headCrc = inputStream.readLong();
+            int size = inputStream.readInt();
+            offsets = new long[Math.max(size, 16)];
+            for (int i = 0; i < size; i++) {
+                offsets[i] = inputStream.readLong();
+            }
+            offsetSize = size;
+        }
+    }
+
+    private void reset() {
+        persisted = false;
+        indexedLength = 0;
+        lineCount = 0;
+        headLength = 0;
+        headCrc = 0;
+        offsets = new long[16];
+        offsetSize = 0;
+        // 第 1 行从 0 开始
+        this.addOffset(0);
+        changed = true;
+    }
+
+    private void addOffset(long offset) {
+        if (offsetSize == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsetSize * 2);
+        }
+        offsets[offsetSize++] = offset;
+    }
+
+    private boolean checkHead(FileChannel channel, long limit) throws IOException {
+        if (headLength == 0) {
+            return true;
+        }
+        if (limit < headLength) {
+            return false;
+        }
+        return this.crc(channel, headLength) == headCrc;
+    }
+
+    private long crc(FileChannel channel, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer.array(), 0, buffer.position());
+        return crc32.getValue();
+    }
+
+    /**
+     * 打开只读文件
+     *
+     * @return channel
+     * @throws IOException io
+     */
+    FileChannel open() throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+}
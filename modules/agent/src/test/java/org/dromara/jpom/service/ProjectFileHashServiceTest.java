@@ -0,0 +1,138 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.service;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.SecureUtil;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * 项目文件签名缓存的命中、失效和清理
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/17
+ */
+public class ProjectFileHashServiceTest {
+
+    private File dir;
+    private File root;
+    private File cacheFile;
+    private ProjectFileHashService hashService;
+
+    @Before
+    public void before() {
+        dir = FileUtil.file(FileUtil.getTmpDir(), "jpom-file-hash-test-" + System.nanoTime());
+        root = FileUtil.file(dir, "lib");
+        cacheFile = FileUtil.file(dir, "cache.json");
+        hashService = new ProjectFileHashService() {
+            @Override
+            File cacheFile(String name) {
+                return cacheFile;
+            }
+        };
+    }
+
+    @After
+    public void after() {
+        FileUtil.del(dir);
+    }
+
+    /**
+     * 写入文件，修改时间设置为较早的时间（太新的文件不缓存）
+     */
+    private File write(String name, String content, long lastModified) {
+        File file = FileUtil.writeUtf8String(content, FileUtil.file(root, name));
+        Assert.assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+
+    @Test
+    public void testHit() {
+        long time = System.currentTimeMillis() - 60_000;
+        File file = write("a.txt", "aaa", time);
+        Map<File, String> map = hashService.sha1("test", root);
+        Assert.assertEquals(SecureUtil.sha1("aaa"), map.get(file));
+        Assert.assertTrue(FileUtil.isFile(cacheFile));
+        // 大小和修改时间不变时直接使用缓存，不重新读取文件
+        write("a.txt", "bbb", time);
+        map = hashService.sha1("test", root);
+        Assert.assertEquals(SecureUtil.sha1("aaa"), map.get(file));
+    }
+
+    @Test
+    public void testInvalidate() {
+        long time = System.currentTimeMillis() - 60_000;
+        File file = write("a.txt", "aaa", time);
+        hashService.sha1("test", root);
+        // 修改时间变化
+        write("a.txt", "bbb", time + 1000);
+        Assert.assertEquals(SecureUtil.sha1("bbb"), hashService.sha1("test", root).get(file));
+        // 大小变化
+        write("a.txt", "cccc", time + 1000);
+        Assert.assertEquals(SecureUtil.sha1("cccc"), hashService.sha1("test", root).get(file));
+    }
+
+    @Test
+    public void testRacyNotCached() {
+        File file = write("a.txt", "aaa", System.currentTimeMillis());
+        Assert.assertEquals(SecureUtil.sha1("aaa"), hashService.sha1("test", root).get(file));
+        JSONObject cache = JSON.parseObject(FileUtil.readUtf8String(cacheFile));
+        Assert.assertFalse(cache.containsKey(file.getAbsolutePath()));
+    }
+
+    @Test
+    public void testPrune() {
+        long time = System.currentTimeMillis() - 60_000;
+        File file1 = write("a.txt", "aaa", time);
+        File file2 = write("sub/b.txt", "bbb", time);
+        hashService.sha1("test", root);
+        JSONObject cache = JSON.parseObject(FileUtil.readUtf8String(cacheFile));
+        Assert.assertTrue(cache.containsKey(file1.getAbsolutePath()));
+        Assert.assertTrue(cache.containsKey(file2.getAbsolutePath()));
+        FileUtil.del(file2);
+        Map<File, String> map = hashService.sha1("test", root);
+        Assert.assertEquals(1, map.size());
+        cache = JSON.parseObject(FileUtil.readUtf8String(cacheFile));
+        Assert.assertTrue(cache.containsKey(file1.getAbsolutePath()));
+        Assert.assertFalse(cache.containsKey(file2.getAbsolutePath()));
+    }
+
+    @Test
+    public void testBrokenCache() {
+        long time = System.currentTimeMillis() - 60_000;
+        File file = write("a.txt", "aaa", time);
+        FileUtil.writeUtf8String("{broken", cacheFile);
+        Assert.assertEquals(SecureUtil.sha1("aaa"), hashService.sha1("test", root).get(file));
+        // 损坏的缓存被重新写入
+        JSONObject cache = JSON.parseObject(FileUtil.readUtf8String(cacheFile));
+        Assert.assertTrue(cache.containsKey(file.getAbsolutePath()));
+    }
+}
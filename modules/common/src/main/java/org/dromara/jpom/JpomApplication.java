@@ -82,6 +82,14 @@ public class JpomApplication implements DisposableBean, InitializingBean {
     private static volatile JpomApplication jpomApplication;
 
     private static final Map<String, ExecutorService> LINK_EXECUTOR_SERVICE = new SafeConcurrentHashMap<>();
+    /**
+     * 关闭时需要等待执行结束的线程池（不中断）
+     */
+    private static final Map<String, ExecutorService> GRACEFUL_EXECUTOR_SERVICE = new SafeConcurrentHashMap<>();
+    /**
+     * 关闭时等待线程池结束的最长时间
+     */
+    private static final long GRACEFUL_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
 
     /**
      * 单利模式
@@ -245,16 +253,44 @@ public class JpomApplication implements DisposableBean, InitializingBean {
         LINK_EXECUTOR_SERVICE.put(name, executorService);
     }
 
+    /**
+     * 注册关闭时需要等待结束的线程池，关闭时不会中断正在执行的任务（如需要写入剩余数据）
+     *
+     * @param name            线程池名
+     * @param executorService 线程池
+     */
+    public static void registerGraceful(String name, ExecutorService executorService) {
+        GRACEFUL_EXECUTOR_SERVICE.put(name, executorService);
+    }
+
     /**
      * 关闭全局线程池
      */
     public static void shutdownGlobalThreadPool() {
+        GRACEFUL_EXECUTOR_SERVICE.forEach((s, executorService) -> {
+            log.debug("shutdown {} ThreadPool", s);
+            executorService.shutdown();
+        });
         LINK_EXECUTOR_SERVICE.forEach((s, executorService) -> {
             if (!executorService.isShutdown()) {
                 log.debug("shutdown {} ThreadPool", s);
                 executorService.shutdownNow();
             }
         });
+        // 等待需要写入剩余数据的线程池结束，避免数据库先关闭
+        long deadline = System.currentTimeMillis() + GRACEFUL_TIMEOUT;
+        GRACEFUL_EXECUTOR_SERVICE.forEach((s, executorService) -> {
+            try {
+                long timeout = Math.max(deadline - System.currentTimeMillis(), 0);
+                if (!executorService.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                    log.warn("等待 {} 线程池结束超时", s);
+                    executorService.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executorService.shutdownNow();
+            }
+        });
     }
 
     @Override
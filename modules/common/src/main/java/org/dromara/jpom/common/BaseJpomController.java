@@ -22,15 +22,17 @@
  */
 package org.dromara.jpom.common;
 
+import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.convert.Convert;
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
 import cn.hutool.core.util.*;
 import cn.hutool.crypto.SecureUtil;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.DigestUtil;
 import cn.hutool.extra.servlet.ServletUtil;
-import lombok.Lombok;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.tomcat.util.http.fileupload.servlet.ServletFileUpload;
-import org.dromara.jpom.util.FileUtils;
 import org.springframework.util.Assert;
 import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
@@ -41,12 +43,17 @@ import org.springframework.web.multipart.support.StandardMultipartHttpServletReq
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * controller
@@ -102,12 +109,85 @@ public abstract class BaseJpomController {
             Assert.state(StrUtil.containsAnyIgnoreCase(extName, extNames), "不支持的文件类型：" + extName);
         }
         assert originalFilename != null;
+        long sliceSize = Convert.toLong(getParameter("sliceSize"), 0L);
+        long fileSize = Convert.toLong(getParameter("fileSize"), 0L);
+        String sliceMd5 = getParameter("sliceMd5");
+        if (sliceSize > 0 && fileSize > 0 && StrUtil.isNotEmpty(sliceMd5)) {
+            // 上传端提供了分片大小和分片签名，直接写入到目标文件对应的位置
+            this.writeSlice(file, slicePath, realName, nowSlice, sliceSize, fileSize, sliceMd5);
+            return;
+        }
         File slice = FileUtil.file(sliceItemPath, originalFilename);
         FileUtil.mkParentDirs(slice);
         // 保存
         file.transferTo(slice);
     }
 
+    /**
+     * 将分片按位置写入预分配的目标文件，并校验分片签名
+     *
+     * @param file      上传的分片
+     * @param slicePath 分片保存目录
+     * @param realName  文件真实名称
+     * @param nowSlice  当前分片
+     * @param sliceSize 分片大小
+     * @param fileSize  文件总大小
+     * @param sliceMd5  分片签名
+     * @throws IOException io
+     */
+    private void writeSlice(MultipartFile file, File slicePath, String realName, int nowSlice, long sliceSize, long fileSize, String sliceMd5) throws IOException {
+        long position = nowSlice * sliceSize;
+        Assert.state(position + file.getSize() <= fileSize, "当前上传的分片信息错误");
+        File partFile = FileUtil.file(slicePath, "part", realName);
+        FileUtil.mkParentDirs(partFile);
+        MessageDigest digest = DigestUtil.digester(DigestAlgorithm.MD5).getDigest();
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(partFile, "rw");
+             InputStream inputStream = file.getInputStream()) {
+            // 预分配文件大小，多个分片并发写入时长度一致不会截断已写入的数据
+            if (randomAccessFile.length() < fileSize) {
+                randomAccessFile.setLength(fileSize);
+            }
+            FileChannel channel = randomAccessFile.getChannel();
+            byte[] bytes = new byte[IoUtil.DEFAULT_LARGE_BUFFER_SIZE];
+            int len;
+            while ((len = inputStream.read(bytes)) != -1) {
+                digest.update(bytes, 0, len);
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, len);
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            }
+        }
+        String md5 = HexUtil.encodeHexStr(digest.digest());
+        Assert.state(StrUtil.equalsIgnoreCase(md5, sliceMd5), () -> {
+            log.warn("分片签名不一致 {}:{} -> {}", realName, md5, sliceMd5);
+            return "分片上传异常,分片签名不一致：" + nowSlice;
+        });
+        // 记录已经完成的分片
+        FileUtil.writeUtf8String(md5, FileUtil.file(slicePath, "done", String.valueOf(nowSlice)));
+    }
+
+    /**
+     * 查询已经上传完成的分片（用于断点续传）
+     *
+     * @param tempPath 临时保存目录
+     * @param sliceId  分片id
+     * @return 已经完成的分片序号
+     */
+    public List<Integer> shardingStatus(String tempPath, String sliceId) {
+        Assert.hasText(sliceId, "没有分片 id 信息");
+        File donePath = FileUtil.file(tempPath, "slice", sliceId, "done");
+        String[] list = donePath.list();
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        return Arrays.stream(list)
+            .map(s -> Convert.toInt(s, null))
+            .filter(Objects::nonNull)
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
     /**
      * 合并分片
      *
@@ -130,6 +210,10 @@ public abstract class BaseJpomController {
         // 保存路径
         File slicePath = FileUtil.file(tempPath, "slice", sliceId);
         File sliceItemPath = FileUtil.file(slicePath, "items");
+        File partPath = FileUtil.file(slicePath, "part");
+        if (FileUtil.isDirectory(partPath)) {
+            return this.shardingTryMergePart(slicePath, partPath, totalSlice, fileSumMd5);
+        }
 
         // 准备合并
         File[] files = sliceItemPath.listFiles();
@@ -139,26 +223,20 @@ public abstract class BaseJpomController {
         String name = files[0].getName();
         name = StrUtil.subBefore(name, StrUtil.DOT, true);
         File successFile = FileUtil.file(slicePath, name);
-        try (FileOutputStream fileOutputStream = new FileOutputStream(successFile)) {
-            try (FileChannel channel = fileOutputStream.getChannel()) {
-                Arrays.stream(files).sorted((o1, o2) -> {
-                    // 排序
-                    Integer o1Int = Convert.toInt(FileUtil.extName(o1), 0);
-                    Integer o2Int = Convert.toInt(FileUtil.extName(o2), 0);
-                    return o1Int.compareTo(o2Int);
-                }).forEach(file12 -> {
-                    try {
-                        FileUtils.appendChannel(file12, channel);
-                    } catch (Exception e) {
-                        throw Lombok.sneakyThrow(e);
-                    }
-                });
-            }
+        // 合并的同时计算签名，不用再读取一次合并后的文件
+        MessageDigest digest = DigestUtil.digester(DigestAlgorithm.MD5).getDigest();
+        try (OutputStream outputStream = new DigestOutputStream(new FileOutputStream(successFile), digest)) {
+            Arrays.stream(files).sorted((o1, o2) -> {
+                // 排序
+                Integer o1Int = Convert.toInt(FileUtil.extName(o1), 0);
+                Integer o2Int = Convert.toInt(FileUtil.extName(o2), 0);
+                return o1Int.compareTo(o2Int);
+            }).forEach(file12 -> FileUtil.writeToStream(file12, outputStream));
         }
         // 删除分片信息
         FileUtil.del(sliceItemPath);
         // 对比文件信息
-        String newMd5 = SecureUtil.md5(successFile);
+        String newMd5 = HexUtil.encodeHexStr(digest.digest());
         Assert.state(StrUtil.equals(newMd5, fileSumMd5), () -> {
             log.warn("文件合并异常 {}:{} -> {}", FileUtil.getAbsolutePath(successFile), newMd5, fileSumMd5);
             return "文件合并后异常,文件不完成可能被损坏";
@@ -166,6 +244,65 @@ public abstract class BaseJpomController {
         return successFile;
     }
 
+    /**
+     * 合并按位置写入的分片，每个分片写入时已经校验过签名
+     * <p>
+     * 上传端提供了所有分片签名的摘要时，使用记录的分片签名和文件大小校验整个文件，不再读取合并后的文件
+     *
+     * @param slicePath  分片保存目录
+     * @param partPath   目标文件目录
+     * @param totalSlice 累积分片
+     * @param fileSumMd5 文件签名
+     * @return 合并后的文件
+     */
+    private File shardingTryMergePart(File slicePath, File partPath, Integer totalSlice, String fileSumMd5) {
+        File donePath = FileUtil.file(slicePath, "done");
+        int length = ArrayUtil.length(donePath.list());
+        Assert.state(length == totalSlice, "文件上传失败,存在分片丢失的情况, " + length + " != " + totalSlice);
+        File[] files = partPath.listFiles();
+        Assert.state(files != null && files.length == 1, "文件上传失败,没有找到分片写入的文件");
+        File successFile = FileUtil.file(slicePath, files[0].getName());
+        String sliceSumMd5 = getParameter("sliceSumMd5");
+        long fileSize = Convert.toLong(getParameter("fileSize"), 0L);
+        String doneSumMd5 = StrUtil.isEmpty(sliceSumMd5) ? null : this.doneSumMd5(donePath, totalSlice);
+        FileUtil.move(files[0], successFile, true);
+        // 删除分片信息
+        FileUtil.del(partPath);
+        FileUtil.del(donePath);
+        if (doneSumMd5 != null) {
+            // 分片签名都和上传端一致并且文件大小一致，文件即和上传端一致
+            Assert.state(StrUtil.equalsIgnoreCase(doneSumMd5, sliceSumMd5) && successFile.length() == fileSize, () -> {
+                log.warn("文件合并异常 {}:{} {} -> {} {}", FileUtil.getAbsolutePath(successFile), doneSumMd5, successFile.length(), sliceSumMd5, fileSize);
+                return "文件合并后异常,文件不完成可能被损坏";
+            });
+            return successFile;
+        }
+        // 上传端没有提供分片签名摘要（旧版本），对比整个文件
+        String newMd5 = SecureUtil.md5(successFile);
+        Assert.state(StrUtil.equalsIgnoreCase(newMd5, fileSumMd5), () -> {
+            log.warn("文件合并异常 {}:{} -> {}", FileUtil.getAbsolutePath(successFile), newMd5, fileSumMd5);
+            return "文件合并后异常,文件不完成可能被损坏";
+        });
+        return successFile;
+    }
+
+    /**
+     * 按分片顺序计算已经完成的分片签名的摘要
+     *
+     * @param donePath   已经完成的分片记录目录
+     * @param totalSlice 累积分片
+     * @return 摘要
+     */
+    private String doneSumMd5(File donePath, int totalSlice) {
+        List<String> list = new ArrayList<>(totalSlice);
+        for (int i = 0; i < totalSlice; i++) {
+            File file = FileUtil.file(donePath, String.valueOf(i));
+            Assert.state(FileUtil.isFile(file), "文件上传失败,存在分片丢失的情况：" + i);
+            list.add(StrUtil.trim(FileUtil.readUtf8String(file)));
+        }
+        return SecureUtil.md5(CollUtil.join(list, StrUtil.COMMA));
+    }
+
     protected String getParameter(String name) {
         return getParameter(name, null);
     }
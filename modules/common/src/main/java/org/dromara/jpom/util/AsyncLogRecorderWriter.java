@@ -0,0 +1,397 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.util;
+
+import cn.hutool.core.date.SystemClock;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日志记录异步写入，所有缓冲模式的日志记录器共享一个环形队列和一个写入线程
+ * <p>
+ * 日志先追加到文件各自的缓冲区，队列中只记录有新内容的文件，写入线程批量取出后统一写入，在缓冲数据达到阈值、距上次刷新超过间隔或者关闭时才刷新到文件
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/7
+ */
+@Slf4j
+class AsyncLogRecorderWriter implements Runnable {
+
+    /**
+     * 队列容量，队列满时写入方等待
+     */
+    private static final int QUEUE_CAPACITY = 16 * 1024;
+    /**
+     * 单次批量处理的最大数量
+     */
+    private static final int BATCH_SIZE = 1024;
+    /**
+     * 刷新间隔（毫秒），监听日志的页面最多延迟该时间看到新内容
+     */
+    private static final long FLUSH_INTERVAL = 200;
+    /**
+     * 缓冲字符数达到该值立即刷新
+     */
+    private static final int FLUSH_SIZE = 64 * 1024;
+    /**
+     * 等待刷新或者关闭的最长时间
+     */
+    private static final long AWAIT_TIMEOUT = 10;
+    /**
+     * 单个文件等待写入的最大字符数
+     */
+    private static final int MAX_BUFFER_SIZE = 1024 * 1024;
+
+    private static volatile AsyncLogRecorderWriter instance;
+
+    private final BlockingQueue<Segment> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    /**
+     * 存在未刷新数据的文件，只在写入线程中访问
+     */
+    private final Set<Target> dirtyTargets = new LinkedHashSet<>();
+
+    private AsyncLogRecorderWriter() {
+    }
+
+    static AsyncLogRecorderWriter getInstance() {
+        if (instance == null) {
+            synchronized (AsyncLogRecorderWriter.class) {
+                if (instance == null) {
+                    AsyncLogRecorderWriter writer = new AsyncLogRecorderWriter();
+                    Thread thread = new Thread(writer, "jpom-log-recorder");
+                    thread.setDaemon(true);
+                    thread.start();
+                    // 进程退出前将缓冲的日志写入文件
+                    Runtime.getRuntime().addShutdownHook(new Thread(writer::flushAll, "jpom-log-recorder-shutdown"));
+                    instance = writer;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 打开日志文件（追加模式）
+     *
+     * @param file    文件
+     * @param charset 编码
+     * @return 写入目标
+     */
+    Target open(File file, Charset charset) {
+        FileUtil.touch(file);
+        try {
+            OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file, true), FLUSH_SIZE);
+            return new Target(new OutputStreamWriter(outputStream, charset));
+        } catch (FileNotFoundException e) {
+            throw new IllegalStateException("打开日志文件失败：" + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * 创建写入到队列的 Writer
+     *
+     * @param target 写入目标
+     * @return writer
+     */
+    Writer newWriter(Target target) {
+        return new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                AsyncLogRecorderWriter.this.write(target, new String(cbuf, off, len));
+            }
+
+            @Override
+            public void write(String str, int off, int len) {
+                AsyncLogRecorderWriter.this.write(target, str.substring(off, off + len));
+            }
+
+            @Override
+            public void flush() {
+                // 由写入线程按大小和时间刷新
+            }
+
+            @Override
+            public void close() {
+                AsyncLogRecorderWriter.this.close(target);
+            }
+        };
+    }
+
+    /**
+     * 写入日志
+     *
+     * @param target 写入目标
+     * @param text   内容
+     */
+    void write(Target target, String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        boolean schedule;
+        int length;
+        synchronized (target) {
+            target.buffer.append(text);
+            length = target.buffer.length();
+            schedule = !target.scheduled;
+            target.scheduled = true;
+        }
+        if (schedule) {
+            // 同一个文件在队列中只保留一个待处理的任务
+            this.put(new Segment(target, null, false));
+        } else if (length >= MAX_BUFFER_SIZE) {
+            // 写入线程处理不过来时等待，避免内存无限增长
+            this.flush(target);
+        }
+    }
+
+    /**
+     * 等待之前写入的日志全部刷新到文件
+     *
+     * @param target 写入目标
+     */
+    void flush(Target target) {
+        this.putAndAwait(target, false);
+    }
+
+    /**
+     * 刷新并关闭文件
+     *
+     * @param target 写入目标
+     */
+    void close(Target target) {
+        if (target.closing) {
+            return;
+        }
+        target.closing = true;
+        this.putAndAwait(target, true);
+    }
+
+    private void putAndAwait(Target target, boolean close) {
+        CountDownLatch latch = new CountDownLatch(1);
+        this.put(new Segment(target, latch, close));
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    if (!latch.await(AWAIT_TIMEOUT, TimeUnit.SECONDS)) {
+                        log.warn("等待日志写入超时");
+                    }
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 放入队列，线程被中断（如取消构建）时仍然保证日志不丢失
+     *
+     * @param segment 数据
+     */
+    private void put(Segment segment) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    queue.put(segment);
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        List<Segment> batch = new ArrayList<>(BATCH_SIZE);
+        while (true) {
+            try {
+                Segment first = queue.poll(FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                    for (Segment segment : batch) {
+                        this.handle(segment);
+                    }
+                    batch.clear();
+                }
+                this.flushDirty(false);
+            } catch (InterruptedException e) {
+                log.warn("日志写入线程被中断");
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable e) {
+                log.error("日志写入线程异常", e);
+                batch.clear();
+            }
+        }
+    }
+
+    private void handle(Segment segment) {
+        Target target = segment.target;
+        if (target == null) {
+            // 刷新全部
+            this.flushDirty(true);
+            segment.latch.countDown();
+            return;
+        }
+        try {
+            String text;
+            synchronized (target) {
+                text = target.buffer.toString();
+                target.buffer.setLength(0);
+                target.scheduled = false;
+            }
+            if (target.closed) {
+                return;
+            }
+            if (!text.isEmpty()) {
+                target.out.write(text);
+                target.pending += text.length();
+                dirtyTargets.add(target);
+            }
+            if (segment.latch != null) {
+                this.flush0(target);
+                dirtyTargets.remove(target);
+                if (segment.close) {
+                    target.closed = true;
+                    IoUtil.close(target.out);
+                }
+            }
+        } catch (IOException e) {
+            log.error("写入日志文件异常", e);
+        } finally {
+            if (segment.latch != null) {
+                segment.latch.countDown();
+            }
+        }
+    }
+
+    /**
+     * 刷新缓冲数据
+     *
+     * @param force 是否忽略大小和时间强制刷新
+     */
+    private void flushDirty(boolean force) {
+        if (dirtyTargets.isEmpty()) {
+            return;
+        }
+        long now = SystemClock.now();
+        dirtyTargets.removeIf(target -> {
+            if (target.closed) {
+                return true;
+            }
+            if (!force && target.pending < FLUSH_SIZE && now - target.lastFlush < FLUSH_INTERVAL) {
+                return false;
+            }
+            try {
+                this.flush0(target);
+            } catch (IOException e) {
+                log.error("刷新日志文件异常", e);
+            }
+            return true;
+        });
+    }
+
+    private void flush0(Target target) throws IOException {
+        target.out.flush();
+        target.pending = 0;
+        target.lastFlush = SystemClock.now();
+    }
+
+    /**
+     * 进程退出时刷新全部数据
+     */
+    private void flushAll() {
+        CountDownLatch latch = new CountDownLatch(1);
+        if (!queue.offer(new Segment(null, latch, false))) {
+            log.warn("日志写入队列已满，可能存在未写入的日志");
+            return;
+        }
+        try {
+            latch.await(AWAIT_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 写入目标（一个日志文件）
+     */
+    static class Target {
+        private final Writer out;
+        /**
+         * 等待写入线程处理的内容
+         */
+        private final StringBuilder buffer = new StringBuilder();
+        /**
+         * 是否已经在队列中
+         */
+        private boolean scheduled;
+        private int pending;
+        private long lastFlush = SystemClock.now();
+        private volatile boolean closing;
+        private boolean closed;
+
+        private Target(Writer out) {
+            this.out = out;
+        }
+    }
+
+    /**
+     * 队列中的任务，latch 不为空时表示需要刷新（或关闭）并通知等待方
+     */
+    private static class Segment {
+        private final Target target;
+        private final CountDownLatch latch;
+        private final boolean close;
+
+        private Segment(Target target, CountDownLatch latch, boolean close) {
+            this.target = target;
+            this.latch = latch;
+            this.close = close;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.util;
+
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * json 增量编码
+ * <p>
+ * 第一帧和每隔一定帧数发送完整数据，其余只发送变化的字段。一级字段为对象时按照二级字段比较。
+ * 帧格式：{"seq":1,"full":false,"data":{},"removed":["a.b"]}
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/16
+ */
+public class JsonDeltaCodec {
+
+    private static final String SEQ = "seq";
+    private static final String FULL = "full";
+    private static final String DATA = "data";
+    private static final String REMOVED = "removed";
+
+    /**
+     * 编码端
+     */
+    public static class Encoder {
+
+        private final int fullInterval;
+        private JSONObject last;
+        private long seq;
+        private int deltaCount;
+
+        /**
+         * @param fullInterval 间隔多少个增量帧发送一次完整数据
+         */
+        public Encoder(int fullInterval) {
+            this.fullInterval = Math.max(fullInterval, 1);
+        }
+
+        /**
+         * 编码
+         *
+         * @param current   当前数据
+         * @param forceFull 强制发送完整数据
+         * @return 帧
+         */
+        public synchronized JSONObject encode(JSONObject current, boolean forceFull) {
+            // 统一为 json 结构，保证前后两次可以比较
+            JSONObject normalized = JSONObject.parseObject(current.toJSONString());
+            JSONObject frame = new JSONObject();
+            frame.put(SEQ, ++seq);
+            if (last == null || forceFull || deltaCount >= fullInterval) {
+                frame.put(FULL, true);
+                frame.put(DATA, normalized);
+                deltaCount = 0;
+            } else {
+                JSONObject data = new JSONObject();
+                JSONArray removed = new JSONArray();
+                diff(last, normalized, data, removed);
+                frame.put(FULL, false);
+                frame.put(DATA, data);
+                if (!removed.isEmpty()) {
+                    frame.put(REMOVED, removed);
+                }
+                deltaCount++;
+            }
+            last = normalized;
+            return frame;
+        }
+
+        private static void diff(JSONObject last, JSONObject current, JSONObject data, JSONArray removed) {
+            for (Map.Entry<String, Object> entry : current.entrySet()) {
+                String key = entry.getKey();
+                Object value = entry.getValue();
+                Object lastValue = last.get(key);
+                if (value instanceof JSONObject && lastValue instanceof JSONObject) {
+                    JSONObject valueObject = (JSONObject) value;
+                    JSONObject lastObject = (JSONObject) lastValue;
+                    JSONObject changed = new JSONObject();
+                    for (Map.Entry<String, Object> item : valueObject.entrySet()) {
+                        if (!Objects.equals(item.getValue(), lastObject.get(item.getKey()))) {
+                            changed.put(item.getKey(), item.getValue());
+                        }
+                    }
+                    for (String itemKey : lastObject.keySet()) {
+                        if (!valueObject.containsKey(itemKey)) {
+                            removed.add(key + "." + itemKey);
+                        }
+                    }
+                    if (!changed.isEmpty()) {
+                        data.put(key, changed);
+                    }
+                } else if (!Objects.equals(value, lastValue)) {
+                    // 类型变化时整体替换
+                    data.put(key, value);
+                }
+            }
+            for (String key : last.keySet()) {
+                if (!current.containsKey(key)) {
+                    removed.add(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * 解码端
+     */
+    public static class Decoder {
+
+        private JSONObject state;
+        private long seq;
+
+        /**
+         * 解码
+         *
+         * @param frame 帧
+         * @return 合并后的完整数据，缺少基础数据或者丢帧时返回 null，需要对端重新发送完整数据
+         */
+        public synchronized JSONObject decode(JSONObject frame) {
+            long frameSeq = frame.getLongValue(SEQ);
+            JSONObject data = frame.getJSONObject(DATA);
+            if (frame.getBooleanValue(FULL)) {
+                state = data == null ? new JSONObject() : data;
+                seq = frameSeq;
+                return JSONObject.parseObject(state.toJSONString());
+            }
+            if (state == null || frameSeq != seq + 1) {
+                state = null;
+                return null;
+            }
+            seq = frameSeq;
+            JSONArray removed = frame.getJSONArray(REMOVED);
+            if (removed != null) {
+                for (int i = 0; i < removed.size(); i++) {
+                    String path = removed.getString(i);
+                    int index = path.indexOf('.');
+                    if (index < 0) {
+                        state.remove(path);
+                    } else {
+                        JSONObject parent = state.getJSONObject(path.substring(0, index));
+                        if (parent != null) {
+                            parent.remove(path.substring(index + 1));
+                        }
+                    }
+                }
+            }
+            if (data != null) {
+                for (Map.Entry<String, Object> entry : data.entrySet()) {
+                    Object value = entry.getValue();
+                    Object stateValue = state.get(entry.getKey());
+                    if (value instanceof JSONObject && stateValue instanceof JSONObject) {
+                        ((JSONObject) stateValue).putAll((JSONObject) value);
+                    } else {
+                        state.put(entry.getKey(), value);
+                    }
+                }
+            }
+            return JSONObject.parseObject(state.toJSONString());
+        }
+
+        /**
+         * 是否需要对端重新发送完整数据
+         *
+         * @return true 需要
+         */
+        public synchronized boolean needFull() {
+            return state == null;
+        }
+    }
+}
@@ -57,7 +57,7 @@ public class JvmUtil {
     /**
      * 支持的标签数组
      */
-    private static final String[] JPOM_PID_TAG = new String[]{"DJpom.application", "Jpom.application"};
+    static final String[] JPOM_PID_TAG = new String[]{"DJpom.application", "Jpom.application"};
 
     /**
      * 检查 jps 命令是否正常
@@ -84,17 +84,25 @@ public class JvmUtil {
      * @return 如果发生异常则返回0
      */
     public static int getJavaVirtualCount() {
+        LinuxProcessIndex processIndex = LinuxProcessIndex.getInstance();
+        if (processIndex != null) {
+            return processIndex.getJavaCount();
+        }
         String execSystemCommand = CommandUtil.execSystemCommand("jps -l");
         List<String> list = StrSplitter.splitTrim(execSystemCommand, StrUtil.LF, true);
         return Math.max(CollUtil.size(list) - 1, 0);
     }
 
     /**
-     * 执行 jps 判断是否存在 对应的进程
+     * 执行 jps 判断是否存在 对应的进程（linux 下通过 /proc 进程索引判断）
      *
      * @return true 存在
      */
     public static boolean exist(long pid) {
+        LinuxProcessIndex processIndex = LinuxProcessIndex.getInstance();
+        if (processIndex != null) {
+            return processIndex.exist(pid);
+        }
         String execSystemCommand = CommandUtil.execSystemCommand("jps -l");
         List<String> list = StrSplitter.splitTrim(execSystemCommand, StrUtil.LF, true);
         String pidCommandInfo = list.stream()
@@ -108,12 +116,16 @@ public class JvmUtil {
     }
 
     /**
-     * 工具Jpom运行项目的id 获取进程ID
+     * 工具Jpom运行项目的id 获取进程ID（linux 下通过 /proc 进程索引查询）
      *
      * @param tag 项目id
      * @return 进程ID
      */
     public static Integer getPidByTag(String tag) {
+        LinuxProcessIndex processIndex = LinuxProcessIndex.getInstance();
+        if (processIndex != null) {
+            return processIndex.getPidByTag(tag);
+        }
         String execSystemCommand = CommandUtil.execSystemCommand("jps -mv");
         List<String> list = StrSplitter.splitTrim(execSystemCommand, StrUtil.LF, true);
         return list.stream()
@@ -0,0 +1,274 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.util;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.date.SystemClock;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.ArrayUtil;
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.system.SystemUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于 /proc 文件系统的进程索引（仅 linux）
+ * <p>
+ * 在刷新周期内只扫描一次 /proc/[pid]/cmdline，并缓存 标识 -> 进程id 的映射，避免频繁执行 jps 命令。
+ * 命中缓存时会重新读取对应进程的 cmdline 校验，保证进程退出能立即感知
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/5
+ */
+@Slf4j
+public class LinuxProcessIndex {
+
+    /**
+     * 默认的刷新周期（毫秒）
+     */
+    public static final long DEFAULT_REFRESH_INTERVAL = 1000L;
+
+    private static final String CMDLINE = "cmdline";
+
+    /**
+     * 标识参数前缀 -DJpom.application=
+     */
+    private static final String[] TAG_PREFIX = Arrays.stream(JvmUtil.JPOM_PID_TAG)
+        .map(s -> StrUtil.format("-{}=", s))
+        .toArray(String[]::new);
+
+    /**
+     * 当前系统的 /proc 进程索引
+     */
+    private static volatile LinuxProcessIndex instance;
+
+    private final File procRoot;
+    private final long refreshInterval;
+    /**
+     * 最近一次扫描的结果
+     */
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap(), 0, 0);
+
+    public LinuxProcessIndex(File procRoot, long refreshInterval) {
+        this.procRoot = procRoot;
+        this.refreshInterval = Math.max(refreshInterval, 0);
+    }
+
+    /**
+     * 当前系统是否支持 /proc 进程索引
+     *
+     * @return true 支持
+     */
+    public static boolean isSupported() {
+        return SystemUtil.getOsInfo().isLinux() && FileUtil.isFile("/proc/self/cmdline");
+    }
+
+    /**
+     * 获取当前系统的进程索引
+     *
+     * @return 不支持时返回 null
+     */
+    public static LinuxProcessIndex getInstance() {
+        if (instance == null) {
+            synchronized (LinuxProcessIndex.class) {
+                if (instance == null) {
+                    if (!isSupported()) {
+                        return null;
+                    }
+                    instance = new LinuxProcessIndex(new File("/proc"), DEFAULT_REFRESH_INTERVAL);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 根据 jpom 标识获取进程id
+     *
+     * @param tag 项目标识
+     * @return 进程id，不存在返回 null
+     */
+    public Integer getPidByTag(String tag) {
+        if (StrUtil.isEmpty(tag)) {
+            return null;
+        }
+        String key = tag.toLowerCase();
+        Integer pid = this.getSnapshot().tagPid.get(key);
+        if (pid != null) {
+            // 进程可能已经退出或者 pid 被复用，重新校验一次
+            List<String> args = this.readCmdline(pid);
+            if (args != null && StrUtil.equals(key, findTag(args))) {
+                return pid;
+            }
+            return this.forceRefresh().tagPid.get(key);
+        }
+        return null;
+    }
+
+    /**
+     * 判断 java 进程是否存在
+     *
+     * @param pid 进程id
+     * @return true 存在
+     */
+    public boolean exist(long pid) {
+        List<String> args = this.readCmdline(pid);
+        return args != null && isJava(args);
+    }
+
+    /**
+     * 获取当前运行的 java 进程个数
+     *
+     * @return 个数
+     */
+    public int getJavaCount() {
+        return this.getSnapshot().javaCount;
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = this.snapshot;
+        if (SystemClock.now() - current.time < refreshInterval) {
+            return current;
+        }
+        return this.forceRefresh(current);
+    }
+
+    private Snapshot forceRefresh() {
+        return this.forceRefresh(this.snapshot);
+    }
+
+    /**
+     * 重新扫描，并发调用时只会扫描一次
+     *
+     * @param expect 调用方看到的快照
+     * @return 最新的快照
+     */
+    private synchronized Snapshot forceRefresh(Snapshot expect) {
+        if (this.snapshot != expect) {
+            // 其他线程已经刷新
+            return this.snapshot;
+        }
+        Snapshot scan = this.scan();
+        this.snapshot = scan;
+        return scan;
+    }
+
+    private Snapshot scan() {
+        long now = SystemClock.now();
+        String[] names = procRoot.list();
+        if (names == null) {
+            return new Snapshot(Collections.emptyMap(), 0, now);
+        }
+        Map<String, Integer> tagPid = new HashMap<>(16);
+        int javaCount = 0;
+        for (String name : names) {
+            if (!NumberUtil.isInteger(name)) {
+                continue;
+            }
+            int pid = Integer.parseInt(name);
+            List<String> args = this.readCmdline(pid);
+            if (args == null) {
+                continue;
+            }
+            if (isJava(args)) {
+                javaCount++;
+            }
+            // 非 java 启动的进程也需要记录（等同于 ps -ef | grep）
+            String tag = findTag(args);
+            if (tag != null) {
+                tagPid.putIfAbsent(tag, pid);
+            }
+        }
+        return new Snapshot(tagPid, javaCount, now);
+    }
+
+    /**
+     * 读取进程的启动参数
+     *
+     * @param pid 进程id
+     * @return 进程不存在或者无权限读取返回 null
+     */
+    private List<String> readCmdline(long pid) {
+        File file = FileUtil.file(procRoot, String.valueOf(pid), CMDLINE);
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            // 进程已经退出
+            return null;
+        }
+        if (ArrayUtil.isEmpty(bytes)) {
+            // 内核线程、僵尸进程
+            return null;
+        }
+        return StrUtil.split(new String(bytes, StandardCharsets.UTF_8), '\0', true, true);
+    }
+
+    private static boolean isJava(List<String> args) {
+        if (CollUtil.isEmpty(args)) {
+            // cmdline 只有分隔符
+            return false;
+        }
+        String name = FileUtil.getName(args.get(0));
+        return StrUtil.equalsAny(name, "java", "javaw");
+    }
+
+    /**
+     * 解析 jpom 标识
+     *
+     * @param args 启动参数
+     * @return 小写的标识
+     */
+    private static String findTag(List<String> args) {
+        for (String arg : args) {
+            for (String prefix : TAG_PREFIX) {
+                if (StrUtil.startWithIgnoreCase(arg, prefix)) {
+                    return arg.substring(prefix.length()).toLowerCase();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static class Snapshot {
+        private final Map<String, Integer> tagPid;
+        private final int javaCount;
+        private final long time;
+
+        private Snapshot(Map<String, Integer> tagPid, int javaCount, long time) {
+            this.tagPid = tagPid;
+            this.javaCount = javaCount;
+            this.time = time;
+        }
+    }
+}
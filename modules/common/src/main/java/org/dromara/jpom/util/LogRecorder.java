@@ -30,6 +30,7 @@ import cn.hutool.core.util.CharsetUtil;
 import cn.hutool.core.util.ObjectUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.keepbx.jpom.log.ILogRecorder;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.dromara.jpom.exception.LogRecorderCloseException;
@@ -48,20 +49,45 @@ import java.nio.charset.Charset;
 @Getter
 public class LogRecorder extends OutputStream implements ILogRecorder, AutoCloseable {
 
+    /**
+     * 按字节写入时的缓存大小
+     */
+    private static final int PENDING_SIZE = 8 * 1024;
+
     private File file;
     private PrintWriter writer;
     private final Charset charset;
+    /**
+     * 缓冲模式下的写入目标，为空表示每行都立即刷新
+     */
+    @Getter(AccessLevel.NONE)
+    private final AsyncLogRecorderWriter.Target target;
+    /**
+     * 缓冲模式下按字节写入的内容，遇到换行或者超过大小时整块写入
+     */
+    @Getter(AccessLevel.NONE)
+    private byte[] pending;
+    @Getter(AccessLevel.NONE)
+    private int pendingSize;
 
-    private LogRecorder(File file, Charset charset) {
+    private LogRecorder(File file, Charset charset, boolean buffered) {
+        this.charset = charset;
         if (file == null) {
             this.writer = null;
             this.file = null;
-            this.charset = charset;
+            this.target = null;
             return;
         }
         this.file = file;
-        this.charset = charset;
-        this.writer = FileWriter.create(file, charset).getPrintWriter(true);
+        if (buffered) {
+            AsyncLogRecorderWriter asyncWriter = AsyncLogRecorderWriter.getInstance();
+            this.target = asyncWriter.open(file, charset);
+            this.writer = new PrintWriter(asyncWriter.newWriter(target));
+            this.pending = new byte[PENDING_SIZE];
+        } else {
+            this.target = null;
+            this.writer = FileWriter.create(file, charset).getPrintWriter(true);
+        }
     }
 
     public static Builder builder() {
@@ -71,10 +97,22 @@ public class LogRecorder extends OutputStream implements ILogRecorder, AutoClose
     public static class Builder {
         private File file;
         private Charset charset;
+        private boolean buffered;
 
         Builder() {
         }
 
+        /**
+         * 缓冲模式：日志由后台线程批量写入，按大小、时间或者关闭时刷新到文件，适合输出频繁的场景
+         *
+         * @param buffered 是否缓冲
+         * @return this
+         */
+        public Builder buffered(final boolean buffered) {
+            this.buffered = buffered;
+            return this;
+        }
+
         public Builder file(final File file) {
             this.file = file;
             return this;
@@ -87,11 +125,11 @@ public class LogRecorder extends OutputStream implements ILogRecorder, AutoClose
 
         public LogRecorder build() {
             Charset charset1 = ObjectUtil.defaultIfNull(this.charset, CharsetUtil.CHARSET_UTF_8);
-            return new LogRecorder(this.file, charset1);
+            return new LogRecorder(this.file, charset1, this.buffered);
         }
 
         public String toString() {
-            return "LogRecorder.LogRecorderBuilder(file=" + this.file + ", charset=" + this.charset + ")";
+            return "LogRecorder.LogRecorderBuilder(file=" + this.file + ", charset=" + this.charset + ", buffered=" + this.buffered + ")";
         }
     }
 
@@ -107,9 +145,9 @@ public class LogRecorder extends OutputStream implements ILogRecorder, AutoClose
         if (writer == null) {
             throw new LogRecorderCloseException();
         }
-        writer.println(title);
         String s = ExceptionUtil.stacktraceToString(throwable);
-        writer.println(s);
+        this.flushPending();
+        writer.print(title + System.lineSeparator() + s + System.lineSeparator());
         writer.flush();
     }
 
@@ -123,7 +161,9 @@ public class LogRecorder extends OutputStream implements ILogRecorder, AutoClose
             throw new LogRecorderCloseException();
         }
         String format = StrUtil.format(info, vals);
-        writer.println(format);
+        // 整行一次写入，缓冲模式下避免拆分成多次
+        this.flushPending();
+        writer.print(format + System.lineSeparator());
         writer.flush();
         return format;
     }
@@ -164,6 +204,7 @@ public class LogRecorder extends OutputStream implements ILogRecorder, AutoClose
         if (writer == null) {
             throw new LogRecorderCloseException();
         }
+        this.flushPending();
         writer.append(StrUtil.format(info, vals));
         writer.flush();
 
@@ -180,6 +221,9 @@ public class LogRecorder extends OutputStream implements ILogRecorder, AutoClose
 
     @Override
     public void close() {
+        if (writer != null) {
+            this.flushPending();
+        }
         IoUtil.close(writer);
         this.writer = null;
         this.file = null;
@@ -187,6 +231,10 @@ public class LogRecorder extends OutputStream implements ILogRecorder, AutoClose
 
     public long size() {
         Assert.notNull(writer, "日志记录器未启用");
+        if (target != null) {
+            this.flushPending();
+            AsyncLogRecorderWriter.getInstance().flush(target);
+        }
         return FileUtil.size(this.file);
     }
 
@@ -195,6 +243,70 @@ public class LogRecorder extends OutputStream implements ILogRecorder, AutoClose
         if (writer == null) {
             throw new LogRecorderCloseException();
         }
-        writer.write((byte) b);
+        if (target == null) {
+            writer.write((byte) b);
+            return;
+        }
+        synchronized (this) {
+            if (pendingSize == pending.length) {
+                this.writePending(pendingSize);
+            }
+            pending[pendingSize++] = (byte) b;
+            if (b == '\n') {
+                this.writePending(pendingSize);
+            }
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (target == null) {
+            super.write(b, off, len);
+            return;
+        }
+        if (writer == null) {
+            throw new LogRecorderCloseException();
+        }
+        synchronized (this) {
+            while (len > 0) {
+                if (pendingSize == pending.length) {
+                    this.writePending(pendingSize);
+                }
+                int count = Math.min(len, pending.length - pendingSize);
+                System.arraycopy(b, off, pending, pendingSize, count);
+                pendingSize += count;
+                off += count;
+                len -= count;
+            }
+            // 写入完整的行，不完整的行等待后续内容
+            for (int i = pendingSize - 1; i >= 0; i--) {
+                if (pending[i] == '\n') {
+                    this.writePending(i + 1);
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        this.flushPending();
+    }
+
+    private synchronized void flushPending() {
+        if (pendingSize > 0) {
+            this.writePending(pendingSize);
+        }
+    }
+
+    /**
+     * 将缓存中前 size 个字节作为一次写入
+     *
+     * @param size 字节数
+     */
+    private void writePending(int size) {
+        writer.write(new String(pending, 0, size, charset));
+        pendingSize -= size;
+        System.arraycopy(pending, size, pending, 0, pendingSize);
     }
 }
@@ -0,0 +1,163 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cn;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.thread.ThreadUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.databene.contiperf.PerfTest;
+import org.databene.contiperf.junit.ContiPerfRule;
+import org.dromara.jpom.util.LogRecorder;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 对比日志记录每行刷新和缓冲模式的写入速度（16 个日志记录器并发写入）
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/7
+ */
+@Slf4j
+public class TestLogRecorderPerf {
+    @Rule
+    public ContiPerfRule i = new ContiPerfRule();
+
+    private static final int RECORDERS = 16;
+    private static final int LINES = 20000;
+    private static final String LINE = "[INFO] Downloaded from central: https://repo.maven.apache.org/maven2/org/example/demo/1.0.0/demo-1.0.0.jar (12 kB at 356 kB/s)";
+
+    private static File root;
+
+    @BeforeClass
+    public static void before() {
+        root = FileUtil.file(FileUtil.getTmpDir(), "jpom-log-recorder-test");
+        FileUtil.del(root);
+    }
+
+    @AfterClass
+    public static void after() {
+        FileUtil.del(root);
+    }
+
+    /**
+     * 16 个日志记录器并发写入，返回每秒写入行数
+     *
+     * @param buffered 是否缓冲
+     * @return 行/秒
+     */
+    private long linesPerSecond(boolean buffered) throws InterruptedException {
+        File dir = FileUtil.file(root, buffered ? "buffered" : "flush");
+        FileUtil.del(dir);
+        ExecutorService executorService = ThreadUtil.newExecutor(RECORDERS);
+        CountDownLatch countDownLatch = new CountDownLatch(RECORDERS);
+        long start = System.nanoTime();
+        for (int r = 0; r < RECORDERS; r++) {
+            File file = FileUtil.file(dir, r + ".log");
+            executorService.execute(() -> {
+                try (LogRecorder logRecorder = LogRecorder.builder().file(file).buffered(buffered).build()) {
+                    for (int l = 0; l < LINES; l++) {
+                        logRecorder.info(LINE);
+                    }
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+        }
+        countDownLatch.await();
+        long time = System.nanoTime() - start;
+        executorService.shutdown();
+        // 关闭后内容必须完整
+        for (int r = 0; r < RECORDERS; r++) {
+            List<String> lines = FileUtil.readUtf8Lines(FileUtil.file(dir, r + ".log"));
+            Assert.assertEquals(LINES, lines.size());
+            Assert.assertEquals(LINE, lines.get(LINES - 1));
+        }
+        return RECORDERS * (long) LINES * 1_000_000_000L / time;
+    }
+
+    @Test
+    public void testLinesPerSecond() throws InterruptedException {
+        // 预热
+        linesPerSecond(false);
+        linesPerSecond(true);
+        long flush = linesPerSecond(false);
+        long buffered = linesPerSecond(true);
+        log.info("flush per line: {} lines/s, buffered: {} lines/s", flush, buffered);
+    }
+
+    @Test
+    public void testSizeFlushBuffered() {
+        File file = FileUtil.file(root, "size.log");
+        try (LogRecorder logRecorder = LogRecorder.builder().file(file).buffered(true).build()) {
+            logRecorder.info(LINE);
+            Assert.assertEquals(LINE.length() + System.lineSeparator().length(), logRecorder.size());
+        }
+    }
+
+    @Test
+    public void testWriteBytesBuffered() throws IOException {
+        File file = FileUtil.file(root, "bytes.log");
+        String text = "中文日志 " + LINE;
+        try (LogRecorder logRecorder = LogRecorder.builder().file(file).buffered(true).build()) {
+            byte[] bytes = (text + "\n").getBytes(StandardCharsets.UTF_8);
+            // 按字节写入，和命令输出一样
+            for (byte b : bytes) {
+                logRecorder.write(b);
+            }
+            // 不完整的行在后续写入或者刷新时写入
+            logRecorder.write("abc".getBytes(StandardCharsets.UTF_8));
+            logRecorder.info("end");
+            Assert.assertEquals(bytes.length + 6 + System.lineSeparator().length(), logRecorder.size());
+        }
+        List<String> lines = FileUtil.readUtf8Lines(file);
+        Assert.assertEquals(text, lines.get(0));
+        Assert.assertEquals("abcend", lines.get(1));
+    }
+
+    @Test
+    @PerfTest(invocations = 200000, threads = 16)
+    public void testInfoFlush() {
+        LogRecorderHolder.FLUSH.info(LINE);
+    }
+
+    @Test
+    @PerfTest(invocations = 200000, threads = 16)
+    public void testInfoBuffered() {
+        LogRecorderHolder.BUFFERED.info(LINE);
+    }
+
+    private static class LogRecorderHolder {
+        private static final LogRecorder FLUSH = LogRecorder.builder().file(FileUtil.file(FileUtil.getTmpDir(), "jpom-log-recorder-test", "contiperf-flush.log")).build();
+        private static final LogRecorder BUFFERED = LogRecorder.builder().file(FileUtil.file(FileUtil.getTmpDir(), "jpom-log-recorder-test", "contiperf-buffered.log")).buffered(true).build();
+    }
+}
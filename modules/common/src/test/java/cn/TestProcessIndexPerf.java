@@ -0,0 +1,116 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cn;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.StrUtil;
+import org.databene.contiperf.PerfTest;
+import org.databene.contiperf.junit.ContiPerfRule;
+import org.dromara.jpom.util.CommandUtil;
+import org.dromara.jpom.util.LinuxProcessIndex;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 对比 jps 命令和 /proc 进程索引的耗时
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/5
+ */
+public class TestProcessIndexPerf {
+    @Rule
+    public ContiPerfRule i = new ContiPerfRule();
+
+    private static File root;
+    private static LinuxProcessIndex index10;
+    private static LinuxProcessIndex index100;
+    private static LinuxProcessIndex index1000;
+
+    @BeforeClass
+    public static void before() {
+        root = FileUtil.file(FileUtil.getTmpDir(), "jpom-proc-test");
+        FileUtil.del(root);
+        index10 = new LinuxProcessIndex(mockProc(10), 0);
+        index100 = new LinuxProcessIndex(mockProc(100), 0);
+        index1000 = new LinuxProcessIndex(mockProc(1000), 0);
+    }
+
+    @AfterClass
+    public static void after() {
+        FileUtil.del(root);
+    }
+
+    /**
+     * 模拟 /proc 目录
+     *
+     * @param count 进程数
+     * @return 目录
+     */
+    private static File mockProc(int count) {
+        File proc = FileUtil.file(root, String.valueOf(count));
+        for (int pid = 1; pid <= count; pid++) {
+            String cmdline = StrUtil.join("\0", "/usr/bin/java", "-Xms64m", "-DJpom.application=p" + pid, "-DJpom.basedir=/opt/p" + pid, "-jar", "app.jar");
+            FileUtil.writeString(cmdline, FileUtil.file(proc, String.valueOf(pid), "cmdline"), StandardCharsets.UTF_8);
+        }
+        return proc;
+    }
+
+    @Test
+    public void testLookup() {
+        Assert.assertEquals(Integer.valueOf(7), index10.getPidByTag("p7"));
+        Assert.assertEquals(Integer.valueOf(77), index100.getPidByTag("P77"));
+        Assert.assertNull(index1000.getPidByTag("p1001"));
+        Assert.assertEquals(1000, index1000.getJavaCount());
+    }
+
+    @Test
+    @PerfTest(invocations = 20, threads = 1)
+    public void testJps() {
+        CommandUtil.execSystemCommand("jps -mv");
+    }
+
+    @Test
+    @PerfTest(invocations = 2000, threads = 1)
+    public void testIndex10() {
+        index10.getPidByTag("p" + RandomUtil.randomInt(1, 10));
+    }
+
+    @Test
+    @PerfTest(invocations = 2000, threads = 1)
+    public void testIndex100() {
+        index100.getPidByTag("p" + RandomUtil.randomInt(1, 100));
+    }
+
+    @Test
+    @PerfTest(invocations = 200, threads = 1)
+    public void testIndex1000() {
+        index1000.getPidByTag("p" + RandomUtil.randomInt(1, 1000));
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.build;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import com.alibaba.fastjson2.JSONObject;
+import com.alibaba.fastjson2.TypeReference;
+import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.JpomApplication;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 构建产物内容寻址存储
+ * <p>
+ * 产物文件按 sha1 存放为对象（blob），构建历史中的文件通过硬链接引用对象，内容相同的文件只占用一份磁盘空间。
+ * 对象的引用计数即文件的硬链接数，构建历史删除后链接数降为 1 的对象会被回收。
+ * 共享 inode 的文件都会被设置为只读，避免原地修改某个构建历史文件时悄悄改变其他构建的产物。
+ * <p>
+ * 每次构建的产物额外记录清单（相对路径 -> sha1），发布时直接使用，不再重复计算
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/17
+ */
+@Slf4j
+public class BuildArtifactStore {
+
+    /**
+     * 产物清单文件名，存放在构建历史目录下
+     */
+    private static final String MANIFEST_NAME = "result-manifest.json";
+    /**
+     * 存储产物时共享，回收对象时独占，避免对象刚被判定为无引用时又被新的构建引用
+     */
+    private static final ReentrantReadWriteLock LOCK = new ReentrantReadWriteLock();
+    private static final AtomicBoolean GC_SCHEDULED = new AtomicBoolean();
+    private static volatile Boolean support;
+
+    /**
+     * 存储目录
+     *
+     * @return file
+     */
+    public static File getStoreDir() {
+        return FileUtil.file(JpomApplication.getInstance().getDataPath(), "build-store");
+    }
+
+    private static File getBlobDir() {
+        return FileUtil.file(getStoreDir(), "blobs");
+    }
+
+    /**
+     * 当前文件系统是否支持（需要支持硬链接和读取链接数）
+     *
+     * @return true 支持
+     */
+    public static boolean isSupport() {
+        if (support == null) {
+            synchronized (BuildArtifactStore.class) {
+                if (support == null) {
+                    support = checkSupport();
+                }
+            }
+        }
+        return support;
+    }
+
+    private static boolean checkSupport() {
+        File tempDir = FileUtil.file(getStoreDir(), "tmp");
+        File source = FileUtil.file(tempDir, IdUtil.fastSimpleUUID());
+        File link = FileUtil.file(tempDir, IdUtil.fastSimpleUUID());
+        try {
+            FileUtil.touch(source);
+            Files.createLink(link.toPath(), source.toPath());
+            return linkCount(source) == 2;
+        } catch (Exception e) {
+            log.warn("当前文件系统不支持硬链接，构建产物不使用去重存储：{}", e.getMessage());
+            return false;
+        } finally {
+            FileUtil.del(tempDir);
+        }
+    }
+
+    private static int linkCount(File file) throws IOException {
+        return (int) Files.getAttribute(file.toPath(), "unix:nlink", LinkOption.NOFOLLOW_LINKS);
+    }
+
+    /**
+     * 对象文件，可执行文件单独存放，避免共享 inode 后权限互相影响
+     *
+     * @param sha1       sha1
+     * @param executable 是否可执行
+     * @return file
+     */
+    private static File getBlobFile(String sha1, boolean executable) {
+        String name = executable ? sha1 + ".x" : sha1;
+        return FileUtil.file(getBlobDir(), sha1.substring(0, 2), name);
+    }
+
+    /**
+     * 将构建产物目录中的文件存入对象存储并生成清单，已经存在的对象直接替换为硬链接
+     *
+     * @param resultRoot 产物根目录（history/#N/result）
+     * @return 存储结果 [文件数, 复用数, 复用大小]
+     * @throws IOException io
+     */
+    public static long[] store(File resultRoot) throws IOException {
+        long[] result = new long[3];
+        if (!FileUtil.isDirectory(resultRoot)) {
+            return result;
+        }
+        String rootPath = FileUtil.getAbsolutePath(resultRoot);
+        Map<String, String> manifest = new TreeMap<>();
+        List<File> files = FileUtil.loopFiles(resultRoot, file -> !Files.isSymbolicLink(file.toPath()));
+        boolean useStore = isSupport();
+        LOCK.readLock().lock();
+        try {
+            for (File file : files) {
+                String sha1 = SecureUtil.sha1(file);
+                manifest.put(FileUtil.subPath(rootPath, FileUtil.getAbsolutePath(file)), sha1);
+                result[0]++;
+                if (!useStore) {
+                    continue;
+                }
+                File blob = getBlobFile(sha1, file.canExecute());
+                Path blobPath = blob.toPath();
+                if (blob.exists()) {
+                    if (!Files.isSameFile(blobPath, file.toPath())) {
+                        // 先创建临时链接再替换，避免中途失败丢失文件
+                        Path temp = file.toPath().resolveSibling(file.getName() + StrUtil.DOT + IdUtil.fastSimpleUUID());
+                        Files.createLink(temp, blobPath);
+                        Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                        result[1]++;
+                        result[2] += blob.length();
+                    }
+                } else {
+                    FileUtil.mkParentDirs(blob);
+                    try {
+                        Files.createLink(blobPath, file.toPath());
+                    } catch (FileSystemException e) {
+                        // 跨文件系统等情况，不再继续存储，仅记录清单
+                        log.warn("构建产物存储对象失败：{} {}", file.getAbsolutePath(), e.getMessage());
+                        useStore = false;
+                        continue;
+                    }
+                }
+                // 共享 inode，设置只读后对任意一个链接的原地写入都会失败而不是修改所有引用的构建
+                if (!blob.setWritable(false, false)) {
+                    log.debug("设置构建产物对象只读失败：{}", blob.getAbsolutePath());
+                }
+            }
+        } finally {
+            LOCK.readLock().unlock();
+        }
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("files", manifest);
+        FileUtil.writeUtf8String(jsonObject.toString(), getManifestFile(resultRoot));
+        return result;
+    }
+
+    private static File getManifestFile(File resultRoot) {
+        return FileUtil.file(resultRoot.getParentFile(), MANIFEST_NAME);
+    }
+
+    /**
+     * 读取构建产物清单
+     *
+     * @param resultRoot 产物根目录（history/#N/result）
+     * @return 相对路径 -> sha1，没有清单返回空
+     */
+    public static Map<String, String> loadManifest(File resultRoot) {
+        if (resultRoot == null) {
+            return Collections.emptyMap();
+        }
+        File manifestFile = getManifestFile(resultRoot);
+        if (!FileUtil.isFile(manifestFile)) {
+            return Collections.emptyMap();
+        }
+        try {
+            JSONObject jsonObject = JSONObject.parseObject(FileUtil.readUtf8String(manifestFile));
+            Map<String, String> files = jsonObject.getObject("files", new TypeReference<Map<String, String>>() {
+            });
+            return files == null ? Collections.emptyMap() : files;
+        } catch (Exception e) {
+            log.warn("读取构建产物清单失败：{} {}", manifestFile.getAbsolutePath(), e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * 获取产物文件的 sha1，优先使用清单中的记录
+     *
+     * @param manifest   清单
+     * @param resultRoot 产物根目录
+     * @param file       产物文件
+     * @return sha1
+     */
+    public static String sha1(Map<String, String> manifest, File resultRoot, File file) {
+        if (resultRoot != null) {
+            String sha1 = manifest.get(FileUtil.subPath(FileUtil.getAbsolutePath(resultRoot), FileUtil.getAbsolutePath(file)));
+            if (sha1 != null) {
+                return sha1;
+            }
+        }
+        return SecureUtil.sha1(file);
+    }
+
+    /**
+     * 硬链接文件，不支持时复制文件
+     *
+     * @param source 源文件
+     * @param target 目标文件
+     */
+    public static void linkOrCopy(File source, File target) {
+        FileUtil.mkParentDirs(target);
+        if (isSupport()) {
+            try {
+                Files.deleteIfExists(target.toPath());
+                Files.createLink(target.toPath(), source.toPath());
+                return;
+            } catch (IOException e) {
+                log.debug("硬链接文件失败，使用复制：{}", e.getMessage());
+            }
+        }
+        FileUtil.copyFile(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * 延迟回收没有引用的对象，短时间内多次删除构建历史只执行一次
+     */
+    public static void gcAsync() {
+        if (!GC_SCHEDULED.compareAndSet(false, true)) {
+            return;
+        }
+        JpomApplication.getScheduledExecutorService().schedule(() -> {
+            GC_SCHEDULED.set(false);
+            try {
+                gc();
+            } catch (Exception e) {
+                log.error("回收构建产物对象异常", e);
+            }
+        }, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 回收没有引用的对象（硬链接数为 1，只剩对象本身）
+     *
+     * @return [回收数, 回收大小]
+     */
+    public static long[] gc() {
+        long[] result = new long[2];
+        File blobDir = getBlobDir();
+        if (!FileUtil.isDirectory(blobDir) || !isSupport()) {
+            return result;
+        }
+        LOCK.writeLock().lock();
+        try {
+            List<File> blobs = FileUtil.loopFiles(blobDir);
+            for (File blob : blobs) {
+                try {
+                    if (linkCount(blob) > 1) {
+                        continue;
+                    }
+                    long length = blob.length();
+                    Files.delete(blob.toPath());
+                    result[0]++;
+                    result[1] += length;
+                } catch (IOException e) {
+                    log.warn("回收构建产物对象失败：{} {}", blob.getAbsolutePath(), e.getMessage());
+                }
+            }
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+        if (result[0] > 0) {
+            log.info("回收构建产物对象 {} 个，释放 {}", result[0], FileUtil.readableFileSize(result[1]));
+        }
+        return result;
+    }
+}
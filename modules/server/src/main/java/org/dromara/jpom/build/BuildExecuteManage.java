@@ -57,6 +57,7 @@ import org.dromara.jpom.model.log.BuildHistoryLog;
 import org.dromara.jpom.model.script.ScriptExecuteLogModel;
 import org.dromara.jpom.model.script.ScriptModel;
 import org.dromara.jpom.model.user.UserModel;
+import org.dromara.jpom.monitor.NotifyDispatcher;
 import org.dromara.jpom.plugin.PluginFactory;
 import org.dromara.jpom.service.dblog.BuildInfoService;
 import org.dromara.jpom.service.dblog.DbBuildHistoryLogService;
@@ -170,7 +171,7 @@ public class BuildExecuteManage implements Runnable {
         //
         BuildInfoModel buildInfoModel = taskData.buildInfoModel;
         File logFile = BuildUtil.getLogFile(buildInfoModel.getId(), buildInfoModel.getBuildId());
-        this.logRecorder = LogRecorder.builder().file(logFile).build();
+        this.logRecorder = LogRecorder.builder().file(logFile).buffered(true).build();
         //
         int queueSize = threadPoolExecutor.getQueue().size();
         int size = BUILD_MANAGE_MAP.size();
@@ -224,6 +225,27 @@ public class BuildExecuteManage implements Runnable {
         IoUtil.close(logRecorder);
     }
 
+    /**
+     * 构建产物存入内容寻址存储，相同内容的文件在构建历史之间共享
+     */
+    private void storeArtifact() {
+        if (!buildExtConfig.isArtifactStore()) {
+            return;
+        }
+        BuildInfoModel buildInfoModel = taskData.buildInfoModel;
+        File resultRoot = BuildUtil.getHistoryPackageFile(buildInfoModel.getId(), buildInfoModel.getBuildId(), StrUtil.SLASH);
+        try {
+            long[] store = BuildArtifactStore.store(resultRoot);
+            if (store[1] > 0) {
+                logRecorder.system("产物文件 {} 个，其中 {} 个与历史产物相同已共享存储，节省 {}", store[0], store[1], FileUtil.readableFileSize(store[2]));
+            }
+        } catch (Exception e) {
+            // 不影响构建流程
+            log.warn("构建产物存储失败", e);
+            logRecorder.systemWarning("构建产物存储失败：{}", e.getMessage());
+        }
+    }
+
     /**
      * 打包构建产物
      */
@@ -438,6 +460,11 @@ public class BuildExecuteManage implements Runnable {
                     // 使用系统
                     map.put("gitProcessType", "SystemGit");
                 }
+                // 构建期间短时间缓存远程分支/标签列表
+                map.put("remoteRefCacheSeconds", buildExtConfig.getRemoteRefCacheSeconds());
+                if (buildExtConfig.isRepositoryMirror()) {
+                    map.put("mirrorPath", BuildUtil.getRepositoryMirrorFile(repositoryModel.getId()));
+                }
                 Tuple tuple = (Tuple) plugin.execute("branchAndTagList", map);
                 //GitUtil.getBranchAndTagList(repositoryModel);
                 Assert.notNull(tuple, "获取仓库分支失败");
@@ -767,7 +794,11 @@ public class BuildExecuteManage implements Runnable {
 
             @Override
             public String execute() {
-                return BuildExecuteManage.this.packageFile();
+                String error = BuildExecuteManage.this.packageFile();
+                if (error == null) {
+                    BuildExecuteManage.this.storeArtifact();
+                }
+                return error;
             }
         });
         suppliers.put("release", new IProcessItem() {
@@ -933,17 +964,14 @@ public class BuildExecuteManage implements Runnable {
         map.put("buildResultFile", BuildUtil.getHistoryPackageFile(buildInfoModel.getId(), this.taskData.buildInfoModel.getBuildId(), resultDirFile));
 
         Opt.ofBlankAble(buildInfoModel.getWebhook())
-            .ifPresent(s ->
-                ThreadUtil.execute(() -> {
-                    try {
-                        IPlugin plugin = PluginFactory.getPlugin("webhook");
-                        map.put("JPOM_WEBHOOK_EVENT", DefaultWebhookPluginImpl.WebhookEvent.BUILD);
-                        plugin.execute(s, map);
-                    } catch (Exception e) {
-                        log.error("WebHooks 调用错误", e);
-                    }
-                })
-            );
+            .ifPresent(s -> {
+                Map<String, Object> webhookMap = new HashMap<>(map);
+                webhookMap.put("JPOM_WEBHOOK_EVENT", DefaultWebhookPluginImpl.WebhookEvent.BUILD);
+                NotifyDispatcher.execute(s, () -> {
+                    IPlugin plugin = PluginFactory.getPlugin("webhook");
+                    plugin.execute(s, webhookMap);
+                }, null);
+            });
         // 执行对应的事件脚本
         try {
             return this.noticeScript(type, map);
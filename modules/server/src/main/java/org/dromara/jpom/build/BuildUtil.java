@@ -87,6 +87,16 @@ public class BuildUtil {
         return FileUtil.file(BuildUtil.getBuildDataFile(id), "source");
     }
 
+    /**
+     * 获取仓库本地镜像（裸仓库）路径
+     *
+     * @param repositoryId 仓库ID
+     * @return file
+     */
+    public static File getRepositoryMirrorFile(String repositoryId) {
+        return FileUtil.file(JpomApplication.getInstance().getDataPath(), "repository-mirror", repositoryId);
+    }
+
     public static File getBuildDataDir() {
         return FileUtil.file(JpomApplication.getInstance().getDataPath(), "build");
     }
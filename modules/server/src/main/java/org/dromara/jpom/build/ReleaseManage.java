@@ -34,7 +34,6 @@ import cn.hutool.core.util.ArrayUtil;
 import cn.hutool.core.util.NumberUtil;
 import cn.hutool.core.util.ObjectUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.crypto.SecureUtil;
 import cn.hutool.extra.spring.SpringUtil;
 import cn.hutool.extra.ssh.JschUtil;
 import cn.keepbx.jpom.model.JsonMessage;
@@ -428,7 +427,7 @@ public class ReleaseManage {
         Session session = null;
         ChannelSftp channelSftp = null;
         try {
-            session = sshService.getSessionByModel(machineSshModel);
+            session = sshService.borrowSession(machineSshModel);
             Charset charset = machineSshModel.charset();
             int timeout = machineSshModel.timeout();
             String releasePath = this.buildExtraModule.getReleasePath();
@@ -476,7 +475,7 @@ public class ReleaseManage {
             JschUtils.execCallbackLine(session, charset, timeout, this.buildExtraModule.getReleaseCommand(), StrUtil.EMPTY, envFileMap, logRecorder::info);
         } finally {
             JschUtil.close(channelSftp);
-            JschUtil.close(session);
+            sshService.releaseSession(session);
         }
     }
 
@@ -493,11 +492,14 @@ public class ReleaseManage {
             FileUtil.getAbsolutePath(resultFile.getParent()) : FileUtil.getAbsolutePath(this.resultFile);
         //
         List<File> files = FileUtil.loopFiles(resultFile);
+        // 优先使用构建时记录的产物清单，避免重复计算文件 sha1
+        File resultRoot = BuildUtil.getHistoryPackageFile(buildExtraModule.getId(), this.getRealBuildNumberId(), StrUtil.SLASH);
+        Map<String, String> manifest = BuildArtifactStore.loadManifest(resultRoot);
         List<JSONObject> collect = files.stream().map(file -> {
             //
             JSONObject jsonObject = new JSONObject();
             jsonObject.put("name", StringUtil.delStartPath(file, resultFileParent, true));
-            jsonObject.put("sha1", SecureUtil.sha1(file));
+            jsonObject.put("sha1", BuildArtifactStore.sha1(manifest, resultRoot, file));
             return jsonObject;
         }).collect(Collectors.toList());
         //
@@ -0,0 +1,158 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.common.forward;
+
+import cn.hutool.cache.Cache;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.unit.DataSize;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.extra.spring.SpringUtil;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.JpomApplication;
+import org.dromara.jpom.system.ServerConfig;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分片上传使用的文件、分片 md5 缓存
+ * <p>
+ * 文件产生时（如存入文件中心）读取一次同时计算整个文件和每个分片的 md5 并按文件 md5 保存，
+ * 之后上传时传入文件 md5 即可直接使用，不用再读取整个文件
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/17
+ */
+@Slf4j
+public class FileSliceMd5Cache {
+
+    /**
+     * 没有文件 md5 时按文件路径、大小、修改时间缓存
+     */
+    private static final Cache<String, List<String>> PATH_CACHE = CacheUtil.newLRUCache(100);
+
+    /**
+     * 当前配置的分片大小
+     *
+     * @return 字节
+     */
+    public static long chunkSize() {
+        ServerConfig serverConfig = SpringUtil.getBean(ServerConfig.class);
+        return DataSize.ofMegabytes(serverConfig.getNode().getUploadFileSliceSize()).toBytes();
+    }
+
+    /**
+     * 计算文件的 md5，同时按当前分片大小保存每个分片的 md5
+     *
+     * @param file 文件
+     * @return 文件 md5
+     */
+    public static String md5(File file) {
+        long chunkSize = chunkSize();
+        List<String> list = FileSliceResource.md5(file, chunkSize);
+        save(list, file.length(), chunkSize);
+        return list.get(0);
+    }
+
+    /**
+     * 获取文件和每个分片的 md5
+     *
+     * @param file       文件
+     * @param fileSumMd5 文件 md5，已知时优先使用保存的分片 md5
+     * @param chunkSize  分片大小
+     * @return 第一个元素为整个文件的 md5，之后依次为每个分片的 md5
+     */
+    public static List<String> get(File file, String fileSumMd5, long chunkSize) {
+        long length = file.length();
+        if (isMd5(fileSumMd5)) {
+            List<String> list = load(fileSumMd5, length, chunkSize);
+            if (list != null) {
+                return list;
+            }
+        }
+        String key = StrUtil.format("{}:{}:{}:{}", file.getAbsolutePath(), length, file.lastModified(), chunkSize);
+        return PATH_CACHE.get(key, () -> {
+            List<String> list = FileSliceResource.md5(file, chunkSize);
+            save(list, length, chunkSize);
+            return list;
+        });
+    }
+
+    /**
+     * 删除保存的分片 md5
+     *
+     * @param fileSumMd5 文件 md5
+     */
+    public static void remove(String fileSumMd5) {
+        if (!isMd5(fileSumMd5)) {
+            return;
+        }
+        FileUtil.del(getFile(fileSumMd5));
+    }
+
+    private static List<String> load(String fileSumMd5, long length, long chunkSize) {
+        File file = getFile(fileSumMd5);
+        if (!FileUtil.isFile(file)) {
+            return null;
+        }
+        try {
+            JSONObject jsonObject = JSONObject.parseObject(FileUtil.readUtf8String(file));
+            if (jsonObject.getLongValue("size") != length || jsonObject.getLongValue("chunkSize") != chunkSize) {
+                // 分片大小配置已经修改
+                return null;
+            }
+            List<String> slices = jsonObject.getList("slices", String.class);
+            List<String> list = new ArrayList<>(slices.size() + 1);
+            list.add(fileSumMd5);
+            list.addAll(slices);
+            return list;
+        } catch (Exception e) {
+            log.warn("读取分片 md5 缓存失败 {} {}", fileSumMd5, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void save(List<String> list, long length, long chunkSize) {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("size", length);
+        jsonObject.put("chunkSize", chunkSize);
+        jsonObject.put("slices", list.subList(1, list.size()));
+        try {
+            FileUtil.writeUtf8String(jsonObject.toString(), getFile(list.get(0)));
+        } catch (Exception e) {
+            log.warn("保存分片 md5 缓存失败 {} {}", list.get(0), e.getMessage());
+        }
+    }
+
+    private static boolean isMd5(String value) {
+        return value != null && value.matches("[0-9a-fA-F]{32}");
+    }
+
+    private static File getFile(String fileSumMd5) {
+        String dataPath = JpomApplication.getInstance().getDataPath();
+        return FileUtil.file(dataPath, "file-slice-md5", fileSumMd5 + ".json");
+    }
+}
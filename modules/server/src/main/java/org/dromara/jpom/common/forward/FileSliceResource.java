@@ -0,0 +1,178 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.common.forward;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IORuntimeException;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.io.resource.Resource;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.DigestUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文件分片资源，直接从共享的 FileChannel 中按位置读取，不在内存中缓存分片数据
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/6
+ */
+public class FileSliceResource implements Resource {
+
+    private final FileChannel channel;
+    private final long position;
+    private final long size;
+    private final String name;
+
+    /**
+     * @param channel  文件通道（多个分片共享，使用按位置读取不会修改通道的位置）
+     * @param position 分片开始位置
+     * @param size     分片大小
+     * @param name     分片名称
+     */
+    public FileSliceResource(FileChannel channel, long position, long size, String name) {
+        this.channel = channel;
+        this.position = position;
+        this.size = size;
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public URL getUrl() {
+        return null;
+    }
+
+    @Override
+    public InputStream getStream() {
+        return new SliceInputStream();
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IORuntimeException {
+        WritableByteChannel target = Channels.newChannel(out);
+        long written = 0;
+        try {
+            while (written < size) {
+                long count = channel.transferTo(position + written, size - written, target);
+                if (count <= 0) {
+                    break;
+                }
+                written += count;
+            }
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+    }
+
+    /**
+     * 读取一次文件，同时计算整个文件和每个分片的 md5，不需要上传前再单独读取每个分片
+     *
+     * @param file      文件
+     * @param chunkSize 分片大小
+     * @return 第一个元素为整个文件的 md5，之后依次为每个分片的 md5
+     * @throws IORuntimeException io
+     */
+    public static List<String> md5(File file, long chunkSize) throws IORuntimeException {
+        List<String> list = new ArrayList<>();
+        MessageDigest fileDigest = DigestUtil.digester(DigestAlgorithm.MD5).getDigest();
+        MessageDigest sliceDigest = DigestUtil.digester(DigestAlgorithm.MD5).getDigest();
+        // 占位，最后写入整个文件的 md5
+        list.add(null);
+        try (InputStream inputStream = FileUtil.getInputStream(file)) {
+            byte[] bytes = new byte[IoUtil.DEFAULT_LARGE_BUFFER_SIZE];
+            long sliceRead = 0;
+            int len;
+            while ((len = inputStream.read(bytes)) != -1) {
+                fileDigest.update(bytes, 0, len);
+                int off = 0;
+                while (off < len) {
+                    int count = (int) Math.min(len - off, chunkSize - sliceRead);
+                    sliceDigest.update(bytes, off, count);
+                    off += count;
+                    sliceRead += count;
+                    if (sliceRead == chunkSize) {
+                        list.add(HexUtil.encodeHexStr(sliceDigest.digest()));
+                        sliceRead = 0;
+                    }
+                }
+            }
+            if (sliceRead > 0) {
+                list.add(HexUtil.encodeHexStr(sliceDigest.digest()));
+            }
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+        list.set(0, HexUtil.encodeHexStr(fileDigest.digest()));
+        return list;
+    }
+
+    /**
+     * 按位置读取的输入流
+     */
+    private class SliceInputStream extends InputStream {
+        private long offset;
+
+        @Override
+        public int read() throws IOException {
+            byte[] bytes = new byte[1];
+            int read = this.read(bytes, 0, 1);
+            return read <= 0 ? -1 : bytes[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long remaining = size - offset;
+            if (remaining <= 0) {
+                return -1;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, remaining));
+            int read = channel.read(buffer, position + offset);
+            if (read > 0) {
+                offset += read;
+            }
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(size - offset, Integer.MAX_VALUE);
+        }
+    }
+}
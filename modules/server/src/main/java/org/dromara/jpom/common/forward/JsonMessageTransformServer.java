@@ -84,6 +84,6 @@ public class JsonMessageTransformServer implements TransformServer {
                 return new AgentException(nodeModel.name() + "节点通讯失败,请优先检查限制上传大小配置是否合理,或者网络连接是否被代理终端、防火墙终端等。" + message);
             }
         }
-        return new AgentException(nodeModel.name() + "节点异常：" + message);
+        return new AgentException(nodeModel.name() + "节点异常：" + message, exception);
     }
 }
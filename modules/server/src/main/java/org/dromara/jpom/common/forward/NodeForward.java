@@ -24,16 +24,17 @@ package org.dromara.jpom.common.forward;
 
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.convert.Convert;
+import cn.hutool.core.exceptions.ExceptionUtil;
 import cn.hutool.core.io.resource.BytesResource;
 import cn.hutool.core.io.unit.DataSize;
 import cn.hutool.core.lang.Opt;
 import cn.hutool.core.map.MapUtil;
 import cn.hutool.core.util.EnumUtil;
-import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.crypto.SecureUtil;
 import cn.hutool.extra.servlet.ServletUtil;
 import cn.hutool.extra.spring.SpringUtil;
+import cn.hutool.http.HttpStatus;
 import cn.keepbx.jpom.model.BaseIdModel;
 import cn.keepbx.jpom.model.JsonMessage;
 import com.alibaba.fastjson2.JSON;
@@ -61,14 +62,14 @@ import org.springframework.web.multipart.MultipartHttpServletRequest;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
-import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
@@ -84,6 +85,11 @@ import java.util.function.Function;
 @Slf4j
 public class NodeForward {
 
+    /**
+     * 分片上传最多尝试次数（失败后查询节点已经接收的分片继续上传）
+     */
+    private static final int SHARDING_MAX_ATTEMPTS = 3;
+
     /**
      * 创建代理
      *
@@ -310,7 +316,7 @@ public class NodeForward {
      */
     public static <T> JsonMessage<T> requestSharding(NodeModel nodeModel, NodeUrl nodeUrl, JSONObject jsonObject, File file, Function<JSONObject, JsonMessage<T>> doneCallback, BiConsumer<Long, Long> streamProgress) throws IOException {
         INodeInfo nodeInfo = parseNodeInfo(nodeModel);
-        return requestSharding(nodeInfo, nodeModel.getWorkspaceId(), nodeUrl, jsonObject, file, File::getName, doneCallback, streamProgress);
+        return requestSharding(nodeInfo, nodeModel.getWorkspaceId(), nodeUrl, jsonObject, file, File::getName, null, doneCallback, streamProgress);
     }
 
     /**
@@ -322,8 +328,21 @@ public class NodeForward {
      * @return JSON
      */
     public static <T> JsonMessage<T> requestSharding(NodeModel nodeModel, NodeUrl nodeUrl, JSONObject jsonObject, File file, String fileName, Function<JSONObject, JsonMessage<T>> doneCallback, BiConsumer<Long, Long> streamProgress) throws IOException {
+        return requestSharding(nodeModel, nodeUrl, jsonObject, file, fileName, null, doneCallback, streamProgress);
+    }
+
+    /**
+     * 普通消息转发
+     *
+     * @param nodeModel  节点
+     * @param nodeUrl    节点的url
+     * @param jsonObject 数据
+     * @param fileSumMd5 文件的 md5（已经计算过时传入，避免重复计算）
+     * @return JSON
+     */
+    public static <T> JsonMessage<T> requestSharding(NodeModel nodeModel, NodeUrl nodeUrl, JSONObject jsonObject, File file, String fileName, String fileSumMd5, Function<JSONObject, JsonMessage<T>> doneCallback, BiConsumer<Long, Long> streamProgress) throws IOException {
         INodeInfo nodeInfo = parseNodeInfo(nodeModel);
-        return requestSharding(nodeInfo, nodeModel.getWorkspaceId(), nodeUrl, jsonObject, file, file1 -> fileName, doneCallback, streamProgress);
+        return requestSharding(nodeInfo, nodeModel.getWorkspaceId(), nodeUrl, jsonObject, file, file1 -> fileName, fileSumMd5, doneCallback, streamProgress);
     }
 
     /**
@@ -336,7 +355,54 @@ public class NodeForward {
      */
     public static <T> JsonMessage<T> requestSharding(MachineNodeModel machineNodeModel, NodeUrl nodeUrl, JSONObject jsonObject, File file, Function<JSONObject, JsonMessage<T>> doneCallback, BiConsumer<Long, Long> streamProgress) throws IOException {
         INodeInfo nodeInfo = coverNodeInfo(machineNodeModel);
-        return requestSharding(nodeInfo, StrUtil.EMPTY, nodeUrl, jsonObject, file, File::getName, doneCallback, streamProgress);
+        return requestSharding(nodeInfo, StrUtil.EMPTY, nodeUrl, jsonObject, file, File::getName, null, doneCallback, streamProgress);
+    }
+
+    /**
+     * 查询节点已经接收的分片，节点不支持时返回空
+     *
+     * @param nodeInfo    节点
+     * @param workspaceId 工作空间id
+     * @param nodeUrl     上传分片的url
+     * @param sliceId     分片id
+     * @return 已经完成的分片序号
+     */
+    private static Collection<Integer> queryShardingStatus(INodeInfo nodeInfo, String workspaceId, NodeUrl nodeUrl, String sliceId) {
+        NodeUrl statusUrl = shardingStatusUrl(nodeUrl);
+        if (statusUrl == null) {
+            return Collections.emptySet();
+        }
+        IUrlItem urlItem = parseUrlItem(nodeInfo, workspaceId, statusUrl, DataContentType.FORM_URLENCODED);
+        try {
+            JsonMessage<List<Integer>> message = TransportServerFactory.get().executeToType(nodeInfo, urlItem, MapUtil.of("sliceId", sliceId),
+                new TypeReference<JsonMessage<List<Integer>>>() {
+                });
+            if (message.success() && message.getData() != null) {
+                return new HashSet<>(message.getData());
+            }
+        } catch (Exception e) {
+            log.debug("查询节点分片上传状态失败 {} {}", nodeInfo.name(), e.getMessage());
+        }
+        return Collections.emptySet();
+    }
+
+    /**
+     * 上传分片的url对应的查询分片状态的url
+     *
+     * @param nodeUrl 上传分片的url
+     * @return 不支持续传时返回 null
+     */
+    private static NodeUrl shardingStatusUrl(NodeUrl nodeUrl) {
+        switch (nodeUrl) {
+            case Manage_File_Upload_Sharding:
+                return NodeUrl.Manage_File_Sharding_Status;
+            case Manage_File_Upload_Sharding2:
+                return NodeUrl.Manage_File_Sharding_Status2;
+            case SystemUploadJar:
+                return NodeUrl.SystemUploadJarStatus;
+            default:
+                return null;
+        }
     }
 
     /**
@@ -347,90 +413,121 @@ public class NodeForward {
      * @param streamProgress 进度回调
      * @param nodeUrl        节点的url
      * @param jsonObject     数据
+     * @param fileSumMd5     文件的 md5，为空时自动计算
      * @return JSON
      */
-    private static <T> JsonMessage<T> requestSharding(INodeInfo nodeInfo, String workspaceId, NodeUrl nodeUrl, JSONObject jsonObject, File file, Function<File, String> fileNameFn, Function<JSONObject, JsonMessage<T>> doneCallback, BiConsumer<Long, Long> streamProgress) throws IOException {
+    private static <T> JsonMessage<T> requestSharding(INodeInfo nodeInfo, String workspaceId, NodeUrl nodeUrl, JSONObject jsonObject, File file, Function<File, String> fileNameFn, String fileSumMd5, Function<JSONObject, JsonMessage<T>> doneCallback, BiConsumer<Long, Long> streamProgress) throws IOException {
         IUrlItem urlItem = parseUrlItem(nodeInfo, workspaceId, nodeUrl, DataContentType.FORM_URLENCODED);
         ServerConfig serverConfig = SpringUtil.getBean(ServerConfig.class);
         NodeConfig nodeConfig = serverConfig.getNode();
         long length = file.length();
         String fileName = fileNameFn.apply(file);
         Assert.state(length > 0, "空文件不能上传");
-        String md5 = SecureUtil.md5(file);
         int fileSliceSize = nodeConfig.getUploadFileSliceSize();
         //如果小数点大于1，整数加一 例如4.1 =》5
         long chunkSize = DataSize.ofMegabytes(fileSliceSize).toBytes();
         int total = (int) Math.ceil((double) length / chunkSize);
-        Queue<Integer> queueList = new ConcurrentLinkedDeque<>();
-        for (int i = 0; i < total; i++) {
-            queueList.offer(i);
-        }
+        // 已知文件 md5 时直接使用文件产生时保存的分片 md5，否则读取一次文件计算整个文件和所有分片的 md5
+        List<String> sliceMd5List = FileSliceMd5Cache.get(file, fileSumMd5, chunkSize);
+        Assert.state(sliceMd5List.size() == total + 1, "文件在上传前发生变化");
+        String md5 = Opt.ofBlankAble(fileSumMd5).orElseGet(() -> sliceMd5List.get(0));
+        // 分片 id 由文件、分片大小和上传目标确定，上传失败后重新上传同一个文件时可以续传节点已经接收的分片
+        String sliceId = Opt.ofBlankAble(jsonObject.getString("sliceId"))
+            .orElseGet(() -> SecureUtil.md5(StrUtil.format("{}:{}:{}:{}:{}", md5, length, chunkSize, nodeUrl.name(), jsonObject)));
+        JSONObject sliceData = new JSONObject();
+        sliceData.put("sliceId", sliceId);
+        sliceData.put("totalSlice", total);
+        sliceData.put("fileSumMd5", md5);
+        sliceData.put("sliceSize", chunkSize);
+        sliceData.put("fileSize", length);
+        // 合并时使用分片签名校验整个文件，不用再读取一次合并后的文件
+        sliceData.put("sliceSumMd5", SecureUtil.md5(CollUtil.join(sliceMd5List.subList(1, sliceMd5List.size()), StrUtil.COMMA)));
         List<Integer> success = Collections.synchronizedList(new ArrayList<>(total));
         // 并发数
         int concurrent = nodeConfig.getUploadFileConcurrent();
         AtomicReference<JsonMessage<T>> failureMessage = new AtomicReference<>();
         AtomicReference<JsonMessage<T>> succeedMessage = new AtomicReference<>();
+        AtomicBoolean retry = new AtomicBoolean(false);
         AtomicLong atomicProgressSize = new AtomicLong(0);
-        JSONObject sliceData = new JSONObject();
-        sliceData.put("sliceId", IdUtil.fastSimpleUUID());
-        sliceData.put("totalSlice", total);
-        sliceData.put("fileSumMd5", md5);
         TransportServer transportServer = TransportServerFactory.get();
         TypeReference<JsonMessage<T>> typeReference = new TypeReference<JsonMessage<T>>() {
         };
-        // 需要计算 并发数和最大任务数，如果任务数小于并发数则使用任务数
-        try (StrictSyncFinisher syncFinisher = new StrictSyncFinisher(Math.min(concurrent, total), total)) {
-            Runnable runnable = () -> {
-                // 取出任务
-                Integer currentChunk = queueList.poll();
-                if (currentChunk == null) {
-                    return;
+        // 所有分片共享同一个文件通道，按位置读取
+        try (FileChannel inputChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (int attempt = 0; attempt < SHARDING_MAX_ATTEMPTS; attempt++) {
+                // 跳过节点已经接收的分片
+                Collection<Integer> received = queryShardingStatus(nodeInfo, workspaceId, nodeUrl, sliceId);
+                Queue<Integer> queueList = new ConcurrentLinkedDeque<>();
+                success.clear();
+                for (int i = 0; i < total; i++) {
+                    if (received.contains(i)) {
+                        success.add(i);
+                    } else {
+                        queueList.offer(i);
+                    }
                 }
-                JSONObject uploadData = jsonObject.clone();
-                try {
-                    try (FileInputStream inputStream = new FileInputStream(file)) {
-                        try (FileChannel inputChannel = inputStream.getChannel()) {
-                            //分配缓冲区，设定每次读的字节数
-                            ByteBuffer byteBuffer = ByteBuffer.allocate((int) chunkSize);
-                            // 移动到指定位置开始读取
-                            inputChannel.position(currentChunk * chunkSize);
-                            inputChannel.read(byteBuffer);
-                            //上面把数据写入到了buffer，所以可知上面的buffer是写模式，调用flip把buffer切换到读模式，读取数据
-                            byteBuffer.flip();
-                            byte[] array = new byte[byteBuffer.remaining()];
-                            byteBuffer.get(array, 0, array.length);
-                            uploadData.put("file", new BytesResource(array, fileName + StrUtil.DOT + currentChunk));
+                if (queueList.isEmpty()) {
+                    failureMessage.set(null);
+                    streamProgress.accept(length, length);
+                    break;
+                }
+                if (!received.isEmpty()) {
+                    log.info("分片上传续传 {} {} 已完成 {}/{}", nodeInfo.name(), fileName, received.size(), total);
+                }
+                failureMessage.set(null);
+                retry.set(false);
+                int queueSize = queueList.size();
+                // 需要计算 并发数和最大任务数，如果任务数小于并发数则使用任务数
+                try (StrictSyncFinisher syncFinisher = new StrictSyncFinisher(Math.min(concurrent, queueSize), queueSize)) {
+                    Runnable runnable = () -> {
+                        // 取出任务
+                        Integer currentChunk = queueList.poll();
+                        if (currentChunk == null) {
+                            return;
+                        }
+                        JSONObject uploadData = jsonObject.clone();
+                        try {
+                            long position = currentChunk * chunkSize;
+                            long sliceSize = Math.min(chunkSize, length - position);
+                            FileSliceResource sliceResource = new FileSliceResource(inputChannel, position, sliceSize, fileName + StrUtil.DOT + currentChunk);
+                            // 上传时直接从文件通道读取写入请求体，不缓存分片数据
+                            uploadData.put("file", sliceResource);
                             uploadData.put("nowSlice", currentChunk);
+                            uploadData.put("sliceMd5", sliceMd5List.get(currentChunk + 1));
                             uploadData.putAll(sliceData);
+                            // 上传
+                            JsonMessage<T> message = transportServer.executeToType(nodeInfo, urlItem, uploadData, typeReference);
+                            if (message.success()) {
+                                // 使用成功的个数计算
+                                success.add(currentChunk);
+                                long end = Math.min(length, ((success.size() - 1) * chunkSize) + chunkSize);
+                                // 保存线程安全顺序回调进度信息
+                                atomicProgressSize.set(Math.max(end, atomicProgressSize.get()));
+                                streamProgress.accept(length, atomicProgressSize.get());
+                                succeedMessage.set(message);
+                            } else {
+                                log.warn("分片上传异常：{} {}", nodeUrl, message);
+                                // 终止上传
+                                queueList.clear();
+                                failureMessage.set(message);
+                            }
+                        } catch (Exception e) {
+                            log.error("分片上传文件异常", e);
+                            // 终止上传，网络等异常可以续传
+                            queueList.clear();
+                            retry.set(true);
+                            failureMessage.set(new JsonMessage<>(500, "上传异常：" + e.getMessage()));
                         }
+                    };
+                    for (int i = 0; i < queueSize; i++) {
+                        syncFinisher.addWorker(runnable);
                     }
-                    // 上传
-                    JsonMessage<T> message = transportServer.executeToType(nodeInfo, urlItem, uploadData, typeReference);
-                    if (message.success()) {
-                        // 使用成功的个数计算
-                        success.add(currentChunk);
-                        long end = Math.min(length, ((success.size() - 1) * chunkSize) + chunkSize);
-                        // 保存线程安全顺序回调进度信息
-                        atomicProgressSize.set(Math.max(end, atomicProgressSize.get()));
-                        streamProgress.accept(length, atomicProgressSize.get());
-                        succeedMessage.set(message);
-                    } else {
-                        log.warn("分片上传异常：{} {}", nodeUrl, message);
-                        // 终止上传
-                        queueList.clear();
-                        failureMessage.set(message);
-                    }
-                } catch (Exception e) {
-                    log.error("分片上传文件异常", e);
-                    // 终止上传
-                    queueList.clear();
-                    failureMessage.set(new JsonMessage<>(500, "上传异常：" + e.getMessage()));
+                    syncFinisher.start();
+                }
+                if (failureMessage.get() == null || !retry.get()) {
+                    break;
                 }
-            };
-            for (int i = 0; i < total; i++) {
-                syncFinisher.addWorker(runnable);
             }
-            syncFinisher.start();
         }
         JsonMessage<T> message = failureMessage.get();
         if (message != null) {
@@ -441,7 +538,7 @@ public class NodeForward {
         //
         return Optional.ofNullable(doneCallback)
             .map(function -> function.apply(sliceData))
-            .orElseGet(succeedMessage::get);
+            .orElseGet(() -> Optional.ofNullable(succeedMessage.get()).orElseGet(() -> new JsonMessage<>(200, "上传成功")));
     }
 
     /**
@@ -657,4 +754,27 @@ public class NodeForward {
         }
         return data;
     }
+
+    /**
+     * 判断是否为节点不存在对应接口（旧版本插件端）的异常，http 状态码 404
+     *
+     * @param e 异常
+     * @return true 接口不存在
+     */
+    public static boolean isNotFound(Throwable e) {
+        return ExceptionUtil.getThrowableList(e)
+            .stream()
+            .anyMatch(throwable -> throwable instanceof TransportAgentException && ((TransportAgentException) throwable).getStatus() == HttpStatus.HTTP_NOT_FOUND);
+    }
+
+    /**
+     * 判断是否为节点不存在对应接口（旧版本插件端）的响应
+     *
+     * @param jsonMessage 响应
+     * @return true 接口不存在
+     */
+    public static boolean isNotFound(JsonMessage<?> jsonMessage) {
+        // 插件端的全局异常处理返回 404，错误页面返回 500 + 固定提示
+        return jsonMessage.getCode() == HttpStatus.HTTP_NOT_FOUND || StrUtil.equals(jsonMessage.getMsg(), "没有找到对应的资源");
+    }
 }
@@ -82,6 +82,7 @@ public enum NodeUrl {
     Manage_ChangeWorkspaceId("/manage/change-workspace-id"),
 
     Manage_GetProjectInfo("/manage/getProjectInfo"),
+    Manage_GetProjectInfoChanges("/manage/getProjectInfoChanges"),
 
 //    Manage_Jude_Lib("/manage/judge_lib.json"),
 
@@ -90,6 +91,10 @@ public enum NodeUrl {
     Manage_GetProjectItem("/manage/getProjectItem"),
 
     Manage_GetProjectStatus("/manage/getProjectStatus"),
+    /**
+     * 批量获取项目状态
+     */
+    Manage_GetProjectStatusBatch("/manage/getProjectStatusBatch"),
 
     Manage_Operate("/manage/operate"),
 
@@ -107,8 +112,16 @@ public enum NodeUrl {
     MANAGE_FILE_BACKUP_RECOVER("/manage/file/backup-recover"),
     Manage_File_Upload_Sharding("/manage/file/upload-sharding", true),
     Manage_File_Sharding_Merge("/manage/file/sharding-merge", true),
+    /**
+     * 查询已经上传完成的分片
+     */
+    Manage_File_Sharding_Status("/manage/file/sharding-status"),
     Manage_File_Upload_Sharding2("/manage/file2/upload-sharding", true),
     Manage_File_Sharding_Merge2("/manage/file2/sharding-merge", true),
+    /**
+     * 查询已经上传完成的分片
+     */
+    Manage_File_Sharding_Status2("/manage/file2/sharding-status"),
 
     Manage_File_DeleteFile("/manage/file/deleteFile"),
     /**
@@ -145,6 +158,7 @@ public enum NodeUrl {
 
 
     Script_List("/script/list.json"),
+    Script_Changes("/script/changes.json"),
     Script_ChangeWorkspaceId("/script/change-workspace-id"),
     SCRIPT_PULL_EXEC_LOG("/script/pull_exec_log"),
     SCRIPT_DEL_EXEC_LOG("/script/del_exec_log"),
@@ -186,6 +200,10 @@ public enum NodeUrl {
      * 更新系统jar包
      */
     SystemUploadJarMerge("/system/upload-jar-sharding-merge", true),
+    /**
+     * 查询系统jar包已经上传完成的分片
+     */
+    SystemUploadJarStatus("/system/upload-jar-sharding-status"),
     /**
      * 更新系统jar包
      */
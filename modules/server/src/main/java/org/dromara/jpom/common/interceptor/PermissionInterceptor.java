@@ -29,7 +29,6 @@ import cn.hutool.extra.spring.SpringUtil;
 import cn.keepbx.jpom.model.JsonMessage;
 import org.dromara.jpom.common.BaseServerController;
 import org.dromara.jpom.exception.AgentException;
-import org.dromara.jpom.model.BaseNodeModel;
 import org.dromara.jpom.model.data.NodeModel;
 import org.dromara.jpom.model.user.UserBindWorkspaceModel;
 import org.dromara.jpom.model.user.UserModel;
@@ -150,9 +149,9 @@ public class PermissionInterceptor implements HandlerMethodInterceptor {
             BaseNodeService<?> baseNodeService = SpringUtil.getBean(nodeDataPermission.cls());
             String dataId = request.getParameter(parameterName);
             if (StrUtil.isNotEmpty(dataId)) {
-                BaseNodeModel data = baseNodeService.getData(node.getId(), dataId);
-                if (data != null) {
-                    UserBindWorkspaceModel.PermissionResult permissionResult = userBindWorkspaceService.checkPermission(userModel, data.getWorkspaceId());
+                String dataWorkspaceId = baseNodeService.getDataWorkspaceId(node.getId(), dataId);
+                if (dataWorkspaceId != null) {
+                    UserBindWorkspaceModel.PermissionResult permissionResult = userBindWorkspaceService.checkPermission(userModel, dataWorkspaceId);
 
                     if (!permissionResult.isSuccess()) {
                         this.errorMsg(response, permissionResult.errorMsg());
@@ -192,7 +191,7 @@ public class PermissionInterceptor implements HandlerMethodInterceptor {
         String nodeId = request.getParameter("nodeId");
         if (!StrUtil.isBlankOrUndefined(nodeId)) {
             // 节点信息
-            NodeModel nodeModel = nodeService.getByKey(nodeId);
+            NodeModel nodeModel = nodeService.getByKeyCache(nodeId);
             if (nodeModel != null && !nodeModel.isOpenStatus()) {
                 throw new AgentException(nodeModel.getName() + "节点未启用");
             }
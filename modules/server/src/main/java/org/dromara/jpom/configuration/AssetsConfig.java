@@ -79,7 +79,26 @@ public class AssetsConfig {
          * 禁用监控的分组名 （如果想禁用所有配置 * 即可）
          */
         private List<String> disableMonitorGroupName;
-
+        /**
+         * 是否开启会话池（复用 ssh 连接）
+         */
+        private boolean poolEnable = true;
+        /**
+         * 单个会话最多同时租借的操作数（每个操作最多同时打开 2 个 channel，需要小于 sshd MaxSessions）
+         */
+        private int poolMaxChannels = 4;
+        /**
+         * 单个 ssh 最多缓存的会话数
+         */
+        private int poolMaxSessions = 2;
+        /**
+         * 会话空闲多久后关闭 单位秒
+         */
+        private int poolIdleTimeout = 300;
+        /**
+         * 空闲会话心跳检查间隔 单位秒
+         */
+        private int poolKeepaliveInterval = 30;
     }
 
     /**
@@ -53,4 +53,20 @@ public class FileStorageConfig {
      * 监听深度
      */
     private Integer watchMonitorMaxDepth = 1;
+    /**
+     * 静态目录扫描并行数（一级子目录并行遍历）
+     */
+    private int scanStaticDirParallelism = Math.min(Runtime.getRuntime().availableProcessors(), 4);
+    /**
+     * 静态目录扫描批量写入数据库的条数
+     */
+    private int scanStaticDirBatchSize = 500;
+
+    public int getScanStaticDirParallelism() {
+        return Math.max(scanStaticDirParallelism, 1);
+    }
+
+    public int getScanStaticDirBatchSize() {
+        return Math.max(scanStaticDirBatchSize, 10);
+    }
 }
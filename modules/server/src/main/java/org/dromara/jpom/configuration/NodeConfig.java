@@ -42,6 +42,20 @@ public class NodeConfig {
         return Math.max(this.heartSecond, 5);
     }
 
+    /**
+     * 节点主动推送统计信息（需要开启 websocket-mux），服务端只订阅并检查是否超时，不支持的节点自动回退为轮询
+     */
+    private boolean heartPush = false;
+
+    /**
+     * 节点心跳检测的并发数,最小 1
+     */
+    private int heartConcurrent = 20;
+
+    public int getHeartConcurrent() {
+        return Math.max(this.heartConcurrent, 1);
+    }
+
     /**
      * 上传文件的超时时间 单位秒,最短5秒中
      */
@@ -73,4 +87,53 @@ public class NodeConfig {
      * 节点统计日志保留天数，如果小于等于 0 不自动删除
      */
     private int statLogKeepDays = 3;
+
+    /**
+     * 节点统计 1 分钟汇总数据保留天数，如果小于等于 0 不自动删除
+     */
+    private int statLogMinuteKeepDays = 7;
+
+    /**
+     * 节点统计 15 分钟汇总数据保留天数，如果小于等于 0 不自动删除
+     */
+    private int statLogQuarterKeepDays = 31;
+
+    /**
+     * 节点统计 1 小时汇总数据保留天数，如果小于等于 0 不自动删除
+     */
+    private int statLogHourKeepDays = 366;
+
+    /**
+     * 项目监控获取节点项目状态的超时时间 单位秒,最短5秒钟
+     */
+    private int monitorTimeout = 60;
+
+    public int getMonitorTimeout() {
+        return Math.max(this.monitorTimeout, 5);
+    }
+
+    /**
+     * 节点通讯方式 http 或者 pooled-http（连接池复用 keep-alive 连接）
+     */
+    private String transportType = "http";
+
+    /**
+     * 节点通讯连接池最大连接数（仅 pooled-http 生效）,最小 1
+     */
+    private int transportMaxTotal = 200;
+
+    /**
+     * 节点通讯连接池单个节点最大连接数（仅 pooled-http 生效）,最小 1
+     */
+    private int transportMaxPerNode = 10;
+
+    /**
+     * 节点通讯连接池空闲连接保持时间 单位秒（仅 pooled-http 生效）,最小 1 秒
+     */
+    private int transportKeepAliveSeconds = 30;
+
+    /**
+     * 节点 websocket 会话是否复用一个连接（插件端版本过低时自动回退为独立连接）
+     */
+    private boolean websocketMux = true;
 }
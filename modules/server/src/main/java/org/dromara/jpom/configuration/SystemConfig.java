@@ -24,11 +24,13 @@ package org.dromara.jpom.configuration;
 
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import org.dromara.jpom.monitor.NotifyDispatcher;
 import org.dromara.jpom.socket.ServiceFileTailWatcher;
 import org.dromara.jpom.system.BaseSystemConfig;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author bwcx_jzy
@@ -39,9 +41,54 @@ import java.nio.charset.Charset;
 @ConfigurationProperties("jpom.system")
 public class SystemConfig extends BaseSystemConfig {
 
+    /**
+     * 操作日志写入队列大小，队列满时新的日志会被丢弃
+     */
+    private int operateLogQueueSize = 10000;
+    /**
+     * 操作日志单次批量写入的条数
+     */
+    private int operateLogBatchSize = 200;
+    /**
+     * 每种通知方式的发送队列大小，同时也是单个接收对象最多积压的通知数
+     */
+    private int notifyQueueSize = 500;
+    /**
+     * 同一接收对象两次发送通知的最小间隔（秒），间隔内的多条通知合并为汇总发送
+     */
+    private int notifyTargetInterval = 3;
+    /**
+     * 相同通知的合并窗口（秒），窗口内重复的通知只补发一次
+     */
+    private int notifyCoalesceWindow = 60;
+    /**
+     * 通知发送失败的重试次数
+     */
+    private int notifyRetryCount = 3;
+
     @Override
     public void setLogCharset(Charset logCharset) {
         super.setLogCharset(logCharset);
         ServiceFileTailWatcher.setCharset(getLogCharset());
     }
+
+    public void setNotifyQueueSize(int notifyQueueSize) {
+        this.notifyQueueSize = notifyQueueSize;
+        NotifyDispatcher.setQueueSize(notifyQueueSize);
+    }
+
+    public void setNotifyTargetInterval(int notifyTargetInterval) {
+        this.notifyTargetInterval = notifyTargetInterval;
+        NotifyDispatcher.setTargetInterval(TimeUnit.SECONDS.toMillis(notifyTargetInterval));
+    }
+
+    public void setNotifyCoalesceWindow(int notifyCoalesceWindow) {
+        this.notifyCoalesceWindow = notifyCoalesceWindow;
+        NotifyDispatcher.setCoalesceWindow(TimeUnit.SECONDS.toMillis(notifyCoalesceWindow));
+    }
+
+    public void setNotifyRetryCount(int notifyRetryCount) {
+        this.notifyRetryCount = notifyRetryCount;
+        NotifyDispatcher.setRetryCount(notifyRetryCount);
+    }
 }
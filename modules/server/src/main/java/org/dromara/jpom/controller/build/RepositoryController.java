@@ -524,6 +524,8 @@ public class RepositoryController extends BaseServerController {
         repositoryService.delByKey(keyAndGlobal.getId());
         File rsaFile = BuildUtil.getRepositoryRsaFile(id + ServerConst.ID_RSA);
         FileUtil.del(rsaFile);
+        // 删除仓库本地镜像
+        FileUtil.del(BuildUtil.getRepositoryMirrorFile(id));
         return JsonMessage.success("删除成功");
     }
 
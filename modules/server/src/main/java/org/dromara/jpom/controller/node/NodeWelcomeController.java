@@ -25,8 +25,6 @@ package org.dromara.jpom.controller.node;
 import cn.hutool.core.date.DateTime;
 import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.db.Entity;
-import cn.hutool.db.Page;
 import cn.hutool.db.sql.Direction;
 import cn.hutool.db.sql.Order;
 import cn.keepbx.jpom.IJsonMessage;
@@ -39,6 +37,7 @@ import org.dromara.jpom.configuration.NodeConfig;
 import org.dromara.jpom.func.assets.model.MachineNodeModel;
 import org.dromara.jpom.func.assets.model.MachineNodeStatLogModel;
 import org.dromara.jpom.func.assets.server.MachineNodeStatLogServer;
+import org.dromara.jpom.func.assets.server.MachineNodeStatRollupServer;
 import org.dromara.jpom.model.BaseMachineModel;
 import org.dromara.jpom.model.data.NodeModel;
 import org.dromara.jpom.permission.SystemPermission;
@@ -61,11 +60,14 @@ import java.util.Optional;
 public class NodeWelcomeController extends BaseServerController {
 
     private final MachineNodeStatLogServer machineNodeStatLogServer;
+    private final MachineNodeStatRollupServer machineNodeStatRollupServer;
     private final NodeConfig nodeConfig;
 
     public NodeWelcomeController(MachineNodeStatLogServer machineNodeStatLogServer,
+                                 MachineNodeStatRollupServer machineNodeStatRollupServer,
                                  ServerConfig serverConfig) {
         this.machineNodeStatLogServer = machineNodeStatLogServer;
+        this.machineNodeStatRollupServer = machineNodeStatRollupServer;
         this.nodeConfig = serverConfig.getNode();
     }
 
@@ -94,14 +96,8 @@ public class NodeWelcomeController extends BaseServerController {
             endDate = DateUtil.endOfDay(endDate);
         }
         long endTime = endDate.getTime();
-        // 开启了节点信息采集
-        Page pageObj = new Page(1, 5000);
-        pageObj.addOrder(new Order("monitorTime", Direction.DESC));
-        Entity entity = Entity.create();
-        entity.set("machineId", useMachineId);
-        entity.set(" MONITORTIME", ">= " + startTime);
-        entity.set("MONITORTIME", "<= " + endTime);
-        return machineNodeStatLogServer.listPageOnlyResult(entity, pageObj);
+        // 根据时间范围自动选择原始数据或者汇总数据
+        return machineNodeStatRollupServer.listChart(useMachineId, startTime, endTime);
     }
 
     @RequestMapping(value = "processList", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -224,6 +224,10 @@ public class MachineSshController extends BaseGroupNameController {
             return new JsonMessage<>(505, "ssh连接失败：" + e.getMessage());
         }
         int i = add ? machineSshServer.insert(sshModel) : machineSshServer.updateById(sshModel);
+        if (!add) {
+            // 关闭旧的连接
+            machineSshServer.invalidateSession(sshModel.getId());
+        }
         return JsonMessage.success("操作成功");
     }
 
@@ -234,6 +238,7 @@ public class MachineSshController extends BaseGroupNameController {
         long count = sshService.countByMachine(id);
         Assert.state(count <= 0, "当前机器SSH还关联" + count + "个ssh不能删除");
         machineSshServer.delByKey(id);
+        machineSshServer.invalidateSession(id);
         return JsonMessage.success("操作成功");
     }
 
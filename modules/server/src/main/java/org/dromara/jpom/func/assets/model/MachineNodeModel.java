@@ -209,7 +209,7 @@ public class MachineNodeModel extends BaseGroupNameModel implements INodeInfo {
     private String installId;
 
     /**
-     * 传输加密方式 0 不加密 1 BASE64 2 AES
+     * 传输加密方式 0 不加密 1 BASE64 2 AES 3 AES-GCM（请求体整体加密）
      */
     private Integer transportEncryption;
 
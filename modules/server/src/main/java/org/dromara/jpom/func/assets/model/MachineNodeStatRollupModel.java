@@ -0,0 +1,73 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.func.assets.model;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.dromara.jpom.db.TableName;
+import org.dromara.jpom.model.BaseDbModel;
+
+/**
+ * 机器节点统计汇总（按时间粒度汇总 {@link MachineNodeStatLogModel}）
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/8
+ */
+@EqualsAndHashCode(callSuper = true)
+@TableName(value = "MACHINE_NODE_STAT_ROLLUP", name = "资产机器节点统计汇总")
+@Data
+public class MachineNodeStatRollupModel extends BaseDbModel {
+    /**
+     * 机器id
+     */
+    private String machineId;
+    /**
+     * 汇总粒度（秒）
+     */
+    private Integer tier;
+    /**
+     * 汇总开始时间
+     */
+    private Long bucketTime;
+    /**
+     * 原始数据条数
+     */
+    private Integer sampleCount;
+    private Double occupyCpuMin;
+    private Double occupyCpuAvg;
+    private Double occupyCpuMax;
+    private Double occupyMemoryMin;
+    private Double occupyMemoryAvg;
+    private Double occupyMemoryMax;
+    private Double occupyDiskMin;
+    private Double occupyDiskAvg;
+    private Double occupyDiskMax;
+    private Double occupySwapMemoryAvg;
+    private Double occupyVirtualMemoryAvg;
+    private Integer networkDelayAvg;
+    private Integer networkDelayMax;
+    private Long netTxBytesAvg;
+    private Long netTxBytesMax;
+    private Long netRxBytesAvg;
+    private Long netRxBytesMax;
+}
@@ -28,7 +28,8 @@ import cn.hutool.core.comparator.CompareUtil;
 import cn.hutool.core.convert.Convert;
 import cn.hutool.core.date.SystemClock;
 import cn.hutool.core.net.NetUtil;
-import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.thread.ExecutorBuilder;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
 import cn.hutool.core.util.NumberUtil;
 import cn.hutool.core.util.ObjectUtil;
 import cn.hutool.core.util.StrUtil;
@@ -58,17 +59,16 @@ import org.dromara.jpom.service.h2db.BaseDbService;
 import org.dromara.jpom.service.node.NodeService;
 import org.dromara.jpom.system.ServerConfig;
 import org.dromara.jpom.system.db.InitDb;
+import org.dromara.jpom.transport.INodeInfo;
+import org.dromara.jpom.transport.MuxChannelManager;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
 import javax.servlet.http.HttpServletRequest;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 /**
@@ -85,6 +85,17 @@ public class MachineNodeServer extends BaseDbService<MachineNodeModel> implement
     private final ClusterInfoService clusterInfoService;
 
     private static final String TASK_ID = "system_monitor_node";
+    /**
+     * 心跳请求的超时时间（秒）
+     */
+    private static final int HEART_TIMEOUT = 30;
+    private final HeartTickStat heartTickStat = new HeartTickStat();
+    private ExecutorService heartExecutor;
+    /**
+     * 上一个周期因为任务队列已满没有检测的机器，下个周期优先检测
+     */
+    private final Set<String> deferredMachineIds = ConcurrentHashMap.newKeySet();
+    private MachineNodeStatPushReceiver pushReceiver;
 
     public MachineNodeServer(NodeService nodeService,
                              ServerConfig serverConfig,
@@ -194,6 +205,21 @@ public class MachineNodeServer extends BaseDbService<MachineNodeModel> implement
     public void startLoad() {
         // 启动心跳检测
         int heartSecond = nodeConfig.getHeartSecond();
+        int heartConcurrent = nodeConfig.getHeartConcurrent();
+        this.heartExecutor = ExecutorBuilder.create()
+            .setCorePoolSize(heartConcurrent)
+            .setMaxPoolSize(heartConcurrent)
+            .useArrayBlockingQueue(1000)
+            .setThreadFactory(ThreadFactoryBuilder.create().setNamePrefix("jpom-machine-heart-").build())
+            // 队列满时拒绝，不能在调度线程中执行导致整个心跳周期被慢节点阻塞
+            .setHandler(new ThreadPoolExecutor.AbortPolicy())
+            .build();
+        JpomApplication.register("machine-heart", heartExecutor);
+        if (nodeConfig.isHeartPush()) {
+            // 节点主动推送，心跳检测只负责订阅和判断是否超时
+            this.pushReceiver = new MachineNodeStatPushReceiver(this);
+            this.pushReceiver.start();
+        }
         ScheduledExecutorService scheduler = JpomApplication.getScheduledExecutorService();
         scheduler.scheduleWithFixedDelay(this, 0, heartSecond, TimeUnit.SECONDS);
     }
@@ -228,50 +254,184 @@ public class MachineNodeServer extends BaseDbService<MachineNodeModel> implement
 
 
     private void checkList(List<MachineNodeModel> machineNodeModels) {
+        if (pushReceiver != null) {
+            pushReceiver.updateMachines(ObjectUtil.defaultIfNull(machineNodeModels, Collections.emptyList()));
+        }
         if (CollUtil.isEmpty(machineNodeModels)) {
             return;
         }
-        machineNodeModels.forEach(machineNodeModel -> {
+        long startTime = SystemClock.now();
+        // 上个周期被推迟的机器排在前面
+        List<MachineNodeModel> sortedModels = new ArrayList<>(machineNodeModels);
+        sortedModels.sort(Comparator.comparing(machineNodeModel -> !deferredMachineIds.contains(machineNodeModel.getId())));
+        deferredMachineIds.clear();
+        List<Future<HeartResult>> futures = new ArrayList<>(sortedModels.size());
+        for (MachineNodeModel machineNodeModel : sortedModels) {
             // 超时时间统一，避免长时间无响应
-            machineNodeModel.setJpomTimeout(30);
-            //
-            ThreadUtil.execute(() -> {
+            machineNodeModel.setJpomTimeout(HEART_TIMEOUT);
+            try {
+                if (pushReceiver != null) {
+                    futures.add(heartExecutor.submit(() -> this.checkPushStat(machineNodeModel)));
+                } else {
+                    futures.add(heartExecutor.submit(() -> this.requestStatInfo(machineNodeModel)));
+                }
+            } catch (RejectedExecutionException e) {
+                // 本周期跳过，保留上一次的状态
+                deferredMachineIds.add(machineNodeModel.getId());
+                futures.add(null);
+            }
+        }
+        if (!deferredMachineIds.isEmpty()) {
+            log.warn("心跳检测任务过多，{} 个机器推迟到下个周期检测", deferredMachineIds.size());
+        }
+        List<HeartResult> results = new ArrayList<>(futures.size());
+        // 单个节点无响应不能阻塞整个心跳周期，所有节点共用一个截止时间
+        long deadline = startTime + TimeUnit.SECONDS.toMillis(HEART_TIMEOUT + 5);
+        for (int i = 0; i < futures.size(); i++) {
+            Future<HeartResult> future = futures.get(i);
+            if (future == null) {
+                continue;
+            }
+            MachineNodeModel machineNodeModel = sortedModels.get(i);
+            try {
+                long timeout = Math.max(deadline - SystemClock.now(), 0);
+                Optional.ofNullable(future.get(timeout, TimeUnit.MILLISECONDS)).ifPresent(results::add);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                log.warn("获取节点监控信息超时：{}", machineNodeModel.getName());
+                results.add(this.createStatusResult(machineNodeModel, 0, StrUtil.format("获取节点监控信息超时({}秒)", HEART_TIMEOUT)));
+            } catch (ExecutionException e) {
+                Throwable cause = ObjectUtil.defaultIfNull(e.getCause(), e);
+                log.error("获取节点监控信息失败：{}", machineNodeModel.getName(), cause);
+                results.add(this.createStatusResult(machineNodeModel, 0, StrUtil.emptyToDefault(cause.getMessage(), cause.getClass().getSimpleName())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        long collectTime = SystemClock.now();
+        // 一个事务中批量保存本次心跳的结果
+        this.saveHeartResults(results);
+        long endTime = SystemClock.now();
+        heartTickStat.onTick(results, collectTime - startTime, endTime - collectTime);
+    }
+
+    /**
+     * 推送模式下检查节点，订阅节点的推送并判断是否超时没有收到推送
+     *
+     * @param machineNodeModel 机器
+     * @return 需要保存的结果，正常推送中返回 null
+     */
+    private HeartResult checkPushStat(MachineNodeModel machineNodeModel) {
+        String url = machineNodeModel.getJpomUrl();
+        int heartSecond = nodeConfig.getHeartSecond();
+        INodeInfo nodeInfo = NodeForward.coverNodeInfo(machineNodeModel);
+        String message = pushReceiver.subscribeMessage(heartSecond);
+        if (!MuxChannelManager.subscribe(nodeInfo, machineNodeModel.getJpomTimeout(), message, pushReceiver.needFull(url))) {
+            // 节点版本不支持或者连接失败，回退到轮询
+            pushReceiver.onUnsubscribed(url);
+            return this.requestStatInfo(machineNodeModel);
+        }
+        pushReceiver.onSubscribed(url);
+        // 连续 3 个周期没有收到推送认为节点已经离线
+        long staleTime = TimeUnit.SECONDS.toMillis(heartSecond) * 3;
+        if (SystemClock.now() - pushReceiver.lastActiveTime(url) > staleTime) {
+            return this.createStatusResult(machineNodeModel, 0, StrUtil.format("超过 {} 秒没有收到节点推送的状态", heartSecond * 3));
+        }
+        return null;
+    }
+
+    /**
+     * 请求节点的统计信息
+     *
+     * @param machineNodeModel 机器
+     * @return 需要保存的结果
+     */
+    private HeartResult requestStatInfo(MachineNodeModel machineNodeModel) {
+        try {
+            BaseServerController.resetInfo(UserModel.EMPTY);
+            long timeMillis = SystemClock.now();
+            JsonMessage<JSONObject> message = NodeForward.request(machineNodeModel, NodeUrl.GetStatInfo, new JSONObject());
+            int networkTime = (int) (System.currentTimeMillis() - timeMillis);
+            JSONObject jsonObject;
+            if (message.success()) {
+                jsonObject = message.getData(JSONObject.class);
+            } else {
+                // 状态码错
+                return this.createStatusResult(machineNodeModel, 3, message.toString());
+            }
+            jsonObject.put("networkDelay", networkTime);
+            return this.createStatInfoResult(machineNodeModel, jsonObject);
+        } catch (AgentAuthorizeException agentException) {
+            return this.createStatusResult(machineNodeModel, 2, agentException.getMessage());
+        } catch (AgentException e) {
+            return this.createStatusResult(machineNodeModel, 0, e.getMessage());
+        } catch (Exception e) {
+            log.error("获取节点监控信息失败", e);
+            return this.createStatusResult(machineNodeModel, 0, e.getMessage());
+        } finally {
+            BaseServerController.removeEmpty();
+        }
+    }
+
+    /**
+     * 批量保存心跳结果
+     *
+     * @param results 结果
+     */
+    void saveHeartResults(List<HeartResult> results) {
+        if (results.isEmpty()) {
+            return;
+        }
+        try {
+            this.saveHeartResultsTx(results);
+        } catch (Exception e) {
+            if (results.size() == 1) {
+                log.error("保存节点心跳结果失败：{}", results.get(0).machineNodeModel.getId(), e);
+                return;
+            }
+            // 避免一条异常数据回滚所有节点的状态，逐个重新保存
+            log.warn("批量保存节点心跳结果失败,逐个保存：{}", e.getMessage());
+            for (HeartResult result : results) {
                 try {
-                    BaseServerController.resetInfo(UserModel.EMPTY);
-                    long timeMillis = SystemClock.now();
-                    JsonMessage<JSONObject> message = NodeForward.request(machineNodeModel, NodeUrl.GetStatInfo, new JSONObject());
-                    int networkTime = (int) (System.currentTimeMillis() - timeMillis);
-                    JSONObject jsonObject;
-                    if (message.success()) {
-                        jsonObject = message.getData(JSONObject.class);
-                    } else {
-                        // 状态码错
-                        this.updateStatus(machineNodeModel, 3, message.toString());
-                        return;
-                    }
-                    jsonObject.put("networkDelay", networkTime);
-                    this.saveStatInfo(machineNodeModel, jsonObject);
-                } catch (AgentAuthorizeException agentException) {
-                    this.updateStatus(machineNodeModel, 2, agentException.getMessage());
-                } catch (AgentException e) {
-                    this.updateStatus(machineNodeModel, 0, e.getMessage());
-                } catch (Exception e) {
-                    this.updateStatus(machineNodeModel, 0, e.getMessage());
-                    log.error("获取节点监控信息失败", e);
-                } finally {
-                    BaseServerController.removeEmpty();
+                    this.saveHeartResultsTx(Collections.singletonList(result));
+                } catch (Exception e1) {
+                    log.error("保存节点心跳结果失败：{}", result.machineNodeModel.getId(), e1);
                 }
-            });
+            }
+        }
+    }
+
+    private void saveHeartResultsTx(List<HeartResult> results) {
+        List<MachineNodeStatLogModel> statLogModels = results.stream()
+            .map(heartResult -> heartResult.statLogModel)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+        List<Object[]> workspaceStats = results.stream()
+            .flatMap(heartResult -> heartResult.workspaceStats.stream())
+            .collect(Collectors.toList());
+        String sql = "update " + nodeService.getTableName() + " set jpomProjectCount=?,jpomScriptCount=? where machineId=? and workspaceId=?";
+        this.tx(db -> {
+            for (HeartResult result : results) {
+                this.updateById(result.machineNodeModel);
+            }
+            if (!statLogModels.isEmpty()) {
+                machineNodeStatLogServer.insert(statLogModels);
+            }
+            if (!workspaceStats.isEmpty()) {
+                nodeService.executeBatch(sql, workspaceStats);
+            }
         });
     }
 
     /**
-     * 更新统计信息
+     * 解析统计信息
      *
      * @param machineNode 机器数据
      * @param data        统计数据
+     * @return 需要保存的结果
      */
-    private void saveStatInfo(MachineNodeModel machineNode, JSONObject data) {
+    HeartResult createStatInfoResult(MachineNodeModel machineNode, JSONObject data) {
         MachineNodeModel machineNodeModel = new MachineNodeModel();
         machineNodeModel.setId(machineNode.getId());
         String oshiError = data.getString("oshiError");
@@ -345,9 +505,9 @@ public class MachineNodeServer extends BaseDbService<MachineNodeModel> implement
             machineNodeModel.setOsLoadAverage(CollUtil.join(osLoadAverage, StrUtil.COMMA));
             machineNodeModel.setOsFileStoreTotal(jsonObject.getLong("osFileStoreTotal"));
         });
-        this.updateById(machineNodeModel);
+        HeartResult heartResult = new HeartResult(machineNodeModel);
         if (machineNodeStatLogModel.getMonitorTime() != null) {
-            machineNodeStatLogServer.insert(machineNodeStatLogModel);
+            heartResult.statLogModel = machineNodeStatLogModel;
         }
         //
         Optional.ofNullable(jpomInfo).ifPresent(jsonObject -> {
@@ -360,25 +520,21 @@ public class MachineNodeServer extends BaseDbService<MachineNodeModel> implement
                 JSONObject value = (JSONObject) entry.getValue();
                 int projectCount = value.getIntValue("projectCount", 0);
                 int scriptCount = value.getIntValue("scriptCount", 0);
-                Entity entity = Entity.create();
-                entity.set("jpomProjectCount", projectCount);
-                entity.set("jpomScriptCount", scriptCount);
-                Entity where = Entity.create();
-                where.set("machineId", machineNodeModel.getId());
-                where.set("workspaceId", key);
-                nodeService.update(entity, where);
+                heartResult.workspaceStats.add(new Object[]{projectCount, scriptCount, machineNodeModel.getId(), key});
             }
         });
+        return heartResult;
     }
 
     /**
-     * 更新机器状态
+     * 机器状态异常
      *
      * @param machineNode 机器信息
      * @param status      状态
      * @param msg         状态消息
+     * @return 需要保存的结果
      */
-    private void updateStatus(MachineNodeModel machineNode, int status, String msg) {
+    private HeartResult createStatusResult(MachineNodeModel machineNode, int status, String msg) {
         MachineNodeModel machineNodeModel = new MachineNodeModel();
         machineNodeModel.setId(machineNode.getId());
         machineNodeModel.setStatus(status);
@@ -388,7 +544,20 @@ public class MachineNodeServer extends BaseDbService<MachineNodeModel> implement
         machineNodeModel.setOsOccupyCpu(-99D);
         machineNodeModel.setOsOccupyMemory(-99D);
         machineNodeModel.setOsOccupyDisk(-99D);
-        this.updateById(machineNodeModel);
+        HeartResult heartResult = new HeartResult(machineNodeModel);
+        heartResult.failed = true;
+        return heartResult;
+    }
+
+    /**
+     * 心跳统计指标
+     *
+     * @return json
+     */
+    public JSONObject heartMetrics() {
+        JSONObject jsonObject = heartTickStat.toJson();
+        Optional.ofNullable(pushReceiver).ifPresent(receiver -> jsonObject.put("push", receiver.metrics()));
+        return jsonObject;
     }
 
     private MachineNodeModel resolveMachineData(HttpServletRequest request) {
@@ -522,4 +691,67 @@ public class MachineNodeServer extends BaseDbService<MachineNodeModel> implement
         nodeModel.setGroup(machineNodeModel.getGroupName());
         return nodeModel;
     }
+
+    /**
+     * 单台机器一次心跳需要保存的结果
+     */
+    static class HeartResult {
+        private final MachineNodeModel machineNodeModel;
+        private MachineNodeStatLogModel statLogModel;
+        private final List<Object[]> workspaceStats = new ArrayList<>();
+        private boolean failed;
+
+        private HeartResult(MachineNodeModel machineNodeModel) {
+            this.machineNodeModel = machineNodeModel;
+        }
+    }
+
+    /**
+     * 心跳检测每次执行的耗时统计
+     */
+    private static class HeartTickStat {
+        private final LongAdder tickCount = new LongAdder();
+        private final LongAdder failedCount = new LongAdder();
+        private volatile long lastTickTime;
+        private volatile int lastMachineCount;
+        private volatile int lastFailedCount;
+        private volatile long lastCollectTime;
+        private volatile long lastSaveTime;
+        private volatile long maxCollectTime;
+        private volatile long maxSaveTime;
+        private final LongAdder totalCollectTime = new LongAdder();
+        private final LongAdder totalSaveTime = new LongAdder();
+
+        private void onTick(List<HeartResult> results, long collectTime, long saveTime) {
+            int failed = (int) results.stream().filter(heartResult -> heartResult.failed).count();
+            tickCount.increment();
+            failedCount.add(failed);
+            lastTickTime = SystemClock.now();
+            lastMachineCount = results.size();
+            lastFailedCount = failed;
+            lastCollectTime = collectTime;
+            lastSaveTime = saveTime;
+            maxCollectTime = Math.max(maxCollectTime, collectTime);
+            maxSaveTime = Math.max(maxSaveTime, saveTime);
+            totalCollectTime.add(collectTime);
+            totalSaveTime.add(saveTime);
+        }
+
+        private JSONObject toJson() {
+            long count = tickCount.sum();
+            JSONObject jsonObject = new JSONObject();
+            jsonObject.put("tickCount", count);
+            jsonObject.put("failedCount", failedCount.sum());
+            jsonObject.put("lastTickTime", lastTickTime);
+            jsonObject.put("lastMachineCount", lastMachineCount);
+            jsonObject.put("lastFailedCount", lastFailedCount);
+            jsonObject.put("lastCollectTime", lastCollectTime);
+            jsonObject.put("lastSaveTime", lastSaveTime);
+            jsonObject.put("maxCollectTime", maxCollectTime);
+            jsonObject.put("maxSaveTime", maxSaveTime);
+            jsonObject.put("avgCollectTime", count == 0 ? 0 : totalCollectTime.sum() / count);
+            jsonObject.put("avgSaveTime", count == 0 ? 0 : totalSaveTime.sum() / count);
+            return jsonObject;
+        }
+    }
 }
@@ -0,0 +1,243 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.func.assets.server;
+
+import cn.hutool.core.date.SystemClock;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.JpomApplication;
+import org.dromara.jpom.func.assets.model.MachineNodeModel;
+import org.dromara.jpom.transport.INodeInfo;
+import org.dromara.jpom.transport.MuxChannelManager;
+import org.dromara.jpom.util.JsonDeltaCodec;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * 接收节点主动推送的统计信息
+ * <p>
+ * 推送的数据先进入有界队列，由单独的线程批量解码保存，同一批次中同一台机器只保存最新的一条
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/16
+ */
+@Slf4j
+class MachineNodeStatPushReceiver implements BiConsumer<INodeInfo, String> {
+
+    /**
+     * 事件类型，和插件端保持一致
+     */
+    private static final String TYPE = "stat";
+    private static final int QUEUE_CAPACITY = 2048;
+    private static final int BATCH_SIZE = 200;
+
+    private final MachineNodeServer machineNodeServer;
+    private final BlockingQueue<PushFrame> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    /**
+     * 节点地址 -> 接收状态
+     */
+    private final Map<String, MachineState> states = new ConcurrentHashMap<>();
+    private final LongAdder receivedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder savedCount = new LongAdder();
+    private final LongAdder resyncCount = new LongAdder();
+    private volatile long lastSaveTime;
+
+    MachineNodeStatPushReceiver(MachineNodeServer machineNodeServer) {
+        this.machineNodeServer = machineNodeServer;
+    }
+
+    void start() {
+        ExecutorService executorService = Executors.newSingleThreadExecutor(ThreadFactoryBuilder.create().setNamePrefix("jpom-machine-push-").build());
+        JpomApplication.register("machine-push", executorService);
+        executorService.execute(this::consume);
+        MuxChannelManager.setEventListener(this);
+    }
+
+    /**
+     * 订阅消息
+     *
+     * @param interval 推送间隔 秒
+     * @return json
+     */
+    String subscribeMessage(int interval) {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("type", TYPE);
+        jsonObject.put("interval", interval);
+        return jsonObject.toString();
+    }
+
+    /**
+     * 同步需要接收推送的机器
+     *
+     * @param machineNodeModels 机器
+     */
+    void updateMachines(List<MachineNodeModel> machineNodeModels) {
+        Set<String> urls = new HashSet<>(machineNodeModels.size());
+        for (MachineNodeModel machineNodeModel : machineNodeModels) {
+            urls.add(machineNodeModel.getJpomUrl());
+            states.computeIfAbsent(machineNodeModel.getJpomUrl(), s -> new MachineState()).machineNodeModel = machineNodeModel;
+        }
+        states.keySet().retainAll(urls);
+    }
+
+    /**
+     * 订阅成功
+     *
+     * @param url 节点地址
+     */
+    void onSubscribed(String url) {
+        Optional.ofNullable(states.get(url)).ifPresent(machineState -> {
+            if (machineState.subscribeTime == 0) {
+                machineState.subscribeTime = SystemClock.now();
+            }
+        });
+    }
+
+    /**
+     * 节点不支持推送，使用轮询
+     *
+     * @param url 节点地址
+     */
+    void onUnsubscribed(String url) {
+        Optional.ofNullable(states.get(url)).ifPresent(machineState -> machineState.subscribeTime = 0);
+    }
+
+    /**
+     * 是否需要节点重新推送完整数据
+     *
+     * @param url 节点地址
+     * @return true 需要
+     */
+    boolean needFull(String url) {
+        MachineState machineState = states.get(url);
+        return machineState == null || machineState.decoder.needFull();
+    }
+
+    /**
+     * 最近一次活跃时间，还没有收到推送时为订阅时间
+     *
+     * @param url 节点地址
+     * @return 时间戳
+     */
+    long lastActiveTime(String url) {
+        MachineState machineState = states.get(url);
+        if (machineState == null) {
+            return SystemClock.now();
+        }
+        return Math.max(machineState.subscribeTime, machineState.lastReceiveTime);
+    }
+
+    @Override
+    public void accept(INodeInfo nodeInfo, String event) {
+        JSONObject jsonObject = JSONObject.parseObject(event);
+        if (!TYPE.equals(jsonObject.getString("type"))) {
+            return;
+        }
+        receivedCount.increment();
+        if (!queue.offer(new PushFrame(nodeInfo.url(), jsonObject, SystemClock.now()))) {
+            droppedCount.increment();
+            log.debug("节点推送队列已满，丢弃 {} 的统计信息", nodeInfo.name());
+        }
+    }
+
+    private void consume() {
+        List<PushFrame> batch = new ArrayList<>(BATCH_SIZE);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                this.process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("保存节点推送的统计信息异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<PushFrame> batch) {
+        Map<String, MachineNodeServer.HeartResult> latest = new LinkedHashMap<>(batch.size());
+        for (PushFrame pushFrame : batch) {
+            MachineState machineState = states.get(pushFrame.url);
+            if (machineState == null) {
+                continue;
+            }
+            machineState.lastReceiveTime = pushFrame.receiveTime;
+            JSONObject data = machineState.decoder.decode(pushFrame.frame);
+            if (data == null) {
+                // 丢失了数据，下一次心跳检查时要求节点重新推送完整数据
+                resyncCount.increment();
+                continue;
+            }
+            MachineNodeModel machineNodeModel = machineState.machineNodeModel;
+            data.put("networkDelay", Math.max(MuxChannelManager.pingDelay(machineNodeModel), 0));
+            latest.put(machineNodeModel.getId(), machineNodeServer.createStatInfoResult(machineNodeModel, data));
+        }
+        if (latest.isEmpty()) {
+            return;
+        }
+        machineNodeServer.saveHeartResults(new ArrayList<>(latest.values()));
+        savedCount.add(latest.size());
+        lastSaveTime = SystemClock.now();
+    }
+
+    JSONObject metrics() {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("machineCount", states.size());
+        jsonObject.put("subscribeCount", states.values().stream().filter(machineState -> machineState.subscribeTime > 0).count());
+        jsonObject.put("queueSize", queue.size());
+        jsonObject.put("receivedCount", receivedCount.sum());
+        jsonObject.put("droppedCount", droppedCount.sum());
+        jsonObject.put("savedCount", savedCount.sum());
+        jsonObject.put("resyncCount", resyncCount.sum());
+        jsonObject.put("lastSaveTime", lastSaveTime);
+        return jsonObject;
+    }
+
+    private static class MachineState {
+        private final JsonDeltaCodec.Decoder decoder = new JsonDeltaCodec.Decoder();
+        private volatile MachineNodeModel machineNodeModel;
+        private volatile long subscribeTime;
+        private volatile long lastReceiveTime;
+    }
+
+    private static class PushFrame {
+        private final String url;
+        private final JSONObject frame;
+        private final long receiveTime;
+
+        private PushFrame(String url, JSONObject frame, long receiveTime) {
+            this.url = url;
+            this.frame = frame;
+            this.receiveTime = receiveTime;
+        }
+    }
+}
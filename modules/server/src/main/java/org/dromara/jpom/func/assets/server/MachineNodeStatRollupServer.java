@@ -0,0 +1,457 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.func.assets.server;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.date.DateTime;
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.date.SystemClock;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.db.Entity;
+import cn.hutool.db.Page;
+import cn.hutool.db.sql.Condition;
+import cn.hutool.db.sql.Direction;
+import cn.hutool.db.sql.Order;
+import cn.keepbx.jpom.event.IAsyncLoad;
+import cn.keepbx.jpom.event.ISystemTask;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.JpomApplication;
+import org.dromara.jpom.configuration.NodeConfig;
+import org.dromara.jpom.func.assets.model.MachineNodeStatLogModel;
+import org.dromara.jpom.func.assets.model.MachineNodeStatRollupModel;
+import org.dromara.jpom.service.h2db.BaseDbService;
+import org.dromara.jpom.system.ServerConfig;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 机器节点统计汇总
+ * <p>
+ * 定时将原始统计数据增量汇总为 1 分钟、15 分钟、1 小时三个粒度，每个粒度单独配置保留天数。
+ * 每个时间段只在结束后汇总一次，并按 (machineId, tier, bucketTime) 写入，集群中多个服务端同时汇总时不会产生重复数据。
+ * 查询监控图表时自动选择能覆盖查询范围的粒度
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/8
+ */
+@Service
+@Slf4j
+public class MachineNodeStatRollupServer extends BaseDbService<MachineNodeStatRollupModel> implements IAsyncLoad, ISystemTask, Runnable {
+
+    /**
+     * 图表最多返回的数据条数
+     */
+    private static final int MAX_POINTS = 5000;
+    /**
+     * 时间段结束后延迟汇总的时间，等待正在进行的心跳数据写入
+     */
+    private static final long CLOSE_DELAY = TimeUnit.MINUTES.toMillis(1);
+
+    private final NodeConfig nodeConfig;
+    private final MachineNodeStatLogServer machineNodeStatLogServer;
+
+    public MachineNodeStatRollupServer(ServerConfig serverConfig,
+                                       MachineNodeStatLogServer machineNodeStatLogServer) {
+        this.nodeConfig = serverConfig.getNode();
+        this.machineNodeStatLogServer = machineNodeStatLogServer;
+    }
+
+    /**
+     * 汇总粒度
+     */
+    @Getter
+    public enum Tier {
+        /**
+         * 1 分钟，由原始数据汇总
+         */
+        MINUTE(60, TimeUnit.HOURS.toMillis(1)),
+        /**
+         * 15 分钟，由 1 分钟数据汇总
+         */
+        QUARTER(15 * 60, TimeUnit.HOURS.toMillis(1)),
+        /**
+         * 1 小时，由 15 分钟数据汇总
+         */
+        HOUR(60 * 60, TimeUnit.DAYS.toMillis(1)),
+        ;
+        /**
+         * 粒度（秒）
+         */
+        private final int seconds;
+        /**
+         * 每次汇总处理的时间窗口（毫秒），必须是粒度的整数倍
+         */
+        private final long window;
+
+        Tier(int seconds, long window) {
+            this.seconds = seconds;
+            this.window = window;
+        }
+
+        public long millis() {
+            return seconds * 1000L;
+        }
+    }
+
+    @Override
+    public void startLoad() {
+        JpomApplication.getScheduledExecutorService().scheduleWithFixedDelay(this, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void run() {
+        long closeTime = SystemClock.now() - CLOSE_DELAY;
+        for (Tier tier : Tier.values()) {
+            try {
+                this.rollup(tier, closeTime);
+            } catch (Exception e) {
+                log.error("汇总机器节点统计数据异常：{}", tier, e);
+                // 低粒度失败时高粒度的数据源不完整
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void executeTask() {
+        for (Tier tier : Tier.values()) {
+            int keepDays = this.keepDays(tier);
+            if (keepDays <= 0) {
+                continue;
+            }
+            DateTime dateTime = DateUtil.offsetDay(DateUtil.beginOfDay(DateTime.now()), -keepDays);
+            Entity entity = Entity.create();
+            entity.set("tier", tier.getSeconds());
+            entity.set("bucketTime", "< " + dateTime.getTime());
+            int del = this.del(entity);
+            log.info("自动清理 {} 条机器节点统计汇总数据：{}", del, tier);
+        }
+    }
+
+    private int keepDays(Tier tier) {
+        switch (tier) {
+            case MINUTE:
+                return nodeConfig.getStatLogMinuteKeepDays();
+            case QUARTER:
+                return nodeConfig.getStatLogQuarterKeepDays();
+            case HOUR:
+                return nodeConfig.getStatLogHourKeepDays();
+            default:
+                throw new IllegalArgumentException("不支持的粒度：" + tier);
+        }
+    }
+
+    /**
+     * 增量汇总，从已经汇总的最后一个时间段之后开始，只汇总已经结束的时间段
+     * <p>
+     * 粒度之间是整数倍关系，低粒度在同一次执行中已经汇总到结束时间，高粒度按自身粒度对齐结束时间即可，
+     * 所以 1 小时粒度只在整点之后执行一次汇总
+     *
+     * @param tier      粒度
+     * @param closeTime 结束时间，早于该时间的数据不会再变化
+     */
+    private void rollup(Tier tier, long closeTime) {
+        long endTime = closeTime / tier.millis() * tier.millis();
+        Long lastBucketTime = this.lastBucketTime(tier);
+        Long startTime = lastBucketTime != null ? Long.valueOf(lastBucketTime + tier.millis()) : this.firstSourceTime(tier);
+        if (startTime == null) {
+            return;
+        }
+        long windowStart = startTime / tier.millis() * tier.millis();
+        while (windowStart < endTime) {
+            long windowEnd = Math.min(windowStart + tier.getWindow(), endTime);
+            List<MachineNodeStatRollupModel> list = this.rollupWindow(tier, windowStart, windowEnd);
+            list.forEach(this::upsertBucket);
+            windowStart = windowEnd;
+        }
+    }
+
+    /**
+     * 写入汇总数据，主键由 (machineId, tier, bucketTime) 决定，其他服务端已经写入时更新
+     *
+     * @param model 汇总数据
+     */
+    private void upsertBucket(MachineNodeStatRollupModel model) {
+        try {
+            this.insert(model);
+        } catch (Exception e) {
+            if (this.updateById(model) <= 0) {
+                throw e;
+            }
+            log.debug("机器节点统计汇总数据已经存在：{} {}", model.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 汇总一个时间窗口的数据
+     *
+     * @param tier        粒度
+     * @param windowStart 开始时间（包含）
+     * @param windowEnd   结束时间（不包含）
+     * @return 汇总结果
+     */
+    private List<MachineNodeStatRollupModel> rollupWindow(Tier tier, long windowStart, long windowEnd) {
+        Map<String, Bucket> buckets = new LinkedHashMap<>();
+        Function<Long, Long> bucketFn = time -> time / tier.millis() * tier.millis();
+        if (tier == Tier.MINUTE) {
+            List<MachineNodeStatLogModel> logModels = machineNodeStatLogServer.findByCondition(
+                new Condition("monitorTime", ">=", windowStart),
+                new Condition("monitorTime", "<", windowEnd));
+            for (MachineNodeStatLogModel logModel : logModels) {
+                if (logModel.getMonitorTime() == null) {
+                    continue;
+                }
+                long bucketTime = bucketFn.apply(logModel.getMonitorTime());
+                buckets.computeIfAbsent(logModel.getMachineId() + StrUtil.COLON + bucketTime, s -> new Bucket(logModel.getMachineId(), bucketTime))
+                    .add(logModel);
+            }
+        } else {
+            Tier source = Tier.values()[tier.ordinal() - 1];
+            List<MachineNodeStatRollupModel> rollupModels = this.findByCondition(
+                new Condition("tier", source.getSeconds()),
+                new Condition("bucketTime", ">=", windowStart),
+                new Condition("bucketTime", "<", windowEnd));
+            for (MachineNodeStatRollupModel rollupModel : rollupModels) {
+                long bucketTime = bucketFn.apply(rollupModel.getBucketTime());
+                buckets.computeIfAbsent(rollupModel.getMachineId() + StrUtil.COLON + bucketTime, s -> new Bucket(rollupModel.getMachineId(), bucketTime))
+                    .add(rollupModel);
+            }
+        }
+        return buckets.values().stream().map(bucket -> bucket.toModel(tier)).collect(Collectors.toList());
+    }
+
+    private Long lastBucketTime(Tier tier) {
+        Entity where = Entity.create();
+        where.set("tier", tier.getSeconds());
+        List<MachineNodeStatRollupModel> list = this.queryList(where, 1, new Order("bucketTime", Direction.DESC));
+        return Optional.ofNullable(CollUtil.getFirst(list)).map(MachineNodeStatRollupModel::getBucketTime).orElse(null);
+    }
+
+    private Long firstSourceTime(Tier tier) {
+        if (tier == Tier.MINUTE) {
+            Entity where = Entity.create();
+            where.set("monitorTime", "> 0");
+            List<MachineNodeStatLogModel> list = machineNodeStatLogServer.queryList(where, 1, new Order("monitorTime", Direction.ASC));
+            return Optional.ofNullable(CollUtil.getFirst(list)).map(MachineNodeStatLogModel::getMonitorTime).orElse(null);
+        }
+        Tier source = Tier.values()[tier.ordinal() - 1];
+        Entity where = Entity.create();
+        where.set("tier", source.getSeconds());
+        List<MachineNodeStatRollupModel> list = this.queryList(where, 1, new Order("bucketTime", Direction.ASC));
+        return Optional.ofNullable(CollUtil.getFirst(list)).map(MachineNodeStatRollupModel::getBucketTime).orElse(null);
+    }
+
+    /**
+     * 查询监控图表数据，优先使用原始数据，数据量过大或者超过保留时间时使用能覆盖查询范围的汇总粒度
+     *
+     * @param machineId 机器id
+     * @param startTime 开始时间
+     * @param endTime   结束时间
+     * @return 统计数据（汇总数据使用平均值）
+     */
+    public List<MachineNodeStatLogModel> listChart(String machineId, long startTime, long endTime) {
+        long range = Math.max(endTime - startTime, 0);
+        long heartMillis = nodeConfig.getHeartSecond() * 1000L;
+        if (range / heartMillis <= MAX_POINTS && this.covered(nodeConfig.getStatLogKeepDays(), startTime)) {
+            Page pageObj = new Page(1, MAX_POINTS);
+            pageObj.addOrder(new Order("monitorTime", Direction.DESC));
+            Entity entity = Entity.create();
+            entity.set("machineId", machineId);
+            entity.set(" MONITORTIME", ">= " + startTime);
+            entity.set("MONITORTIME", "<= " + endTime);
+            return machineNodeStatLogServer.listPageOnlyResult(entity, pageObj);
+        }
+        Tier[] tiers = Tier.values();
+        Tier useTier = tiers[tiers.length - 1];
+        for (Tier tier : tiers) {
+            if (range / tier.millis() <= MAX_POINTS && this.covered(this.keepDays(tier), startTime)) {
+                useTier = tier;
+                break;
+            }
+        }
+        Page pageObj = new Page(1, MAX_POINTS);
+        pageObj.addOrder(new Order("bucketTime", Direction.DESC));
+        Entity entity = Entity.create();
+        entity.set("machineId", machineId);
+        entity.set("tier", useTier.getSeconds());
+        entity.set(" bucketTime", ">= " + startTime);
+        entity.set("bucketTime", "<= " + endTime);
+        List<MachineNodeStatRollupModel> list = this.listPageOnlyResult(entity, pageObj);
+        return list.stream().map(this::toLogModel).collect(Collectors.toList());
+    }
+
+    /**
+     * 保留天数是否能覆盖开始时间
+     *
+     * @param keepDays  保留天数
+     * @param startTime 开始时间
+     * @return true 能覆盖
+     */
+    private boolean covered(int keepDays, long startTime) {
+        if (keepDays <= 0) {
+            return true;
+        }
+        DateTime dateTime = DateUtil.offsetDay(DateUtil.beginOfDay(DateTime.now()), -keepDays);
+        return startTime >= dateTime.getTime();
+    }
+
+    private MachineNodeStatLogModel toLogModel(MachineNodeStatRollupModel rollupModel) {
+        MachineNodeStatLogModel logModel = new MachineNodeStatLogModel();
+        logModel.setId(rollupModel.getId());
+        logModel.setMachineId(rollupModel.getMachineId());
+        logModel.setMonitorTime(rollupModel.getBucketTime());
+        logModel.setOccupyCpu(rollupModel.getOccupyCpuAvg());
+        logModel.setOccupyMemory(rollupModel.getOccupyMemoryAvg());
+        logModel.setOccupyDisk(rollupModel.getOccupyDiskAvg());
+        logModel.setOccupySwapMemory(rollupModel.getOccupySwapMemoryAvg());
+        logModel.setOccupyVirtualMemory(rollupModel.getOccupyVirtualMemoryAvg());
+        logModel.setNetworkDelay(rollupModel.getNetworkDelayAvg());
+        logModel.setNetTxBytes(rollupModel.getNetTxBytesAvg());
+        logModel.setNetRxBytes(rollupModel.getNetRxBytesAvg());
+        return logModel;
+    }
+
+    /**
+     * 单个机器单个时间段的汇总
+     */
+    private static class Bucket {
+        private final String machineId;
+        private final long bucketTime;
+        private int count;
+        private final Metric cpu = new Metric();
+        private final Metric memory = new Metric();
+        private final Metric disk = new Metric();
+        private final Metric swapMemory = new Metric();
+        private final Metric virtualMemory = new Metric();
+        private final Metric networkDelay = new Metric();
+        private final Metric netTxBytes = new Metric();
+        private final Metric netRxBytes = new Metric();
+
+        private Bucket(String machineId, long bucketTime) {
+            this.machineId = machineId;
+            this.bucketTime = bucketTime;
+        }
+
+        private void add(MachineNodeStatLogModel logModel) {
+            count++;
+            cpu.add(logModel.getOccupyCpu(), logModel.getOccupyCpu(), logModel.getOccupyCpu(), 1);
+            memory.add(logModel.getOccupyMemory(), logModel.getOccupyMemory(), logModel.getOccupyMemory(), 1);
+            disk.add(logModel.getOccupyDisk(), logModel.getOccupyDisk(), logModel.getOccupyDisk(), 1);
+            swapMemory.add(logModel.getOccupySwapMemory(), null, null, 1);
+            virtualMemory.add(logModel.getOccupyVirtualMemory(), null, null, 1);
+            Double delay = toDouble(logModel.getNetworkDelay());
+            networkDelay.add(delay, null, delay, 1);
+            Double tx = toDouble(logModel.getNetTxBytes());
+            netTxBytes.add(tx, null, tx, 1);
+            Double rx = toDouble(logModel.getNetRxBytes());
+            netRxBytes.add(rx, null, rx, 1);
+        }
+
+        private void add(MachineNodeStatRollupModel rollupModel) {
+            int weight = Optional.ofNullable(rollupModel.getSampleCount()).orElse(1);
+            count += weight;
+            cpu.add(rollupModel.getOccupyCpuAvg(), rollupModel.getOccupyCpuMin(), rollupModel.getOccupyCpuMax(), weight);
+            memory.add(rollupModel.getOccupyMemoryAvg(), rollupModel.getOccupyMemoryMin(), rollupModel.getOccupyMemoryMax(), weight);
+            disk.add(rollupModel.getOccupyDiskAvg(), rollupModel.getOccupyDiskMin(), rollupModel.getOccupyDiskMax(), weight);
+            swapMemory.add(rollupModel.getOccupySwapMemoryAvg(), null, null, weight);
+            virtualMemory.add(rollupModel.getOccupyVirtualMemoryAvg(), null, null, weight);
+            networkDelay.add(toDouble(rollupModel.getNetworkDelayAvg()), null, toDouble(rollupModel.getNetworkDelayMax()), weight);
+            netTxBytes.add(toDouble(rollupModel.getNetTxBytesAvg()), null, toDouble(rollupModel.getNetTxBytesMax()), weight);
+            netRxBytes.add(toDouble(rollupModel.getNetRxBytesAvg()), null, toDouble(rollupModel.getNetRxBytesMax()), weight);
+        }
+
+        private MachineNodeStatRollupModel toModel(Tier tier) {
+            MachineNodeStatRollupModel model = new MachineNodeStatRollupModel();
+            // 主键固定，重新汇总时覆盖
+            model.setId(SecureUtil.md5(StrUtil.format("{}:{}:{}", machineId, tier.getSeconds(), bucketTime)));
+            model.setMachineId(machineId);
+            model.setTier(tier.getSeconds());
+            model.setBucketTime(bucketTime);
+            model.setSampleCount(count);
+            model.setOccupyCpuMin(cpu.min);
+            model.setOccupyCpuAvg(cpu.avg());
+            model.setOccupyCpuMax(cpu.max);
+            model.setOccupyMemoryMin(memory.min);
+            model.setOccupyMemoryAvg(memory.avg());
+            model.setOccupyMemoryMax(memory.max);
+            model.setOccupyDiskMin(disk.min);
+            model.setOccupyDiskAvg(disk.avg());
+            model.setOccupyDiskMax(disk.max);
+            model.setOccupySwapMemoryAvg(swapMemory.avg());
+            model.setOccupyVirtualMemoryAvg(virtualMemory.avg());
+            model.setNetworkDelayAvg(toInt(networkDelay.avg()));
+            model.setNetworkDelayMax(toInt(networkDelay.max));
+            model.setNetTxBytesAvg(toLong(netTxBytes.avg()));
+            model.setNetTxBytesMax(toLong(netTxBytes.max));
+            model.setNetRxBytesAvg(toLong(netRxBytes.avg()));
+            model.setNetRxBytesMax(toLong(netRxBytes.max));
+            return model;
+        }
+
+        private static Double toDouble(Number number) {
+            return number == null ? null : number.doubleValue();
+        }
+
+        private static Integer toInt(Double value) {
+            return value == null ? null : (int) Math.round(value);
+        }
+
+        private static Long toLong(Double value) {
+            return value == null ? null : Math.round(value);
+        }
+    }
+
+    /**
+     * 单个指标的最小、加权平均、最大值
+     */
+    private static class Metric {
+        private Double min;
+        private Double max;
+        private double sum;
+        private long weight;
+
+        private void add(Double avg, Double min, Double max, int weight) {
+            if (avg == null) {
+                return;
+            }
+            this.sum += avg * weight;
+            this.weight += weight;
+            if (min != null) {
+                this.min = this.min == null ? min : Math.min(this.min, min);
+            }
+            if (max != null) {
+                this.max = this.max == null ? max : Math.max(this.max, max);
+            }
+        }
+
+        private Double avg() {
+            return weight == 0 ? null : sum / weight;
+        }
+    }
+}
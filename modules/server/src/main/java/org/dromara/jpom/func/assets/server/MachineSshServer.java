@@ -35,6 +35,7 @@ import cn.hutool.core.lang.Opt;
 import cn.hutool.core.map.CaseInsensitiveMap;
 import cn.hutool.core.thread.ThreadUtil;
 import cn.hutool.core.util.*;
+import cn.hutool.crypto.SecureUtil;
 import cn.hutool.cron.task.Task;
 import cn.hutool.db.Entity;
 import cn.hutool.extra.ssh.JschUtil;
@@ -62,6 +63,7 @@ import org.dromara.jpom.service.h2db.BaseDbService;
 import org.dromara.jpom.service.node.ssh.SshService;
 import org.dromara.jpom.system.ExtConfigBean;
 import org.dromara.jpom.util.StringUtil;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
@@ -72,6 +74,8 @@ import java.io.File;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author bwcx_jzy
@@ -79,7 +83,7 @@ import java.util.*;
  */
 @Service
 @Slf4j
-public class MachineSshServer extends BaseDbService<MachineSshModel> implements ILoadEvent, IAsyncLoad, Task {
+public class MachineSshServer extends BaseDbService<MachineSshModel> implements ILoadEvent, IAsyncLoad, Task, DisposableBean {
     private static final String CRON_ID = "ssh-monitor";
     @Resource
     @Lazy
@@ -88,6 +92,7 @@ public class MachineSshServer extends BaseDbService<MachineSshModel> implements
     private final JpomApplication jpomApplication;
     private final ClusterInfoService clusterInfoService;
     private final AssetsConfig.SshConfig sshConfig;
+    private final SshSessionPool sessionPool;
 
     public MachineSshServer(JpomApplication jpomApplication,
                             ClusterInfoService clusterInfoService,
@@ -95,6 +100,7 @@ public class MachineSshServer extends BaseDbService<MachineSshModel> implements
         this.jpomApplication = jpomApplication;
         this.clusterInfoService = clusterInfoService;
         this.sshConfig = assetsConfig.getSsh();
+        this.sessionPool = new SshSessionPool(this.sshConfig);
     }
 
     @Override
@@ -186,6 +192,10 @@ public class MachineSshServer extends BaseDbService<MachineSshModel> implements
         String monitorCron = sshConfig.getMonitorCron();
         String cron = Opt.ofBlankAble(monitorCron).orElse("0 0/1 * * * ?");
         CronUtils.add(CRON_ID, cron, () -> MachineSshServer.this);
+        //
+        int keepaliveInterval = Math.max(sshConfig.getPoolKeepaliveInterval(), 5);
+        ScheduledExecutorService scheduler = JpomApplication.getScheduledExecutorService();
+        scheduler.scheduleWithFixedDelay(sessionPool, keepaliveInterval, keepaliveInterval, TimeUnit.SECONDS);
     }
 
     @Override
@@ -236,7 +246,7 @@ public class MachineSshServer extends BaseDbService<MachineSshModel> implements
             sshExecTemplate = StringUtil.formatStrByMap(sshExecTemplate, map);
             Charset charset = machineSshModel.charset();
             //
-            session = this.getSessionByModelNoFill(machineSshModel);
+            session = this.borrowSession(machineSshModel);
             int timeout = machineSshModel.timeout();
             List<String> listStr = new ArrayList<>();
             List<String> error = new ArrayList<>();
@@ -251,7 +261,7 @@ public class MachineSshServer extends BaseDbService<MachineSshModel> implements
             }
             this.updateStatus(machineSshModel.getId(), 0, message);
         } finally {
-            JschUtil.close(session);
+            this.releaseSession(session);
         }
     }
 
@@ -397,6 +407,51 @@ public class MachineSshServer extends BaseDbService<MachineSshModel> implements
         return this.getSessionByModelNoFill(sshModel);
     }
 
+    /**
+     * 从会话池中租借 ssh 会话（复用已经建立的连接），使用完成后需要调用 {@link #releaseSession(Session)} 归还
+     *
+     * @param sshModel 完整的 ssh 信息（包含密码、私钥）
+     * @return session
+     */
+    public Session borrowSession(MachineSshModel sshModel) {
+        Assert.notNull(sshModel, "没有对应 SSH 信息");
+        if (!sshConfig.isPoolEnable() || StrUtil.isEmpty(sshModel.getId())) {
+            return this.getSessionByModelNoFill(sshModel);
+        }
+        // 连接信息变更后使用新的会话
+        String fingerprint = SecureUtil.sha1(StrUtil.join(StrUtil.LF, sshModel.host(), sshModel.port(), sshModel.user(),
+            sshModel.password(), sshModel.privateKey(), sshModel.connectType()));
+        String key = StrUtil.format("{}:{}", sshModel.getId(), fingerprint);
+        return sessionPool.borrow(key, () -> this.getSessionByModelNoFill(sshModel));
+    }
+
+    /**
+     * 归还 ssh 会话
+     *
+     * @param session 会话
+     */
+    public void releaseSession(Session session) {
+        sessionPool.release(session);
+    }
+
+    /**
+     * 关闭 ssh 资产在会话池中的会话
+     *
+     * @param id ssh 资产id
+     */
+    public void invalidateSession(String id) {
+        sessionPool.invalidate(id + StrUtil.COLON);
+    }
+
+    public SshSessionPool getSessionPool() {
+        return sessionPool;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        sessionPool.close();
+    }
+
     /**
      * 获取 ssh 回话
      * GLOBAL
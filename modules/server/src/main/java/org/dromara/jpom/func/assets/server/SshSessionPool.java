@@ -0,0 +1,290 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.func.assets.server;
+
+import cn.hutool.core.date.SystemClock;
+import cn.hutool.core.map.SafeConcurrentHashMap;
+import cn.hutool.extra.ssh.JschUtil;
+import com.alibaba.fastjson2.JSONObject;
+import com.jcraft.jsch.Session;
+import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.configuration.AssetsConfig;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * ssh 会话池
+ * <p>
+ * 按 ssh 资产缓存已经连接的会话，一个会话上可以同时租借给多个操作（每个操作独立打开 channel）
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/6
+ */
+@Slf4j
+public class SshSessionPool implements Runnable {
+
+    private final AssetsConfig.SshConfig sshConfig;
+    /**
+     * key -> 会话列表
+     */
+    private final Map<String, List<PooledSession>> pool = new SafeConcurrentHashMap<>();
+    /**
+     * 会话 -> 池化信息，用于归还
+     */
+    private final Map<Session, PooledSession> sessionMap = new SafeConcurrentHashMap<>();
+
+    private final LongAdder createCount = new LongAdder();
+    private final LongAdder reuseCount = new LongAdder();
+    private final LongAdder unPooledCount = new LongAdder();
+    private final LongAdder evictCount = new LongAdder();
+    private final LongAdder keepaliveFailCount = new LongAdder();
+    private volatile boolean closed;
+
+    public SshSessionPool(AssetsConfig.SshConfig sshConfig) {
+        this.sshConfig = sshConfig;
+    }
+
+    /**
+     * 租借会话，使用完成后需要调用 {@link #release(Session)} 归还
+     *
+     * @param key     池化的 key
+     * @param creator 创建新会话（已连接）
+     * @return 会话
+     */
+    public Session borrow(String key, Supplier<Session> creator) {
+        List<PooledSession> list = pool.computeIfAbsent(key, s -> new ArrayList<>());
+        int maxChannels = Math.max(sshConfig.getPoolMaxChannels(), 1);
+        boolean full;
+        synchronized (list) {
+            Iterator<PooledSession> iterator = list.iterator();
+            while (iterator.hasNext()) {
+                PooledSession pooledSession = iterator.next();
+                if (!pooledSession.session.isConnected()) {
+                    if (pooledSession.leases <= 0) {
+                        this.remove(iterator, pooledSession);
+                    }
+                    continue;
+                }
+                if (pooledSession.leases < maxChannels) {
+                    pooledSession.leases++;
+                    pooledSession.lastUseTime = SystemClock.now();
+                    reuseCount.increment();
+                    return pooledSession.session;
+                }
+            }
+            // 已经关闭后不再池化
+            full = closed || list.size() >= Math.max(sshConfig.getPoolMaxSessions(), 1);
+        }
+        // 建立连接耗时较长，不在锁中执行
+        Session session = creator.get();
+        if (full) {
+            // 会话数已经达到上限，使用后直接关闭
+            unPooledCount.increment();
+            return session;
+        }
+        createCount.increment();
+        PooledSession pooledSession = new PooledSession(key, session);
+        synchronized (list) {
+            list.add(pooledSession);
+        }
+        sessionMap.put(session, pooledSession);
+        return session;
+    }
+
+    /**
+     * 归还会话，非池化的会话直接关闭
+     *
+     * @param session 会话
+     */
+    public void release(Session session) {
+        if (session == null) {
+            return;
+        }
+        PooledSession pooledSession = sessionMap.get(session);
+        if (pooledSession == null) {
+            JschUtil.close(session);
+            return;
+        }
+        List<PooledSession> list = pool.computeIfAbsent(pooledSession.key, s -> new ArrayList<>());
+        synchronized (list) {
+            pooledSession.leases--;
+            pooledSession.lastUseTime = SystemClock.now();
+            boolean invalid = pooledSession.discard || !session.isConnected() || !list.contains(pooledSession);
+            if (pooledSession.leases <= 0 && invalid) {
+                list.remove(pooledSession);
+                sessionMap.remove(session);
+                JschUtil.close(session);
+            }
+        }
+    }
+
+    /**
+     * 关闭指定 ssh 资产的空闲会话（正在使用的会话归还时关闭）
+     *
+     * @param keyPrefix key 前缀
+     */
+    public void invalidate(String keyPrefix) {
+        pool.forEach((key, list) -> {
+            if (!key.startsWith(keyPrefix)) {
+                return;
+            }
+            synchronized (list) {
+                Iterator<PooledSession> iterator = list.iterator();
+                while (iterator.hasNext()) {
+                    PooledSession pooledSession = iterator.next();
+                    if (pooledSession.leases <= 0) {
+                        this.remove(iterator, pooledSession);
+                    } else {
+                        // 从池中移除，归还时会被关闭
+                        pooledSession.discard = true;
+                        iterator.remove();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 空闲回收和心跳检查
+     */
+    @Override
+    public void run() {
+        long idleTimeout = TimeUnit.SECONDS.toMillis(Math.max(sshConfig.getPoolIdleTimeout(), 1));
+        long now = SystemClock.now();
+        pool.forEach((key, list) -> {
+            List<PooledSession> keepaliveList = new ArrayList<>();
+            synchronized (list) {
+                Iterator<PooledSession> iterator = list.iterator();
+                while (iterator.hasNext()) {
+                    PooledSession pooledSession = iterator.next();
+                    if (pooledSession.leases > 0) {
+                        continue;
+                    }
+                    if (now - pooledSession.lastUseTime > idleTimeout || !pooledSession.session.isConnected()) {
+                        this.remove(iterator, pooledSession);
+                        evictCount.increment();
+                        continue;
+                    }
+                    keepaliveList.add(pooledSession);
+                }
+            }
+            for (PooledSession pooledSession : keepaliveList) {
+                try {
+                    pooledSession.session.sendKeepAliveMsg();
+                } catch (Exception e) {
+                    log.warn("ssh 会话心跳检查失败,将关闭会话：{} {}", pooledSession.session.getHost(), e.getMessage());
+                    keepaliveFailCount.increment();
+                    synchronized (list) {
+                        if (pooledSession.leases <= 0 && list.remove(pooledSession)) {
+                            sessionMap.remove(pooledSession.session);
+                            JschUtil.close(pooledSession.session);
+                        }
+                    }
+                }
+            }
+        });
+        // 清理空的 key
+        pool.entrySet().removeIf(entry -> {
+            List<PooledSession> list = entry.getValue();
+            synchronized (list) {
+                return list.isEmpty();
+            }
+        });
+    }
+
+    private void remove(Iterator<PooledSession> iterator, PooledSession pooledSession) {
+        iterator.remove();
+        sessionMap.remove(pooledSession.session);
+        JschUtil.close(pooledSession.session);
+    }
+
+    /**
+     * 关闭所有会话（包含正在使用的会话），程序关闭时调用
+     */
+    public void close() {
+        closed = true;
+        pool.values().forEach(list -> {
+            synchronized (list) {
+                for (PooledSession pooledSession : list) {
+                    JschUtil.close(pooledSession.session);
+                }
+                list.clear();
+            }
+        });
+        pool.clear();
+        sessionMap.clear();
+    }
+
+    /**
+     * 会话池统计信息
+     *
+     * @return json
+     */
+    public JSONObject metrics() {
+        int sessionCount = 0;
+        int leaseCount = 0;
+        for (List<PooledSession> list : pool.values()) {
+            synchronized (list) {
+                sessionCount += list.size();
+                for (PooledSession pooledSession : list) {
+                    leaseCount += Math.max(pooledSession.leases, 0);
+                }
+            }
+        }
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("keyCount", pool.size());
+        jsonObject.put("sessionCount", sessionCount);
+        jsonObject.put("leaseCount", leaseCount);
+        jsonObject.put("createCount", createCount.sum());
+        jsonObject.put("reuseCount", reuseCount.sum());
+        jsonObject.put("unPooledCount", unPooledCount.sum());
+        jsonObject.put("evictCount", evictCount.sum());
+        jsonObject.put("keepaliveFailCount", keepaliveFailCount.sum());
+        return jsonObject;
+    }
+
+    private static class PooledSession {
+        private final String key;
+        private final Session session;
+        /**
+         * 当前租借数
+         */
+        private int leases = 1;
+        private long lastUseTime = SystemClock.now();
+        /**
+         * 已经失效，归还后关闭
+         */
+        private boolean discard;
+
+        private PooledSession(String key, Session session) {
+            this.key = key;
+            this.session = session;
+        }
+    }
+}
@@ -34,6 +34,7 @@ import org.dromara.jpom.common.BaseServerController;
 import org.dromara.jpom.common.ServerConst;
 import org.dromara.jpom.common.ServerOpenApi;
 import org.dromara.jpom.common.UrlRedirectUtil;
+import org.dromara.jpom.common.forward.FileSliceMd5Cache;
 import org.dromara.jpom.common.validator.ValidatorItem;
 import org.dromara.jpom.controller.outgiving.OutGivingWhitelistService;
 import org.dromara.jpom.func.files.model.FileStorageModel;
@@ -239,6 +240,7 @@ public class FileStorageController extends BaseServerController {
         File storageSavePath = serverConfig.fileStorageSavePath();
         File fileStorageFile = FileUtil.file(storageSavePath, storageModel.getPath());
         FileUtil.del(fileStorageFile);
+        FileSliceMd5Cache.remove(id);
         //
         fileStorageService.delByKey(id);
     }
@@ -346,7 +346,7 @@ public class FileReleaseTaskService extends BaseWorkspaceService<FileReleaseTask
                 try {
                     this.updateStatus(taskId, modelId, 1, "开始发布文件");
                     File logFile = logFile(model);
-                    logRecorder = LogRecorder.builder().file(logFile).charset(CharsetUtil.CHARSET_UTF_8).build();
+                    logRecorder = LogRecorder.builder().file(logFile).charset(CharsetUtil.CHARSET_UTF_8).buffered(true).build();
                     NodeModel item = nodeService.getByKey(model.getTaskDataId());
                     if (item == null) {
                         logRecorder.systemError("没有找到对应的节点项：{}", model.getTaskDataId());
@@ -367,7 +367,9 @@ public class FileReleaseTaskService extends BaseWorkspaceService<FileReleaseTask
                     String name = storageModel.getName();
                     name = StrUtil.wrapIfMissing(name, StrUtil.EMPTY, StrUtil.DOT + storageModel.getExtName());
                     LogRecorder finalLogRecorder = logRecorder;
-                    JsonMessage<String> jsonMessage = NodeForward.requestSharding(item, NodeUrl.Manage_File_Upload_Sharding2, data, storageSaveFile, name,
+                    // 文件中心的文件 id 即为文件的 md5，不用重复计算
+                    String fileSumMd5 = storageModel instanceof FileStorageModel ? ((FileStorageModel) storageModel).getId() : null;
+                    JsonMessage<String> jsonMessage = NodeForward.requestSharding(item, NodeUrl.Manage_File_Upload_Sharding2, data, storageSaveFile, name, fileSumMd5,
                         sliceData -> {
                             sliceData.putAll(data);
                             return NodeForward.request(item, NodeUrl.Manage_File_Sharding_Merge2, sliceData);
@@ -471,7 +473,7 @@ public class FileReleaseTaskService extends BaseWorkspaceService<FileReleaseTask
                 try {
                     this.updateStatus(taskId, modelId, 1, "开始发布文件");
                     File logFile = logFile(model);
-                    logRecorder = LogRecorder.builder().file(logFile).charset(CharsetUtil.CHARSET_UTF_8).build();
+                    logRecorder = LogRecorder.builder().file(logFile).charset(CharsetUtil.CHARSET_UTF_8).buffered(true).build();
                     SshModel item = sshService.getByKey(model.getTaskDataId());
                     if (item == null) {
                         logRecorder.systemError("没有找到对应的ssh项：{}", model.getTaskDataId());
@@ -481,7 +483,7 @@ public class FileReleaseTaskService extends BaseWorkspaceService<FileReleaseTask
                     MachineSshModel machineSshModel = sshService.getMachineSshModel(item);
                     Charset charset = machineSshModel.charset();
                     int timeout = machineSshModel.timeout();
-                    session = sshService.getSessionByModel(machineSshModel);
+                    session = sshService.borrowSession(machineSshModel);
                     Map<String, String> environment = environmentMapBuilder.environment();
                     environmentMapBuilder.eachStr(logRecorder::system);
                     if (StrUtil.isNotEmpty(model.getBeforeScript())) {
@@ -509,7 +511,7 @@ public class FileReleaseTaskService extends BaseWorkspaceService<FileReleaseTask
                 } finally {
                     IoUtil.close(logRecorder);
                     JschUtil.close(channelSftp);
-                    JschUtil.close(session);
+                    sshService.releaseSession(session);
                 }
             });
         }
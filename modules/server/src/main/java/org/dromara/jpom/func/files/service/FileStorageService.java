@@ -33,13 +33,14 @@ import cn.hutool.core.thread.ThreadUtil;
 import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.NumberUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.crypto.SecureUtil;
 import cn.hutool.db.Entity;
 import cn.hutool.http.HttpUtil;
 import cn.keepbx.jpom.event.ISystemTask;
 import lombok.extern.slf4j.Slf4j;
 import org.dromara.jpom.JpomApplication;
+import org.dromara.jpom.build.BuildArtifactStore;
 import org.dromara.jpom.common.ServerConst;
+import org.dromara.jpom.common.forward.FileSliceMd5Cache;
 import org.dromara.jpom.func.files.model.FileStorageModel;
 import org.dromara.jpom.service.IStatusRecover;
 import org.dromara.jpom.service.ITriggerToken;
@@ -118,7 +119,8 @@ public class FileStorageService extends BaseGlobalOrWorkspaceService<FileStorage
                 FileUtil.mkdir(file);
                 StreamProgress streamProgress = this.createStreamProgress(uuid);
                 File fileFromUrl = HttpUtil.downloadFileFromUrl(url, file, -1, streamProgress);
-                String md5 = SecureUtil.md5(fileFromUrl);
+                // 同时保存分片 md5，发布到节点时不用再读取整个文件
+                String md5 = FileSliceMd5Cache.md5(fileFromUrl);
                 FileStorageModel storageModel = this.getByKey(md5);
                 if (storageModel != null) {
                     this.updateError(uuid, "文件已经存在啦");
@@ -241,7 +243,8 @@ public class FileStorageService extends BaseGlobalOrWorkspaceService<FileStorage
      * @return 返回成功的文件id
      */
     public String addFile(File file, int source, String workspaceId, String description, String aliasCode, Integer keepDay) {
-        String md5 = SecureUtil.md5(file);
+        // 同时保存分片 md5，发布到节点时不用再读取整个文件
+        String md5 = FileSliceMd5Cache.md5(file);
         File storageSavePath = serverConfig.fileStorageSavePath();
         String extName = FileUtil.extName(file);
         String path = StrUtil.format("/{}/{}.{}", DateTime.now().toString(DatePattern.PURE_DATE_FORMAT), md5, extName);
@@ -264,8 +267,12 @@ public class FileStorageService extends BaseGlobalOrWorkspaceService<FileStorage
         this.insert(fileStorageModel);
         //
         File fileStorageFile = FileUtil.file(storageSavePath, path);
-        FileUtil.mkParentDirs(fileStorageFile);
-        FileUtil.copyFile(file, fileStorageFile, StandardCopyOption.REPLACE_EXISTING);
+        if (buildExtConfig.isArtifactStore()) {
+            // 构建产物已经在存储中，优先使用硬链接避免再复制一份
+            BuildArtifactStore.linkOrCopy(file, fileStorageFile);
+        } else {
+            FileUtil.copyFile(file, fileStorageFile, StandardCopyOption.REPLACE_EXISTING);
+        }
         return md5;
     }
 
@@ -283,6 +290,7 @@ public class FileStorageService extends BaseGlobalOrWorkspaceService<FileStorage
             log.info("开始删除 {} 文件 {}", storageModel.getName(), storageModel.getPath());
             File fileStorageFile = FileUtil.file(storageSavePath, storageModel.getPath());
             FileUtil.del(fileStorageFile);
+            FileSliceMd5Cache.remove(storageModel.getId());
             this.delByKey(storageModel.getId());
         }
     }
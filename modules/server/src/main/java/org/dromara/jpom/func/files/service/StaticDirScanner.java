@@ -0,0 +1,335 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.func.files.service;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.db.Entity;
+import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.func.files.model.StaticFileStorageModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 静态目录增量扫描
+ * <p>
+ * 先加载目录下已经存在的数据作为快照，遍历时只对比修改时间、大小等信息，仅写入有变化的数据（批量）。
+ * 遍历结束后快照中剩余的数据即为已经不存在的文件。
+ * <p>
+ * 开始目录下的每个一级子目录作为一个任务在 ForkJoinPool 中并行遍历
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/9
+ */
+@Slf4j
+class StaticDirScanner {
+
+    private final StaticFileStorageService storageService;
+    private final ForkJoinPool forkJoinPool;
+    private final int batchSize;
+    /**
+     * 静态目录
+     */
+    private final String staticDir;
+    /**
+     * 开始目录
+     */
+    private final File root;
+    private final long taskId;
+    /**
+     * 已经存在的数据快照，遍历到的文件会从快照中移除
+     */
+    private final Map<String, Snapshot> snapshot = new ConcurrentHashMap<>();
+    private final AtomicLong visitCount = new AtomicLong();
+    private final AtomicLong insertCount = new AtomicLong();
+    private final AtomicLong updateCount = new AtomicLong();
+
+    StaticDirScanner(StaticFileStorageService storageService, ForkJoinPool forkJoinPool, int batchSize,
+                     String staticDir, File root, long taskId) {
+        this.storageService = storageService;
+        this.forkJoinPool = forkJoinPool;
+        this.batchSize = batchSize;
+        this.staticDir = staticDir;
+        this.root = root;
+        this.taskId = taskId;
+    }
+
+    /**
+     * 开始扫描
+     */
+    void scan() {
+        long start = System.currentTimeMillis();
+        this.loadSnapshot();
+        if (FileUtil.exist(root)) {
+            forkJoinPool.invoke(new RootTask());
+        }
+        // 快照中剩余的数据为已经不存在的文件
+        List<Object[]> removed = new ArrayList<>();
+        for (Map.Entry<String, Snapshot> entry : snapshot.entrySet()) {
+            if (entry.getValue().status == 1) {
+                removed.add(new Object[]{entry.getKey()});
+            }
+        }
+        storageService.removeScanBatch(removed, batchSize);
+        log.debug("静态目录扫描结束：{} 遍历 {} 新增 {} 更新 {} 删除 {} 耗时 {}ms", root, visitCount.get(), insertCount.get(),
+            updateCount.get(), removed.size(), System.currentTimeMillis() - start);
+    }
+
+    private void loadSnapshot() {
+        String sql = "select id,absolutePath,size,lastModified,level,status,type from " + storageService.getTableName() + " where staticDir=?";
+        List<Entity> list;
+        String rootPath = FileUtil.normalize(root.getAbsolutePath());
+        if (StrUtil.equals(rootPath, staticDir)) {
+            list = storageService.query(sql, staticDir);
+        } else {
+            // 只扫描子目录
+            sql += " and (id=? or absolutePath like ?)";
+            list = storageService.query(sql, staticDir, SecureUtil.md5(rootPath), escapeLike(rootPath) + "/%");
+        }
+        for (Entity entity : list) {
+            Snapshot item = new Snapshot();
+            item.absolutePath = entity.getStr("absolutePath");
+            item.size = ObjectUtil.defaultIfNull(entity.getLong("size"), -1L);
+            item.lastModified = ObjectUtil.defaultIfNull(entity.getLong("lastModified"), -1L);
+            item.level = ObjectUtil.defaultIfNull(entity.getInt("level"), -1);
+            item.status = ObjectUtil.defaultIfNull(entity.getInt("status"), 0);
+            item.type = ObjectUtil.defaultIfNull(entity.getInt("type"), -1);
+            snapshot.put(entity.getStr("id"), item);
+        }
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * 处理开始目录和一级子文件，一级子目录拆分为子任务并行遍历
+     */
+    private class RootTask extends RecursiveAction {
+
+        @Override
+        protected void compute() {
+            Batch batch = new Batch();
+            try {
+                Path rootPath = root.toPath();
+                BasicFileAttributes attributes = Files.readAttributes(rootPath, BasicFileAttributes.class);
+                visit(rootPath, attributes, batch);
+                if (!attributes.isDirectory()) {
+                    return;
+                }
+                List<DirTask> tasks = new ArrayList<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(rootPath)) {
+                    for (Path path : stream) {
+                        BasicFileAttributes itemAttributes;
+                        try {
+                            itemAttributes = Files.readAttributes(path, BasicFileAttributes.class);
+                        } catch (IOException e) {
+                            skipFailed(path, e);
+                            continue;
+                        }
+                        if (itemAttributes.isDirectory()) {
+                            tasks.add(new DirTask(path));
+                        } else {
+                            visit(path, itemAttributes, batch);
+                        }
+                    }
+                }
+                invokeAll(tasks);
+            } catch (IOException e) {
+                log.warn("扫描静态目录异常：{} {}", root, e.getMessage());
+                // 避免误删除
+                snapshot.clear();
+            } finally {
+                batch.flush();
+            }
+        }
+    }
+
+    /**
+     * 遍历一个一级子目录
+     */
+    private class DirTask extends RecursiveAction {
+
+        private final Path dir;
+
+        private DirTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            Batch batch = new Batch();
+            try {
+                Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) {
+                        visit(path, attrs, batch);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                        visit(path, attrs, batch);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path path, IOException exc) {
+                        skipFailed(path, exc);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                skipFailed(dir, e);
+            } finally {
+                batch.flush();
+            }
+        }
+    }
+
+    /**
+     * 计算文件在静态目录中的层级，静态目录本身为 0
+     *
+     * @param staticDir    静态目录（规范化的绝对路径）
+     * @param absolutePath 文件（规范化的绝对路径）
+     * @return 层级
+     */
+    static int level(String staticDir, String absolutePath) {
+        String subPath = FileUtil.subPath(staticDir, absolutePath);
+        return CollUtil.size(StrUtil.splitTrim(subPath, StrUtil.SLASH));
+    }
+
+    /**
+     * 读取失败的文件（目录包含所有子文件）保留原数据，避免遍历中断后未遍历到的文件被标记为不存在
+     *
+     * @param path 文件
+     * @param e    异常
+     */
+    private void skipFailed(Path path, IOException e) {
+        log.warn("读取静态文件信息失败：{} {}", path, e.getMessage());
+        String absolutePath = FileUtil.normalize(path.toFile().getAbsolutePath());
+        snapshot.remove(SecureUtil.md5(absolutePath));
+        String prefix = StrUtil.addSuffixIfNot(absolutePath, StrUtil.SLASH);
+        snapshot.values().removeIf(item -> StrUtil.startWith(item.absolutePath, prefix));
+    }
+
+    /**
+     * 对比快照，记录有变化的文件
+     *
+     * @param path       文件
+     * @param attributes 文件属性
+     * @param batch      批量写入
+     */
+    private void visit(Path path, BasicFileAttributes attributes, Batch batch) {
+        visitCount.incrementAndGet();
+        File file = path.toFile();
+        String absolutePath = FileUtil.normalize(file.getAbsolutePath());
+        if (StrUtil.length(absolutePath) > 500) {
+            log.warn("文件目录长度超过 500 ，自动忽略此类文件：{}", absolutePath);
+            return;
+        }
+        int type;
+        if (attributes.isDirectory()) {
+            type = 0;
+        } else if (attributes.isRegularFile()) {
+            type = 1;
+        } else {
+            log.warn("不支持的文件类型:{}", absolutePath);
+            return;
+        }
+        String id = SecureUtil.md5(absolutePath);
+        int level = level(staticDir, absolutePath);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+        Snapshot exists = snapshot.remove(id);
+        if (exists != null && exists.status == 1 && exists.type == type && exists.level == level
+            && exists.lastModified == lastModified && exists.size == size) {
+            // 没有变化
+            return;
+        }
+        StaticFileStorageModel storageModel = new StaticFileStorageModel();
+        storageModel.setId(id);
+        storageModel.setName(file.getName());
+        storageModel.setAbsolutePath(absolutePath);
+        storageModel.setParentAbsolutePath(FileUtil.normalize(file.getParentFile().getAbsolutePath()));
+        storageModel.setLevel(level);
+        storageModel.setStaticDir(staticDir);
+        storageModel.setStatus(1);
+        storageModel.setType(type);
+        storageModel.setScanTaskId(taskId);
+        storageModel.setExtName(FileUtil.extName(file));
+        storageModel.setLastModified(lastModified);
+        storageModel.setSize(size);
+        if (exists == null) {
+            batch.inserts.add(storageModel);
+            insertCount.incrementAndGet();
+        } else {
+            batch.updates.add(storageModel);
+            updateCount.incrementAndGet();
+        }
+        if (batch.inserts.size() + batch.updates.size() >= batchSize) {
+            batch.flush();
+        }
+    }
+
+    /**
+     * 单个任务内待写入的数据
+     */
+    private class Batch {
+        private final List<StaticFileStorageModel> inserts = new ArrayList<>();
+        private final List<StaticFileStorageModel> updates = new ArrayList<>();
+
+        private void flush() {
+            if (inserts.isEmpty() && updates.isEmpty()) {
+                return;
+            }
+            storageService.saveScanBatch(inserts, updates);
+            inserts.clear();
+            updates.clear();
+        }
+    }
+
+    /**
+     * 已经存在的数据
+     */
+    private static class Snapshot {
+        private String absolutePath;
+        private long size;
+        private long lastModified;
+        private int level;
+        private int status;
+        private int type;
+    }
+}
@@ -23,6 +23,7 @@
 package org.dromara.jpom.func.files.service;
 
 import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.date.SystemClock;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.io.IoUtil;
 import cn.hutool.core.io.watch.WatchMonitor;
@@ -44,6 +45,7 @@ import cn.hutool.extra.servlet.ServletUtil;
 import cn.keepbx.jpom.event.IAsyncLoad;
 import cn.keepbx.jpom.model.BaseIdModel;
 import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.JpomApplication;
 import org.dromara.jpom.configuration.FileStorageConfig;
 import org.dromara.jpom.controller.outgiving.OutGivingWhitelistService;
 import org.dromara.jpom.cron.CronUtils;
@@ -64,6 +66,7 @@ import java.nio.file.Path;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 /**
@@ -78,6 +81,7 @@ public class StaticFileStorageService extends BaseDbService<StaticFileStorageMod
     private final WorkspaceService workspaceService;
     private final OutGivingWhitelistService outGivingWhitelistService;
     private Map<String, WatchMonitor> watchMonitor;
+    private volatile ForkJoinPool scanPool;
     /**
      * 扫描任务进行中
      */
@@ -206,95 +210,97 @@ public class StaticFileStorageService extends BaseDbService<StaticFileStorageMod
         long taskId = snowflake.nextId();
         for (String item : list) {
             // 开始扫描目录
-            this.scanItem(item, item, 0, taskId);
-            // 更新文件状态
-            String sql = StrUtil.format("update {} set status=0 where staticDir=? and scanTaskId <> ?", this.getTableName());
-            this.execute(sql, item, taskId);
-        }
-    }
-
-    @Override
-    public void execute() {
-        try {
-            this.scanning = true;
-            List<String> list = this.staticDir();
-            if (CollUtil.isEmpty(list)) {
-                log.warn("当前没有配置静态目录，自动取消定时任务");
-                this.removeTask();
-                return;
-            }
-            this.scanList(list);
-        } finally {
-            this.scanning = false;
+            File file = FileUtil.file(item);
+            this.scanDir(this.absNormalize(file), file, taskId);
         }
     }
 
     /**
-     * 扫描目录
+     * 增量扫描目录
      *
      * @param staticDir 静态目录
-     * @param item      开始目录
-     * @param level     目前层级
+     * @param root      开始目录
      * @param taskId    任务id
      */
-    private void scanItem(String staticDir, String item, int level, Long taskId) {
-        File file = FileUtil.file(item);
-        if (!FileUtil.exist(file)) {
+    private void scanDir(String staticDir, File root, long taskId) {
+        if (!FileUtil.exist(root)) {
             // 目录不存在了，自动删除
-            this.delete(file);
+            this.delete(root);
             return;
         }
-        if (FileUtil.isFile(file)) {
-            // 文件夹
-            this.doFile(file, staticDir, level, taskId, 1);
-        } else if (FileUtil.isDirectory(file)) {
-            // 处理自身
-            this.doFile(file, staticDir, level, taskId, 0);
-            File[] files = file.listFiles();
-            if (files == null) {
-                return;
-            }
-            for (File subFile : files) {
-                this.scanItem(staticDir, subFile.getAbsolutePath(), level + 1, taskId);
+        int batchSize = fileStorageConfig.getScanStaticDirBatchSize();
+        new StaticDirScanner(this, this.getScanPool(), batchSize, staticDir, root, taskId).scan();
+    }
+
+    private ForkJoinPool getScanPool() {
+        if (scanPool == null) {
+            synchronized (this) {
+                if (scanPool == null) {
+                    scanPool = new ForkJoinPool(fileStorageConfig.getScanStaticDirParallelism());
+                    JpomApplication.register("static-file-scan", scanPool);
+                }
             }
-        } else {
-            log.warn("不支持的文件类型:{}", file.getAbsolutePath());
         }
+        return scanPool;
     }
 
     /**
-     * 处理文件缓存对象
+     * 批量保存扫描结果
      *
-     * @param file      文件
-     * @param staticDir 静态目录
-     * @param level     层级
-     * @param taskId    任务id
-     * @param fileType  文件类型
+     * @param inserts 新增的文件
+     * @param updates 有变化的文件
      */
-    private void doFile(File file, String staticDir, int level, Long taskId, int fileType) {
-        String name = file.getName();
-        String absolutePath = this.absNormalize(file);
-        long length = file.length();
-        long lastModified = file.lastModified();
-        String parentAbsolutePath = this.absNormalize(file.getParentFile());
-        if (StrUtil.length(absolutePath) > 500) {
-            log.warn("文件目录长度超过 500 ，自动忽略此类文件：{}", absolutePath);
-            return;
+    void saveScanBatch(List<StaticFileStorageModel> inserts, List<StaticFileStorageModel> updates) {
+        String sql = StrUtil.format("update {} set name=?,parentAbsolutePath=?,level=?,status=1,type=?,scanTaskId=?,extName=?,lastModified=?,size=?,modifyTimeMillis=? where id=?", this.getTableName());
+        long now = SystemClock.now();
+        List<Object[]> params = updates.stream()
+            .map(model -> new Object[]{model.getName(), model.getParentAbsolutePath(), model.getLevel(), model.getType(), model.getScanTaskId(),
+                model.getExtName(), model.getLastModified(), model.getSize(), now, model.getId()})
+            .collect(Collectors.toList());
+        try {
+            this.tx(db -> {
+                if (!inserts.isEmpty()) {
+                    this.insert(inserts);
+                }
+                if (!params.isEmpty()) {
+                    this.executeBatch(sql, params);
+                }
+            });
+        } catch (Exception e) {
+            // 可能和文件监听同时写入了相同的数据，逐条更新
+            log.warn("批量保存静态文件失败,切换为逐条保存：{}", e.getMessage());
+            inserts.forEach(this::upsert);
+            updates.forEach(this::upsert);
+        }
+    }
+
+    /**
+     * 批量标记文件不存在
+     *
+     * @param ids       文件id
+     * @param batchSize 每批数量
+     */
+    void removeScanBatch(List<Object[]> ids, int batchSize) {
+        String sql = StrUtil.format("update {} set status=0 where id=?", this.getTableName());
+        for (List<Object[]> objects : CollUtil.split(ids, batchSize)) {
+            this.executeBatch(sql, objects);
+        }
+    }
+
+    @Override
+    public void execute() {
+        try {
+            this.scanning = true;
+            List<String> list = this.staticDir();
+            if (CollUtil.isEmpty(list)) {
+                log.warn("当前没有配置静态目录，自动取消定时任务");
+                this.removeTask();
+                return;
+            }
+            this.scanList(list);
+        } finally {
+            this.scanning = false;
         }
-        StaticFileStorageModel storageModel = new StaticFileStorageModel();
-        storageModel.setId(SecureUtil.md5(absolutePath));
-        storageModel.setName(name);
-        storageModel.setAbsolutePath(absolutePath);
-        storageModel.setParentAbsolutePath(parentAbsolutePath);
-        storageModel.setLevel(level);
-        storageModel.setStaticDir(staticDir);
-        storageModel.setStatus(1);
-        storageModel.setType(fileType);
-        storageModel.setScanTaskId(taskId);
-        storageModel.setExtName(FileUtil.extName(file));
-        storageModel.setLastModified(lastModified);
-        storageModel.setSize(length);
-        this.upsert(storageModel);
     }
 
     private String absNormalize(File file) {
@@ -321,14 +327,13 @@ public class StaticFileStorageService extends BaseDbService<StaticFileStorageMod
             // 计算层级
             File staticDir = staticDirPath.toFile();
             String staticStr = this.absNormalize(staticDir);
-            String subPath = FileUtil.subPath(staticStr, absolutePath);
-            int level = CollUtil.size(StrUtil.splitTrim(subPath, StrUtil.SLASH));
+            int level = StaticDirScanner.level(staticStr, absolutePath);
             StaticFileStorageModel storageModel = new StaticFileStorageModel();
             storageModel.setId(SecureUtil.md5(absolutePath));
             storageModel.setName(file.getName());
             storageModel.setAbsolutePath(absolutePath);
             storageModel.setParentAbsolutePath(parentAbsolutePath);
-            storageModel.setLevel(level + 1);
+            storageModel.setLevel(level);
             storageModel.setStaticDir(staticStr);
             storageModel.setStatus(1);
             if (FileUtil.isFile(file)) {
@@ -343,34 +348,14 @@ public class StaticFileStorageService extends BaseDbService<StaticFileStorageMod
             storageModel.setExtName(FileUtil.extName(file));
             storageModel.setLastModified(file.lastModified());
             storageModel.setSize(file.length());
-            this.upsert(storageModel);
             // 判断类型
             if (storageModel.getType() == 0) {
                 // 文件夹类型
-                // 需要扫描父级，可能避免删除无法正常监听到并且变更
+                // 需要扫描整个文件夹，可能避免删除无法正常监听到并且变更
                 Snowflake snowflake = IdUtil.getSnowflake();
-                long taskId = snowflake.nextId();
-                this.scanItem(storageModel.getStaticDir(), absolutePath, level, taskId);
-                // 删除未被更新的数据
-                StaticFileStorageModel where = new StaticFileStorageModel();
-                where.setParentAbsolutePath(absolutePath);
-                List<StaticFileStorageModel> list = this.listByBean(where);
-                if (CollUtil.isNotEmpty(list)) {
-                    List<String> collect = list.stream()
-                        .filter(staticFileStorageModel -> !ObjectUtil.equals(staticFileStorageModel.getScanTaskId(), taskId))
-                        .filter(staticFileStorageModel -> {
-                            File file1 = FileUtil.file(staticFileStorageModel.getAbsolutePath());
-                            if (staticFileStorageModel.type() == 1) {
-                                return !FileUtil.exist(file1);
-                            }
-                            // 删除子目录
-                            this.delete(staticFileStorageModel.getId(), staticFileStorageModel.getAbsolutePath());
-                            return !FileUtil.exist(file1);
-                        })
-                        .map(BaseIdModel::getId)
-                        .collect(Collectors.toList());
-                    this.update(Entity.create().set("status", 0), Entity.create().set("id", collect));
-                }
+                this.scanDir(staticStr, file, snowflake.nextId());
+            } else {
+                this.upsert(storageModel);
             }
         } catch (Exception e) {
             log.error("处理文件事件异常", e);
@@ -528,6 +513,7 @@ public class StaticFileStorageService extends BaseDbService<StaticFileStorageMod
     @Override
     public void destroy() throws Exception {
         this.closeWatchMonitor();
+        Optional.ofNullable(scanPool).ifPresent(ForkJoinPool::shutdownNow);
     }
 
     @Override
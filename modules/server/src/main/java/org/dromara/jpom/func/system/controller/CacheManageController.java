@@ -42,14 +42,20 @@ import org.dromara.jpom.common.validator.ValidatorRule;
 import org.dromara.jpom.configuration.ClusterConfig;
 import org.dromara.jpom.controller.LoginControl;
 import org.dromara.jpom.cron.CronUtils;
+import org.dromara.jpom.func.assets.server.MachineNodeServer;
+import org.dromara.jpom.func.assets.server.MachineSshServer;
+import org.dromara.jpom.monitor.NotifyDispatcher;
 import org.dromara.jpom.permission.ClassFeature;
 import org.dromara.jpom.permission.Feature;
 import org.dromara.jpom.permission.MethodFeature;
 import org.dromara.jpom.permission.SystemPermission;
 import org.dromara.jpom.plugin.PluginFactory;
+import org.dromara.jpom.service.dblog.DbUserOperateLogService;
+import org.dromara.jpom.service.h2db.DbDataCache;
 import org.dromara.jpom.socket.ServiceFileTailWatcher;
 import org.dromara.jpom.system.ServerConfig;
 import org.dromara.jpom.system.db.DataInitEvent;
+import org.dromara.jpom.transport.TransportServerFactory;
 import org.dromara.jpom.util.CommandUtil;
 import org.dromara.jpom.util.SyncFinisherUtil;
 import org.springframework.http.MediaType;
@@ -82,13 +88,22 @@ public class CacheManageController extends BaseServerController implements ICach
     private final JpomApplication jpomApplication;
     private final DataInitEvent dataInitEvent;
     private final ClusterConfig clusterConfig;
+    private final MachineSshServer machineSshServer;
+    private final MachineNodeServer machineNodeServer;
+    private final DbUserOperateLogService dbUserOperateLogService;
 
     public CacheManageController(JpomApplication jpomApplication,
                                  DataInitEvent dataInitEvent,
-                                 ServerConfig serverConfig) {
+                                 ServerConfig serverConfig,
+                                 MachineSshServer machineSshServer,
+                                 MachineNodeServer machineNodeServer,
+                                 DbUserOperateLogService dbUserOperateLogService) {
         this.jpomApplication = jpomApplication;
         this.dataInitEvent = dataInitEvent;
         this.clusterConfig = serverConfig.getCluster();
+        this.machineSshServer = machineSshServer;
+        this.machineNodeServer = machineNodeServer;
+        this.dbUserOperateLogService = dbUserOperateLogService;
     }
 
     /**
@@ -124,6 +139,12 @@ public class CacheManageController extends BaseServerController implements ICach
         map.put("clusterId", clusterConfig.getId());
         JpomManifest jpomManifest = JpomManifest.getInstance();
         map.put("installId", jpomManifest.getInstallId());
+        map.put("sshSessionPool", machineSshServer.getSessionPool().metrics());
+        map.put("machineHeart", machineNodeServer.heartMetrics());
+        map.put("transport", TransportServerFactory.get().metrics());
+        map.put("dataCache", DbDataCache.allMetrics());
+        map.put("operateLog", dbUserOperateLogService.metrics());
+        map.put("notify", NotifyDispatcher.metrics());
         //
         return JsonMessage.success("", map);
     }
@@ -166,6 +187,9 @@ public class CacheManageController extends BaseServerController implements ICach
             case "serviceIpSize":
                 LoginControl.LFU_CACHE.clear();
                 break;
+            case "serviceDataCache":
+                DbDataCache.invalidateAll();
+                break;
             case "serviceOldJarsSize": {
                 File oldJarsPath = JpomManifest.getOldJarsPath();
                 boolean clean = CommandUtil.systemFastDel(oldJarsPath);
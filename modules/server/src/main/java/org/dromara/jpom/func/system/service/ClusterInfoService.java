@@ -46,6 +46,7 @@ import org.dromara.jpom.func.assets.server.MachineSshServer;
 import org.dromara.jpom.func.system.model.ClusterInfoModel;
 import org.dromara.jpom.model.user.UserModel;
 import org.dromara.jpom.service.h2db.BaseDbService;
+import org.dromara.jpom.service.h2db.DbDataCache;
 import org.dromara.jpom.service.system.WorkspaceService;
 import org.dromara.jpom.system.ServerConfig;
 import org.springframework.stereotype.Service;
@@ -109,6 +110,8 @@ public class ClusterInfoService extends BaseDbService<ClusterInfoModel> implemen
         scheduler.scheduleWithFixedDelay(this, 0, heartSecond, TimeUnit.SECONDS);
         // 判断是否为多集群模式
         this.multiServer = this.count() > 1;
+        // 多个服务端共用数据库时进程内的查询缓存无法感知其他服务端的变更
+        DbDataCache.setEnabled(!this.multiServer);
     }
 
     @Override
@@ -119,6 +122,8 @@ public class ClusterInfoService extends BaseDbService<ClusterInfoModel> implemen
             taskStat.onStart();
             // 判断是否为多集群模式
             this.multiServer = this.count() > 1;
+            // 多个服务端共用数据库时进程内的查询缓存无法感知其他服务端的变更
+            DbDataCache.setEnabled(!this.multiServer);
             //
             JpomManifest jpomManifest = JpomManifest.getInstance();
             String installId = jpomManifest.getInstallId();
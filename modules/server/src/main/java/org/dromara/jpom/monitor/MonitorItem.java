@@ -23,9 +23,13 @@
 package org.dromara.jpom.monitor;
 
 import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.date.SystemClock;
 import cn.hutool.core.exceptions.ExceptionUtil;
-import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.lang.Tuple;
+import cn.hutool.core.thread.ExecutorBuilder;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
 import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.RuntimeUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.cron.task.Task;
 import cn.hutool.db.sql.Direction;
@@ -36,8 +40,10 @@ import cn.keepbx.jpom.plugins.IPlugin;
 import com.alibaba.fastjson2.JSONArray;
 import com.alibaba.fastjson2.JSONObject;
 import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.JpomApplication;
 import org.dromara.jpom.common.forward.NodeForward;
 import org.dromara.jpom.common.forward.NodeUrl;
+import org.dromara.jpom.configuration.NodeConfig;
 import org.dromara.jpom.model.data.MonitorModel;
 import org.dromara.jpom.model.data.NodeModel;
 import org.dromara.jpom.model.log.MonitorNotifyLog;
@@ -51,9 +57,8 @@ import org.dromara.jpom.service.node.ProjectInfoCacheService;
 import org.dromara.jpom.service.user.UserService;
 import org.dromara.jpom.webhook.DefaultWebhookPluginImpl;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 /**
@@ -65,12 +70,29 @@ import java.util.stream.Collectors;
 @Slf4j
 public class MonitorItem implements Task {
 
+    /**
+     * 并发获取节点项目状态的线程池
+     */
+    private static final ExecutorService MONITOR_EXECUTOR;
+
+    static {
+        int poolSize = Math.max(RuntimeUtil.getProcessorCount() * 2, 4);
+        MONITOR_EXECUTOR = ExecutorBuilder.create()
+            .setCorePoolSize(poolSize)
+            .setMaxPoolSize(poolSize)
+            .useArrayBlockingQueue(1000)
+            .setThreadFactory(ThreadFactoryBuilder.create().setNamePrefix("jpom-monitor-").build())
+            .setHandler(new ThreadPoolExecutor.CallerRunsPolicy())
+            .build();
+        JpomApplication.register("monitor", MONITOR_EXECUTOR);
+    }
 
     private final DbMonitorNotifyLogService dbMonitorNotifyLogService;
     private final UserService userService;
     private final MonitorService monitorService;
     private final ProjectInfoCacheService projectInfoCacheService;
     private final NodeService nodeService;
+    private final NodeConfig nodeConfig;
     private final String monitorId;
     private MonitorModel monitorModel;
 
@@ -80,6 +102,7 @@ public class MonitorItem implements Task {
         this.monitorService = SpringUtil.getBean(MonitorService.class);
         this.nodeService = SpringUtil.getBean(NodeService.class);
         this.projectInfoCacheService = SpringUtil.getBean(ProjectInfoCacheService.class);
+        this.nodeConfig = SpringUtil.getBean(NodeConfig.class);
         this.monitorId = id;
     }
 
@@ -88,16 +111,27 @@ public class MonitorItem implements Task {
         // 重新查询
         this.monitorModel = monitorService.getByKey(monitorId);
         List<MonitorModel.NodeProject> nodeProjects = monitorModel.projects();
-        //
-        List<Boolean> collect = nodeProjects.stream().map(nodeProject -> {
+        // 每个节点只请求一次，并发执行
+        List<Tuple> tuples = nodeProjects.stream().map(nodeProject -> {
             String nodeId = nodeProject.getNode();
             NodeModel nodeModel = nodeService.getByKey(nodeId);
-            if (nodeModel == null) {
-                return true;
+            List<String> projects = nodeProject.getProjects();
+            if (nodeModel == null || CollUtil.isEmpty(projects)) {
+                return null;
             }
-            return this.reqNodeStatus(nodeModel, nodeProject.getProjects());
-        }).filter(aBoolean -> !aBoolean).collect(Collectors.toList());
-        boolean allRun = CollUtil.isEmpty(collect);
+            Future<JsonMessage<JSONObject>> future = MONITOR_EXECUTOR.submit(() ->
+                NodeForward.request(nodeModel, NodeUrl.Manage_GetProjectStatusBatch, "ids", JSONArray.toJSONString(projects)));
+            return new Tuple(nodeModel, projects, future);
+        }).filter(Objects::nonNull).collect(Collectors.toList());
+        //
+        long deadline = SystemClock.now() + TimeUnit.SECONDS.toMillis(nodeConfig.getMonitorTimeout());
+        boolean allRun = true;
+        for (Tuple tuple : tuples) {
+            NodeModel nodeModel = tuple.get(0);
+            List<String> projects = tuple.get(1);
+            Future<JsonMessage<JSONObject>> future = tuple.get(2);
+            allRun = this.reqNodeStatus(nodeModel, projects, future, deadline) && allRun;
+        }
         // 报警状态
         monitorService.setAlarm(monitorModel.getId(), !allRun);
     }
@@ -107,6 +141,63 @@ public class MonitorItem implements Task {
      *
      * @param nodeModel 节点
      * @param projects  项目
+     * @param future    批量获取项目状态的结果
+     * @param deadline  等待结果的截止时间
+     * @return true 所有项目都正常
+     */
+    private boolean reqNodeStatus(NodeModel nodeModel, List<String> projects, Future<JsonMessage<JSONObject>> future, long deadline) {
+        JsonMessage<JSONObject> jsonMessage;
+        try {
+            long timeout = Math.max(deadline - SystemClock.now(), 0);
+            jsonMessage = future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            future.cancel(true);
+            if (NodeForward.isNotFound(e)) {
+                // 旧版本插件端没有批量接口（404），逐个获取项目状态
+                return this.reqNodeStatus(nodeModel, projects);
+            }
+            String title = StrUtil.format("【{}】节点的运行状态异常", nodeModel.getName());
+            String context;
+            if (e instanceof TimeoutException) {
+                log.error("监控 {} 节点超时", nodeModel.getName());
+                context = StrUtil.format("获取节点项目状态超时({}秒)", nodeConfig.getMonitorTimeout());
+            } else {
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                log.error("监控 {} 节点异常 {}", nodeModel.getName(), cause.getMessage());
+                context = ExceptionUtil.stacktraceToString(cause);
+            }
+            for (String id : projects) {
+                this.notifyError(nodeModel, id, title, context);
+            }
+            return false;
+        }
+        if (!jsonMessage.success()) {
+            // 兼容旧版本插件端，逐个获取项目状态
+            return this.reqNodeStatus(nodeModel, projects);
+        }
+        JSONObject data = jsonMessage.getData();
+        boolean allRun = true;
+        for (String id : projects) {
+            JSONObject jsonObject = data == null ? null : data.getJSONObject(id);
+            boolean runStatus;
+            if (jsonObject == null || jsonObject.containsKey("error")) {
+                String title = StrUtil.format("【{}】节点的【{}】项目状态异常", nodeModel.getName(), id);
+                String context = Optional.ofNullable(jsonObject).map(item -> item.getString("error")).orElse("没有返回项目状态");
+                this.notifyError(nodeModel, id, title, context);
+                runStatus = false;
+            } else {
+                runStatus = this.checkProjectStatus(nodeModel, id, jsonObject);
+            }
+            allRun = runStatus && allRun;
+        }
+        return allRun;
+    }
+
+    /**
+     * 检查节点节点对信息（逐个获取项目状态）
+     *
+     * @param nodeModel 节点
+     * @param projects  项目
      * @return true 所有项目都正常
      */
     private boolean reqNodeStatus(NodeModel nodeModel, List<String> projects) {
@@ -121,25 +212,7 @@ public class MonitorItem implements Task {
                 //查询项目运行状态
                 JsonMessage<JSONObject> jsonMessage = NodeForward.request(nodeModel, NodeUrl.Manage_GetProjectStatus, "id", id);
                 if (jsonMessage.success()) {
-                    JSONObject jsonObject = jsonMessage.getData();
-                    int pid = jsonObject.getIntValue("pId");
-                    String statusMsg = jsonObject.getString("statusMsg");
-                    boolean runStatus = this.checkNotify(monitorModel, nodeModel, id, pid > 0, statusMsg);
-                    // 检查副本
-                    List<Boolean> booleanList = null;
-                    JSONArray copys = jsonObject.getJSONArray("copys");
-                    if (CollUtil.isNotEmpty(copys)) {
-                        booleanList = copys.stream()
-                            .map(o -> {
-                                JSONObject jsonObject1 = (JSONObject) o;
-
-                                boolean status = jsonObject1.getBooleanValue("status");
-                                return MonitorItem.this.checkNotify(monitorModel, nodeModel, id, status, StrUtil.EMPTY);
-                            })
-                            .filter(aBoolean -> !aBoolean)
-                            .collect(Collectors.toList());
-                    }
-                    return runStatus && CollUtil.isEmpty(booleanList);
+                    return this.checkProjectStatus(nodeModel, id, jsonMessage.getData());
                 } else {
                     title = StrUtil.format("【{}】节点的状态码异常：{}", nodeModel.getName(), jsonMessage.getCode());
                     context = jsonMessage.toString();
@@ -150,26 +223,67 @@ public class MonitorItem implements Task {
                 title = StrUtil.format("【{}】节点的运行状态异常", nodeModel.getName());
                 context = ExceptionUtil.stacktraceToString(e);
             }
-            // 获取上次状态
-            boolean pre = this.getPreStatus(monitorModel.getId(), nodeModel.getId(), id);
-            if (pre) {
-                // 上次正常
-                MonitorNotifyLog monitorNotifyLog = new MonitorNotifyLog();
-                monitorNotifyLog.setStatus(false);
-                monitorNotifyLog.setTitle(title);
-                monitorNotifyLog.setContent(context);
-                monitorNotifyLog.setCreateTime(System.currentTimeMillis());
-                monitorNotifyLog.setNodeId(nodeModel.getId());
-                monitorNotifyLog.setProjectId(id);
-                monitorNotifyLog.setMonitorId(monitorModel.getId());
-                //
-                this.notifyMsg(nodeModel, monitorNotifyLog);
-            }
+            this.notifyError(nodeModel, id, title, context);
             return false;
         }).filter(aBoolean -> !aBoolean).collect(Collectors.toList());
         return CollUtil.isEmpty(collect);
     }
 
+    /**
+     * 检查项目状态
+     *
+     * @param nodeModel  节点
+     * @param id         项目id
+     * @param jsonObject 插件端返回的项目状态
+     * @return true 项目正常
+     */
+    private boolean checkProjectStatus(NodeModel nodeModel, String id, JSONObject jsonObject) {
+        int pid = jsonObject.getIntValue("pId");
+        String statusMsg = jsonObject.getString("statusMsg");
+        boolean runStatus = this.checkNotify(monitorModel, nodeModel, id, pid > 0, statusMsg);
+        // 检查副本
+        List<Boolean> booleanList = null;
+        JSONArray copys = jsonObject.getJSONArray("copys");
+        if (CollUtil.isNotEmpty(copys)) {
+            booleanList = copys.stream()
+                .map(o -> {
+                    JSONObject jsonObject1 = (JSONObject) o;
+
+                    boolean status = jsonObject1.getBooleanValue("status");
+                    return MonitorItem.this.checkNotify(monitorModel, nodeModel, id, status, StrUtil.EMPTY);
+                })
+                .filter(aBoolean -> !aBoolean)
+                .collect(Collectors.toList());
+        }
+        return runStatus && CollUtil.isEmpty(booleanList);
+    }
+
+    /**
+     * 获取项目状态异常通知（上次正常才通知）
+     *
+     * @param nodeModel 节点
+     * @param id        项目id
+     * @param title     标题
+     * @param context   内容
+     */
+    private void notifyError(NodeModel nodeModel, String id, String title, String context) {
+        // 获取上次状态
+        boolean pre = this.getPreStatus(monitorModel.getId(), nodeModel.getId(), id);
+        if (pre) {
+            // 上次正常
+            MonitorNotifyLog monitorNotifyLog = new MonitorNotifyLog();
+            monitorNotifyLog.setStatus(false);
+            monitorNotifyLog.setTitle(title);
+            monitorNotifyLog.setContent(context);
+            monitorNotifyLog.setCreateTime(System.currentTimeMillis());
+            monitorNotifyLog.setNodeId(nodeModel.getId());
+            monitorNotifyLog.setProjectId(id);
+            monitorNotifyLog.setMonitorId(monitorModel.getId());
+            //
+            this.notifyMsg(nodeModel, monitorNotifyLog);
+        }
+    }
+
     /**
      * 检查状态
      *
@@ -292,13 +406,11 @@ public class MonitorItem implements Task {
         //
         dbMonitorNotifyLogService.insert(monitorNotifyLog);
         String logId = monitorNotifyLog.getId();
-        ThreadUtil.execute(() -> {
-            try {
-                plugin.execute(webhook, map);
+        NotifyDispatcher.execute(webhook, () -> plugin.execute(webhook, map), (success, throwable) -> {
+            if (success) {
                 dbMonitorNotifyLogService.updateStatus(logId, true, null);
-            } catch (Exception e) {
-                log.error("WebHooks 调用错误", e);
-                dbMonitorNotifyLogService.updateStatus(logId, false, ExceptionUtil.stacktraceToString(e));
+            } else {
+                dbMonitorNotifyLogService.updateStatus(logId, false, ExceptionUtil.stacktraceToString(throwable));
             }
         });
     }
@@ -356,14 +468,12 @@ public class MonitorItem implements Task {
     }
 
     private void send(MonitorModel.Notify notify, String logId, String title, String context) {
-        // 异常发送
-        ThreadUtil.execute(() -> {
-            try {
-                NotifyUtil.send(notify, title, context);
+        // 异步发送，相同的报警会被合并
+        NotifyDispatcher.dispatch(notify, title, context, (success, throwable) -> {
+            if (success) {
                 dbMonitorNotifyLogService.updateStatus(logId, true, null);
-            } catch (Exception e) {
-                log.error("发送报警通知异常", e);
-                dbMonitorNotifyLogService.updateStatus(logId, false, ExceptionUtil.stacktraceToString(e));
+            } else {
+                dbMonitorNotifyLogService.updateStatus(logId, false, ExceptionUtil.stacktraceToString(throwable));
             }
         });
     }
@@ -0,0 +1,494 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.monitor;
+
+import cn.hutool.core.lang.func.VoidFunc0;
+import cn.hutool.core.map.SafeConcurrentHashMap;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.JpomApplication;
+import org.dromara.jpom.model.BaseEnum;
+import org.dromara.jpom.model.data.MonitorModel;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * 报警通知分发
+ * <p>
+ * 每种通知方式使用独立的有界队列发送，同一接收对象按最小间隔限流。
+ * 限流期间积压的多条通知按顺序合并为一条汇总，合并窗口内连续重复的相同通知只补发一次并附带重复次数，发送失败按指数退避重试。
+ * 有新的不同通知时，之前延迟补发的通知随之一起发送，保证通知顺序和产生顺序一致
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/17
+ */
+@Slf4j
+public class NotifyDispatcher {
+
+    /**
+     * webhook 通道，只排队不合并、不重试（webhook 不保证幂等）
+     */
+    public static final String WEBHOOK_CHANNEL = "webhook";
+    /**
+     * 首次重试延迟，后续翻倍
+     */
+    private static final long RETRY_BASE_DELAY = 1000;
+    /**
+     * 单条汇总最多包含的通知数
+     */
+    private static final int DIGEST_MAX_SIZE = 20;
+    /**
+     * 清理空闲接收对象的间隔（秒）
+     */
+    private static final long SWEEP_INTERVAL = 60;
+
+    private static volatile int queueSize = 500;
+    private static volatile long targetInterval = 3000;
+    private static volatile long coalesceWindow = 60000;
+    private static volatile int retryCount = 3;
+
+    private static final Map<String, Channel> CHANNEL_MAP = new SafeConcurrentHashMap<>();
+    private static final Map<String, Target> TARGET_MAP = new SafeConcurrentHashMap<>();
+    private static volatile ScheduledExecutorService scheduler;
+
+    /**
+     * 每个通知通道的队列大小，同时也是单个接收对象最多积压的通知数
+     *
+     * @param queueSize 队列大小
+     */
+    public static void setQueueSize(int queueSize) {
+        NotifyDispatcher.queueSize = Math.max(queueSize, 1);
+    }
+
+    /**
+     * 同一接收对象两次发送的最小间隔
+     *
+     * @param targetInterval 毫秒
+     */
+    public static void setTargetInterval(long targetInterval) {
+        NotifyDispatcher.targetInterval = Math.max(targetInterval, 0);
+    }
+
+    /**
+     * 相同通知的合并窗口
+     *
+     * @param coalesceWindow 毫秒
+     */
+    public static void setCoalesceWindow(long coalesceWindow) {
+        NotifyDispatcher.coalesceWindow = Math.max(coalesceWindow, 0);
+    }
+
+    /**
+     * 发送失败的重试次数
+     *
+     * @param retryCount 次数
+     */
+    public static void setRetryCount(int retryCount) {
+        NotifyDispatcher.retryCount = Math.max(retryCount, 0);
+    }
+
+    /**
+     * 异步发送报警消息
+     *
+     * @param notify   通知方式
+     * @param title    描述
+     * @param context  内容
+     * @param callback 最终发送结果回调（合并发送的通知共享结果），可以为 null
+     */
+    public static void dispatch(MonitorModel.Notify notify, String title, String context, BiConsumer<Boolean, Throwable> callback) {
+        MonitorModel.NotifyType notifyType = BaseEnum.getEnum(MonitorModel.NotifyType.class, notify.getStyle());
+        Objects.requireNonNull(notifyType);
+        Channel channel = getChannel(notifyType.name());
+        channel.submitted.increment();
+        String targetKey = notifyType.name() + StrUtil.COLON + notify.getValue();
+        String key = StrUtil.nullToEmpty(title) + StrUtil.LF + StrUtil.nullToEmpty(context);
+        while (true) {
+            Target target = TARGET_MAP.computeIfAbsent(targetKey, s -> new Target(notify, channel));
+            synchronized (target) {
+                if (target.removed) {
+                    continue;
+                }
+                long now = System.currentTimeMillis();
+                target.lastActive = now;
+                // 只合并连续的相同通知，中间有其他通知时合并会打乱顺序
+                Pending pending = target.pending.peekLast();
+                if (pending != null && StrUtil.equals(pending.key, key)) {
+                    pending.count++;
+                    pending.callbacks.add(callback);
+                    channel.coalesced.increment();
+                    return;
+                }
+                if (target.pending.size() < queueSize) {
+                    // 之前延迟补发的通知不能晚于新的通知发送
+                    long due = now;
+                    for (Pending item : target.pending) {
+                        item.notBefore = Math.min(item.notBefore, now);
+                    }
+                    // 合并窗口内已经发送过的相同通知延迟到窗口结束再补发
+                    Long sentTime = target.sentTime.get(key);
+                    long notBefore = sentTime == null ? now : Math.max(now, sentTime + coalesceWindow);
+                    if (target.pending.isEmpty()) {
+                        due = notBefore;
+                    }
+                    pending = new Pending(key, title, context, now, notBefore);
+                    pending.callbacks.add(callback);
+                    target.pending.add(pending);
+                    schedule(target, Math.max(due, target.lastSend + targetInterval));
+                    return;
+                }
+            }
+            channel.dropped.increment();
+            complete(Collections.singletonList(callback), false, new RejectedExecutionException("通知积压过多：" + targetKey));
+            return;
+        }
+    }
+
+    /**
+     * 在 webhook 通道中异步执行
+     *
+     * @param target   调用地址，仅用于日志
+     * @param action   执行的调用
+     * @param callback 执行结果回调，可以为 null
+     */
+    public static void execute(String target, VoidFunc0 action, BiConsumer<Boolean, Throwable> callback) {
+        Channel channel = getChannel(WEBHOOK_CHANNEL);
+        channel.submitted.increment();
+        Delivery delivery = new Delivery(channel, target, action, System.currentTimeMillis(), 1, 0);
+        delivery.callbacks.add(callback);
+        channel.submit(delivery);
+    }
+
+    /**
+     * 各通道的队列与延迟统计
+     *
+     * @return json
+     */
+    public static JSONObject metrics() {
+        Map<Channel, Integer> pendingMap = new HashMap<>(CHANNEL_MAP.size());
+        TARGET_MAP.values().forEach(target -> {
+            synchronized (target) {
+                pendingMap.merge(target.channel, target.pending.size(), Integer::sum);
+            }
+        });
+        JSONObject jsonObject = new JSONObject();
+        CHANNEL_MAP.forEach((name, channel) -> jsonObject.put(name, channel.metrics(pendingMap.getOrDefault(channel, 0))));
+        jsonObject.put("targets", TARGET_MAP.size());
+        return jsonObject;
+    }
+
+    private static Channel getChannel(String name) {
+        return CHANNEL_MAP.computeIfAbsent(name, Channel::new);
+    }
+
+    private static ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            synchronized (NotifyDispatcher.class) {
+                if (scheduler == null) {
+                    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(ThreadUtil.newNamedThreadFactory("notify-dispatcher-", true));
+                    executorService.scheduleWithFixedDelay(NotifyDispatcher::sweep, SWEEP_INTERVAL, SWEEP_INTERVAL, TimeUnit.SECONDS);
+                    JpomApplication.register("notify-dispatcher", executorService);
+                    scheduler = executorService;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    private static void schedule(Runnable runnable, long delay) {
+        try {
+            getScheduler().schedule(runnable, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.warn("通知调度已经关闭：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 安排接收对象的下一次发送，已有更早的安排时忽略
+     *
+     * @param target 接收对象
+     * @param due    发送时间
+     */
+    private static void schedule(Target target, long due) {
+        if (target.flushAt > 0 && target.flushAt <= due) {
+            return;
+        }
+        target.flushAt = due;
+        long seq = ++target.flushSeq;
+        schedule(() -> flush(target, seq), due - System.currentTimeMillis());
+    }
+
+    private static void flush(Target target, long seq) {
+        List<Pending> ready = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (target) {
+            if (seq != target.flushSeq) {
+                // 已经被更早的安排替代
+                return;
+            }
+            target.flushAt = 0;
+            if (now >= target.lastSend + targetInterval) {
+                Iterator<Pending> iterator = target.pending.iterator();
+                while (iterator.hasNext() && ready.size() < DIGEST_MAX_SIZE) {
+                    Pending pending = iterator.next();
+                    if (pending.notBefore > now) {
+                        // 按顺序发送，还在延迟中的通知只会是最后一条
+                        break;
+                    }
+                    iterator.remove();
+                    ready.add(pending);
+                    target.sentTime.put(pending.key, now);
+                }
+                if (!ready.isEmpty()) {
+                    target.lastSend = now;
+                }
+            }
+            long next = target.pending.stream().mapToLong(pending -> pending.notBefore).min().orElse(0);
+            if (next > 0) {
+                schedule(target, Math.max(next, target.lastSend + targetInterval));
+            }
+        }
+        if (ready.isEmpty()) {
+            return;
+        }
+        String title;
+        String context;
+        if (ready.size() == 1) {
+            Pending pending = ready.get(0);
+            title = pending.title;
+            context = pending.formatContext();
+        } else {
+            target.channel.digests.increment();
+            title = StrUtil.format("通知汇总：共 {} 条", ready.size());
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < ready.size(); i++) {
+                Pending pending = ready.get(i);
+                builder.append(i + 1).append(". ").append(pending.title).append(StrUtil.LF);
+                String formatContext = pending.formatContext();
+                if (StrUtil.isNotEmpty(formatContext)) {
+                    builder.append(formatContext).append(StrUtil.LF);
+                }
+                builder.append(StrUtil.LF);
+            }
+            context = builder.toString().trim();
+        }
+        long firstTime = ready.stream().mapToLong(pending -> pending.createTime).min().orElse(now);
+        int count = ready.stream().mapToInt(pending -> pending.count).sum();
+        MonitorModel.Notify notify = target.notify;
+        Delivery delivery = new Delivery(target.channel, notify.getValue(), () -> NotifyUtil.send(notify, title, context), firstTime, count, retryCount);
+        ready.forEach(pending -> delivery.callbacks.addAll(pending.callbacks));
+        target.channel.submit(delivery);
+    }
+
+    /**
+     * 清理已经过了合并窗口的发送记录和空闲的接收对象
+     */
+    private static void sweep() {
+        long now = System.currentTimeMillis();
+        long idle = Math.max(coalesceWindow, targetInterval);
+        TARGET_MAP.forEach((key, target) -> {
+            synchronized (target) {
+                target.sentTime.values().removeIf(time -> now - time >= coalesceWindow);
+                if (target.pending.isEmpty() && target.sentTime.isEmpty() && now - target.lastActive > idle) {
+                    target.removed = true;
+                    TARGET_MAP.remove(key, target);
+                }
+            }
+        });
+    }
+
+    private static void complete(List<BiConsumer<Boolean, Throwable>> callbacks, boolean success, Throwable throwable) {
+        for (BiConsumer<Boolean, Throwable> callback : callbacks) {
+            if (callback == null) {
+                continue;
+            }
+            try {
+                callback.accept(success, throwable);
+            } catch (Exception e) {
+                log.error("通知结果回调异常", e);
+            }
+        }
+    }
+
+    /**
+     * 通知通道
+     */
+    private static class Channel {
+        private final String name;
+        private final ThreadPoolExecutor executor;
+        private final LongAdder submitted = new LongAdder();
+        private final LongAdder delivered = new LongAdder();
+        private final LongAdder digests = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+        private final LongAdder retried = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder latencyTotal = new LongAdder();
+        private final AtomicLong latencyMax = new AtomicLong();
+
+        private Channel(String name) {
+            this.name = name;
+            this.executor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+                ThreadUtil.newNamedThreadFactory("notify-" + name + "-", true));
+            this.executor.allowCoreThreadTimeOut(true);
+            JpomApplication.register("notify-" + name, executor);
+        }
+
+        private void submit(Delivery delivery) {
+            try {
+                executor.execute(delivery);
+            } catch (RejectedExecutionException e) {
+                dropped.add(delivery.count);
+                log.warn("{} 通知队列已满，丢弃通知：{}", name, delivery.target);
+                complete(delivery.callbacks, false, e);
+            }
+        }
+
+        private JSONObject metrics(int pending) {
+            JSONObject jsonObject = new JSONObject();
+            long deliveredCount = delivered.sum();
+            jsonObject.put("queueSize", executor.getQueue().size());
+            jsonObject.put("queueRemaining", executor.getQueue().remainingCapacity());
+            jsonObject.put("active", executor.getActiveCount());
+            jsonObject.put("pending", pending);
+            jsonObject.put("submitted", submitted.sum());
+            jsonObject.put("delivered", deliveredCount);
+            jsonObject.put("digests", digests.sum());
+            jsonObject.put("coalesced", coalesced.sum());
+            jsonObject.put("retried", retried.sum());
+            jsonObject.put("failed", failed.sum());
+            jsonObject.put("dropped", dropped.sum());
+            jsonObject.put("avgLatency", deliveredCount == 0 ? 0 : latencyTotal.sum() / deliveredCount);
+            jsonObject.put("maxLatency", latencyMax.get());
+            return jsonObject;
+        }
+    }
+
+    /**
+     * 接收对象，通过 synchronized 保护
+     */
+    private static class Target {
+        private final MonitorModel.Notify notify;
+        private final Channel channel;
+        /**
+         * 待发送的通知，按产生顺序排列
+         */
+        private final LinkedList<Pending> pending = new LinkedList<>();
+        /**
+         * 合并窗口内已经发送的通知时间
+         */
+        private final Map<String, Long> sentTime = new HashMap<>();
+        private long lastSend;
+        private long lastActive;
+        private long flushAt;
+        private long flushSeq;
+        private boolean removed;
+
+        private Target(MonitorModel.Notify notify, Channel channel) {
+            this.notify = notify;
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * 待发送的通知
+     */
+    private static class Pending {
+        private final String key;
+        private final String title;
+        private final String context;
+        private final long createTime;
+        private long notBefore;
+        private final List<BiConsumer<Boolean, Throwable>> callbacks = new ArrayList<>();
+        private int count = 1;
+
+        private Pending(String key, String title, String context, long createTime, long notBefore) {
+            this.key = key;
+            this.title = title;
+            this.context = context;
+            this.createTime = createTime;
+            this.notBefore = notBefore;
+        }
+
+        private String formatContext() {
+            if (count <= 1) {
+                return context;
+            }
+            String merged = StrUtil.format("（{} 秒内重复 {} 次）", Math.max((System.currentTimeMillis() - createTime) / 1000, 1), count);
+            return StrUtil.isEmpty(context) ? merged : context + StrUtil.LF + merged;
+        }
+    }
+
+    /**
+     * 一次实际发送，失败后按指数退避重新入队
+     */
+    private static class Delivery implements Runnable {
+        private final Channel channel;
+        private final String target;
+        private final VoidFunc0 action;
+        private final long firstTime;
+        private final int count;
+        private final int maxRetry;
+        private final List<BiConsumer<Boolean, Throwable>> callbacks = new ArrayList<>();
+        private int attempt;
+
+        private Delivery(Channel channel, String target, VoidFunc0 action, long firstTime, int count, int maxRetry) {
+            this.channel = channel;
+            this.target = target;
+            this.action = action;
+            this.firstTime = firstTime;
+            this.count = count;
+            this.maxRetry = maxRetry;
+        }
+
+        @Override
+        public void run() {
+            try {
+                action.call();
+            } catch (Exception e) {
+                if (attempt < maxRetry) {
+                    long delay = RETRY_BASE_DELAY << attempt;
+                    attempt++;
+                    channel.retried.increment();
+                    log.warn("{} 通知发送失败，{} 毫秒后第 {} 次重试：{} {}", channel.name, delay, attempt, target, e.getMessage());
+                    schedule(() -> channel.submit(this), delay);
+                    return;
+                }
+                channel.failed.increment();
+                log.error("{} 通知发送失败：{}", channel.name, target, e);
+                complete(callbacks, false, e);
+                return;
+            }
+            long latency = System.currentTimeMillis() - firstTime;
+            channel.delivered.increment();
+            channel.latencyTotal.add(latency);
+            channel.latencyMax.accumulateAndGet(latency, Math::max);
+            complete(callbacks, true, null);
+        }
+    }
+}
@@ -22,11 +22,14 @@
  */
 package org.dromara.jpom.monitor;
 
+import cn.hutool.core.util.StrUtil;
 import cn.hutool.http.HttpRequest;
+import cn.hutool.http.HttpResponse;
 import cn.hutool.http.HttpUtil;
 import com.alibaba.fastjson2.JSONObject;
 import org.dromara.jpom.model.data.MonitorModel;
 import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
 
 /**
  * 钉钉工具
@@ -35,6 +38,11 @@ import org.springframework.http.MediaType;
  */
 public class WebHookUtil implements INotify {
 
+    /**
+     * 请求超时时间，避免阻塞通知发送线程
+     */
+    private static final int TIMEOUT = 10 * 1000;
+
     /**
      * 发送钉钉群自定义机器人消息
      *
@@ -53,7 +61,16 @@ public class WebHookUtil implements INotify {
         HttpRequest request = HttpUtil.
             createPost(notify.getValue()).
             contentType(MediaType.APPLICATION_JSON_VALUE).
-            body(param.toJSONString());
-        request.execute();
+            body(param.toJSONString()).
+            timeout(TIMEOUT);
+        try (HttpResponse response = request.execute()) {
+            String body = response.body();
+            Assert.state(response.isOk(), () -> "通知发送失败：" + response.getStatus() + " " + body);
+            // 钉钉、企业微信在 errcode 中返回错误信息
+            if (StrUtil.startWith(body, "{")) {
+                JSONObject result = JSONObject.parseObject(body);
+                Assert.state(result.getIntValue("errcode") == 0, () -> "通知发送失败：" + body);
+            }
+        }
     }
 }
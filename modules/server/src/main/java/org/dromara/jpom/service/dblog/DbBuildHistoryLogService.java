@@ -36,6 +36,7 @@ import cn.keepbx.jpom.IJsonMessage;
 import cn.keepbx.jpom.event.ISystemTask;
 import cn.keepbx.jpom.model.JsonMessage;
 import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.build.BuildArtifactStore;
 import org.dromara.jpom.build.BuildExtraModule;
 import org.dromara.jpom.build.BuildUtil;
 import org.dromara.jpom.model.BaseDbModel;
@@ -110,6 +111,8 @@ public class DbBuildHistoryLogService extends BaseWorkspaceService<BuildHistoryL
                     if (!s) {
                         return new JsonMessage<>(500, "清理文件失败");
                     }
+                    // 回收不再被引用的产物对象
+                    BuildArtifactStore.gcAsync();
                 }
             }
         }
@@ -198,6 +201,8 @@ public class DbBuildHistoryLogService extends BaseWorkspaceService<BuildHistoryL
 
     @Override
     public void executeTask() {
+        // 定时回收不再被引用的产物对象
+        BuildArtifactStore.gcAsync();
         List<BuildInfoModel> buildInfoModels = buildService.hasResultKeep();
         if (CollUtil.isEmpty(buildInfoModels)) {
             return;
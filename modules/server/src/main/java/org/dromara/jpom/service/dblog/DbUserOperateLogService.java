@@ -24,19 +24,23 @@ package org.dromara.jpom.service.dblog;
 
 import cn.hutool.core.bean.BeanPath;
 import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.lang.Tuple;
 import cn.hutool.core.thread.ThreadUtil;
 import cn.hutool.core.util.EnumUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.extra.servlet.ServletUtil;
 import cn.hutool.extra.spring.SpringUtil;
+import com.alibaba.fastjson2.JSONObject;
 import lombok.extern.slf4j.Slf4j;
+import org.dromara.jpom.JpomApplication;
+import org.dromara.jpom.configuration.SystemConfig;
 import org.dromara.jpom.model.PageResultDto;
 import org.dromara.jpom.model.data.MonitorModel;
 import org.dromara.jpom.model.data.MonitorUserOptModel;
 import org.dromara.jpom.model.data.WorkspaceModel;
 import org.dromara.jpom.model.log.UserOperateLogV1;
 import org.dromara.jpom.model.user.UserModel;
-import org.dromara.jpom.monitor.NotifyUtil;
+import org.dromara.jpom.monitor.NotifyDispatcher;
 import org.dromara.jpom.permission.ClassFeature;
 import org.dromara.jpom.permission.MethodFeature;
 import org.dromara.jpom.service.h2db.BaseDbService;
@@ -44,14 +48,14 @@ import org.dromara.jpom.service.h2db.BaseWorkspaceService;
 import org.dromara.jpom.service.monitor.MonitorUserOptService;
 import org.dromara.jpom.service.system.WorkspaceService;
 import org.dromara.jpom.service.user.UserService;
+import org.dromara.jpom.system.ServerConfig;
 import org.dromara.jpom.system.init.OperateLogController;
 import org.springframework.stereotype.Service;
 
 import javax.servlet.http.HttpServletRequest;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 /**
@@ -71,13 +75,36 @@ public class DbUserOperateLogService extends BaseWorkspaceService<UserOperateLog
      * 通用 bean 的名称字段 bean-path
      */
     private static final BeanPath[] NAME_BEAN_PATHS = new BeanPath[]{BeanPath.create("name"), BeanPath.create("title")};
+    /**
+     * 队列满时等待的时间
+     */
+    private static final long OFFER_TIMEOUT = 500;
+    /**
+     * 待写入的日志 [日志, 操作缓存]
+     */
+    private final BlockingQueue<Tuple> logQueue;
+    private final int batchSize;
+    private final ExecutorService writer;
+    private final LongAdder acceptedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
 
     public DbUserOperateLogService(MonitorUserOptService monitorUserOptService,
                                    UserService userService,
-                                   WorkspaceService workspaceService) {
+                                   WorkspaceService workspaceService,
+                                   ServerConfig serverConfig) {
         this.monitorUserOptService = monitorUserOptService;
         this.userService = userService;
         this.workspaceService = workspaceService;
+        SystemConfig systemConfig = serverConfig.getSystem();
+        this.logQueue = new ArrayBlockingQueue<>(Math.max(systemConfig.getOperateLogQueueSize(), 1));
+        this.batchSize = Math.max(systemConfig.getOperateLogBatchSize(), 1);
+        // 单线程写入，关闭时等待剩余的日志写入完成
+        this.writer = Executors.newSingleThreadExecutor(ThreadUtil.newNamedThreadFactory("operate-log-", true));
+        writer.execute(this::drainLoop);
+        JpomApplication.registerGraceful("operate-log", writer);
     }
 
     /**
@@ -210,82 +237,146 @@ public class DbUserOperateLogService extends BaseWorkspaceService<UserOperateLog
                     continue;
                 }
                 // 邮箱
-                String email = item.getEmail();
-                if (StrUtil.isNotEmpty(email)) {
-                    MonitorModel.Notify notify1 = new MonitorModel.Notify(MonitorModel.NotifyType.mail, email);
-                    ThreadUtil.execute(() -> {
-                        try {
-                            NotifyUtil.send(notify1, "用户操作报警", context);
-                        } catch (Exception e) {
-                            log.error("发送报警信息错误", e);
-                        }
-                    });
-
-                }
+                this.sendNotify(MonitorModel.NotifyType.mail, item.getEmail(), context);
                 // dingding
-                String dingDing = item.getDingDing();
-                if (StrUtil.isNotEmpty(dingDing)) {
-                    MonitorModel.Notify notify1 = new MonitorModel.Notify(MonitorModel.NotifyType.dingding, dingDing);
-                    ThreadUtil.execute(() -> {
-                        try {
-                            NotifyUtil.send(notify1, "用户操作报警", context);
-                        } catch (Exception e) {
-                            log.error("发送报警信息错误", e);
-                        }
-                    });
-                }
+                this.sendNotify(MonitorModel.NotifyType.dingding, item.getDingDing(), context);
                 // 企业微信
-                String workWx = item.getWorkWx();
-                if (StrUtil.isNotEmpty(workWx)) {
-                    MonitorModel.Notify notify1 = new MonitorModel.Notify(MonitorModel.NotifyType.workWx, workWx);
-                    ThreadUtil.execute(() -> {
-                        try {
-                            NotifyUtil.send(notify1, "用户操作报警", context);
-                        } catch (Exception e) {
-                            log.error("发送报警信息错误", e);
-                        }
-                    });
-                }
+                this.sendNotify(MonitorModel.NotifyType.workWx, item.getWorkWx(), context);
             }
         }
         return dataMap;
     }
 
+    private void sendNotify(MonitorModel.NotifyType notifyType, String value, String context) {
+        if (StrUtil.isEmpty(value)) {
+            return;
+        }
+        MonitorModel.Notify notify = new MonitorModel.Notify(notifyType, value);
+        NotifyDispatcher.dispatch(notify, "用户操作报警", context, null);
+    }
+
     /**
-     * 插入操作日志
+     * 插入操作日志，放入队列由后台线程批量写入
      *
      * @param userOperateLogV1 日志信息
      * @param cacheInfo        当前操作相关信息
      */
     public void insert(UserOperateLogV1 userOperateLogV1, OperateLogController.CacheInfo cacheInfo) {
-        super.insert(userOperateLogV1);
-        ThreadUtil.execute(() -> {
-            // 更新用户名和工作空间名
+        boolean offer;
+        try {
+            offer = logQueue.offer(new Tuple(userOperateLogV1, cacheInfo), OFFER_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            offer = false;
+        }
+        if (offer) {
+            acceptedCount.increment();
+        } else {
+            droppedCount.increment();
+            log.warn("操作日志队列已满，丢弃日志：{} {}", userOperateLogV1.getClassFeature(), userOperateLogV1.getMethodFeature());
+        }
+    }
+
+    private void drainLoop() {
+        List<Tuple> batch = new ArrayList<>(batchSize);
+        while (true) {
             try {
-                UserOperateLogV1 update = new UserOperateLogV1();
-                update.setId(userOperateLogV1.getId());
-                UserModel userModel = userService.getByKey(userOperateLogV1.getUserId());
-                Optional.ofNullable(userModel).ifPresent(userModel1 -> update.setUsername(userModel1.getName()));
-                WorkspaceModel workspaceModel = workspaceService.getByKey(userOperateLogV1.getWorkspaceId());
-                Optional.ofNullable(workspaceModel).ifPresent(workspaceModel1 -> update.setWorkspaceName(workspaceModel1.getName()));
-                this.updateById(update);
-            } catch (Exception e) {
-                log.error("更新操作日志失败", e);
+                Tuple first = logQueue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    if (writer.isShutdown()) {
+                        // 程序关闭并且队列已经写完
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                logQueue.drainTo(batch, batchSize - 1);
+                this.writeBatch(batch);
+            } catch (InterruptedException e) {
+                // 被强制中断，清除中断标记后写入剩余的日志（中断状态下 h2 的文件通道会被关闭）
+                Thread.interrupted();
+                logQueue.drainTo(batch);
+                this.writeBatch(batch);
+                return;
+            } catch (Throwable e) {
+                log.error("写入操作日志异常", e);
+            } finally {
+                batch.clear();
             }
-            // 检查操作监控
-            try {
-                Map<String, Object> monitor = this.checkMonitor(userOperateLogV1, cacheInfo);
-                if (monitor != null) {
-                    String dataName = Optional.ofNullable(monitor.get("数据名称")).map(StrUtil::toStringOrNull).orElse(StrUtil.DASHED);
-                    UserOperateLogV1 userOperateLogV11 = new UserOperateLogV1();
-                    userOperateLogV11.setDataName(dataName);
-                    userOperateLogV11.setId(userOperateLogV1.getId());
-                    super.updateById(userOperateLogV11);
+        }
+    }
+
+    private void writeBatch(List<Tuple> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<UserOperateLogV1> list = new ArrayList<>(batch.size());
+        for (Tuple tuple : batch) {
+            UserOperateLogV1 userOperateLogV1 = tuple.get(0);
+            OperateLogController.CacheInfo cacheInfo = tuple.get(1);
+            this.fillLogInfo(userOperateLogV1, cacheInfo);
+            list.add(userOperateLogV1);
+        }
+        try {
+            super.insert(list);
+            writtenCount.add(list.size());
+            batchCount.increment();
+        } catch (Exception e) {
+            log.warn("批量写入操作日志失败，逐条重试", e);
+            for (UserOperateLogV1 userOperateLogV1 : list) {
+                try {
+                    super.insert(userOperateLogV1);
+                    writtenCount.increment();
+                } catch (Exception e1) {
+                    failedCount.increment();
+                    log.error("写入操作日志失败", e1);
                 }
-            } catch (Exception e) {
-                log.error("执行操作监控错误", e);
             }
-        });
+        }
+    }
+
+    /**
+     * 写入前填充用户名、工作空间名并检查操作监控
+     *
+     * @param userOperateLogV1 日志
+     * @param cacheInfo        操作缓存
+     */
+    private void fillLogInfo(UserOperateLogV1 userOperateLogV1, OperateLogController.CacheInfo cacheInfo) {
+        try {
+            UserModel userModel = userService.getByKey(userOperateLogV1.getUserId());
+            Optional.ofNullable(userModel).ifPresent(userModel1 -> userOperateLogV1.setUsername(userModel1.getName()));
+            WorkspaceModel workspaceModel = workspaceService.getByKey(userOperateLogV1.getWorkspaceId());
+            Optional.ofNullable(workspaceModel).ifPresent(workspaceModel1 -> userOperateLogV1.setWorkspaceName(workspaceModel1.getName()));
+        } catch (Exception e) {
+            log.error("更新操作日志失败", e);
+        }
+        // 检查操作监控
+        try {
+            Map<String, Object> monitor = this.checkMonitor(userOperateLogV1, cacheInfo);
+            if (monitor != null) {
+                String dataName = Optional.ofNullable(monitor.get("数据名称")).map(StrUtil::toStringOrNull).orElse(StrUtil.DASHED);
+                userOperateLogV1.setDataName(dataName);
+            }
+        } catch (Exception e) {
+            log.error("执行操作监控错误", e);
+        }
+    }
+
+    /**
+     * 操作日志写入统计
+     *
+     * @return json
+     */
+    public JSONObject metrics() {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("queueSize", logQueue.size());
+        jsonObject.put("queueRemaining", logQueue.remainingCapacity());
+        jsonObject.put("accepted", acceptedCount.sum());
+        jsonObject.put("dropped", droppedCount.sum());
+        jsonObject.put("written", writtenCount.sum());
+        jsonObject.put("failed", failedCount.sum());
+        jsonObject.put("batches", batchCount.sum());
+        return jsonObject;
     }
 
     @Override
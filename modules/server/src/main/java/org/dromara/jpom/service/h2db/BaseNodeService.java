@@ -22,21 +22,27 @@
  */
 package org.dromara.jpom.service.h2db;
 
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.lang.Opt;
+import cn.hutool.core.map.SafeConcurrentHashMap;
 import cn.hutool.core.thread.ThreadUtil;
 import cn.hutool.core.util.ObjectUtil;
 import cn.hutool.core.util.ReflectUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.db.Entity;
 import cn.hutool.extra.servlet.ServletUtil;
+import cn.keepbx.jpom.model.BaseIdModel;
+import cn.keepbx.jpom.model.JsonMessage;
 import com.alibaba.fastjson2.JSONArray;
 import com.alibaba.fastjson2.JSONObject;
 import lombok.extern.slf4j.Slf4j;
 import org.dromara.jpom.common.BaseServerController;
 import org.dromara.jpom.common.Const;
 import org.dromara.jpom.common.ServerConst;
+import org.dromara.jpom.common.forward.NodeForward;
 import org.dromara.jpom.exception.AgentAuthorizeException;
 import org.dromara.jpom.exception.AgentException;
 import org.dromara.jpom.func.assets.model.MachineNodeModel;
@@ -49,6 +55,7 @@ import org.dromara.jpom.service.system.WorkspaceService;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -63,6 +70,18 @@ public abstract class BaseNodeService<T extends BaseNodeModel> extends BaseGloba
     protected final NodeService nodeService;
     protected final WorkspaceService workspaceService;
     private final String dataName;
+    /**
+     * 节点增量同步的位置
+     */
+    private final Map<String, SyncCursor> syncCursorMap = new SafeConcurrentHashMap<>();
+    /**
+     * 不支持增量同步的节点（旧版本插件端），一段时间内不再尝试
+     */
+    private final TimedCache<String, Boolean> unsupportedChanges = CacheUtil.newTimedCache(TimeUnit.MINUTES.toMillis(10));
+    /**
+     * 节点数据所属工作空间缓存，用于数据权限判断
+     */
+    private final DbDataCache<String> dataWorkspaceCache = new DbDataCache<>("nodeDataWorkspace:" + this.tableName);
 
     protected BaseNodeService(NodeService nodeService,
                               WorkspaceService workspaceService,
@@ -117,7 +136,7 @@ public abstract class BaseNodeService<T extends BaseNodeModel> extends BaseGloba
      * @param nodeModel 节点
      */
     public void syncNode(final NodeModel nodeModel) {
-        ThreadUtil.execute(() -> this.syncExecuteNode(nodeModel));
+        ThreadUtil.execute(() -> this.syncExecuteNode(nodeModel, false));
     }
 
     /**
@@ -196,121 +215,51 @@ public abstract class BaseNodeService<T extends BaseNodeModel> extends BaseGloba
     }
 
     /**
-     * 同步执行 同步节点信息
+     * 同步执行 同步节点信息（全量）
      *
      * @param nodeModel 节点信息
      * @return json
      */
     public String syncExecuteNode(NodeModel nodeModel) {
+        return this.syncExecuteNode(nodeModel, true);
+    }
+
+    /**
+     * 同步执行 同步节点信息
+     *
+     * @param nodeModel 节点信息
+     * @param full      是否全量同步，false 时如果插件端支持则只同步上次同步之后变更的数据
+     * @return json
+     */
+    public String syncExecuteNode(NodeModel nodeModel, boolean full) {
         String nodeModelName = nodeModel.getName();
         if (!nodeModel.isOpenStatus()) {
             log.debug("{} 节点未启用", nodeModelName);
             return "节点未启用";
         }
         try {
-            JSONArray jsonArray = this.getLitDataArray(nodeModel);
-            if (CollUtil.isEmpty(jsonArray)) {
-                Entity entity = Entity.create();
-                entity.set("nodeId", nodeModel.getId());
-                int del = super.del(entity);
-                //
-                log.debug("{} 节点没有拉取到任何 {},但是删除了数据：{}", nodeModelName, dataName, del);
-                return "节点没有拉取到任何" + dataName;
-            }
-            // 查询现在存在的项目
-            T where = ReflectUtil.newInstance(this.tClass);
-            // where.setWorkspaceId(nodeModel.getWorkspaceId());
-            where.setNodeId(nodeModel.getId());
-            List<T> cacheAll = super.listByBean(where);
-            cacheAll = ObjectUtil.defaultIfNull(cacheAll, Collections.emptyList());
-            Set<String> needDelete = new HashSet<>();
-            Set<String> cacheIds = cacheAll.stream()
-                .map(BaseNodeModel::dataId)
-                .collect(Collectors.toSet());
-            // 转换数据修改时间
-            List<T> projectInfoModels = jsonArray.stream()
-                .map(o -> {
-                    // modifyTime,createTime
-                    JSONObject jsonObject = (JSONObject) o;
-                    T t = jsonObject.to(tClass);
-                    Opt.ofBlankAble(jsonObject.getString("createTime"))
-                        .map(s -> {
-                            try {
-                                return DateUtil.parse(s);
-                            } catch (Exception e) {
-                                log.warn("数据创建时间格式不正确 {} {}", s, jsonObject);
-                                return null;
-                            }
-                        }).ifPresent(s -> t.setCreateTimeMillis(s.getTime()));
-                    //
-                    Opt.ofBlankAble(jsonObject.getString("modifyTime"))
-                        .map(s -> {
-                            try {
-                                return DateUtil.parse(s);
-                            } catch (Exception e) {
-                                log.warn("数据修改时间格式不正确 {} {}", s, jsonObject);
-                                return null;
-                            }
-                        })
-                        .ifPresent(s -> t.setModifyTimeMillis(s.getTime()));
-                    return t;
-                })
-                .peek(item -> this.fullData(item, nodeModel))
-                // 只保留自己节点的数据
-                .filter(t -> StrUtil.equals(t.getNodeId(), nodeModel.getId()))
-                .filter(item -> {
-                    if (StrUtil.equals(item.getWorkspaceId(), ServerConst.WORKSPACE_GLOBAL)) {
-                        return true;
-                    }
-                    // 检查对应的工作空间 是否存在
-                    return workspaceService.exists(new WorkspaceModel(item.getWorkspaceId()));
-                })
-                .filter(item -> {
-                    if (StrUtil.equals(item.getWorkspaceId(), ServerConst.WORKSPACE_GLOBAL)) {
-                        return true;
-                    }
-                    // 避免重复同步
-                    return StrUtil.equals(nodeModel.getWorkspaceId(), item.getWorkspaceId());
-                })
-                .peek(item -> {
-                    item.setNodeName(nodeModel.getName());
-                    WorkspaceModel workspaceModel = workspaceService.getByKey(nodeModel.getWorkspaceId());
-                    item.setWorkspaceName(Optional.ofNullable(workspaceModel).map(WorkspaceModel::getName).orElse("数据不存在"));
-                    cacheIds.remove(item.dataId());
-                    // 需要删除相反的工作空间的数据（避免出现一个脚本同步出2条数据的问题）
-                    if (StrUtil.equals(item.getWorkspaceId(), ServerConst.WORKSPACE_GLOBAL)) {
-                        needDelete.add(BaseNodeModel.fullId(nodeModel.getWorkspaceId(), nodeModel.getId(), item.dataId()));
-                    } else {
-                        needDelete.add(BaseNodeModel.fullId(ServerConst.WORKSPACE_GLOBAL, nodeModel.getId(), item.dataId()));
-                    }
-                })
-                .collect(Collectors.toList());
             // 设置 临时缓存，便于放行检查
             BaseServerController.resetInfo(UserModel.EMPTY);
-            //
-            projectInfoModels.forEach(BaseNodeService.super::upsert);
-            // 删除项目
-            int delCount = 0;
-            Set<String> strings = cacheIds.stream()
-                .flatMap((Function<String, Stream<String>>) s -> Stream.of(
-                    BaseNodeModel.fullId(nodeModel.getWorkspaceId(), nodeModel.getId(), s),
-                    BaseNodeModel.fullId(ServerConst.WORKSPACE_GLOBAL, nodeModel.getId(), s)))
-                .collect(Collectors.toSet());
-            //
-            needDelete.addAll(strings);
-            if (CollUtil.isNotEmpty(needDelete)) {
-                delCount = super.delByKey(needDelete, null);
+            String nodeId = nodeModel.getId();
+            SyncCursor cursor = full ? null : syncCursorMap.get(nodeId);
+            if (cursor != null && !StrUtil.equals(cursor.workspaceId, nodeModel.getWorkspaceId())) {
+                // 节点工作空间变更，需要全量同步
+                cursor = null;
+            }
+            JSONObject changes = this.requestChanges(nodeModel, cursor);
+            if (changes == null) {
+                syncCursorMap.remove(nodeId);
+                return this.syncFullNode(nodeModel, this.getLitDataArray(nodeModel));
             }
-            int size = CollUtil.size(projectInfoModels);
-            String format = StrUtil.format(
-                "{} 物理节点拉取到 {} 个{},当前工作空间逻辑节点已经缓存 {} 个{},更新 {} 个{},删除 {} 个缓存",
-                nodeModelName, CollUtil.size(jsonArray), dataName,
-                CollUtil.size(cacheAll), dataName,
-                size, dataName,
-                delCount);
-            this.refreshCacheStat(nodeModel.getId(), size);
-            log.debug(format);
-            return format;
+            JSONArray list = changes.getJSONArray("list");
+            String result;
+            if (changes.getBooleanValue("full")) {
+                result = this.syncFullNode(nodeModel, list);
+            } else {
+                result = this.syncChangeNode(nodeModel, list, changes.getList("deleted", String.class));
+            }
+            syncCursorMap.put(nodeId, new SyncCursor(changes.getString("epoch"), changes.getLongValue("version"), nodeModel.getWorkspaceId()));
+            return result;
         } catch (Exception e) {
             return this.checkException(e, nodeModelName);
         } finally {
@@ -318,6 +267,309 @@ public abstract class BaseNodeService<T extends BaseNodeModel> extends BaseGloba
         }
     }
 
+    /**
+     * 查询节点变更的数据
+     *
+     * @param nodeModel 节点
+     * @param cursor    上次同步的位置
+     * @return null 节点不支持增量同步
+     */
+    private JSONObject requestChanges(NodeModel nodeModel, SyncCursor cursor) {
+        String nodeId = nodeModel.getId();
+        if (unsupportedChanges.containsKey(nodeId)) {
+            return null;
+        }
+        try {
+            JSONObject changes = cursor == null ?
+                this.getChangesData(nodeModel, StrUtil.EMPTY, 0) :
+                this.getChangesData(nodeModel, cursor.epoch, cursor.version);
+            if (changes == null) {
+                unsupportedChanges.put(nodeId, true);
+            }
+            return changes;
+        } catch (Exception e) {
+            if (!NodeForward.isNotFound(e)) {
+                // 超时等临时异常不影响下次增量同步
+                throw e;
+            }
+            // 旧版本的插件端没有增量同步接口
+            log.debug("{} 节点增量同步{}失败,使用全量同步：{}", nodeModel.getName(), dataName, e.getMessage());
+            unsupportedChanges.put(nodeId, true);
+            return null;
+        }
+    }
+
+    /**
+     * 全量同步，只保存有变化的数据
+     *
+     * @param nodeModel 节点
+     * @param jsonArray 节点所有数据
+     * @return 结果描述
+     */
+    private String syncFullNode(NodeModel nodeModel, JSONArray jsonArray) {
+        String nodeModelName = nodeModel.getName();
+        if (CollUtil.isEmpty(jsonArray)) {
+            Entity entity = Entity.create();
+            entity.set("nodeId", nodeModel.getId());
+            int del = super.del(entity);
+            //
+            log.debug("{} 节点没有拉取到任何 {},但是删除了数据：{}", nodeModelName, dataName, del);
+            this.refreshCacheStat(nodeModel.getId(), 0);
+            return "节点没有拉取到任何" + dataName;
+        }
+        // 查询现在存在的项目
+        T where = ReflectUtil.newInstance(this.tClass);
+        // where.setWorkspaceId(nodeModel.getWorkspaceId());
+        where.setNodeId(nodeModel.getId());
+        List<T> cacheAll = super.listByBean(where);
+        cacheAll = ObjectUtil.defaultIfNull(cacheAll, Collections.emptyList());
+        Map<String, T> cacheMap = cacheAll.stream().collect(Collectors.toMap(BaseIdModel::getId, t -> t, (t, t2) -> t));
+        Set<String> cacheIds = cacheAll.stream()
+            .map(BaseNodeModel::dataId)
+            .collect(Collectors.toSet());
+        List<T> projectInfoModels = this.convertSyncData(nodeModel, jsonArray);
+        Set<String> needDelete = new HashSet<>();
+        for (T item : projectInfoModels) {
+            cacheIds.remove(item.dataId());
+            needDelete.add(this.reverseFullId(nodeModel, item));
+        }
+        // 删除项目
+        Set<String> strings = cacheIds.stream()
+            .flatMap((Function<String, Stream<String>>) s -> Stream.of(
+                BaseNodeModel.fullId(nodeModel.getWorkspaceId(), nodeModel.getId(), s),
+                BaseNodeModel.fullId(ServerConst.WORKSPACE_GLOBAL, nodeModel.getId(), s)))
+            .collect(Collectors.toSet());
+        //
+        needDelete.addAll(strings);
+        // 只保留有变化的数据
+        needDelete.removeIf(s -> !cacheMap.containsKey(s));
+        List<T> changed = projectInfoModels.stream()
+            .filter(item -> this.isChanged(cacheMap.get(item.getId()), item))
+            .collect(Collectors.toList());
+        int delCount = this.saveSyncData(changed, cacheMap.keySet(), needDelete);
+        int size = CollUtil.size(projectInfoModels);
+        String format = StrUtil.format(
+            "{} 物理节点拉取到 {} 个{},当前工作空间逻辑节点已经缓存 {} 个{},更新 {} 个{},删除 {} 个缓存",
+            nodeModelName, CollUtil.size(jsonArray), dataName,
+            CollUtil.size(cacheAll), dataName,
+            CollUtil.size(changed), dataName,
+            delCount);
+        this.refreshCacheStat(nodeModel.getId(), size);
+        log.debug(format);
+        return format;
+    }
+
+    /**
+     * 增量同步
+     *
+     * @param nodeModel 节点
+     * @param jsonArray 新增或者修改的数据
+     * @param deleted   删除的数据 id
+     * @return 结果描述
+     */
+    private String syncChangeNode(NodeModel nodeModel, JSONArray jsonArray, List<String> deleted) {
+        jsonArray = ObjectUtil.defaultIfNull(jsonArray, new JSONArray());
+        List<T> projectInfoModels = this.convertSyncData(nodeModel, jsonArray);
+        Set<String> needDelete = new HashSet<>();
+        for (T item : projectInfoModels) {
+            needDelete.add(this.reverseFullId(nodeModel, item));
+        }
+        // 被过滤掉的数据（工作空间变更等）和全量同步一样需要删除已经缓存的数据
+        Set<String> removeDataIds = jsonArray.stream()
+            .map(o -> ((JSONObject) o).getString("id"))
+            .filter(StrUtil::isNotEmpty)
+            .collect(Collectors.toSet());
+        projectInfoModels.forEach(item -> removeDataIds.remove(item.dataId()));
+        if (deleted != null) {
+            removeDataIds.addAll(deleted);
+        }
+        for (String dataId : removeDataIds) {
+            needDelete.add(BaseNodeModel.fullId(nodeModel.getWorkspaceId(), nodeModel.getId(), dataId));
+            needDelete.add(BaseNodeModel.fullId(ServerConst.WORKSPACE_GLOBAL, nodeModel.getId(), dataId));
+        }
+        if (projectInfoModels.isEmpty() && needDelete.isEmpty()) {
+            return StrUtil.format("{} 物理节点没有变更的{}", nodeModel.getName(), dataName);
+        }
+        // 查询已经存在的数据
+        Set<String> ids = projectInfoModels.stream().map(BaseIdModel::getId).collect(Collectors.toSet());
+        ids.addAll(needDelete);
+        Map<String, T> cacheMap = CollUtil.emptyIfNull(super.getByKey(ids, false, null))
+            .stream()
+            .collect(Collectors.toMap(BaseIdModel::getId, t -> t, (t, t2) -> t));
+        needDelete.removeIf(s -> !cacheMap.containsKey(s));
+        List<T> changed = projectInfoModels.stream()
+            .filter(item -> this.isChanged(cacheMap.get(item.getId()), item))
+            .collect(Collectors.toList());
+        int delCount = this.saveSyncData(changed, cacheMap.keySet(), needDelete);
+        if (!changed.isEmpty() || delCount > 0) {
+            Entity entity = Entity.create();
+            entity.set("nodeId", nodeModel.getId());
+            this.refreshCacheStat(nodeModel.getId(), (int) super.count(entity));
+        }
+        String format = StrUtil.format("{} 物理节点变更 {} 个{},更新 {} 个{},删除 {} 个缓存",
+            nodeModel.getName(), CollUtil.size(projectInfoModels) + CollUtil.size(deleted), dataName,
+            CollUtil.size(changed), dataName, delCount);
+        log.debug(format);
+        return format;
+    }
+
+    /**
+     * 在同一个事务中保存同步的数据
+     *
+     * @param changed   有变化的数据
+     * @param existsIds 已经存在的数据 id
+     * @param needDelete 需要删除的数据 id
+     * @return 删除的数量
+     */
+    private int saveSyncData(List<T> changed, Set<String> existsIds, Set<String> needDelete) {
+        if (changed.isEmpty() && needDelete.isEmpty()) {
+            return 0;
+        }
+        Map<Boolean, List<T>> map = changed.stream().collect(Collectors.partitioningBy(item -> existsIds.contains(item.getId())));
+        int[] delCount = new int[1];
+        this.tx(db -> {
+            for (T item : map.get(true)) {
+                super.updateById(item);
+            }
+            List<T> inserts = map.get(false);
+            if (!inserts.isEmpty()) {
+                super.insert(inserts);
+            }
+            if (!needDelete.isEmpty()) {
+                delCount[0] = super.delByKey(needDelete, null);
+            }
+        });
+        return delCount[0];
+    }
+
+    /**
+     * 转换节点数据，并过滤掉不属于当前节点、工作空间的数据
+     *
+     * @param nodeModel 节点
+     * @param jsonArray 节点数据
+     * @return list
+     */
+    private List<T> convertSyncData(NodeModel nodeModel, JSONArray jsonArray) {
+        // 工作空间只查询一次
+        Map<String, Boolean> workspaceExists = new HashMap<>(4);
+        String workspaceName = Optional.ofNullable(workspaceService.getByKey(nodeModel.getWorkspaceId()))
+            .map(WorkspaceModel::getName)
+            .orElse("数据不存在");
+        // 转换数据修改时间
+        return jsonArray.stream()
+            .map(o -> {
+                // modifyTime,createTime
+                JSONObject jsonObject = (JSONObject) o;
+                T t = jsonObject.to(tClass);
+                Opt.ofBlankAble(jsonObject.getString("createTime"))
+                    .map(s -> {
+                        try {
+                            return DateUtil.parse(s);
+                        } catch (Exception e) {
+                            log.warn("数据创建时间格式不正确 {} {}", s, jsonObject);
+                            return null;
+                        }
+                    }).ifPresent(s -> t.setCreateTimeMillis(s.getTime()));
+                //
+                Opt.ofBlankAble(jsonObject.getString("modifyTime"))
+                    .map(s -> {
+                        try {
+                            return DateUtil.parse(s);
+                        } catch (Exception e) {
+                            log.warn("数据修改时间格式不正确 {} {}", s, jsonObject);
+                            return null;
+                        }
+                    })
+                    .ifPresent(s -> t.setModifyTimeMillis(s.getTime()));
+                return t;
+            })
+            .peek(item -> this.fullData(item, nodeModel))
+            // 只保留自己节点的数据
+            .filter(t -> StrUtil.equals(t.getNodeId(), nodeModel.getId()))
+            .filter(item -> {
+                if (StrUtil.equals(item.getWorkspaceId(), ServerConst.WORKSPACE_GLOBAL)) {
+                    return true;
+                }
+                // 检查对应的工作空间 是否存在
+                return workspaceExists.computeIfAbsent(item.getWorkspaceId(), s -> workspaceService.exists(new WorkspaceModel(s)));
+            })
+            .filter(item -> {
+                if (StrUtil.equals(item.getWorkspaceId(), ServerConst.WORKSPACE_GLOBAL)) {
+                    return true;
+                }
+                // 避免重复同步
+                return StrUtil.equals(nodeModel.getWorkspaceId(), item.getWorkspaceId());
+            })
+            .peek(item -> {
+                item.setNodeName(nodeModel.getName());
+                item.setWorkspaceName(workspaceName);
+            })
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * 需要删除相反的工作空间的数据（避免出现一个脚本同步出2条数据的问题）
+     *
+     * @param nodeModel 节点
+     * @param item      数据
+     * @return 相反工作空间的数据 id
+     */
+    private String reverseFullId(NodeModel nodeModel, T item) {
+        if (StrUtil.equals(item.getWorkspaceId(), ServerConst.WORKSPACE_GLOBAL)) {
+            return BaseNodeModel.fullId(nodeModel.getWorkspaceId(), nodeModel.getId(), item.dataId());
+        }
+        return BaseNodeModel.fullId(ServerConst.WORKSPACE_GLOBAL, nodeModel.getId(), item.dataId());
+    }
+
+    /**
+     * 判断数据是否有变化，只对比同步数据中不为空的字段
+     *
+     * @param exists 已经存在的数据
+     * @param item   同步的数据
+     * @return true 有变化
+     */
+    private boolean isChanged(T exists, T item) {
+        if (exists == null) {
+            return true;
+        }
+        Entity existsEntity = this.dataBeanToEntity(exists);
+        Entity entity = this.dataBeanToEntity(item);
+        for (Map.Entry<String, Object> entry : entity.entrySet()) {
+            if (!ObjectUtil.equals(entry.getValue(), existsEntity.get(entry.getKey()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 查询节点指定版本之后变更的数据，插件端不支持时返回 null
+     *
+     * @param nodeModel 节点
+     * @param epoch     上次同步的数据版本标识
+     * @param version   上次同步的版本号
+     * @return epoch、version、full（是否为全量数据）、list（新增或者修改的数据）、deleted（删除的数据id）
+     */
+    protected JSONObject getChangesData(NodeModel nodeModel, String epoch, long version) {
+        return null;
+    }
+
+    /**
+     * 解析增量同步接口的响应
+     *
+     * @param jsonMessage 响应
+     * @return null 节点不支持增量同步
+     */
+    protected JSONObject changesData(JsonMessage<JSONObject> jsonMessage) {
+        if (jsonMessage.success()) {
+            return jsonMessage.getData();
+        }
+        if (NodeForward.isNotFound(jsonMessage)) {
+            return null;
+        }
+        throw new AgentException(jsonMessage.getMsg());
+    }
+
     /**
      * 刷新缓存统计
      *
@@ -410,6 +662,7 @@ public abstract class BaseNodeService<T extends BaseNodeModel> extends BaseGloba
         Entity entity = Entity.create();
         entity.set("nodeId", nodeId);
         entity.set("workspaceId", checkUserWorkspace);
+        syncCursorMap.remove(nodeId);
         return super.del(entity);
     }
 
@@ -422,6 +675,7 @@ public abstract class BaseNodeService<T extends BaseNodeModel> extends BaseGloba
      * @return 影响行数
      */
     public int delCache(String dataId, String nodeId, HttpServletRequest request) {
+        syncCursorMap.remove(nodeId);
         return this.delByWorkspace(request, entity -> {
             T data = ReflectUtil.newInstance(this.tClass);
             data.setNodeId(nodeId);
@@ -448,6 +702,24 @@ public abstract class BaseNodeService<T extends BaseNodeModel> extends BaseGloba
         return super.queryByBean(data);
     }
 
+    /**
+     * 查询节点数据所属的工作空间（使用缓存）
+     *
+     * @param nodeId 节点ID
+     * @param dataId 数据ID
+     * @return 工作空间ID，数据不存在返回 null
+     */
+    public String getDataWorkspaceId(String nodeId, String dataId) {
+        return dataWorkspaceCache.get(nodeId + StrUtil.COLON + dataId, () -> Optional.ofNullable(this.getData(nodeId, dataId))
+            .map(BaseNodeModel::getWorkspaceId)
+            .orElse(null));
+    }
+
+    @Override
+    protected void onDataChange() {
+        dataWorkspaceCache.invalidate();
+    }
+
     /**
      * 查询远端项目
      *
@@ -472,4 +744,19 @@ public abstract class BaseNodeService<T extends BaseNodeModel> extends BaseGloba
      * @return json
      */
     public abstract List<T> lonelyDataArray(MachineNodeModel machineNodeModel);
+
+    /**
+     * 增量同步的位置
+     */
+    private static class SyncCursor {
+        private final String epoch;
+        private final long version;
+        private final String workspaceId;
+
+        private SyncCursor(String epoch, long version, String workspaceId) {
+            this.epoch = epoch;
+            this.version = version;
+            this.workspaceId = workspaceId;
+        }
+    }
 }
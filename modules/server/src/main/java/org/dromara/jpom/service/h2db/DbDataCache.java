@@ -0,0 +1,175 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.service.h2db;
+
+import cn.hutool.cache.impl.TimedCache;
+import cn.hutool.core.util.NumberUtil;
+import com.alibaba.fastjson2.JSONObject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 数据库查询结果缓存
+ * <p>
+ * 用于请求拦截等高频且很少变更的查询，所属 service 的数据变更时（{@link BaseDbService#onDataChange()}）整体失效，
+ * 过期时间只作为兜底。
+ * <p>
+ * 失效通知只在当前进程内生效，集群模式（多个服务端共用数据库）下其他服务端的变更无法感知，此时不使用缓存直接查询数据库，
+ * 在确认为单服务端之前缓存同样不生效
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/17
+ */
+public class DbDataCache<V> {
+
+    private static final Map<String, DbDataCache<?>> CACHES = new ConcurrentHashMap<>();
+    /**
+     * 缓存是否可用，集群模式下不可用
+     */
+    private static volatile boolean enabled = false;
+
+    private final String name;
+    private final TimedCache<String, V> cache;
+    private final LongAdder invalidateCount = new LongAdder();
+    /**
+     * 失效版本号，避免失效前开始的查询结果在失效后写入缓存
+     */
+    private long version;
+
+    public DbDataCache(String name) {
+        this(name, TimeUnit.MINUTES.toMillis(1));
+    }
+
+    public DbDataCache(String name, long timeout) {
+        this.name = name;
+        this.cache = new TimedCache<>(timeout);
+        CACHES.put(name, this);
+    }
+
+    /**
+     * 获取缓存，不存在时查询并缓存（查询结果为 null 不缓存）
+     *
+     * @param key      key
+     * @param supplier 查询
+     * @return 值
+     */
+    public V get(String key, Supplier<V> supplier) {
+        if (!enabled) {
+            return supplier.get();
+        }
+        V value = cache.get(key, false);
+        if (value != null) {
+            return value;
+        }
+        long current;
+        synchronized (this) {
+            current = this.version;
+        }
+        value = supplier.get();
+        if (value != null) {
+            synchronized (this) {
+                if (current == this.version) {
+                    cache.put(key, value);
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 全部失效
+     */
+    public synchronized void invalidate() {
+        this.version++;
+        cache.clear();
+        invalidateCount.increment();
+    }
+
+    /**
+     * 缓存统计
+     *
+     * @return json
+     */
+    public JSONObject metrics() {
+        // 顺带清理过期数据
+        cache.prune();
+        long hit = cache.getHitCount();
+        long miss = cache.getMissCount();
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("name", name);
+        jsonObject.put("size", cache.size());
+        jsonObject.put("hit", hit);
+        jsonObject.put("miss", miss);
+        jsonObject.put("hitRate", hit + miss == 0 ? 0 : NumberUtil.div(hit, hit + miss, 4));
+        jsonObject.put("invalidate", invalidateCount.sum());
+        jsonObject.put("enabled", enabled);
+        return jsonObject;
+    }
+
+    /**
+     * 所有缓存的统计
+     *
+     * @return list
+     */
+    public static List<JSONObject> allMetrics() {
+        return CACHES.values().stream()
+            .map(DbDataCache::metrics)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * 设置缓存是否可用，不可用时清空所有缓存
+     *
+     * @param enabled 是否可用（单服务端模式）
+     */
+    public static void setEnabled(boolean enabled) {
+        if (DbDataCache.enabled == enabled) {
+            return;
+        }
+        DbDataCache.enabled = enabled;
+        // 切换前后都清空，避免使用其他服务端变更之前的数据
+        invalidateAll();
+    }
+
+    /**
+     * 缓存是否可用
+     *
+     * @return true 单服务端模式
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 所有缓存全部失效
+     */
+    public static void invalidateAll() {
+        CACHES.values().forEach(DbDataCache::invalidate);
+    }
+}
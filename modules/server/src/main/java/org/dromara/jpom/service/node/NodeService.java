@@ -22,6 +22,7 @@
  */
 package org.dromara.jpom.service.node;
 
+import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.lang.Opt;
 import cn.hutool.core.lang.Validator;
 import cn.hutool.core.util.StrUtil;
@@ -32,6 +33,7 @@ import org.dromara.jpom.common.Const;
 import org.dromara.jpom.model.data.NodeModel;
 import org.dromara.jpom.model.data.SshModel;
 import org.dromara.jpom.service.h2db.BaseWorkspaceService;
+import org.dromara.jpom.service.h2db.DbDataCache;
 import org.dromara.jpom.service.node.ssh.SshService;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
@@ -50,6 +52,10 @@ import java.util.List;
 public class NodeService extends BaseWorkspaceService<NodeModel> {
 
     private final SshService sshService;
+    /**
+     * 请求时查询节点的缓存
+     */
+    private final DbDataCache<NodeModel> nodeCache = new DbDataCache<>("node");
 
     @Resource
     @Lazy
@@ -59,6 +65,23 @@ public class NodeService extends BaseWorkspaceService<NodeModel> {
         this.sshService = sshService;
     }
 
+    /**
+     * 获取节点（使用缓存），用于请求拦截等高频场景
+     *
+     * @param id 节点ID
+     * @return 节点副本
+     */
+    public NodeModel getByKeyCache(String id) {
+        NodeModel nodeModel = nodeCache.get(id, () -> super.getByKey(id));
+        // 返回副本，避免调用方修改缓存对象
+        return nodeModel == null ? null : BeanUtil.copyProperties(nodeModel, NodeModel.class);
+    }
+
+    @Override
+    protected void onDataChange() {
+        nodeCache.invalidate();
+    }
+
     @Override
     protected void fillSelectResult(NodeModel data) {
         if (data != null) {
@@ -111,6 +111,12 @@ public class ProjectInfoCacheService extends BaseNodeService<ProjectInfoCacheMod
         return tJsonMessage.getData();
     }
 
+    @Override
+    protected JSONObject getChangesData(NodeModel nodeModel, String epoch, long version) {
+        JsonMessage<JSONObject> jsonMessage = NodeForward.request(nodeModel, NodeUrl.Manage_GetProjectInfoChanges, "epoch", epoch, "version", version);
+        return this.changesData(jsonMessage);
+    }
+
     @Override
     public List<ProjectInfoCacheModel> lonelyDataArray(MachineNodeModel machineNodeModel) {
         JSONObject jsonObject = new JSONObject();
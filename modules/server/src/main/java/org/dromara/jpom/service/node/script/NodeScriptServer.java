@@ -23,6 +23,7 @@
 package org.dromara.jpom.service.node.script;
 
 import cn.hutool.db.Entity;
+import cn.keepbx.jpom.model.JsonMessage;
 import com.alibaba.fastjson2.JSONArray;
 import com.alibaba.fastjson2.JSONObject;
 import org.dromara.jpom.common.forward.NodeForward;
@@ -76,6 +77,12 @@ public class NodeScriptServer extends BaseNodeService<NodeScriptCacheModel> impl
         return NodeForward.requestData(nodeModel, NodeUrl.Script_List, null, JSONArray.class);
     }
 
+    @Override
+    protected JSONObject getChangesData(NodeModel nodeModel, String epoch, long version) {
+        JsonMessage<JSONObject> jsonMessage = NodeForward.request(nodeModel, NodeUrl.Script_Changes, "epoch", epoch, "version", version);
+        return this.changesData(jsonMessage);
+    }
+
     @Override
     public List<NodeScriptCacheModel> lonelyDataArray(MachineNodeModel machineNodeModel) {
         JSONArray jsonArray = NodeForward.requestData(machineNodeModel, NodeUrl.Script_List, null, JSONArray.class);
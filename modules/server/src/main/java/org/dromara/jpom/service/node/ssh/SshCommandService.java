@@ -27,7 +27,6 @@ import cn.hutool.core.util.CharsetUtil;
 import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.cron.task.Task;
-import cn.hutool.extra.ssh.JschUtil;
 import cn.hutool.system.SystemUtil;
 import cn.keepbx.jpom.cron.ICron;
 import com.jcraft.jsch.Session;
@@ -257,7 +256,7 @@ public class SshCommandService extends BaseWorkspaceService<CommandModel> implem
      */
     private void execute(CommandModel commandModel, CommandExecLogModel commandExecLogModel, SshModel sshModel, String commandParamsLine) {
         File file = commandExecLogModel.logFile();
-        try (LogRecorder logRecorder = LogRecorder.builder().file(file).charset(CharsetUtil.CHARSET_UTF_8).build()) {
+        try (LogRecorder logRecorder = LogRecorder.builder().file(file).charset(CharsetUtil.CHARSET_UTF_8).buffered(true).build()) {
             if (sshModel == null) {
                 logRecorder.systemError("ssh 不存在");
                 this.updateStatus(commandExecLogModel.getId(), CommandExecLogModel.Status.ERROR, -100);
@@ -277,7 +276,7 @@ public class SshCommandService extends BaseWorkspaceService<CommandModel> implem
                 Charset charset = machineSshModel.charset();
                 int timeout = machineSshModel.timeout();
                 //
-                session = sshService.getSessionByModel(machineSshModel);
+                session = sshService.borrowSession(machineSshModel);
                 int exitCode = JschUtils.execCallbackLine(session, charset, timeout, commands, commandParamsLine, logRecorder::info);
                 logRecorder.system("执行退出码：{}", exitCode);
                 // 更新状态
@@ -289,7 +288,7 @@ public class SshCommandService extends BaseWorkspaceService<CommandModel> implem
                 // 记录错误日志
                 logRecorder.error("执行命令错误", e);
             } finally {
-                JschUtil.close(session);
+                sshService.releaseSession(session);
             }
         }
     }
@@ -116,6 +116,25 @@ public class SshService extends BaseWorkspaceService<SshModel> {
     }
 
 
+    /**
+     * 从会话池中租借 ssh 会话，使用完成后需要调用 {@link #releaseSession(Session)} 归还
+     *
+     * @param sshModel sshModel
+     * @return session
+     */
+    public Session borrowSession(MachineSshModel sshModel) {
+        return machineSshServer.borrowSession(sshModel);
+    }
+
+    /**
+     * 归还 ssh 会话
+     *
+     * @param session 会话
+     */
+    public void releaseSession(Session session) {
+        machineSshServer.releaseSession(session);
+    }
+
     /**
      * 获取 ssh 配置对象
      *
@@ -141,7 +160,7 @@ public class SshService extends BaseWorkspaceService<SshModel> {
         ChannelSftp channel = null;
         // MachineSshModel machineSshModel = this.getMachineSshModel(sshModel);
         try {
-            session = this.getSessionByModel(machineSshModel);
+            session = this.borrowSession(machineSshModel);
             channel = (ChannelSftp) JschUtil.openChannel(session, ChannelType.SFTP);
             try (Sftp sftp = new Sftp(channel, machineSshModel.charset(), machineSshModel.timeout())) {
                 sftp.syncUpload(desc, remotePath);
@@ -149,7 +168,7 @@ public class SshService extends BaseWorkspaceService<SshModel> {
             //uploadDir(channel, remotePath, desc, sshModel.getCharsetT());
         } finally {
             JschUtil.close(channel);
-            JschUtil.close(session);
+            this.releaseSession(session);
         }
     }
 
@@ -167,14 +186,14 @@ public class SshService extends BaseWorkspaceService<SshModel> {
         ChannelSftp channel = null;
         OutputStream output = null;
         try {
-            session = this.getSessionByModel(sshModel);
+            session = this.borrowSession(this.getMachineSshModel(sshModel));
             channel = (ChannelSftp) JschUtil.openChannel(session, ChannelType.SFTP);
             output = Files.newOutputStream(save.toPath());
             channel.get(remoteFile, output);
         } finally {
             IoUtil.close(output);
             JschUtil.close(channel);
-            JschUtil.close(session);
+            this.releaseSession(session);
         }
     }
 
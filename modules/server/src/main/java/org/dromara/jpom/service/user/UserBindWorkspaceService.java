@@ -22,6 +22,7 @@
  */
 package org.dromara.jpom.service.user;
 
+import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.convert.Convert;
 import cn.hutool.core.date.DateTime;
@@ -38,6 +39,7 @@ import org.dromara.jpom.model.user.UserModel;
 import org.dromara.jpom.model.user.UserPermissionGroupBean;
 import org.dromara.jpom.permission.MethodFeature;
 import org.dromara.jpom.service.h2db.BaseDbService;
+import org.dromara.jpom.service.h2db.DbDataCache;
 import org.dromara.jpom.service.system.WorkspaceService;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
@@ -55,6 +57,10 @@ public class UserBindWorkspaceService extends BaseDbService<UserBindWorkspaceMod
 
     private final WorkspaceService workspaceService;
     private final UserPermissionGroupServer userPermissionGroupServer;
+    /**
+     * 用户在工作空间的绑定关系缓存，key 为查询的绑定 id
+     */
+    private final DbDataCache<List<UserBindWorkspaceModel>> existsCache = new DbDataCache<>("userBindWorkspace");
 
     /**
      * ssh 终端没有任何限制
@@ -176,7 +182,15 @@ public class UserBindWorkspaceService extends BaseDbService<UserBindWorkspaceMod
             .collect(Collectors.toList());
         // 兼容旧数据
         list.add(UserBindWorkspaceModel.getId(userModel.getId(), workspaceId));
-        return this.listById(list);
+        List<String> ids = list;
+        List<UserBindWorkspaceModel> models = existsCache.get(CollUtil.join(ids, StrUtil.COMMA), () -> this.listById(ids));
+        if (models == null) {
+            return null;
+        }
+        // 返回副本，避免调用方修改缓存对象
+        return models.stream()
+            .map(model -> BeanUtil.copyProperties(model, UserBindWorkspaceModel.class))
+            .collect(Collectors.toList());
     }
 
     /**
@@ -191,6 +205,11 @@ public class UserBindWorkspaceService extends BaseDbService<UserBindWorkspaceMod
         return CollUtil.isNotEmpty(workspaceModels);
     }
 
+    @Override
+    protected void onDataChange() {
+        existsCache.invalidate();
+    }
+
     /**
      * 判断是否可以执行，并且验证时间段
      *
@@ -209,7 +228,7 @@ public class UserBindWorkspaceService extends BaseDbService<UserBindWorkspaceMod
         List<String> permissionGroupIds = workspaceModels.stream()
             .map(UserBindWorkspaceModel::getUserId)
             .collect(Collectors.toList());
-        List<UserPermissionGroupBean> permissionGroups = userPermissionGroupServer.listById(permissionGroupIds);
+        List<UserPermissionGroupBean> permissionGroups = userPermissionGroupServer.listByIdCache(permissionGroupIds);
         if (CollUtil.isEmpty(permissionGroups)) {
             return UserBindWorkspaceModel.PermissionResult.builder()
                 .state(UserBindWorkspaceModel.PermissionResultEnum.FAIL)
@@ -22,14 +22,50 @@
  */
 package org.dromara.jpom.service.user;
 
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.collection.CollUtil;
 import org.dromara.jpom.model.user.UserPermissionGroupBean;
 import org.dromara.jpom.service.h2db.BaseDbService;
+import org.dromara.jpom.service.h2db.DbDataCache;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
 /**
  * @author bwcx_jzy
  * @since 2022/8/3
  */
 @Service
 public class UserPermissionGroupServer extends BaseDbService<UserPermissionGroupBean> {
+
+    /**
+     * 权限组缓存，用于请求时的权限判断
+     */
+    private final DbDataCache<UserPermissionGroupBean> cache = new DbDataCache<>("permissionGroup");
+
+    /**
+     * 根据 id 查询权限组（使用缓存）
+     *
+     * @param ids id
+     * @return list
+     */
+    public List<UserPermissionGroupBean> listByIdCache(Collection<String> ids) {
+        if (CollUtil.isEmpty(ids)) {
+            return CollUtil.newArrayList();
+        }
+        return ids.stream()
+            .map(id -> cache.get(id, () -> super.getByKey(id)))
+            .filter(Objects::nonNull)
+            // 返回副本，避免调用方修改缓存对象
+            .map(bean -> BeanUtil.copyProperties(bean, UserPermissionGroupBean.class))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    protected void onDataChange() {
+        cache.invalidate();
+    }
 }
@@ -22,6 +22,7 @@
  */
 package org.dromara.jpom.service.user;
 
+import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.comparator.CompareUtil;
 import cn.hutool.core.date.SystemClock;
@@ -37,6 +38,7 @@ import org.dromara.jpom.model.data.WorkspaceModel;
 import org.dromara.jpom.model.dto.UserLoginDto;
 import org.dromara.jpom.model.user.UserModel;
 import org.dromara.jpom.service.h2db.BaseDbService;
+import org.dromara.jpom.service.h2db.DbDataCache;
 import org.dromara.jpom.service.system.SystemParametersServer;
 import org.dromara.jpom.util.JwtUtil;
 import org.dromara.jpom.util.TwoFactorAuthUtils;
@@ -53,6 +55,10 @@ import java.util.stream.Collectors;
 @Service
 public class UserService extends BaseDbService<UserModel> {
     private final SystemParametersServer systemParametersServer;
+    /**
+     * 请求时根据 token 查询用户的缓存
+     */
+    private final DbDataCache<UserModel> userCache = new DbDataCache<>("user");
     private final UserBindWorkspaceService userBindWorkspaceService;
 
     public UserService(SystemParametersServer systemParametersServer,
@@ -107,9 +113,18 @@ public class UserService extends BaseDbService<UserModel> {
      * @return userModel 用户对象
      */
     public UserModel checkUser(String userMd5) {
-        UserModel userModel = new UserModel();
-        userModel.setPassword(userMd5);
-        return super.queryByBean(userModel);
+        UserModel cacheUser = userCache.get(userMd5, () -> {
+            UserModel userModel = new UserModel();
+            userModel.setPassword(userMd5);
+            return super.queryByBean(userModel);
+        });
+        // 返回副本，避免调用方修改缓存对象
+        return cacheUser == null ? null : BeanUtil.copyProperties(cacheUser, UserModel.class);
+    }
+
+    @Override
+    protected void onDataChange() {
+        userCache.invalidate();
     }
 
     /**
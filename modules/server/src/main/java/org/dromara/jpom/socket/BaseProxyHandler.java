@@ -34,6 +34,7 @@ import org.dromara.jpom.model.data.NodeModel;
 import org.dromara.jpom.model.user.UserModel;
 import org.dromara.jpom.transport.*;
 import org.dromara.jpom.util.SocketSessionUtil;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
@@ -106,6 +107,13 @@ public abstract class BaseProxyHandler extends BaseHandler {
 
         IProxyWebSocket proxySession = TransportServerFactory.get().websocket(nodeInfo, urlItem, parameters);
         proxySession.onMessage(s -> sendMsg(session, s));
+        proxySession.onBinaryMessage(bytes -> {
+            try {
+                SocketSessionUtil.send(session, new BinaryMessage(bytes));
+            } catch (Exception e) {
+                log.error("发送消息失败", e);
+            }
+        });
         if (!proxySession.connectBlocking()) {
             this.sendMsg(session, "插件端连接失败");
             this.destroy(session);
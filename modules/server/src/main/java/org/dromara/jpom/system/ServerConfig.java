@@ -32,6 +32,9 @@ import org.dromara.jpom.common.BaseServerController;
 import org.dromara.jpom.configuration.*;
 import org.dromara.jpom.model.AgentFileModel;
 import org.dromara.jpom.model.user.UserModel;
+import org.dromara.jpom.transport.MuxChannelManager;
+import org.dromara.jpom.transport.PooledHttpTransportServer;
+import org.dromara.jpom.transport.TransportServerFactory;
 import org.dromara.jpom.util.BaseFileTailWatcher;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Value;
@@ -201,6 +204,11 @@ public class ServerConfig implements InitializingBean {
         int initReadLine = ObjectUtil.defaultIfNull(this.initReadLine, 10);
         BaseFileTailWatcher.setInitReadLine(initReadLine);
         ExtConfigBean.setPath(path);
+        //
+        NodeConfig nodeConfig = this.getNode();
+        PooledHttpTransportServer.config(nodeConfig.getTransportMaxTotal(), nodeConfig.getTransportMaxPerNode(), nodeConfig.getTransportKeepAliveSeconds());
+        TransportServerFactory.setType(nodeConfig.getTransportType());
+        MuxChannelManager.setEnabled(nodeConfig.isWebsocketMux());
     }
 
 
@@ -63,6 +63,23 @@ public class BuildExtConfig {
      */
     private int logReduceProgressRatio = 5;
 
+    /**
+     * 是否为 git 仓库维护本地镜像（裸仓库）缓存
+     * <p>
+     * 同一个仓库的多个构建共享一份镜像，重新 clone 时通过 alternates 复用镜像中的对象
+     */
+    private boolean repositoryMirror = true;
+
+    /**
+     * 构建时仓库远程分支/标签列表（ls-remote）缓存时间（秒），小于等于 0 不缓存
+     */
+    private int remoteRefCacheSeconds = 10;
+
+    /**
+     * 构建产物是否使用内容寻址存储，相同内容的文件在构建历史之间通过硬链接共享
+     */
+    private boolean artifactStore = true;
+
     public void setLogReduceProgressRatio(int logReduceProgressRatio) {
         // 修正值
         this.logReduceProgressRatio = Math.min(Math.max(logReduceProgressRatio, 1), 100);
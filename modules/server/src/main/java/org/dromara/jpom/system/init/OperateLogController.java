@@ -24,6 +24,7 @@ package org.dromara.jpom.system.init;
 
 import cn.hutool.core.date.SystemClock;
 import cn.hutool.core.exceptions.ExceptionUtil;
+import cn.hutool.core.lang.Tuple;
 import cn.hutool.core.util.ObjectUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.db.Entity;
@@ -39,6 +40,7 @@ import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.Signature;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.dromara.jpom.common.BaseServerController;
+import org.dromara.jpom.common.ILoadEvent;
 import org.dromara.jpom.model.data.NodeModel;
 import org.dromara.jpom.model.log.UserOperateLogV1;
 import org.dromara.jpom.model.user.UserModel;
@@ -49,10 +51,13 @@ import org.dromara.jpom.service.dblog.DbUserOperateLogService;
 import org.dromara.jpom.service.h2db.BaseWorkspaceService;
 import org.dromara.jpom.system.AopLogInterface;
 import org.dromara.jpom.util.StringUtil;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 
 import javax.servlet.http.HttpServletRequest;
 import java.lang.reflect.Method;
@@ -60,6 +65,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 操作记录控制器
@@ -69,8 +75,12 @@ import java.util.Set;
  */
 @Configuration
 @Slf4j
-public class OperateLogController implements AopLogInterface {
+public class OperateLogController implements AopLogInterface, ILoadEvent {
     private static final ThreadLocal<CacheInfo> CACHE_INFO_THREAD_LOCAL = new ThreadLocal<>();
+    /**
+     * 接口方法的日志配置，启动时解析，key 为 [目标类, 方法]
+     */
+    private final Map<Tuple, Optional<CacheInfo>> handlerFeatureMap = new ConcurrentHashMap<>();
 
     private final DbUserOperateLogService dbUserOperateLogService;
 
@@ -89,13 +99,34 @@ public class OperateLogController implements AopLogInterface {
         return Optional.ofNullable(feature1).map(Feature::cls).orElse(null);
     }
 
-    private CacheInfo createCacheInfo(Class<?> targetClass, Method method, HttpServletRequest request) {
+    @Override
+    public void afterPropertiesSet(ApplicationContext applicationContext) throws Exception {
+        RequestMappingHandlerMapping handlerMapping = applicationContext.getBean("requestMappingHandlerMapping", RequestMappingHandlerMapping.class);
+        for (HandlerMethod handlerMethod : handlerMapping.getHandlerMethods().values()) {
+            this.resolveFeature(handlerMethod.getBeanType(), handlerMethod.getMethod());
+        }
+        log.debug("解析接口操作日志配置：{}", handlerFeatureMap.size());
+    }
+
+    /**
+     * 获取接口方法的日志配置
+     *
+     * @param targetClass 目标类
+     * @param method      方法
+     * @return 不需要记录返回 empty
+     */
+    private Optional<CacheInfo> resolveFeature(Class<?> targetClass, Method method) {
+        return handlerFeatureMap.computeIfAbsent(new Tuple(targetClass, method),
+            tuple -> Optional.ofNullable(this.createFeature(targetClass, method)));
+    }
+
+    private CacheInfo createFeature(Class<?> targetClass, Method method) {
         Feature feature = method.getAnnotation(Feature.class);
         if (feature == null) {
             return null;
         }
         if (!feature.log()) {
-            log.debug("忽略记录日志 {}", request.getRequestURI());
+            log.debug("忽略记录日志 {} {}", targetClass, method.getName());
             return null;
         }
         Class<?> declaringClass = method.getDeclaringClass();
@@ -115,12 +146,26 @@ public class OperateLogController implements AopLogInterface {
         CacheInfo cacheInfo = new CacheInfo();
         cacheInfo.setClassFeature(classFeature);
         cacheInfo.setMethodFeature(methodFeature);
-        cacheInfo.setOptTime(SystemClock.now());
         cacheInfo.setLogResponse(feature.logResponse());
         //
         return cacheInfo;
     }
 
+    private CacheInfo createCacheInfo(Class<?> targetClass, Method method) {
+        return this.resolveFeature(targetClass, method)
+            // 列表查询不记录日志
+            .filter(feature -> feature.methodFeature != MethodFeature.LIST)
+            .map(feature -> {
+                CacheInfo cacheInfo = new CacheInfo();
+                cacheInfo.setClassFeature(feature.classFeature);
+                cacheInfo.setMethodFeature(feature.methodFeature);
+                cacheInfo.setOptTime(SystemClock.now());
+                cacheInfo.setLogResponse(feature.logResponse);
+                return cacheInfo;
+            })
+            .orElse(null);
+    }
+
     @Override
     public void before(ProceedingJoinPoint joinPoint) {
         Signature signature = joinPoint.getSignature();
@@ -129,12 +174,12 @@ public class OperateLogController implements AopLogInterface {
             Method method = methodSignature.getMethod();
             //
             Class<?> targetClass = joinPoint.getTarget().getClass();
-            ServletRequestAttributes servletRequestAttributes = BaseServerController.getRequestAttributes();
-            HttpServletRequest request = servletRequestAttributes.getRequest();
-            CacheInfo cacheInfo = this.createCacheInfo(targetClass, method, request);
+            CacheInfo cacheInfo = this.createCacheInfo(targetClass, method);
             if (cacheInfo == null) {
                 return;
             }
+            ServletRequestAttributes servletRequestAttributes = BaseServerController.getRequestAttributes();
+            HttpServletRequest request = servletRequestAttributes.getRequest();
             // 获取ip地址
             cacheInfo.ip = ServletUtil.getClientIP(request);
             // 获取节点
@@ -258,13 +303,11 @@ public class OperateLogController implements AopLogInterface {
                 userOperateLogV1.setWorkspaceId(cacheInfo.nodeModel.getWorkspaceId());
             }
         }
-        //
-        try {
-            BaseServerController.resetInfo(UserModel.EMPTY);
-            dbUserOperateLogService.insert(userOperateLogV1, cacheInfo);
-        } finally {
-            BaseServerController.removeEmpty();
-        }
+        // 异步写入，需要提前填充操作人和时间
+        userOperateLogV1.setCreateTimeMillis(SystemClock.now());
+        userOperateLogV1.setCreateUser(userModel.getId());
+        userOperateLogV1.setModifyUser(userModel.getId());
+        dbUserOperateLogService.insert(userOperateLogV1, cacheInfo);
     }
 
 
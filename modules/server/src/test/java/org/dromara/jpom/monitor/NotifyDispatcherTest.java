@@ -0,0 +1,152 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.monitor;
+
+import cn.hutool.core.io.IoUtil;
+import com.alibaba.fastjson2.JSONObject;
+import com.sun.net.httpserver.HttpServer;
+import org.dromara.jpom.model.data.MonitorModel;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 使用本地模拟的 webhook 服务测试通知合并、汇总和重试
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/17
+ */
+public class NotifyDispatcherTest {
+
+    private HttpServer httpServer;
+    private final Map<String, BlockingQueue<String>> received = new ConcurrentHashMap<>();
+    private final AtomicInteger failCount = new AtomicInteger();
+
+    @Before
+    public void before() throws Exception {
+        NotifyDispatcher.setTargetInterval(500);
+        NotifyDispatcher.setCoalesceWindow(1500);
+        NotifyDispatcher.setRetryCount(3);
+        httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        httpServer.createContext("/", exchange -> {
+            String body = IoUtil.read(exchange.getRequestBody(), StandardCharsets.UTF_8);
+            String path = exchange.getRequestURI().getPath();
+            received.computeIfAbsent(path, s -> new LinkedBlockingQueue<>())
+                .add(JSONObject.parseObject(body).getJSONObject("text").getString("content"));
+            boolean fail = path.startsWith("/fail") && failCount.getAndDecrement() > 0;
+            byte[] bytes = "{\"errcode\":0}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(fail ? 500 : 200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        httpServer.start();
+    }
+
+    @After
+    public void after() {
+        httpServer.stop(0);
+    }
+
+    private MonitorModel.Notify notify(String path) {
+        return new MonitorModel.Notify(MonitorModel.NotifyType.workWx, "http://127.0.0.1:" + httpServer.getAddress().getPort() + path);
+    }
+
+    private String take(String path) throws InterruptedException {
+        String poll = received.computeIfAbsent(path, s -> new LinkedBlockingQueue<>()).poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(poll);
+        return poll;
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        MonitorModel.Notify notify = this.notify("/coalesce");
+        CountDownLatch latch = new CountDownLatch(5);
+        List<Boolean> results = new CopyOnWriteArrayList<>();
+        NotifyDispatcher.dispatch(notify, "节点异常", "请及时检查", (success, throwable) -> {
+            results.add(success);
+            latch.countDown();
+        });
+        Assert.assertEquals("节点异常\n请及时检查", this.take("/coalesce"));
+        // 窗口内重复的报警只在窗口结束后补发一次
+        for (int i = 0; i < 4; i++) {
+            NotifyDispatcher.dispatch(notify, "节点异常", "请及时检查", (success, throwable) -> {
+                results.add(success);
+                latch.countDown();
+            });
+        }
+        String second = this.take("/coalesce");
+        Assert.assertTrue(second, second.contains("重复 4 次"));
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertFalse(results.contains(false));
+        Assert.assertNull(received.get("/coalesce").poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testDigest() throws Exception {
+        MonitorModel.Notify notify = this.notify("/digest");
+        NotifyDispatcher.dispatch(notify, "a", "1", null);
+        this.take("/digest");
+        // 限流间隔内的多条通知合并为一条汇总
+        NotifyDispatcher.dispatch(notify, "b", "2", null);
+        NotifyDispatcher.dispatch(notify, "c", "3", null);
+        NotifyDispatcher.dispatch(notify, "d", "4", null);
+        String digest = this.take("/digest");
+        Assert.assertTrue(digest, digest.startsWith("通知汇总：共 3 条"));
+        Assert.assertTrue(digest, digest.contains("3. d"));
+        Assert.assertNull(received.get("/digest").poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testOrder() throws Exception {
+        MonitorModel.Notify notify = this.notify("/order");
+        NotifyDispatcher.dispatch(notify, "down", "1", null);
+        Assert.assertEquals("down\n1", this.take("/order"));
+        // 重复的报警在合并窗口内延迟，后面的恢复通知不能先于它发送
+        NotifyDispatcher.dispatch(notify, "down", "1", null);
+        NotifyDispatcher.dispatch(notify, "recovered", "2", null);
+        String digest = this.take("/order");
+        Assert.assertTrue(digest, digest.startsWith("通知汇总：共 2 条"));
+        Assert.assertTrue(digest, digest.indexOf("1. down") < digest.indexOf("2. recovered"));
+        // 恢复之后再次异常不能合并到恢复之前的通知中
+        NotifyDispatcher.dispatch(notify, "down", "1", null);
+        Assert.assertEquals("down\n1", this.take("/order"));
+        Assert.assertNull(received.get("/order").poll(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        failCount.set(2);
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        NotifyDispatcher.dispatch(this.notify("/fail"), "retry", "", (success, throwable) -> future.complete(success));
+        Assert.assertTrue(future.get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(3, received.get("/fail").size());
+    }
+}
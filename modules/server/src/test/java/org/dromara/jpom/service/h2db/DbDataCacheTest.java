@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.service.h2db;
+
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 数据库查询结果缓存的失效版本号、失效和开关
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/17
+ */
+public class DbDataCacheTest {
+
+    private final AtomicInteger queryCount = new AtomicInteger();
+
+    @Before
+    public void before() {
+        DbDataCache.setEnabled(true);
+    }
+
+    @After
+    public void after() {
+        DbDataCache.setEnabled(false);
+    }
+
+    private String query() {
+        return "value-" + queryCount.incrementAndGet();
+    }
+
+    @Test
+    public void testCacheAndInvalidate() {
+        DbDataCache<String> cache = new DbDataCache<>("test-invalidate");
+        Assert.assertEquals("value-1", cache.get("a", this::query));
+        Assert.assertEquals("value-1", cache.get("a", this::query));
+        Assert.assertEquals(1, queryCount.get());
+        cache.invalidate();
+        Assert.assertEquals("value-2", cache.get("a", this::query));
+        Assert.assertEquals(2, queryCount.get());
+        JSONObject metrics = cache.metrics();
+        Assert.assertEquals(1L, metrics.getLongValue("invalidate"));
+        Assert.assertEquals(1, metrics.getIntValue("size"));
+    }
+
+    @Test
+    public void testNullNotCached() {
+        DbDataCache<String> cache = new DbDataCache<>("test-null");
+        Assert.assertNull(cache.get("a", () -> {
+            queryCount.incrementAndGet();
+            return null;
+        }));
+        Assert.assertEquals("value-2", cache.get("a", this::query));
+    }
+
+    @Test
+    public void testVersion() {
+        DbDataCache<String> cache = new DbDataCache<>("test-version");
+        // 查询过程中数据发生变更，查询结果不能写入缓存
+        String value = cache.get("a", () -> {
+            String result = this.query();
+            cache.invalidate();
+            return result;
+        });
+        Assert.assertEquals("value-1", value);
+        Assert.assertEquals("value-2", cache.get("a", this::query));
+        Assert.assertEquals("value-2", cache.get("a", this::query));
+    }
+
+    @Test
+    public void testEnabled() {
+        DbDataCache<String> cache = new DbDataCache<>("test-enabled");
+        Assert.assertEquals("value-1", cache.get("a", this::query));
+        // 关闭后清空并且每次都查询
+        DbDataCache.setEnabled(false);
+        Assert.assertFalse(DbDataCache.isEnabled());
+        Assert.assertEquals("value-2", cache.get("a", this::query));
+        Assert.assertEquals("value-3", cache.get("a", this::query));
+        Assert.assertEquals(0, cache.metrics().getIntValue("size"));
+        // 重新开启后不能使用关闭之前的缓存
+        DbDataCache.setEnabled(true);
+        Assert.assertEquals("value-4", cache.get("a", this::query));
+        Assert.assertEquals("value-4", cache.get("a", this::query));
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        DbDataCache<String> cache1 = new DbDataCache<>("test-all-1");
+        DbDataCache<String> cache2 = new DbDataCache<>("test-all-2");
+        cache1.get("a", this::query);
+        cache2.get("a", this::query);
+        DbDataCache.invalidateAll();
+        Assert.assertEquals("value-3", cache1.get("a", this::query));
+        Assert.assertEquals("value-4", cache2.get("a", this::query));
+    }
+}
@@ -25,6 +25,7 @@ package org.dromara.jpom.db;
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.bean.copier.CopyOptions;
 import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.lang.func.VoidFunc1;
 import cn.hutool.core.util.PageUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.core.util.TypeUtil;
@@ -41,10 +42,7 @@ import org.dromara.jpom.system.JpomRuntimeException;
 import org.springframework.util.Assert;
 
 import javax.sql.DataSource;
-import java.util.Collection;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -66,6 +64,10 @@ public abstract class BaseDbCommonService<T> {
      * String const
      */
     public static final String ID_STR = "id";
+    /**
+     * 当前线程事务中变更过数据的 service
+     */
+    private static final ThreadLocal<Set<BaseDbCommonService<?>>> TX_CHANGED = new ThreadLocal<>();
 
     /**
      * 表名
@@ -106,6 +108,8 @@ public abstract class BaseDbCommonService<T> {
             return db.insert(entity);
         } catch (Exception e) {
             throw warpException(e);
+        } finally {
+            this.fireDataChange();
         }
     }
 
@@ -124,6 +128,53 @@ public abstract class BaseDbCommonService<T> {
             db.insert(entities);
         } catch (Exception e) {
             throw warpException(e);
+        } finally {
+            this.fireDataChange();
+        }
+    }
+
+    /**
+     * 在同一个事务中执行，回调中调用其他 service 的数据库操作也会使用当前事务（同一个数据源、同一个线程）
+     *
+     * @param func 事务中执行的操作
+     */
+    public final void tx(VoidFunc1<Db> func) {
+        Set<BaseDbCommonService<?>> changed = TX_CHANGED.get();
+        boolean outer = changed == null;
+        if (outer) {
+            changed = new LinkedHashSet<>();
+            TX_CHANGED.set(changed);
+        }
+        changed.add(this);
+        Db db = Db.use(this.getDataSource());
+        try {
+            db.tx(func);
+        } catch (Exception e) {
+            throw warpException(e);
+        } finally {
+            if (outer) {
+                // 最外层事务结束（提交或者回滚）后，再次回调事务中变更过数据的 service
+                TX_CHANGED.remove();
+                changed.forEach(BaseDbCommonService::onDataChange);
+            }
+        }
+    }
+
+    /**
+     * 批量执行 sql
+     *
+     * @param sql    sql
+     * @param params 每一条的参数
+     * @return 每一条影响的行数
+     */
+    public final int[] executeBatch(String sql, Iterable<Object[]> params) {
+        Db db = Db.use(this.getDataSource());
+        try {
+            return db.executeBatch(sql, params);
+        } catch (Exception e) {
+            throw warpException(e);
+        } finally {
+            this.fireDataChange();
         }
     }
 
@@ -160,6 +211,8 @@ public abstract class BaseDbCommonService<T> {
             return db.update(entity, where);
         } catch (Exception e) {
             throw warpException(e);
+        } finally {
+            this.fireDataChange();
         }
     }
 
@@ -233,6 +286,8 @@ public abstract class BaseDbCommonService<T> {
             return db.del(where);
         } catch (Exception e) {
             throw warpException(e);
+        } finally {
+            this.fireDataChange();
         }
     }
 
@@ -398,9 +453,30 @@ public abstract class BaseDbCommonService<T> {
             return Db.use(this.getDataSource()).execute(sql, params);
         } catch (Exception e) {
             throw warpException(e);
+        } finally {
+            this.fireDataChange();
+        }
+    }
+
+    /**
+     * 数据变更，在事务中时记录下来等事务结束后再回调一次
+     */
+    private void fireDataChange() {
+        this.onDataChange();
+        Set<BaseDbCommonService<?>> changed = TX_CHANGED.get();
+        if (changed != null) {
+            changed.add(this);
         }
     }
 
+    /**
+     * 数据变更回调（新增、修改、删除后执行，执行失败也会回调），可用于清理缓存
+     * <p>
+     * 在事务中执行时，最外层事务结束后还会再回调一次，避免事务提交前读取到的旧数据被缓存
+     */
+    protected void onDataChange() {
+    }
+
     /**
      * 查询结果 填充
      *
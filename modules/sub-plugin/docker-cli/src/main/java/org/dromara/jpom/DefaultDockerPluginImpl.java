@@ -41,7 +41,6 @@ import com.github.dockerjava.api.model.*;
 import com.github.dockerjava.core.InvocationBuilder;
 import com.github.dockerjava.core.NameParser;
 import lombok.Lombok;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.dromara.jpom.util.StringUtil;
 import org.springframework.util.Assert;
@@ -89,6 +88,11 @@ public class DefaultDockerPluginImpl implements IDockerConfigPlugin {
         }
     }
 
+    @Override
+    public void close() throws Exception {
+        DockerStatsSubscriber.closeAll();
+    }
+
     /**
      * 裁剪
      * <a href="https://blog.csdn.net/zhanremo3062/article/details/120860327">https://blog.csdn.net/zhanremo3062/article/details/120860327</a>
@@ -113,21 +117,17 @@ public class DefaultDockerPluginImpl implements IDockerConfigPlugin {
         return pruneResponse.getSpaceReclaimed();
     }
 
+    /**
+     * 容器监控数据，读取订阅中的最新快照
+     *
+     * @param parameter 参数
+     * @return 容器id -> 监控数据
+     * @see DockerStatsSubscriber
+     */
     private Map<String, JSONObject> statsCmd(Map<String, Object> parameter) {
-        DockerClient dockerClient = DockerUtil.get(parameter);
         String containerId = (String) parameter.get("containerId");
-        List<String> split = StrUtil.split(containerId, StrUtil.COMMA);
-        return split.stream().map(s -> {
-            Statistics statistics = dockerClient.statsCmd(s).exec(new InvocationBuilder.AsyncResultCallback<Statistics>() {
-                @SneakyThrows
-                @Override
-                public void onNext(Statistics object) {
-                    super.onNext(object);
-                    super.close();
-                }
-            }).awaitResult();
-            return new Tuple(s, DockerUtil.toJSON(statistics));
-        }).collect(Collectors.toMap(tuple -> tuple.get(0), tuple -> tuple.get(1)));
+        List<String> split = StrUtil.split(containerId, StrUtil.COMMA, true, true);
+        return DockerStatsSubscriber.stats(parameter, split);
     }
 
     private JSONObject updateContainerCmd(Map<String, Object> parameter) {
@@ -0,0 +1,251 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.map.SafeConcurrentHashMap;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSONObject;
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.model.Statistics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 容器监控数据订阅
+ * <p>
+ * 每个容器保持一个长连接的 stats 流，只保留最新一次的数据，读取时直接返回快照。
+ * 长时间未读取的订阅会被自动关闭
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/17
+ */
+@Slf4j
+public class DockerStatsSubscriber {
+
+    /**
+     * 默认空闲关闭时间（秒）
+     */
+    private static final int DEFAULT_IDLE_SECONDS = 60;
+    /**
+     * 首次订阅等待数据的默认时间（秒）
+     */
+    private static final int DEFAULT_WAIT_SECONDS = 5;
+    /**
+     * 单个 docker 最大订阅数，避免占满连接池（连接池上限为 100）
+     */
+    private static final int MAX_SUBSCRIBE = 50;
+
+    private static final Map<String, Subscription> SUBSCRIPTION_MAP = new SafeConcurrentHashMap<>();
+
+    private static volatile ScheduledExecutorService sweepExecutor;
+
+    /**
+     * 读取容器的最新监控数据，未订阅的容器会并行创建订阅并等待首次数据
+     *
+     * @param parameter    参数
+     * @param containerIds 容器id
+     * @return 容器id -> 监控数据，未获取到数据的容器不返回
+     */
+    public static Map<String, JSONObject> stats(Map<String, Object> parameter, List<String> containerIds) {
+        DockerClient dockerClient = DockerUtil.get(parameter);
+        String clientKey = DockerUtil.getKey(parameter);
+        int idleSeconds = Convert.toInt(parameter.get("statsIdleSeconds"), DEFAULT_IDLE_SECONDS);
+        int waitSeconds = Convert.toInt(parameter.get("timeout"), 0);
+        waitSeconds = waitSeconds > 0 ? Math.min(waitSeconds, DEFAULT_WAIT_SECONDS) : DEFAULT_WAIT_SECONDS;
+        if (containerIds.size() > MAX_SUBSCRIBE) {
+            // 单次超过订阅上限时只订阅前面部分，避免本次的订阅互相挤占
+            log.warn("单次读取的容器数 {} 超过订阅上限 {}，超出部分不返回监控数据", containerIds.size(), MAX_SUBSCRIBE);
+            containerIds = containerIds.subList(0, MAX_SUBSCRIBE);
+        }
+        // 先全部发起订阅，再统一等待首次数据
+        List<Subscription> subscriptions = containerIds.stream()
+            .map(containerId -> SUBSCRIPTION_MAP.computeIfAbsent(clientKey + StrUtil.COLON + containerId,
+                key -> subscribe(dockerClient, clientKey, containerId, key)))
+            .collect(Collectors.toList());
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(waitSeconds);
+        Map<String, JSONObject> result = new LinkedHashMap<>(subscriptions.size());
+        for (Subscription subscription : subscriptions) {
+            subscription.idleMillis = TimeUnit.SECONDS.toMillis(idleSeconds);
+            JSONObject latest = subscription.await(deadline);
+            if (latest != null) {
+                result.put(subscription.containerId, latest);
+            }
+        }
+        limit(clientKey, subscriptions);
+        startSweep();
+        return result;
+    }
+
+    private static Subscription subscribe(DockerClient dockerClient, String clientKey, String containerId, String key) {
+        Subscription subscription = new Subscription(clientKey, containerId, key);
+        dockerClient.statsCmd(containerId).exec(subscription);
+        log.debug("订阅容器监控数据：{}", key);
+        return subscription;
+    }
+
+    /**
+     * 超出订阅上限时关闭最久未读取的订阅，本次读取的订阅不会被关闭
+     *
+     * @param clientKey docker key
+     * @param current   本次读取的订阅
+     */
+    private static void limit(String clientKey, List<Subscription> current) {
+        List<Subscription> list = SUBSCRIPTION_MAP.values().stream()
+            .filter(subscription -> StrUtil.equals(subscription.clientKey, clientKey))
+            .collect(Collectors.toList());
+        int over = list.size() - MAX_SUBSCRIBE;
+        if (over <= 0) {
+            return;
+        }
+        list.stream()
+            .filter(subscription -> !current.contains(subscription))
+            .sorted(Comparator.comparingLong(subscription -> subscription.lastRead))
+            .limit(over)
+            .forEach(Subscription::close);
+    }
+
+    private static void startSweep() {
+        if (sweepExecutor != null) {
+            return;
+        }
+        synchronized (DockerStatsSubscriber.class) {
+            if (sweepExecutor != null) {
+                return;
+            }
+            ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(ThreadUtil.newNamedThreadFactory("docker-stats-sweep-", true));
+            executor.scheduleWithFixedDelay(DockerStatsSubscriber::sweep, 10, 10, TimeUnit.SECONDS);
+            sweepExecutor = executor;
+        }
+    }
+
+    /**
+     * 关闭空闲的订阅
+     */
+    private static void sweep() {
+        long now = System.currentTimeMillis();
+        for (Subscription subscription : SUBSCRIPTION_MAP.values()) {
+            if (now - subscription.lastRead > subscription.idleMillis) {
+                log.debug("关闭空闲的容器监控订阅：{}", subscription.key);
+                subscription.close();
+            }
+        }
+    }
+
+    /**
+     * 关闭指定 docker 的全部订阅
+     *
+     * @param clientKey docker key
+     */
+    public static void close(String clientKey) {
+        SUBSCRIPTION_MAP.values().stream()
+            .filter(subscription -> StrUtil.equals(subscription.clientKey, clientKey))
+            .forEach(Subscription::close);
+    }
+
+    /**
+     * 关闭全部订阅
+     */
+    public static void closeAll() {
+        SUBSCRIPTION_MAP.values().forEach(Subscription::close);
+        synchronized (DockerStatsSubscriber.class) {
+            if (sweepExecutor != null) {
+                sweepExecutor.shutdownNow();
+                sweepExecutor = null;
+            }
+        }
+    }
+
+    /**
+     * 单个容器的订阅
+     */
+    private static class Subscription extends ResultCallback.Adapter<Statistics> {
+
+        private final String clientKey;
+        private final String containerId;
+        private final String key;
+        private final CountDownLatch firstLatch = new CountDownLatch(1);
+        private volatile JSONObject latest;
+        private volatile long lastRead = System.currentTimeMillis();
+        private volatile long idleMillis = TimeUnit.SECONDS.toMillis(DEFAULT_IDLE_SECONDS);
+
+        private Subscription(String clientKey, String containerId, String key) {
+            this.clientKey = clientKey;
+            this.containerId = containerId;
+            this.key = key;
+        }
+
+        @Override
+        public void onNext(Statistics object) {
+            latest = DockerUtil.toJSON(object);
+            firstLatch.countDown();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            log.debug("容器监控订阅异常：{} {}", key, throwable.getMessage());
+            this.close();
+        }
+
+        @Override
+        public void onComplete() {
+            // 容器停止后流会结束
+            this.close();
+        }
+
+        private JSONObject await(long deadline) {
+            lastRead = System.currentTimeMillis();
+            long wait = deadline - lastRead;
+            if (latest == null && wait > 0) {
+                try {
+                    firstLatch.await(wait, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return latest;
+        }
+
+        @Override
+        public void close() {
+            SUBSCRIPTION_MAP.remove(key, this);
+            firstLatch.countDown();
+            try {
+                super.close();
+            } catch (Exception e) {
+                log.debug("关闭容器监控订阅异常：{}", key, e);
+            }
+        }
+    }
+}
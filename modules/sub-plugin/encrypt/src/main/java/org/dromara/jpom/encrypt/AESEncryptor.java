@@ -34,13 +34,15 @@ import cn.hutool.crypto.symmetric.AES;
  */
 public class AESEncryptor implements Encryptor {
 
-    private final byte[] keyByte;
+    private final ThreadLocal<AES> aesThreadLocal;
 
     private static volatile AESEncryptor singleton;
 
     private AESEncryptor(String key) {
         //构造器私有化，防止new，导致多个实例
-        this.keyByte = key.getBytes();
+        byte[] keyByte = key.getBytes();
+        // 按线程复用，避免每次加解密都重新创建 Cipher
+        this.aesThreadLocal = ThreadLocal.withInitial(() -> SecureUtil.aes(keyByte));
     }
 
     public static Encryptor getInstance() {
@@ -70,7 +72,7 @@ public class AESEncryptor implements Encryptor {
         if (input == null) {
             return null;
         }
-        AES aes = SecureUtil.aes(keyByte);
+        AES aes = aesThreadLocal.get();
         return aes.encryptHex(input);
     }
 
@@ -79,7 +81,7 @@ public class AESEncryptor implements Encryptor {
         if (input == null) {
             return null;
         }
-        AES aes = SecureUtil.aes(keyByte);
+        AES aes = aesThreadLocal.get();
         return aes.decryptStr(input);
     }
 
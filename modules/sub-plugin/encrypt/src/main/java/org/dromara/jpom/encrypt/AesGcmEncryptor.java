@@ -0,0 +1,122 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.encrypt;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.CharsetUtil;
+import cn.hutool.core.util.SystemPropsUtil;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * aes-gcm 整体加密请求体
+ * <p>
+ * 数据按 64KB 分帧加密，每帧独立校验，加解密都不需要缓存整个请求体。Cipher 按线程复用
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/14
+ */
+public class AesGcmEncryptor implements BodyEncryptor {
+
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private static volatile AesGcmEncryptor singleton;
+
+    private final SecretKeySpec key;
+
+    private AesGcmEncryptor(String key) {
+        this.key = new SecretKeySpec(key.getBytes(), "AES");
+    }
+
+    public static Encryptor getInstance() {
+        if (singleton == null) {
+            synchronized (AesGcmEncryptor.class) {
+                if (singleton == null) {
+                    String aesKey = SystemPropsUtil.get("JPOM_ENCRYPT_AES_KEY", "Djnn3runZBzdv9Nv");
+                    singleton = new AesGcmEncryptor(aesKey);
+                }
+            }
+        }
+        return singleton;
+    }
+
+    /**
+     * 获取当前线程的 Cipher，每次使用前需要重新 init
+     *
+     * @return cipher
+     */
+    static Cipher cipher() {
+        return CIPHER.get();
+    }
+
+    @Override
+    public String name() {
+        return "aes-gcm";
+    }
+
+    @Override
+    public OutputStream encrypt(OutputStream out) throws IOException {
+        return new AesGcmOutputStream(out, key);
+    }
+
+    @Override
+    public InputStream decrypt(InputStream in) throws IOException {
+        return new AesGcmInputStream(in, key);
+    }
+
+    @Override
+    public String encrypt(String input) throws Exception {
+        if (input == null) {
+            return null;
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (OutputStream out = this.encrypt(outputStream)) {
+            out.write(input.getBytes(CharsetUtil.CHARSET_UTF_8));
+        }
+        return Base64.encode(outputStream.toByteArray());
+    }
+
+    @Override
+    public String decrypt(String input) throws Exception {
+        if (input == null) {
+            return null;
+        }
+        try (InputStream in = this.decrypt(new ByteArrayInputStream(Base64.decode(input)))) {
+            return IoUtil.read(in, CharsetUtil.CHARSET_UTF_8);
+        }
+    }
+}
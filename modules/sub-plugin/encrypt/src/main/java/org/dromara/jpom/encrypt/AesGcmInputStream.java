@@ -0,0 +1,138 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.encrypt;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * aes-gcm 分帧解密输入流，格式见 {@link AesGcmOutputStream}
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/14
+ */
+class AesGcmInputStream extends InputStream {
+
+    private final DataInputStream in;
+    private final SecretKeySpec key;
+    private final byte[] noncePrefix = new byte[AesGcmOutputStream.NONCE_PREFIX_LENGTH];
+    private final byte[] encrypted = new byte[AesGcmOutputStream.FRAME_SIZE + AesGcmOutputStream.TAG_LENGTH];
+    private final byte[] buffer = new byte[AesGcmOutputStream.FRAME_SIZE + AesGcmOutputStream.TAG_LENGTH];
+    private int position;
+    private int limit;
+    private int counter;
+    private boolean finished;
+
+    AesGcmInputStream(InputStream in, SecretKeySpec key) throws IOException {
+        this.in = new DataInputStream(in);
+        this.key = key;
+        try {
+            byte magic = this.in.readByte();
+            byte version = this.in.readByte();
+            if (magic != AesGcmOutputStream.MAGIC || version != AesGcmOutputStream.VERSION) {
+                throw new IOException("不支持的密文格式");
+            }
+            this.in.readFully(noncePrefix);
+        } catch (EOFException e) {
+            throw new IOException("密文数据不完整", e);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!this.fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!this.fill()) {
+            return -1;
+        }
+        int size = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, size);
+        position += size;
+        return size;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * 读取下一帧
+     *
+     * @return false 已经读取完成
+     * @throws IOException 密文不完整或者校验失败
+     */
+    private boolean fill() throws IOException {
+        while (position >= limit) {
+            if (finished) {
+                return false;
+            }
+            int header;
+            try {
+                header = in.readInt();
+            } catch (EOFException e) {
+                throw new IOException("密文数据不完整", e);
+            }
+            boolean last = (header & AesGcmOutputStream.FINAL_FLAG) != 0;
+            int length = header & ~AesGcmOutputStream.FINAL_FLAG;
+            if (length < AesGcmOutputStream.TAG_LENGTH || length > encrypted.length) {
+                throw new IOException("密文帧长度错误:" + length);
+            }
+            try {
+                in.readFully(encrypted, 0, length);
+            } catch (EOFException e) {
+                throw new IOException("密文数据不完整", e);
+            }
+            try {
+                Cipher cipher = AesGcmEncryptor.cipher();
+                cipher.init(Cipher.DECRYPT_MODE, key, AesGcmOutputStream.parameterSpec(noncePrefix, counter++));
+                cipher.updateAAD(new byte[]{(byte) (last ? 1 : 0)});
+                limit = cipher.doFinal(encrypted, 0, length, buffer, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("解密失败:" + e.getMessage(), e);
+            }
+            position = 0;
+            finished = last;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.encrypt;
+
+import cn.hutool.core.util.RandomUtil;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * aes-gcm 分帧加密输出流
+ * <p>
+ * 格式：魔数(1) 版本(1) 随机数(8)，之后为若干帧：帧头(4，最高位表示最后一帧) 密文(含 16 字节校验)
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/14
+ */
+class AesGcmOutputStream extends OutputStream {
+
+    static final byte MAGIC = 'J';
+    static final byte VERSION = 1;
+    static final int NONCE_PREFIX_LENGTH = 8;
+    static final int FRAME_SIZE = 64 * 1024;
+    static final int TAG_LENGTH = 16;
+    static final int FINAL_FLAG = 0x80000000;
+
+    private final DataOutputStream out;
+    private final SecretKeySpec key;
+    private final byte[] noncePrefix;
+    private final byte[] buffer = new byte[FRAME_SIZE];
+    private final byte[] encrypted = new byte[FRAME_SIZE + TAG_LENGTH];
+    private int position;
+    private int counter;
+    private boolean closed;
+
+    AesGcmOutputStream(OutputStream out, SecretKeySpec key) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.key = key;
+        this.noncePrefix = RandomUtil.randomBytes(NONCE_PREFIX_LENGTH);
+        this.out.writeByte(MAGIC);
+        this.out.writeByte(VERSION);
+        this.out.write(noncePrefix);
+    }
+
+    /**
+     * 每帧的 iv = 随机数 + 帧序号
+     *
+     * @param noncePrefix 随机数
+     * @param counter     帧序号
+     * @return iv
+     */
+    static GCMParameterSpec parameterSpec(byte[] noncePrefix, int counter) {
+        byte[] iv = new byte[NONCE_PREFIX_LENGTH + 4];
+        System.arraycopy(noncePrefix, 0, iv, 0, NONCE_PREFIX_LENGTH);
+        iv[8] = (byte) (counter >>> 24);
+        iv[9] = (byte) (counter >>> 16);
+        iv[10] = (byte) (counter >>> 8);
+        iv[11] = (byte) counter;
+        return new GCMParameterSpec(TAG_LENGTH * 8, iv);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        this.ensureOpen();
+        buffer[position++] = (byte) b;
+        if (position == FRAME_SIZE) {
+            this.writeFrame(false);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        this.ensureOpen();
+        while (len > 0) {
+            int size = Math.min(len, FRAME_SIZE - position);
+            System.arraycopy(b, off, buffer, position, size);
+            position += size;
+            off += size;
+            len -= size;
+            if (position == FRAME_SIZE) {
+                this.writeFrame(false);
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            this.writeFrame(true);
+            out.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private void writeFrame(boolean last) throws IOException {
+        int length;
+        try {
+            Cipher cipher = AesGcmEncryptor.cipher();
+            cipher.init(Cipher.ENCRYPT_MODE, key, parameterSpec(noncePrefix, counter++));
+            cipher.updateAAD(new byte[]{(byte) (last ? 1 : 0)});
+            length = cipher.doFinal(buffer, 0, position, encrypted, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("加密失败:" + e.getMessage(), e);
+        }
+        out.writeInt(last ? length | FINAL_FLAG : length);
+        out.write(encrypted, 0, length);
+        position = 0;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.encrypt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 支持整体加密请求体的加密方式，使用流式处理避免在内存中缓存整个请求体
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/14
+ */
+public interface BodyEncryptor extends Encryptor {
+
+    /**
+     * 创建加密输出流，关闭时写入结束标记并关闭 out
+     *
+     * @param out 密文输出流
+     * @return 明文写入流
+     * @throws IOException io
+     */
+    OutputStream encrypt(OutputStream out) throws IOException;
+
+    /**
+     * 创建解密输入流，密文不完整或者被篡改时读取会抛出异常
+     *
+     * @param in 密文输入流
+     * @return 明文读取流
+     * @throws IOException io
+     */
+    InputStream decrypt(InputStream in) throws IOException;
+}
@@ -38,6 +38,8 @@ public class EncryptFactory {
                 return BASE64Encryptor.getInstance();
             case 2:
                 return AESEncryptor.getInstance();
+            case 3:
+                return AesGcmEncryptor.getInstance();
             default:
                 throw new NoSuchAlgorithmException("Unsupported encrypt type");
         }
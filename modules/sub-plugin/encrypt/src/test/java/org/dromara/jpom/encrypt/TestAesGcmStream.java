@@ -0,0 +1,158 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.encrypt;
+
+import cn.hutool.core.util.RandomUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * aes-gcm 分帧加密流格式测试
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/17
+ */
+public class TestAesGcmStream {
+
+    /**
+     * 魔数、版本、随机数
+     */
+    private static final int HEAD_LENGTH = 2 + AesGcmOutputStream.NONCE_PREFIX_LENGTH;
+    /**
+     * 一个完整数据帧的长度（帧头 + 密文 + 校验）
+     */
+    private static final int FULL_FRAME_LENGTH = 4 + AesGcmOutputStream.FRAME_SIZE + AesGcmOutputStream.TAG_LENGTH;
+
+    private final BodyEncryptor encryptor = (BodyEncryptor) AesGcmEncryptor.getInstance();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        int frameSize = AesGcmOutputStream.FRAME_SIZE;
+        for (int size : new int[]{0, 1, frameSize - 1, frameSize, frameSize + 1, frameSize * 3 + 7}) {
+            byte[] data = RandomUtil.randomBytes(size);
+            byte[] encrypted = this.encrypt(data);
+            Assert.assertEquals(AesGcmOutputStream.MAGIC, encrypted[0]);
+            Assert.assertEquals(AesGcmOutputStream.VERSION, encrypted[1]);
+            Assert.assertArrayEquals("size:" + size, data, this.decrypt(encrypted));
+        }
+        // 随机数不同，相同明文的密文不同
+        byte[] data = RandomUtil.randomBytes(128);
+        Assert.assertFalse(Arrays.equals(this.encrypt(data), this.encrypt(data)));
+    }
+
+    @Test
+    public void testSingleByteWrite() throws IOException {
+        byte[] data = RandomUtil.randomBytes(AesGcmOutputStream.FRAME_SIZE + 10);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (OutputStream out = encryptor.encrypt(outputStream)) {
+            for (byte b : data) {
+                out.write(b);
+            }
+        }
+        Assert.assertArrayEquals(data, this.decrypt(outputStream.toByteArray()));
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        byte[] encrypted = this.encrypt(RandomUtil.randomBytes(AesGcmOutputStream.FRAME_SIZE * 2 + 100));
+        // 在帧边界截断，缺少最后一帧
+        this.assertDecryptFail(Arrays.copyOf(encrypted, HEAD_LENGTH + FULL_FRAME_LENGTH));
+        this.assertDecryptFail(Arrays.copyOf(encrypted, HEAD_LENGTH + FULL_FRAME_LENGTH * 2));
+        // 在帧中间截断
+        this.assertDecryptFail(Arrays.copyOf(encrypted, HEAD_LENGTH + FULL_FRAME_LENGTH + 100));
+        // 只有头部
+        this.assertDecryptFail(Arrays.copyOf(encrypted, HEAD_LENGTH));
+        this.assertDecryptFail(Arrays.copyOf(encrypted, 1));
+    }
+
+    @Test
+    public void testFinalFlagForged() throws IOException {
+        byte[] encrypted = this.encrypt(RandomUtil.randomBytes(AesGcmOutputStream.FRAME_SIZE * 2 + 100));
+        // 截断后将最后一个完整帧标记为结束帧，结束标记参与校验
+        byte[] truncated = Arrays.copyOf(encrypted, HEAD_LENGTH + FULL_FRAME_LENGTH);
+        truncated[HEAD_LENGTH] |= (byte) 0x80;
+        this.assertDecryptFail(truncated);
+    }
+
+    @Test
+    public void testTampered() throws IOException {
+        byte[] encrypted = this.encrypt(RandomUtil.randomBytes(AesGcmOutputStream.FRAME_SIZE + 100));
+        // 密文
+        byte[] tampered = encrypted.clone();
+        tampered[HEAD_LENGTH + 4 + 10] ^= 1;
+        this.assertDecryptFail(tampered);
+        // 校验值
+        tampered = encrypted.clone();
+        tampered[tampered.length - 1] ^= 1;
+        this.assertDecryptFail(tampered);
+        // 随机数
+        tampered = encrypted.clone();
+        tampered[2] ^= 1;
+        this.assertDecryptFail(tampered);
+        // 交换帧的顺序
+        int secondFrame = HEAD_LENGTH + FULL_FRAME_LENGTH;
+        byte[] first = Arrays.copyOfRange(encrypted, HEAD_LENGTH, secondFrame);
+        byte[] second = Arrays.copyOfRange(encrypted, secondFrame, encrypted.length);
+        tampered = new byte[encrypted.length];
+        System.arraycopy(encrypted, 0, tampered, 0, HEAD_LENGTH);
+        System.arraycopy(second, 0, tampered, HEAD_LENGTH, second.length);
+        System.arraycopy(first, 0, tampered, HEAD_LENGTH + second.length, first.length);
+        this.assertDecryptFail(tampered);
+        // 版本
+        tampered = encrypted.clone();
+        tampered[1] = 2;
+        this.assertDecryptFail(tampered);
+    }
+
+    private byte[] encrypt(byte[] data) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (OutputStream out = encryptor.encrypt(outputStream)) {
+            out.write(data);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private byte[] decrypt(byte[] encrypted) throws IOException {
+        // 直接读取，保留原始的 IOException
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (InputStream in = encryptor.decrypt(new ByteArrayInputStream(encrypted))) {
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, len);
+            }
+        }
+        return outputStream.toByteArray();
+    }
+
+    private void assertDecryptFail(byte[] encrypted) {
+        Assert.assertThrows(IOException.class, () -> this.decrypt(encrypted));
+    }
+}
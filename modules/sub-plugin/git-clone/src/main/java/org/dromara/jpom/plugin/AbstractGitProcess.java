@@ -68,6 +68,13 @@ public abstract class AbstractGitProcess implements GitProcess {
         return (File) parameter.get("savePath");
     }
 
+    /**
+     * 获取仓库本地镜像路径，未开启镜像缓存时为 null
+     */
+    protected File getMirrorFile() {
+        return JGitUtil.getMirrorFile(parameter);
+    }
+
     /**
      * 获取分支Name
      */
@@ -40,7 +40,7 @@ public class DefaultGitPluginImpl implements IWorkspaceEnvPlugin {
         GitProcess gitProcess = GitProcessFactory.get(parameter, this);
         switch (type) {
             case "branchAndTagList":
-                return gitProcess.branchAndTagList();
+                return GitRemoteRefCache.get(parameter, gitProcess::branchAndTagList);
             case "pull": {
                 return gitProcess.pull();
             }
@@ -58,6 +58,7 @@ public class DefaultGitPluginImpl implements IWorkspaceEnvPlugin {
 
     @Override
     public void close() throws Exception {
+        GitRemoteRefCache.clear();
         Git.shutdown();
     }
 }
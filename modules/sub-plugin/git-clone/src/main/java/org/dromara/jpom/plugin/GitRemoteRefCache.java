@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Code Technology Studio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.dromara.jpom.plugin;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.lang.Tuple;
+import cn.hutool.core.lang.func.Func0;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 仓库远程分支/标签列表（ls-remote）短时间缓存
+ * <p>
+ * 构建前都需要获取一次远程分支列表，同一仓库短时间内的多个构建共用一次查询结果
+ *
+ * @author bwcx_jzy
+ * @since 2024/1/17
+ */
+public class GitRemoteRefCache {
+
+    /**
+     * 缓存结果，元素为 [结果, 过期时间]
+     */
+    private static final Map<String, Tuple> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * 获取分支和标签列表，参数中 remoteRefCacheSeconds 大于 0 时使用缓存
+     *
+     * @param parameter 参数
+     * @param supplier  实际查询
+     * @return tuple
+     * @throws Exception 异常
+     */
+    public static Tuple get(Map<String, Object> parameter, Func0<Tuple> supplier) throws Exception {
+        Integer seconds = (Integer) parameter.get("remoteRefCacheSeconds");
+        if (seconds == null || seconds <= 0) {
+            return supplier.call();
+        }
+        String key = SecureUtil.sha1(StrUtil.join(StrUtil.COLON,
+            parameter.get("url"),
+            parameter.get("protocol"),
+            parameter.get("username"),
+            parameter.get("password"),
+            rsaFileHash(parameter)));
+        // 同一个仓库并发查询时只执行一次
+        synchronized (StrUtil.concat(false, "ls-remote:", key).intern()) {
+            long now = System.currentTimeMillis();
+            Tuple item = CACHE.get(key);
+            if (item != null && (long) item.get(1) > now) {
+                return item.get(0);
+            }
+            Tuple tuple = supplier.call();
+            // 顺带清理已经过期的数据
+            CACHE.values().removeIf(value -> (long) value.get(1) <= now);
+            if (tuple != null) {
+                CACHE.put(key, new Tuple(tuple, now + TimeUnit.SECONDS.toMillis(seconds)));
+            }
+            return tuple;
+        }
+    }
+
+    /**
+     * 私钥文件内容摘要，私钥变更后不能使用旧私钥的查询结果
+     *
+     * @param parameter 参数
+     * @return 未使用私钥时为空
+     */
+    private static String rsaFileHash(Map<String, Object> parameter) {
+        File rsaFile = (File) parameter.get("rsaFile");
+        if (!FileUtil.isFile(rsaFile)) {
+            return StrUtil.EMPTY;
+        }
+        return SecureUtil.sha1(rsaFile);
+    }
+
+    /**
+     * 清空缓存
+     */
+    public static void clear() {
+        CACHE.clear();
+    }
+}
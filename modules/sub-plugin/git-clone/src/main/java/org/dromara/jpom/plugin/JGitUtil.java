@@ -30,6 +30,7 @@ import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.io.IoUtil;
 import cn.hutool.core.lang.Tuple;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
@@ -40,10 +41,12 @@ import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.NoHeadException;
 import org.eclipse.jgit.api.errors.TransportException;
 import org.eclipse.jgit.internal.JGitText;
+import org.eclipse.jgit.lib.ConfigConstants;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.jgit.lib.SubmoduleConfig.FetchRecurseSubmodulesMode;
 import org.eclipse.jgit.merge.MergeStrategy;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -139,6 +142,17 @@ public class JGitUtil {
         if (!FileUtil.clean(file)) {
             FileUtil.del(file.toPath());
         }
+        File mirrorFile = getMirrorFile(parameter);
+        if (mirrorFile != null) {
+            try {
+                return cloneByMirror(parameter, branchName, tagName, file, mirrorFile, printWriter);
+            } catch (Exception e) {
+                println(printWriter, "JGit: clone by mirror failed, fallback to full clone {}", e.getMessage());
+                if (!FileUtil.clean(file)) {
+                    FileUtil.del(file.toPath());
+                }
+            }
+        }
         CloneCommand cloneCommand = Git.cloneRepository();
         if (printWriter != null) {
             Integer progressRatio = (Integer) parameter.get("reduceProgressRatio");
@@ -160,6 +174,140 @@ public class JGitUtil {
         return command.call();
     }
 
+    /**
+     * 获取仓库本地镜像路径，未开启镜像缓存时为 null
+     * <p>
+     * 镜像按远程地址区分目录，远程地址变更后使用新的镜像，旧镜像仍被已有构建目录通过 alternates 引用，不能直接删除，
+     * 随仓库删除一并清理
+     *
+     * @param parameter 参数
+     * @return 镜像路径
+     */
+    static File getMirrorFile(Map<String, Object> parameter) {
+        File mirrorFile = (File) parameter.get("mirrorPath");
+        if (mirrorFile == null) {
+            return null;
+        }
+        String url = (String) parameter.get("url");
+        return FileUtil.file(mirrorFile, SecureUtil.md5(StrUtil.nullToEmpty(url)));
+    }
+
+    /**
+     * 增量更新仓库本地镜像（裸仓库），镜像不存在或者已经损坏时重新创建
+     *
+     * @param parameter   参数
+     * @param mirrorFile  镜像路径
+     * @param printWriter 日志流
+     * @throws Exception 异常
+     */
+    private static void fetchMirror(Map<String, Object> parameter, File mirrorFile, PrintWriter printWriter) throws Exception {
+        String url = (String) parameter.get("url");
+        // 镜像目录按远程地址区分，地址不一致说明镜像不存在或者已经损坏
+        if (!StrUtil.equals(getMirrorUrl(mirrorFile), url)) {
+            println(printWriter, "JGit: create repository mirror");
+            FileUtil.del(mirrorFile);
+            try (Git git = Git.init().setBare(true).setDirectory(mirrorFile).call()) {
+                StoredConfig config = git.getRepository().getConfig();
+                RemoteConfig remoteConfig = new RemoteConfig(config, Constants.DEFAULT_REMOTE_NAME);
+                remoteConfig.addURI(new URIish(url));
+                remoteConfig.addFetchRefSpec(new RefSpec("+" + Constants.R_HEADS + "*:" + Constants.R_HEADS + "*"));
+                remoteConfig.addFetchRefSpec(new RefSpec("+" + Constants.R_TAGS + "*:" + Constants.R_TAGS + "*"));
+                remoteConfig.update(config);
+                // 镜像对象被构建目录通过 alternates 引用，不能自动回收
+                config.setInt(ConfigConstants.CONFIG_GC_SECTION, null, ConfigConstants.CONFIG_KEY_AUTO, 0);
+                config.save();
+            }
+        }
+        try (Git git = Git.open(mirrorFile)) {
+            Integer progressRatio = (Integer) parameter.get("reduceProgressRatio");
+            FetchCommand fetchCommand = git.fetch()
+                .setRemote(Constants.DEFAULT_REMOTE_NAME)
+                .setRemoveDeletedRefs(true)
+                .setProgressMonitor(new SmallTextProgressMonitor(printWriter, progressRatio));
+            setCredentials(fetchCommand, parameter);
+            fetchCommand.call();
+        }
+    }
+
+    /**
+     * 读取镜像的远程地址
+     *
+     * @param mirrorFile 镜像路径
+     * @return 不是有效的镜像返回 null
+     */
+    private static String getMirrorUrl(File mirrorFile) {
+        if (!FileUtil.isFile(FileUtil.file(mirrorFile, Constants.CONFIG))) {
+            return null;
+        }
+        try (Git git = Git.open(mirrorFile)) {
+            return git.getRepository().getConfig().getString(ConfigConstants.CONFIG_REMOTE_SECTION, Constants.DEFAULT_REMOTE_NAME, ConfigConstants.CONFIG_KEY_URL);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 借助仓库本地镜像 clone，构建目录通过 alternates 共享镜像中的对象，不再完整下载仓库
+     *
+     * @param parameter   参数
+     * @param branchName  分支
+     * @param tagName     标签
+     * @param file        构建目录
+     * @param mirrorFile  镜像路径
+     * @param printWriter 日志流
+     * @return git
+     * @throws Exception 异常
+     */
+    private static Git cloneByMirror(Map<String, Object> parameter, String branchName, String tagName, File file, File mirrorFile, PrintWriter printWriter) throws Exception {
+        String mirrorPath = FileUtil.getAbsolutePath(mirrorFile);
+        println(printWriter, "JGit: clone by repository mirror");
+        String url = (String) parameter.get("url");
+        Git.init().setDirectory(file).call().close();
+        // 在打开仓库前写入 alternates
+        File alternates = FileUtil.file(file, Constants.DOT_GIT, Constants.OBJECTS, "info", "alternates");
+        FileUtil.writeUtf8String(FileUtil.getAbsolutePath(FileUtil.file(mirrorFile, Constants.OBJECTS)) + StrUtil.LF, alternates);
+        Git git = Git.open(file);
+        try {
+            StoredConfig config = git.getRepository().getConfig();
+            RemoteConfig remoteConfig = new RemoteConfig(config, Constants.DEFAULT_REMOTE_NAME);
+            remoteConfig.addURI(new URIish(url));
+            remoteConfig.addFetchRefSpec(new RefSpec("+" + Constants.R_HEADS + "*:" + Constants.R_REMOTES + Constants.DEFAULT_REMOTE_NAME + "/*"));
+            remoteConfig.update(config);
+            config.save();
+            // 对象已经存在于镜像中，从镜像 fetch 只需要更新引用
+            String refSpec = tagName != null ?
+                StrUtil.format("+{}{}:{}{}", Constants.R_TAGS, tagName, Constants.R_TAGS, tagName) :
+                StrUtil.format("+{}{}:{}{}/{}", Constants.R_HEADS, branchName, Constants.R_REMOTES, Constants.DEFAULT_REMOTE_NAME, branchName);
+            // 只在更新镜像和读取镜像时加锁，检出和子模块更新只操作构建目录
+            synchronized (mirrorPath.intern()) {
+                fetchMirror(parameter, mirrorFile, printWriter);
+                git.fetch()
+                    .setRemote(mirrorPath)
+                    .setRefSpecs(new RefSpec(refSpec))
+                    .call();
+            }
+            if (tagName != null) {
+                git.checkout().setName(Constants.R_TAGS + tagName).call();
+            } else {
+                git.checkout()
+                    .setCreateBranch(true)
+                    .setName(branchName)
+                    .setStartPoint(Constants.R_REMOTES + Constants.DEFAULT_REMOTE_NAME + "/" + branchName)
+                    .setUpstreamMode(CreateBranchCommand.SetupUpstreamMode.TRACK)
+                    .call();
+            }
+            // 子模块
+            git.submoduleInit().call();
+            SubmoduleUpdateCommand subUpdate = git.submoduleUpdate();
+            setCredentials(subUpdate, parameter);
+            subUpdate.call();
+            return git;
+        } catch (Exception e) {
+            git.close();
+            throw e;
+        }
+    }
+
     /**
      * 设置仓库凭证
      *
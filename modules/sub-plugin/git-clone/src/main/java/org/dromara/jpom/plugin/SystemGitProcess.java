@@ -229,7 +229,20 @@ public class SystemGitProcess extends AbstractGitProcess {
                 return null;
             }).ifPresent(integer -> env.put("GIT_HTTP_TIMEOUT", String.valueOf(integer)));
         //
-        String[] command = new String[]{"git", "clone", "--recursive", depthStr, "-b", branchOrTag, this.getCovertUrl(), savePath.getAbsolutePath()};
+        String referenceStr = StrUtil.EMPTY;
+        File mirrorFile = getMirrorFile();
+        // 浅克隆不使用镜像
+        if (mirrorFile != null && StrUtil.isEmpty(depthStr)) {
+            if (this.fetchMirror(printWriter, mirrorFile, env)) {
+                referenceStr = "--reference-if-able=" + mirrorFile.getAbsolutePath();
+            } else {
+                printWriter.println("SystemGit: update repository mirror failed, fallback to full clone");
+            }
+        }
+        // 过滤未使用的参数，避免传入空参数
+        String[] command = Arrays.stream(new String[]{"git", "clone", "--recursive", depthStr, referenceStr, "-b", branchOrTag, this.getCovertUrl(), savePath.getAbsolutePath()})
+            .filter(StrUtil::isNotEmpty)
+            .toArray(String[]::new);
         FileUtil.mkdir(savePath);
         CommandUtil.exec(savePath, env, line -> {
             printWriter.println(line);
@@ -237,6 +250,45 @@ public class SystemGitProcess extends AbstractGitProcess {
         }, command);
     }
 
+    /**
+     * 增量更新仓库本地镜像（裸仓库），镜像不存在或者已经损坏时重新创建
+     * <p>
+     * 镜像配置中只保存原始地址，拉取时使用带账号密码的地址
+     *
+     * @param printWriter 日志流
+     * @param mirrorFile  镜像路径
+     * @param env         环境变量
+     * @return 是否更新成功
+     * @throws IOException 地址错误
+     */
+    private boolean fetchMirror(PrintWriter printWriter, File mirrorFile, Map<String, String> env) throws IOException {
+        String url = (String) parameter.get("url");
+        String covertUrl = this.warpSsh(this.getCovertUrl());
+        synchronized (FileUtil.getAbsolutePath(mirrorFile).intern()) {
+            String mirrorUrl = FileUtil.isFile(FileUtil.file(mirrorFile, Constants.CONFIG)) ?
+                StrUtil.trim(CommandUtil.execSystemCommand("git config --get remote.origin.url", mirrorFile)) : null;
+            if (!StrUtil.equals(mirrorUrl, url)) {
+                printWriter.println("SystemGit: create repository mirror");
+                FileUtil.del(mirrorFile);
+                FileUtil.mkdir(mirrorFile);
+                int code = CommandUtil.exec(mirrorFile, null, printWriter::println, "git", "init", "--bare");
+                if (code != 0) {
+                    return false;
+                }
+                CommandUtil.exec(mirrorFile, null, printWriter::println, "git", "config", "remote.origin.url", url);
+                // 镜像对象被构建目录引用，不能自动回收
+                CommandUtil.exec(mirrorFile, null, printWriter::println, "git", "config", "gc.auto", "0");
+            }
+            int code = CommandUtil.exec(mirrorFile, env, line -> {
+                    printWriter.println(line);
+                    printWriter.flush();
+                }, "git", "fetch", "--prune", covertUrl,
+                "+" + Constants.R_HEADS + "*:" + Constants.R_HEADS + "*",
+                "+" + Constants.R_TAGS + "*:" + Constants.R_TAGS + "*");
+            return code == 0;
+        }
+    }
+
     /**
      * 是否存在GIT仓库
      */